@@ -39,6 +39,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.AbstractQueue;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
@@ -704,6 +705,111 @@ public class ArrayBlockingQueue<E> extends AbstractQueue<E>
         }
     }
 
+    /**
+     * 将最多 maxElements 个元素按 FIFO 顺序批量转移到 dst[0, n) 中，返回
+     * 转移的个数 n。和循环调用 poll 相比只加一次锁、只唤醒一次等待 put 的
+     * 线程，元素的复制在循环数组回绕点两侧各用一次 System.arraycopy。
+     *
+     * @throws NullPointerException 如果 dst 为 null
+     * @throws IndexOutOfBoundsException 如果 maxElements 大于 dst.length
+     * @throws ArrayStoreException 如果元素的类型不能存入 dst，此时队列不变
+     */
+    public int drainTo(E[] dst, int maxElements) {
+        checkNotNull(dst);
+        if (maxElements > dst.length)
+            throw new IndexOutOfBoundsException("maxElements: " + maxElements +
+                    ", length: " + dst.length);
+        if (maxElements <= 0)
+            return 0;
+        final Object[] items = this.items;
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            int n = Math.min(maxElements, count);
+            if (n == 0)
+                return 0;
+            final int take = takeIndex;
+            final int first = Math.min(n, items.length - take);  // 回绕点之前的个数
+            // 先复制，ArrayStoreException 时队列还没有被修改
+            System.arraycopy(items, take, dst, 0, first);
+            System.arraycopy(items, 0, dst, first, n - first);
+            Arrays.fill(items, take, take + first, null);
+            Arrays.fill(items, 0, n - first, null);
+            count -= n;
+            int newTake = take + n;
+            if (newTake >= items.length)
+                newTake -= items.length;
+            takeIndex = newTake;
+            if (itrs != null) {
+                if (count == 0)
+                    itrs.queueIsEmpty();
+                else if (n > newTake)
+                    itrs.takeIndexWrapped();
+            }
+            notFull.signalAll();
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 将 src[off, off + len) 按顺序批量插入队列末尾，空间不够时最多等待
+     * 指定的时间，返回实际插入的个数。插入是部分成功的：超时以后已经插入的
+     * 元素保留在队列中。
+     *
+     * 队列有足够的空间时只加一次锁、只唤醒一次等待 take 的线程；每次复制
+     * 在回绕点两侧各用一次 System.arraycopy。
+     *
+     * @throws InterruptedException 如果还没有插入任何元素时等待被中断；已经
+     *         插入了部分元素时不抛出异常，而是恢复中断状态并返回已插入的个数
+     * @throws NullPointerException 如果 src 中有 null 元素，此时队列不变
+     * @throws IndexOutOfBoundsException 如果 off、len 越界
+     */
+    public int offerAll(E[] src, int off, int len, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        if (off < 0 || len < 0 || len > src.length - off)
+            throw new IndexOutOfBoundsException("off: " + off + ", len: " + len +
+                    ", length: " + src.length);
+        for (int i = off, end = off + len; i < end; i++)
+            checkNotNull(src[i]);
+        long nanos = unit.toNanos(timeout);
+        final Object[] items = this.items;
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        int done = 0;
+        try {
+            while (done < len) {
+                // 队列已满，等待空间
+                while (count == items.length) {
+                    if (nanos <= 0)
+                        return done;
+                    try {
+                        nanos = notFull.awaitNanos(nanos);
+                    } catch (InterruptedException ie) {
+                        if (done == 0)
+                            throw ie;
+                        Thread.currentThread().interrupt();
+                        return done;
+                    }
+                }
+                int n = Math.min(len - done, items.length - count);
+                final int put = putIndex;
+                final int first = Math.min(n, items.length - put);
+                System.arraycopy(src, off + done, items, put, first);
+                System.arraycopy(src, off + done + first, items, 0, n - first);
+                int newPut = put + n;
+                putIndex = (newPut >= items.length) ? newPut - items.length : newPut;
+                count += n;
+                done += n;
+                notEmpty.signalAll();
+            }
+            return done;
+        } finally {
+            lock.unlock();
+        }
+    }
+
     /**
      * 返回迭代器。
      *
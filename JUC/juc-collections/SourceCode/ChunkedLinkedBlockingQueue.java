@@ -0,0 +1,717 @@
+package JUC.JUCCollections;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 由定长数组块（chunk）链接而成的可选边界阻塞队列，FIFO。
+ *
+ * LinkedBlockingQueue 每次插入都要创建一个 Node，出队以后马上变成垃圾，
+ * 消息速率很高时这就是主要的分配来源。此类的链表节点是能存放
+ * CHUNK_SIZE 个元素的数组块：
+ *  - 插入只是写入尾块的下一个槽位，尾块写满时才链接一个新块；
+ *  - 取出只是读取并清空头块的当前槽位，头块读完时才移到下一个块，读完的
+ *    块放进一个很小的空闲表（最多 MAX_FREE_CHUNKS 个），下次需要新块时
+ *    优先复用，稳定状态下不再分配任何对象。
+ * 加锁和通知的方式和 LinkedBlockingQueue 完全相同：putLock 和 takeLock
+ * 两把锁，count 是原子变量，同一个块上的插入和取出互不阻塞。
+ *
+ * 空闲表用 AtomicReferenceArray 实现：取出方持有 takeLock 放入，插入方
+ * 持有 putLock 取走，每个槽位只用 CAS 在 null 和块之间切换。
+ *
+ * 块会被复用，弱一致的迭代器无法像 LinkedBlockingQueue 那样持有已经出队
+ * 的节点，所以迭代器遍历的是创建时的快照；迭代器的 remove 删除队列中同一
+ * 个对象（==）的第一次出现。remove(Object) 需要把后面的元素依次前移，
+ * O(n)。不可序列化。
+ *
+ * @param <E> the type of elements held in this collection
+ * @see LinkedBlockingQueue
+ */
+public class ChunkedLinkedBlockingQueue<E> extends AbstractQueue<E>
+        implements BlockingQueue<E> {
+
+    /** 每个块能存放的元素个数 */
+    static final int CHUNK_SIZE = 64;
+
+    /** 空闲表最多保留的块数 */
+    static final int MAX_FREE_CHUNKS = 4;
+
+    /**
+     * 块类
+     */
+    static final class Chunk {
+        final Object[] items = new Object[CHUNK_SIZE];
+
+        Chunk next;
+    }
+
+    /** 队列容量，默认为 Integer.MAX_VALUE */
+    private final int capacity;
+
+    /** 当前元素数量 */
+    private final AtomicInteger count = new AtomicInteger();
+
+    /** 头块，下一个取出的元素是 first.items[takeIndex] */
+    private Chunk first;
+
+    /**
+     * 头块中下一个取出的位置。等于 CHUNK_SIZE 时头块已经读完，下一个元素
+     * 在 first.next.items[0]。
+     */
+    private int takeIndex;
+
+    /** 尾块，下一个插入的位置是 last.items[putIndex] */
+    private Chunk last;
+
+    /**
+     * 尾块中下一个插入的位置。等于 CHUNK_SIZE 时需要链接新块；等于 0 时
+     * 队列为空且 first == last。
+     */
+    private int putIndex;
+
+    /** 回收的空块，null 表示空位 */
+    private final AtomicReferenceArray<Chunk> freeChunks =
+            new AtomicReferenceArray<Chunk>(MAX_FREE_CHUNKS);
+
+    /** take 和 poll 等持有的锁 */
+    private final ReentrantLock takeLock = new ReentrantLock();
+
+    /** 等待执行 take 操作的 condition */
+    private final Condition notEmpty = takeLock.newCondition();
+
+    /** put 和 offer 等持有的锁 */
+    private final ReentrantLock putLock = new ReentrantLock();
+
+    /** 等待执行 put 操作的 condition */
+    private final Condition notFull = putLock.newCondition();
+
+    /**
+     * 唤醒一个等待 take 的线程。在 put/offer 里调用。
+     */
+    private void signalNotEmpty() {
+        final ReentrantLock takeLock = this.takeLock;
+        takeLock.lock();
+        try {
+            notEmpty.signal();
+        } finally {
+            takeLock.unlock();
+        }
+    }
+
+    /**
+     * 唤醒一个等待 put 的线程。在 take/poll 里调用。
+     */
+    private void signalNotFull() {
+        final ReentrantLock putLock = this.putLock;
+        putLock.lock();
+        try {
+            notFull.signal();
+        } finally {
+            putLock.unlock();
+        }
+    }
+
+    /**
+     * 从空闲表取一个块，空闲表为空时创建新块。持有 putLock 时调用。
+     */
+    private Chunk allocateChunk() {
+        final AtomicReferenceArray<Chunk> free = this.freeChunks;
+        for (int i = 0; i < MAX_FREE_CHUNKS; i++) {
+            Chunk c = free.get(i);
+            if (c != null && free.compareAndSet(i, c, null))
+                return c;
+        }
+        return new Chunk();
+    }
+
+    /**
+     * 把已经读完的块放回空闲表，空闲表满了就丢弃。块中的槽位在取出时都已经
+     * 清空。持有 takeLock 时调用。
+     */
+    private void recycleChunk(Chunk c) {
+        c.next = null;
+        final AtomicReferenceArray<Chunk> free = this.freeChunks;
+        for (int i = 0; i < MAX_FREE_CHUNKS; i++) {
+            if (free.get(i) == null && free.compareAndSet(i, null, c))
+                return;
+        }
+    }
+
+    /**
+     * 在队列尾部添加元素。持有 putLock 时调用。
+     */
+    private void enqueue(E x) {
+        Chunk l = last;
+        int i = putIndex;
+        if (i == CHUNK_SIZE) {
+            Chunk c = allocateChunk();
+            l = l.next = last = c;
+            i = 0;
+        }
+        l.items[i] = x;
+        putIndex = i + 1;
+    }
+
+    /**
+     * 从队列头部删除一个元素。持有 takeLock 且 count 大于 0 时调用，此时
+     * 插入方对 first.next 和槽位的写入都在 count 增加之前，是可见的。
+     */
+    @SuppressWarnings("unchecked")
+    private E dequeue() {
+        Chunk f = first;
+        int i = takeIndex;
+        if (i == CHUNK_SIZE) {
+            Chunk old = f;
+            first = f = f.next;
+            i = 0;
+            recycleChunk(old);
+        }
+        Object[] items = f.items;
+        E x = (E) items[i];
+        items[i] = null;
+        takeIndex = i + 1;
+        return x;
+    }
+
+    /**
+     * 获取类中的两个锁。
+     */
+    void fullyLock() {
+        putLock.lock();
+        takeLock.lock();
+    }
+
+    /**
+     * 释放类中的两个锁。
+     */
+    void fullyUnlock() {
+        takeLock.unlock();
+        putLock.unlock();
+    }
+
+    /**
+     * 默认容量的构造函数
+     */
+    public ChunkedLinkedBlockingQueue() {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * 指定容量的构造函数
+     *
+     * @param capacity the capacity of this queue
+     * @throws IllegalArgumentException if {@code capacity} is not greater
+     *         than zero
+     */
+    public ChunkedLinkedBlockingQueue(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException();
+        this.capacity = capacity;
+        last = first = new Chunk();
+    }
+
+    /**
+     * 构造默认容量的阻塞队列，将指定集合中所有元素加入到队列中，加入的
+     * 顺序为集合迭代器返回的顺序。
+     *
+     * @param c the collection of elements to initially contain
+     * @throws NullPointerException if the specified collection or any
+     *         of its elements are null
+     */
+    public ChunkedLinkedBlockingQueue(Collection<? extends E> c) {
+        this(Integer.MAX_VALUE);
+        final ReentrantLock putLock = this.putLock;
+        putLock.lock(); // Never contended, but necessary for visibility
+        try {
+            int n = 0;
+            for (E e : c) {
+                if (e == null)
+                    throw new NullPointerException();
+                if (n == capacity)
+                    throw new IllegalStateException("Queue full");
+                enqueue(e);
+                ++n;
+            }
+            count.set(n);
+        } finally {
+            putLock.unlock();
+        }
+    }
+
+    /**
+     * 返回队列中元素个数。
+     */
+    public int size() {
+        return count.get();
+    }
+
+    /**
+     * 返回队列剩余容量。没有加锁，不准确。
+     */
+    public int remainingCapacity() {
+        return capacity - count.get();
+    }
+
+    /**
+     * 将指定元素添加到队列尾部，如果没有空间了，等待直到有空余的空间为止。
+     * 响应中断。
+     *
+     * @throws InterruptedException {@inheritDoc}
+     * @throws NullPointerException {@inheritDoc}
+     */
+    public void put(E e) throws InterruptedException {
+        if (e == null) throw new NullPointerException();
+        int c = -1;
+        final ReentrantLock putLock = this.putLock;
+        final AtomicInteger count = this.count;
+        putLock.lockInterruptibly();
+        try {
+            // 理由同 LinkedBlockingQueue.put：持有 putLock 时 count 只会减少
+            while (count.get() == capacity) {
+                notFull.await();
+            }
+            enqueue(e);
+            c = count.getAndIncrement();
+            if (c + 1 < capacity)
+                notFull.signal();
+        } finally {
+            putLock.unlock();
+        }
+        if (c == 0)
+            signalNotEmpty();
+    }
+
+    /**
+     * 将指定元素添加到队列尾部，如果没有空间了，等待直到有空余的空间为止。
+     * 响应中断，有等待时间限制。
+     *
+     * @return {@code true} if successful, or {@code false} if
+     *         the specified waiting time elapses before space is available
+     * @throws InterruptedException {@inheritDoc}
+     * @throws NullPointerException {@inheritDoc}
+     */
+    public boolean offer(E e, long timeout, TimeUnit unit)
+            throws InterruptedException {
+
+        if (e == null) throw new NullPointerException();
+        long nanos = unit.toNanos(timeout);
+        int c = -1;
+        final ReentrantLock putLock = this.putLock;
+        final AtomicInteger count = this.count;
+        putLock.lockInterruptibly();
+        try {
+            while (count.get() == capacity) {
+                if (nanos <= 0)
+                    return false;
+                nanos = notFull.awaitNanos(nanos);
+            }
+            enqueue(e);
+            c = count.getAndIncrement();
+            if (c + 1 < capacity)
+                notFull.signal();
+        } finally {
+            putLock.unlock();
+        }
+        if (c == 0)
+            signalNotEmpty();
+        return true;
+    }
+
+    /**
+     * 将指定元素添加到队列尾部，如果队列还有剩余空间的话。成功返回 true，
+     * 队列已满直接返回 false。
+     *
+     * @throws NullPointerException if the specified element is null
+     */
+    public boolean offer(E e) {
+        if (e == null) throw new NullPointerException();
+        final AtomicInteger count = this.count;
+        if (count.get() == capacity)
+            return false;
+        int c = -1;
+        final ReentrantLock putLock = this.putLock;
+        putLock.lock();
+        try {
+            if (count.get() < capacity) {
+                enqueue(e);
+                c = count.getAndIncrement();
+                if (c + 1 < capacity)
+                    notFull.signal();
+            }
+        } finally {
+            putLock.unlock();
+        }
+        if (c == 0)
+            signalNotEmpty();
+        return c >= 0;
+    }
+
+    // 响应中断的 take 操作
+    public E take() throws InterruptedException {
+        E x;
+        int c = -1;
+        final AtomicInteger count = this.count;
+        final ReentrantLock takeLock = this.takeLock;
+        takeLock.lockInterruptibly();
+        try {
+            while (count.get() == 0) {
+                notEmpty.await();
+            }
+            x = dequeue();
+            c = count.getAndDecrement();
+            if (c > 1)
+                notEmpty.signal();
+        } finally {
+            takeLock.unlock();
+        }
+        if (c == capacity)
+            signalNotFull();
+        return x;
+    }
+
+    // 响应中断的 poll 操作，有等待时间限制
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        E x = null;
+        int c = -1;
+        long nanos = unit.toNanos(timeout);
+        final AtomicInteger count = this.count;
+        final ReentrantLock takeLock = this.takeLock;
+        takeLock.lockInterruptibly();
+        try {
+            while (count.get() == 0) {
+                if (nanos <= 0)
+                    return null;
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            x = dequeue();
+            c = count.getAndDecrement();
+            if (c > 1)
+                notEmpty.signal();
+        } finally {
+            takeLock.unlock();
+        }
+        if (c == capacity)
+            signalNotFull();
+        return x;
+    }
+
+    // 队列为空直接返回 null
+    public E poll() {
+        final AtomicInteger count = this.count;
+        if (count.get() == 0)
+            return null;
+        E x = null;
+        int c = -1;
+        final ReentrantLock takeLock = this.takeLock;
+        takeLock.lock();
+        try {
+            if (count.get() > 0) {
+                x = dequeue();
+                c = count.getAndDecrement();
+                if (c > 1)
+                    notEmpty.signal();
+            }
+        } finally {
+            takeLock.unlock();
+        }
+        if (c == capacity)
+            signalNotFull();
+        return x;
+    }
+
+    // 获取头部元素
+    @SuppressWarnings("unchecked")
+    public E peek() {
+        if (count.get() == 0)
+            return null;
+        final ReentrantLock takeLock = this.takeLock;
+        takeLock.lock();
+        try {
+            if (count.get() == 0)
+                return null;
+            int i = takeIndex;
+            return (E) ((i == CHUNK_SIZE) ? first.next.items[0] : first.items[i]);
+        } finally {
+            takeLock.unlock();
+        }
+    }
+
+    /**
+     * 删除第一个满足条件的元素：identity 为 true 时比较引用，否则用 equals。
+     * 后面的元素依次前移一个位置，尾块因此变空时把它从链表中摘掉。持有两把
+     * 锁时调用。
+     */
+    private boolean removeFirstOccurrence(Object o, boolean identity) {
+        Chunk c = first;
+        int i = takeIndex;
+        int n = count.get();
+        int k = 0;
+        for (; k < n; k++, i++) {
+            if (i == CHUNK_SIZE) {
+                c = c.next;
+                i = 0;
+            }
+            Object x = c.items[i];
+            if (identity ? x == o : o.equals(x))
+                break;
+        }
+        if (k == n)
+            return false;
+        // (c, i) 是被删除的位置，把后面的元素逐个前移
+        for (k++; k < n; k++) {
+            Chunk nc = c;
+            int ni = i + 1;
+            if (ni == CHUNK_SIZE) {
+                nc = c.next;
+                ni = 0;
+            }
+            c.items[i] = nc.items[ni];
+            c = nc;
+            i = ni;
+        }
+        c.items[i] = null;
+        // 最后一个元素原来在 (last, putIndex - 1)
+        if (--putIndex == 0 && last != first) {
+            Chunk p = first;
+            while (p.next != last)
+                p = p.next;
+            p.next = null;
+            last = p;
+            putIndex = CHUNK_SIZE;
+        }
+        if (count.getAndDecrement() == capacity)
+            notFull.signal();
+        return true;
+    }
+
+    /**
+     * 删除队列中指定元素，如果其存在的话。删除成功返回 true。
+     *
+     * @param o element to be removed from this queue, if present
+     * @return {@code true} if this queue changed as a result of the call
+     */
+    public boolean remove(Object o) {
+        if (o == null) return false;
+        fullyLock();
+        try {
+            return removeFirstOccurrence(o, false);
+        } finally {
+            fullyUnlock();
+        }
+    }
+
+    /**
+     * 如果队列包含指定元素返回 true。
+     *
+     * @param o object to be checked for containment in this queue
+     * @return {@code true} if this queue contains the specified element
+     */
+    public boolean contains(Object o) {
+        if (o == null) return false;
+        fullyLock();
+        try {
+            Chunk c = first;
+            for (int i = takeIndex, k = 0, n = count.get(); k < n; k++, i++) {
+                if (i == CHUNK_SIZE) {
+                    c = c.next;
+                    i = 0;
+                }
+                if (o.equals(c.items[i]))
+                    return true;
+            }
+            return false;
+        } finally {
+            fullyUnlock();
+        }
+    }
+
+    /**
+     * 按顺序把元素复制到 a 的开头，返回元素个数。持有两把锁时调用。
+     */
+    private int copyTo(Object[] a) {
+        Chunk c = first;
+        int i = takeIndex;
+        int n = count.get();
+        int k = 0;
+        while (k < n) {
+            if (i == CHUNK_SIZE) {
+                c = c.next;
+                i = 0;
+            }
+            int len = Math.min(CHUNK_SIZE - i, n - k);
+            System.arraycopy(c.items, i, a, k, len);
+            i += len;
+            k += len;
+        }
+        return n;
+    }
+
+    /**
+     * 返回数组。
+     *
+     * @return an array containing all of the elements in this queue
+     */
+    public Object[] toArray() {
+        fullyLock();
+        try {
+            Object[] a = new Object[count.get()];
+            copyTo(a);
+            return a;
+        } finally {
+            fullyUnlock();
+        }
+    }
+
+    /**
+     * 返回数组。
+     *
+     * @param a the array into which the elements of the queue are to
+     *          be stored, if it is big enough; otherwise, a new array of the
+     *          same runtime type is allocated for this purpose
+     * @return an array containing all of the elements in this queue
+     * @throws ArrayStoreException if the runtime type of the specified array
+     *         is not a supertype of the runtime type of every element in
+     *         this queue
+     * @throws NullPointerException if the specified array is null
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T[] toArray(T[] a) {
+        fullyLock();
+        try {
+            int size = count.get();
+            if (a.length < size)
+                a = (T[])java.lang.reflect.Array.newInstance
+                        (a.getClass().getComponentType(), size);
+            int k = copyTo(a);
+            if (a.length > k)
+                a[k] = null;
+            return a;
+        } finally {
+            fullyUnlock();
+        }
+    }
+
+    /**
+     * 清除队列所有元素。保留尾块作为唯一的块，其余的块丢弃。
+     */
+    public void clear() {
+        fullyLock();
+        try {
+            Chunk c = first;
+            for (int i = takeIndex, k = 0, n = count.get(); k < n; k++, i++) {
+                if (i == CHUNK_SIZE) {
+                    c = c.next;
+                    i = 0;
+                }
+                c.items[i] = null;
+            }
+            first = last;
+            takeIndex = putIndex = 0;
+            if (count.getAndSet(0) == capacity)
+                notFull.signal();
+        } finally {
+            fullyUnlock();
+        }
+    }
+
+    /**
+     * 将队列元素移动到指定集合中，删除队列中原来的元素。
+     *
+     * @throws UnsupportedOperationException {@inheritDoc}
+     * @throws ClassCastException            {@inheritDoc}
+     * @throws NullPointerException          {@inheritDoc}
+     * @throws IllegalArgumentException      {@inheritDoc}
+     */
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 将队列元素移动到指定集合中，指定需要移动的元素个数，并且删除队列中原来的元素。
+     *
+     * @throws UnsupportedOperationException {@inheritDoc}
+     * @throws ClassCastException            {@inheritDoc}
+     * @throws NullPointerException          {@inheritDoc}
+     * @throws IllegalArgumentException      {@inheritDoc}
+     */
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if (c == null)
+            throw new NullPointerException();
+        if (c == this)
+            throw new IllegalArgumentException();
+        if (maxElements <= 0)
+            return 0;
+        boolean signalNotFull = false;
+        final ReentrantLock takeLock = this.takeLock;
+        takeLock.lock();
+        try {
+            int n = Math.min(maxElements, count.get());
+            int i = 0;
+            try {
+                while (i < n) {
+                    // 先 peek 再 dequeue：add 抛出异常时元素留在队列中
+                    int t = takeIndex;
+                    Object x = (t == CHUNK_SIZE) ? first.next.items[0] : first.items[t];
+                    @SuppressWarnings("unchecked") E e = (E) x;
+                    c.add(e);
+                    dequeue();
+                    ++i;
+                }
+                return n;
+            } finally {
+                if (i > 0)
+                    signalNotFull = (count.getAndAdd(-i) == capacity);
+            }
+        } finally {
+            takeLock.unlock();
+            if (signalNotFull)
+                signalNotFull();
+        }
+    }
+
+    /**
+     * 迭代器，遍历创建时的快照。
+     *
+     * @return an iterator over the elements in this queue in proper sequence
+     */
+    public Iterator<E> iterator() {
+        return new Itr();
+    }
+
+    private class Itr implements Iterator<E> {
+        private final Object[] snapshot = toArray();
+        private int cursor;
+        private int lastRet = -1;
+
+        public boolean hasNext() {
+            return cursor < snapshot.length;
+        }
+
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (cursor >= snapshot.length)
+                throw new NoSuchElementException();
+            return (E) snapshot[lastRet = cursor++];
+        }
+
+        public void remove() {
+            if (lastRet < 0)
+                throw new IllegalStateException();
+            Object x = snapshot[lastRet];
+            lastRet = -1;
+            fullyLock();
+            try {
+                removeFirstOccurrence(x, true);
+            } finally {
+                fullyUnlock();
+            }
+        }
+    }
+}
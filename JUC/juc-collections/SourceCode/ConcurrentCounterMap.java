@@ -0,0 +1,354 @@
+package JUC.JUCCollections;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.ObjLongConsumer;
+
+import JUC.JUCCollections.ConcurrentHashMap.CounterCell;
+
+/**
+ * 每个 key 对应一个 long 计数器的并发 map，适合高频率地对少数热点 key
+ * 做累加（例如按指标名计数）。
+ *
+ * 用 ConcurrentHashMap 的 merge(key, 1L, Long::sum) 计数时，同一个 key 的
+ * 所有累加都要进入 putVal/merge 中对桶的头节点加的 synchronized 锁，热点
+ * key 上的线程全部串行。此类把每个 key 的值换成一个 Counter，它用和
+ * ConcurrentHashMap 统计 size 完全相同的方式分散竞争：
+ *  - 没有竞争时，CAS 更新 Counter 的 base；
+ *  - CAS 失败说明有竞争，按线程的 probe 值散列到 CounterCell 数组中的某个
+ *    cell 上累加，cell 数组在竞争激烈时翻倍，最大不超过 CPU 个数；
+ *  - 读取时把 base 和所有 cell 的值加起来（见 ConcurrentHashMap.sumCount）。
+ * 只有被竞争过的 key 才会分配 cell 数组，冷门的 key 只占一个 Counter 对象。
+ *
+ * 对已经存在的 key 累加时只会调用 ConcurrentHashMap.get（不加锁），只有
+ * key 第一次出现时才通过 computeIfAbsent 创建 Counter。
+ *
+ * 和 LongAdder 一样，sum 返回的不是原子快照：读取期间的并发累加可能被
+ * 计入也可能不被计入。remove 和 reset 与同一个 key 上的并发累加之间也没有
+ * 原子性，被 remove 之后才完成的累加会丢失。
+ *
+ * 不允许 null 的 key。
+ *
+ * @param <K> the type of keys maintained by this map
+ * @see ConcurrentHashMap
+ */
+public class ConcurrentCounterMap<K> {
+
+    /**
+     * 一个 key 的计数器。字段含义和 ConcurrentHashMap 中的 baseCount、
+     * cellsBusy、counterCells 相同。
+     */
+    static final class Counter {
+        // 没有竞争时直接累加到 base 上
+        volatile long base;
+        // 初始化或者扩容 cells 时使用的自旋锁
+        volatile int cellsBusy;
+        // 出现竞争之后才会初始化，长度是 2 的幂
+        volatile CounterCell[] cells;
+
+        /**
+         * 累加 x，逻辑和 ConcurrentHashMap.addCount 的前半部分相同。
+         */
+        void add(long x) {
+            CounterCell[] as; long b;
+            if ((as = cells) != null ||
+                    !U.compareAndSwapLong(this, BASE, b = base, b + x)) {
+                CounterCell a; long v; int m;
+                boolean uncontended = true;
+                if (as == null || (m = as.length - 1) < 0 ||
+                        (a = as[ThreadLocalRandom.getProbe() & m]) == null ||
+                        !(uncontended =
+                                U.compareAndSwapLong(a, CELLVALUE, v = a.value, v + x)))
+                    fullAdd(x, uncontended);
+            }
+        }
+
+        /**
+         * 返回 base 和所有 cell 的和。
+         */
+        long sum() {
+            CounterCell[] as = cells; CounterCell a;
+            long sum = base;
+            if (as != null) {
+                for (int i = 0; i < as.length; ++i) {
+                    if ((a = as[i]) != null)
+                        sum += a.value;
+                }
+            }
+            return sum;
+        }
+
+        /**
+         * 把 base 和所有 cell 清零，返回清零之前的和。
+         */
+        long sumThenReset() {
+            CounterCell[] as = cells; CounterCell a;
+            long sum = U.getAndSetLong(this, BASE, 0L);
+            if (as != null) {
+                for (int i = 0; i < as.length; ++i) {
+                    if ((a = as[i]) != null)
+                        sum += U.getAndSetLong(a, CELLVALUE, 0L);
+                }
+            }
+            return sum;
+        }
+
+        /**
+         * 和 ConcurrentHashMap.fullAddCount 相同，只是操作的是本计数器的
+         * base、cellsBusy 和 cells。
+         */
+        private void fullAdd(long x, boolean wasUncontended) {
+            int h;
+            // 为 0 表示该线程的 ThreadLocalRandom 还没有初始化
+            if ((h = ThreadLocalRandom.getProbe()) == 0) {
+                ThreadLocalRandom.localInit();      // force initialization
+                h = ThreadLocalRandom.getProbe();
+                wasUncontended = true;
+            }
+            boolean collide = false;                // True if last slot nonempty
+            for (;;) {
+                CounterCell[] as; CounterCell a; int n; long v;
+                if ((as = cells) != null && (n = as.length) > 0) {
+                    // h 位置还没有 cell，加锁之后放一个新的进去
+                    if ((a = as[(n - 1) & h]) == null) {
+                        if (cellsBusy == 0) {            // Try to attach new Cell
+                            CounterCell r = new CounterCell(x); // Optimistic create
+                            if (cellsBusy == 0 &&
+                                    U.compareAndSwapInt(this, CELLSBUSY, 0, 1)) {
+                                boolean created = false;
+                                try {               // Recheck under lock
+                                    CounterCell[] rs; int m, j;
+                                    if ((rs = cells) != null &&
+                                            (m = rs.length) > 0 &&
+                                            rs[j = (m - 1) & h] == null) {
+                                        rs[j] = r;
+                                        created = true;
+                                    }
+                                } finally {
+                                    cellsBusy = 0;
+                                }
+                                if (created)
+                                    break;
+                                continue;           // Slot is now non-empty
+                            }
+                        }
+                        collide = false;
+                    }
+                    else if (!wasUncontended)       // CAS already known to fail
+                        wasUncontended = true;      // Continue after rehash
+                    else if (U.compareAndSwapLong(a, CELLVALUE, v = a.value, v + x))
+                        break;
+                    // 已经达到 CPU 个数，或者 cells 已经被别的线程扩容了
+                    else if (cells != as || n >= ConcurrentHashMap.NCPU)
+                        collide = false;            // At max size or stale
+                    else if (!collide)
+                        collide = true;
+                    // 连续两次冲突，cells 翻倍
+                    else if (cellsBusy == 0 &&
+                            U.compareAndSwapInt(this, CELLSBUSY, 0, 1)) {
+                        try {
+                            if (cells == as) {// Expand table unless stale
+                                CounterCell[] rs = new CounterCell[n << 1];
+                                for (int i = 0; i < n; ++i)
+                                    rs[i] = as[i];
+                                cells = rs;
+                            }
+                        } finally {
+                            cellsBusy = 0;
+                        }
+                        collide = false;
+                        continue;                   // Retry with expanded table
+                    }
+                    // 换一个 cell 再试
+                    h = ThreadLocalRandom.advanceProbe(h);
+                }
+                // cells 还没有初始化，加锁初始化为长度 2 的数组
+                else if (cellsBusy == 0 && cells == as &&
+                        U.compareAndSwapInt(this, CELLSBUSY, 0, 1)) {
+                    boolean init = false;
+                    try {                           // Initialize table
+                        if (cells == as) {
+                            CounterCell[] rs = new CounterCell[2];
+                            rs[h & 1] = new CounterCell(x);
+                            cells = rs;
+                            init = true;
+                        }
+                    } finally {
+                        cellsBusy = 0;
+                    }
+                    if (init)
+                        break;
+                }
+                // 别的线程正在初始化 cells，退回到 base 上累加
+                else if (U.compareAndSwapLong(this, BASE, v = base, v + x))
+                    break;                          // Fall back on using base
+            }
+        }
+    }
+
+    // key 到计数器的映射
+    private final ConcurrentHashMap<K,Counter> map;
+
+    /**
+     * 创建一个空的计数器 map。
+     */
+    public ConcurrentCounterMap() {
+        map = new ConcurrentHashMap<K,Counter>();
+    }
+
+    /**
+     * 创建一个空的计数器 map，预先分配能容纳 initialCapacity 个 key 的空间。
+     *
+     * @throws IllegalArgumentException if the initial capacity is negative
+     */
+    public ConcurrentCounterMap(int initialCapacity) {
+        map = new ConcurrentHashMap<K,Counter>(initialCapacity);
+    }
+
+    /**
+     * 返回 key 的计数器，不存在时创建一个。已经存在时只需要一次无锁的 get。
+     */
+    private Counter counter(K key) {
+        Counter c;
+        if ((c = map.get(key)) == null)
+            c = map.computeIfAbsent(key, k -> new Counter());
+        return c;
+    }
+
+    /**
+     * 把 key 的计数加上 x。key 不存在时从 0 开始计数。
+     *
+     * @throws NullPointerException if the specified key is null
+     */
+    public void add(K key, long x) {
+        counter(key).add(x);
+    }
+
+    /**
+     * 等价于 add(key, 1)。
+     */
+    public void increment(K key) {
+        counter(key).add(1L);
+    }
+
+    /**
+     * 等价于 add(key, -1)。
+     */
+    public void decrement(K key) {
+        counter(key).add(-1L);
+    }
+
+    /**
+     * 返回 key 当前的计数，不存在时返回 0。
+     *
+     * @throws NullPointerException if the specified key is null
+     */
+    public long get(Object key) {
+        Counter c;
+        return ((c = map.get(key)) == null) ? 0L : c.sum();
+    }
+
+    /**
+     * 把 key 的计数清零并返回清零之前的值。key 仍然保留在 map 中，
+     * 这样之后的累加不需要重新创建计数器。
+     */
+    public long sumThenReset(Object key) {
+        Counter c;
+        return ((c = map.get(key)) == null) ? 0L : c.sumThenReset();
+    }
+
+    /**
+     * 删除 key 的计数器，返回它最后的计数，不存在时返回 0。
+     */
+    public long remove(Object key) {
+        Counter c;
+        return ((c = map.remove(key)) == null) ? 0L : c.sum();
+    }
+
+    /**
+     * 如果 key 存在计数器，返回 true。
+     */
+    public boolean containsKey(Object key) {
+        return map.containsKey(key);
+    }
+
+    /**
+     * 返回 key 的个数。
+     */
+    public int size() {
+        return map.size();
+    }
+
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    /**
+     * 删除所有的计数器。
+     */
+    public void clear() {
+        map.clear();
+    }
+
+    /**
+     * 返回所有计数之和。
+     *
+     * @param parallelismThreshold 见 ConcurrentHashMap.reduceValuesToLong
+     */
+    public long sum(long parallelismThreshold) {
+        return map.reduceValuesToLong(parallelismThreshold, Counter::sum,
+                0L, Long::sum);
+    }
+
+    /**
+     * 对每个 key 和它当前的计数执行 action。
+     */
+    public void forEach(ObjLongConsumer<? super K> action) {
+        if (action == null) throw new NullPointerException();
+        map.forEach((k, c) -> action.accept(k, c.sum()));
+    }
+
+    /**
+     * 返回 key 的 Set 视图，由此 map 支撑。
+     */
+    public Set<K> keySet() {
+        return map.keySet();
+    }
+
+    /**
+     * 返回所有 key 和计数的一个副本。
+     */
+    public Map<K,Long> snapshot() {
+        Map<K,Long> m = new HashMap<K,Long>();
+        map.forEach((k, c) -> m.put(k, c.sum()));
+        return m;
+    }
+
+    public String toString() {
+        return snapshot().toString();
+    }
+
+    // Unsafe mechanics
+    private static final sun.misc.Unsafe U;
+    private static final long BASE;
+    private static final long CELLSBUSY;
+    private static final long CELLVALUE;
+
+    static {
+        try {
+            U = sun.misc.Unsafe.getUnsafe();
+            Class<?> k = Counter.class;
+            BASE = U.objectFieldOffset
+                    (k.getDeclaredField("base"));
+            CELLSBUSY = U.objectFieldOffset
+                    (k.getDeclaredField("cellsBusy"));
+            Class<?> ck = CounterCell.class;
+            CELLVALUE = U.objectFieldOffset
+                    (ck.getDeclaredField("value"));
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
@@ -0,0 +1,727 @@
+package JUC.JUCCollections;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * 基于 ConcurrentHashMap 的有界并发缓存，使用 W-TinyLFU 淘汰策略。
+ *
+ * 用 synchronized 包装 accessOrder 为 true 的 LinkedHashMap 做 LRU 缓存时，
+ * 每次 get 都要修改双向链表，所有读写都在一把锁上串行。此类把"读写数据"
+ * 和"维护淘汰顺序"分开：
+ *  - 数据保存在 ConcurrentHashMap 中，get/put/remove 和普通的
+ *    ConcurrentHashMap 一样是并发的；
+ *  - 读操作只把节点记录到按线程分散的环形缓冲区（read buffer）中，缓冲区
+ *    满了就丢弃，不会阻塞读线程；
+ *  - 写操作把"添加/删除节点"的任务放进写缓冲区（write buffer）；
+ *  - 维护淘汰顺序的工作（maintenance）在 evictionLock 下批量回放这些
+ *    记录，默认提交到 ForkJoinPool.commonPool() 中执行，不占用调用线程。
+ *    只有写缓冲区积压过多时，写线程才会自己执行一次，作为背压。
+ *
+ * 淘汰策略是 W-TinyLFU：
+ *  - 新节点先进入一个很小的 LRU 窗口（window，默认占容量的 1%），
+ *    吸收突发的新 key；
+ *  - 主区域（main）是分段 LRU：probation（试用）和 protected（保护，
+ *    占主区域的 80%），在 probation 中再次被访问的节点晋升到 protected，
+ *    protected 溢出时最老的节点降级回 probation；
+ *  - 窗口溢出时，窗口中最老的节点（candidate）要和 probation 中最老的
+ *    节点（victim）比较访问频率，只有 candidate 的频率更高才能进入主区域，
+ *    否则 candidate 被淘汰。
+ * 访问频率由一个 4 位计数器的 Count-Min Sketch 估计（FrequencySketch），
+ * 计数总数达到容量的 10 倍时所有计数减半，让旧的热度逐渐衰减。
+ *
+ * 淘汰是异步进行的，size 可能暂时超过 maximumSize；调用 cleanUp 可以
+ * 立即执行一次维护。不允许 null 的 key 和 value。
+ *
+ * @param <K> the type of keys maintained by this cache
+ * @param <V> the type of cached values
+ * @see ConcurrentHashMap
+ */
+public class ConcurrentTinyLfuCache<K,V> {
+
+    /* ---------------- Constants -------------- */
+
+    /** 系统 CPU 个数 */
+    static final int NCPU = Runtime.getRuntime().availableProcessors();
+
+    /** 读缓冲区的个数，是 2 的幂。 */
+    static final int NUMBER_OF_READ_BUFFERS =
+            ceilingPowerOfTwo(Math.min(4 * NCPU, 64));
+
+    /** 写缓冲区中积压的任务超过此值时，写线程自己执行维护。 */
+    static final int WRITE_BUFFER_MAX = 128 * ceilingPowerOfTwo(NCPU);
+
+    /** 窗口占总容量的比例。 */
+    static final double PERCENT_WINDOW = 0.01d;
+
+    /** protected 占主区域的比例。 */
+    static final double PERCENT_PROTECTED = 0.80d;
+
+    // 节点所在的队列
+    static final int NONE = 0;
+    static final int WINDOW = 1;
+    static final int PROBATION = 2;
+    static final int PROTECTED = 3;
+
+    // 节点的状态
+    static final int ALIVE = 0;     // 在 data 中
+    static final int RETIRED = 1;   // 已经从 data 中删除，还没有从队列中摘除
+    static final int DEAD = 2;      // 已经从队列中摘除
+
+    /**
+     * 返回大于等于 c 的最小的 2 的幂，和 ConcurrentHashMap.tableSizeFor 相同。
+     */
+    static int ceilingPowerOfTwo(int c) {
+        int n = c - 1;
+        n |= n >>> 1;
+        n |= n >>> 2;
+        n |= n >>> 4;
+        n |= n >>> 8;
+        n |= n >>> 16;
+        return (n < 0) ? 1 : (n >= (1 << 30)) ? (1 << 30) : n + 1;
+    }
+
+    /* ---------------- Nodes -------------- */
+
+    /**
+     * 缓存的节点。value 和 state 可以被任意线程读取，修改时要持有节点自身的
+     * 监视器锁：put 在锁内检查 state 再写 value，remove 和淘汰在锁内把节点
+     * 从 data 中删除并修改 state，所以一个值要么被 put 成功写入、之后由
+     * remove 返回，要么 put 看到节点已经不是 ALIVE 而重试，不会两边都声称
+     * 拥有同一个值。prev、next、queue 只在持有 evictionLock 时访问。
+     */
+    static final class Node<K,V> {
+        final K key;
+        volatile V value;
+        volatile int state;
+        int queue;
+        Node<K,V> prev, next;
+
+        Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /**
+     * 侵入式的双向链表，头部是最久没有访问的节点。
+     */
+    static final class AccessOrderDeque<K,V> {
+        Node<K,V> first, last;
+        int size;
+
+        void linkLast(Node<K,V> e) {
+            Node<K,V> l = last;
+            e.prev = l;
+            e.next = null;
+            last = e;
+            if (l == null)
+                first = e;
+            else
+                l.next = e;
+            size++;
+        }
+
+        void unlink(Node<K,V> e) {
+            Node<K,V> p = e.prev, n = e.next;
+            if (p == null)
+                first = n;
+            else
+                p.next = n;
+            if (n == null)
+                last = p;
+            else
+                n.prev = p;
+            e.prev = e.next = null;
+            size--;
+        }
+
+        void moveToBack(Node<K,V> e) {
+            if (e != last) {
+                unlink(e);
+                linkLast(e);
+            }
+        }
+
+        Node<K,V> pollFirst() {
+            Node<K,V> f = first;
+            if (f != null)
+                unlink(f);
+            return f;
+        }
+    }
+
+    /*
+     * 读缓冲区的 readCounter 和 writeCounter 分别被维护线程和读线程频繁写入，
+     * 多个读缓冲区又是连续分配的。这里用和 MpmcArrayBlockingQueue 相同的
+     * 父类链填充，让每个计数器独占缓存行。
+     */
+
+    /** 读缓冲区的填充。 */
+    static class ReadBufferPad0 {
+        long p00, p01, p02, p03, p04, p05, p06, p07;
+        long p10, p11, p12, p13, p14, p15, p16, p17;
+    }
+
+    /** 读缓冲区中维护线程写的计数器。 */
+    static class ReadBufferReadCounter extends ReadBufferPad0 {
+        volatile long readCounter;
+    }
+
+    /** 读缓冲区的填充。 */
+    static class ReadBufferPad1 extends ReadBufferReadCounter {
+        long p00, p01, p02, p03, p04, p05, p06, p07;
+        long p10, p11, p12, p13, p14, p15, p16, p17;
+    }
+
+    /** 读缓冲区中读线程 CAS 的计数器。 */
+    static class ReadBufferWriteCounter extends ReadBufferPad1 {
+        volatile long writeCounter;
+    }
+
+    /** 读缓冲区的填充。 */
+    static class ReadBufferPad2 extends ReadBufferWriteCounter {
+        long p00, p01, p02, p03, p04, p05, p06, p07;
+        long p10, p11, p12, p13, p14, p15, p16, p17;
+    }
+
+    /**
+     * 有损的环形读缓冲区。多个线程通过 CAS writeCounter 竞争写入，只有
+     * 持有 evictionLock 的线程读取。满了就丢弃，记录访问不需要精确。
+     */
+    static final class ReadBuffer<K,V> extends ReadBufferPad2 {
+        static final int SIZE = 16;
+        static final int MASK = SIZE - 1;
+
+        final AtomicReferenceArray<Node<K,V>> slots =
+                new AtomicReferenceArray<Node<K,V>>(SIZE);
+
+        /**
+         * 记录一次访问。返回 false 表示缓冲区已满，应该尽快执行维护。
+         */
+        boolean offer(Node<K,V> e) {
+            long head = readCounter;
+            long tail = writeCounter;
+            if (tail - head >= SIZE)
+                return false;
+            // CAS 失败说明有其他线程在写，放弃这次记录
+            if (U.compareAndSwapLong(this, WRITE_COUNTER, tail, tail + 1))
+                slots.lazySet((int)(tail & MASK), e);
+            return true;
+        }
+
+        /**
+         * 取出所有已经写入的节点交给 cache.onAccess。
+         */
+        void drainTo(ConcurrentTinyLfuCache<K,V> cache) {
+            long head = readCounter;
+            long tail = writeCounter;
+            for (; head < tail; head++) {
+                int i = (int)(head & MASK);
+                Node<K,V> e = slots.get(i);
+                // writeCounter 已经前进，但节点还没有写入
+                if (e == null)
+                    break;
+                slots.lazySet(i, null);
+                cache.onAccess(e);
+            }
+            readCounter = head;
+        }
+
+        // Unsafe mechanics
+        private static final sun.misc.Unsafe U;
+        private static final long WRITE_COUNTER;
+        static {
+            try {
+                U = sun.misc.Unsafe.getUnsafe();
+                WRITE_COUNTER = U.objectFieldOffset(ReadBufferWriteCounter.class
+                        .getDeclaredField("writeCounter"));
+            } catch (Exception e) {
+                throw new Error(e);
+            }
+        }
+    }
+
+    /**
+     * 4 位计数器的 Count-Min Sketch，估计每个 key 在最近一段时间内的访问
+     * 频率。每个 long 保存 16 个计数器；一个 key 用 hash 的低 2 位选出
+     * 每个 long 中的一组 4 个计数器，再用 4 个不同的种子选出 4 个 long，
+     * 取 4 个计数器的最小值作为频率，最大为 15。
+     *
+     * 计数的次数达到 sampleSize 时，所有计数器减半（reset），这样很久以前
+     * 的访问对频率的影响会逐渐消失。只在持有 evictionLock 时访问。
+     */
+    static final class FrequencySketch {
+        static final long[] SEED = { // A mixture of seeds from FNV-1a, CityHash, and Murmur3
+                0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L,
+                0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+        static final long RESET_MASK = 0x7777777777777777L;
+        static final long ONE_MASK = 0x1111111111111111L;
+
+        final long[] table;
+        final int tableMask;
+        final int sampleSize;
+        int size;
+
+        FrequencySketch(long maximumSize) {
+            int max = (int)Math.min(Math.max(maximumSize, 16L), 1L << 30);
+            table = new long[ceilingPowerOfTwo(max)];
+            tableMask = table.length - 1;
+            sampleSize = (int)Math.min(10L * max, Integer.MAX_VALUE);
+        }
+
+        static int spread(int x) {
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            return (x >>> 16) ^ x;
+        }
+
+        int indexOf(int item, int i) {
+            long hash = (item + SEED[i]) * SEED[i];
+            hash += (hash >>> 32);
+            return ((int)hash) & tableMask;
+        }
+
+        int frequency(Object e) {
+            int hash = spread(e.hashCode());
+            int start = (hash & 3) << 2;
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < 4; i++) {
+                int index = indexOf(hash, i);
+                int count = (int)((table[index] >>> ((start + i) << 2)) & 0xfL);
+                frequency = Math.min(frequency, count);
+            }
+            return frequency;
+        }
+
+        void increment(Object e) {
+            int hash = spread(e.hashCode());
+            int start = (hash & 3) << 2;
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                int index = indexOf(hash, i);
+                int offset = (start + i) << 2;
+                long mask = (0xfL << offset);
+                // 已经是 15 的计数器不再增加
+                if ((table[index] & mask) != mask) {
+                    table[index] += (1L << offset);
+                    added = true;
+                }
+            }
+            if (added && (++size == sampleSize))
+                reset();
+        }
+
+        /**
+         * 所有计数器减半。奇数计数器减半时丢掉的 1 要从 size 中扣除。
+         */
+        void reset() {
+            int count = 0;
+            for (int i = 0; i < table.length; i++) {
+                count += Long.bitCount(table[i] & ONE_MASK);
+                table[i] = (table[i] >>> 1) & RESET_MASK;
+            }
+            size = (size >>> 1) - (count >>> 2);
+        }
+    }
+
+    /* ---------------- Fields -------------- */
+
+    final ConcurrentHashMap<K,Node<K,V>> data;
+    final Executor executor;
+
+    // 以下字段只在持有 evictionLock 时访问
+    final ReentrantLock evictionLock = new ReentrantLock();
+    final long maximumSize;
+    final long maxWindow;
+    final long maxProtected;
+    final long maxMain;
+    final AccessOrderDeque<K,V> window = new AccessOrderDeque<K,V>();
+    final AccessOrderDeque<K,V> probation = new AccessOrderDeque<K,V>();
+    final AccessOrderDeque<K,V> protectedQueue = new AccessOrderDeque<K,V>();
+    final FrequencySketch sketch;
+
+    @SuppressWarnings("unchecked")
+    final ReadBuffer<K,V>[] readBuffers =
+            (ReadBuffer<K,V>[])new ReadBuffer<?,?>[NUMBER_OF_READ_BUFFERS];
+    final ConcurrentLinkedQueue<Runnable> writeBuffer =
+            new ConcurrentLinkedQueue<Runnable>();
+    final AtomicInteger pendingWrites = new AtomicInteger();
+
+    /** 是否已经提交了一个还没有开始执行的维护任务。 */
+    final AtomicBoolean drainScheduled = new AtomicBoolean();
+    final Runnable drainTask = new Runnable() {
+        public void run() {
+            // 先清除标志：维护期间的新写入会重新提交一次，不会被漏掉
+            drainScheduled.set(false);
+            cleanUp();
+        }
+    };
+
+    /**
+     * 创建一个最多保存 maximumSize 个映射的缓存，维护工作提交到
+     * ForkJoinPool.commonPool() 中执行。
+     *
+     * @throws IllegalArgumentException 如果 maximumSize 小于等于 0
+     */
+    public ConcurrentTinyLfuCache(long maximumSize) {
+        this(maximumSize, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * 创建一个最多保存 maximumSize 个映射的缓存，维护工作提交到 executor
+     * 中执行。
+     *
+     * @throws IllegalArgumentException 如果 maximumSize 小于等于 0
+     * @throws NullPointerException 如果 executor 为 null
+     */
+    public ConcurrentTinyLfuCache(long maximumSize, Executor executor) {
+        if (maximumSize <= 0L)
+            throw new IllegalArgumentException();
+        if (executor == null)
+            throw new NullPointerException();
+        this.maximumSize = maximumSize;
+        this.executor = executor;
+        this.maxWindow = Math.max(1L, (long)(maximumSize * PERCENT_WINDOW));
+        this.maxMain = maximumSize - maxWindow;
+        this.maxProtected = (long)(maxMain * PERCENT_PROTECTED);
+        this.sketch = new FrequencySketch(maximumSize);
+        int initial = (int)Math.min(maximumSize, 1 << 16);
+        this.data = new ConcurrentHashMap<K,Node<K,V>>(initial);
+        for (int i = 0; i < readBuffers.length; i++)
+            readBuffers[i] = new ReadBuffer<K,V>();
+    }
+
+    /* ---------------- Public operations -------------- */
+
+    /**
+     * 返回 key 对应的值，不存在时返回 null。
+     */
+    public V get(Object key) {
+        Node<K,V> e;
+        if ((e = data.get(key)) == null)
+            return null;
+        V v = e.value;
+        afterRead(e);
+        return v;
+    }
+
+    /**
+     * 把 key 映射到 value，返回之前的值。
+     */
+    public V put(K key, V value) {
+        return put(key, value, false);
+    }
+
+    /**
+     * 如果 key 不存在，把 key 映射到 value。返回之前的值。
+     */
+    public V putIfAbsent(K key, V value) {
+        return put(key, value, true);
+    }
+
+    private V put(K key, V value, boolean onlyIfAbsent) {
+        if (key == null || value == null)
+            throw new NullPointerException();
+        Node<K,V> node = null;
+        for (;;) {
+            Node<K,V> prior;
+            // 大多数情况下 key 已经存在，先用不加锁的 get 检查
+            if ((prior = data.get(key)) == null) {
+                if (node == null)
+                    node = new Node<K,V>(key, value);
+                if ((prior = data.putIfAbsent(key, node)) == null) {
+                    afterWrite(new AddTask(node));
+                    return null;
+                }
+            }
+            V oldValue;
+            synchronized (prior) {
+                // 节点已经被删除或淘汰，重试
+                if (prior.state != ALIVE)
+                    continue;
+                oldValue = prior.value;
+                if (!onlyIfAbsent)
+                    prior.value = value;
+            }
+            afterRead(prior);
+            return oldValue;
+        }
+    }
+
+    /**
+     * 如果 key 不存在，用 mappingFunction 计算值并保存（为 null 时不保存）。
+     * 和 ConcurrentHashMap.computeIfAbsent 一样，同一个 key 的函数最多调用
+     * 一次，调用期间其他线程对同一个桶的修改会被阻塞。
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        if (key == null || mappingFunction == null)
+            throw new NullPointerException();
+        @SuppressWarnings("unchecked")
+        Node<K,V>[] created = (Node<K,V>[])new Node<?,?>[1];
+        for (;;) {
+            Node<K,V> e;
+            if ((e = data.get(key)) == null) {
+                e = data.computeIfAbsent(key, k -> {
+                    V v = mappingFunction.apply(k);
+                    return (v == null) ? null : (created[0] = new Node<K,V>(k, v));
+                });
+                if (e == null)
+                    return null;
+                if (e == created[0]) {
+                    afterWrite(new AddTask(e));
+                    return e.value;
+                }
+            }
+            // 先读 value 再检查 state：state 只会从 ALIVE 向后变化，读完
+            // value 以后仍然是 ALIVE，说明读到的是删除之前的值
+            V v = e.value;
+            if (e.state == ALIVE) {
+                afterRead(e);
+                return v;
+            }
+            // 节点已经被删除或淘汰，重试
+        }
+    }
+
+    /**
+     * 删除 key 的映射，返回之前的值。
+     */
+    public V remove(Object key) {
+        for (;;) {
+            Node<K,V> e;
+            if ((e = data.get(key)) == null)
+                return null;
+            V oldValue;
+            synchronized (e) {
+                // 节点已经被其他线程删除或淘汰，重新查找
+                if (e.state != ALIVE || !data.remove(key, e))
+                    continue;
+                e.state = RETIRED;
+                oldValue = e.value;
+            }
+            afterWrite(new RemovalTask(e));
+            return oldValue;
+        }
+    }
+
+    public boolean containsKey(Object key) {
+        return data.containsKey(key);
+    }
+
+    /**
+     * 返回当前映射的个数。淘汰是异步的，可能暂时大于 maximumSize。
+     */
+    public long estimatedSize() {
+        return data.mappingCount();
+    }
+
+    /**
+     * 返回最大容量。
+     */
+    public long maximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * 删除所有映射。
+     */
+    public void clear() {
+        evictionLock.lock();
+        try {
+            for (K key : data.keySet())
+                remove(key);
+            maintenance();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * 在当前线程中立即执行一次维护：回放读写缓冲区，然后淘汰多余的映射。
+     */
+    public void cleanUp() {
+        evictionLock.lock();
+        try {
+            maintenance();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /* ---------------- Buffers -------------- */
+
+    /**
+     * 读操作之后记录访问。读缓冲区满了就提交维护任务。
+     */
+    final void afterRead(Node<K,V> e) {
+        int h = FrequencySketch.spread((int)Thread.currentThread().getId());
+        ReadBuffer<K,V> buffer = readBuffers[h & (NUMBER_OF_READ_BUFFERS - 1)];
+        if (!buffer.offer(e))
+            scheduleDrain();
+    }
+
+    /**
+     * 写操作之后把任务放进写缓冲区。积压过多时由当前线程执行维护，
+     * 否则提交维护任务。
+     */
+    final void afterWrite(Runnable task) {
+        writeBuffer.offer(task);
+        if (pendingWrites.incrementAndGet() > WRITE_BUFFER_MAX)
+            cleanUp();
+        else
+            scheduleDrain();
+    }
+
+    /**
+     * 如果还没有提交维护任务，提交一个。提交失败时（例如 executor 拒绝）
+     * 尝试在当前线程中执行。
+     */
+    final void scheduleDrain() {
+        if (!drainScheduled.get() && drainScheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(drainTask);
+            } catch (Throwable t) {
+                drainScheduled.set(false);
+                if (evictionLock.tryLock()) {
+                    try {
+                        maintenance();
+                    } finally {
+                        evictionLock.unlock();
+                    }
+                }
+            }
+        }
+    }
+
+    /* ---------------- Maintenance -------------- */
+
+    /**
+     * 新节点加入 data 之后执行：放进窗口。
+     */
+    final class AddTask implements Runnable {
+        final Node<K,V> node;
+        AddTask(Node<K,V> node) { this.node = node; }
+        public void run() {
+            // 节点在加入队列之前就已经被删除了
+            if (node.state != ALIVE)
+                return;
+            sketch.increment(node.key);
+            node.queue = WINDOW;
+            window.linkLast(node);
+        }
+    }
+
+    /**
+     * 节点从 data 中删除之后执行：从所在的队列中摘除。
+     */
+    final class RemovalTask implements Runnable {
+        final Node<K,V> node;
+        RemovalTask(Node<K,V> node) { this.node = node; }
+        public void run() {
+            unlinkNode(node);
+            node.state = DEAD;
+        }
+    }
+
+    /**
+     * 维护工作，调用时必须持有 evictionLock。
+     */
+    final void maintenance() {
+        for (ReadBuffer<K,V> buffer : readBuffers)
+            buffer.drainTo(this);
+        Runnable task;
+        while ((task = writeBuffer.poll()) != null) {
+            pendingWrites.decrementAndGet();
+            task.run();
+        }
+        evictFromWindow();
+    }
+
+    /**
+     * 回放一次访问：增加频率，并调整节点在队列中的位置。
+     */
+    final void onAccess(Node<K,V> e) {
+        sketch.increment(e.key);
+        switch (e.queue) {
+            case WINDOW:
+                window.moveToBack(e);
+                break;
+            case PROBATION:
+                // 在试用区中再次被访问，晋升到保护区
+                probation.unlink(e);
+                e.queue = PROTECTED;
+                protectedQueue.linkLast(e);
+                // 保护区溢出，最老的节点降级回试用区
+                while (protectedQueue.size > maxProtected) {
+                    Node<K,V> demoted = protectedQueue.pollFirst();
+                    demoted.queue = PROBATION;
+                    probation.linkLast(demoted);
+                }
+                break;
+            case PROTECTED:
+                protectedQueue.moveToBack(e);
+                break;
+            default:
+                // 还没有加入队列，或者已经被删除
+                break;
+        }
+    }
+
+    /**
+     * 窗口溢出时，把窗口中最老的节点移向主区域。主区域还有空间时直接
+     * 放进试用区；否则和试用区中最老的节点比较频率，淘汰频率低的一个
+     * （相等时淘汰新来的 candidate，保护已经在主区域中的节点）。
+     */
+    final void evictFromWindow() {
+        while (window.size > maxWindow) {
+            Node<K,V> candidate = window.pollFirst();
+            candidate.queue = NONE;
+            if (probation.size + protectedQueue.size < maxMain) {
+                candidate.queue = PROBATION;
+                probation.linkLast(candidate);
+                continue;
+            }
+            Node<K,V> victim = (probation.first != null) ?
+                    probation.first : protectedQueue.first;
+            if (victim != null &&
+                    sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+                evict(victim);
+                candidate.queue = PROBATION;
+                probation.linkLast(candidate);
+            }
+            else
+                evict(candidate);
+        }
+    }
+
+    /**
+     * 淘汰节点：从队列中摘除，在节点的锁内从 data 中删除并标记为 DEAD，
+     * 和 put、remove 互斥。已经被 remove 删除的节点由 RemovalTask 标记。
+     */
+    final void evict(Node<K,V> e) {
+        unlinkNode(e);
+        synchronized (e) {
+            if (e.state == ALIVE && data.remove(e.key, e))
+                e.state = DEAD;
+        }
+    }
+
+    /**
+     * 把节点从所在的队列中摘除。
+     */
+    final void unlinkNode(Node<K,V> e) {
+        switch (e.queue) {
+            case WINDOW:    window.unlink(e); break;
+            case PROBATION: probation.unlink(e); break;
+            case PROTECTED: protectedQueue.unlink(e); break;
+            default: break;
+        }
+        e.queue = NONE;
+    }
+}
@@ -0,0 +1,652 @@
+package JUC.JUCCollections;
+
+import java.util.AbstractQueue;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 由数组支撑的有界阻塞队列，多生产者多消费者（MPMC），FIFO。容量在创建时
+ * 固定，语义和 ArrayBlockingQueue 相同，但是 offer/poll 不加锁。
+ *
+ * ArrayBlockingQueue 用一把 ReentrantLock 保护 items、putIndex、takeIndex
+ * 和 count，生产者和消费者全部串行。此类使用 Dmitry Vyukov 的有界 MPMC
+ * 队列算法：
+ *  - 每个槽位有一个序号 sequences[i]，初始为 i；
+ *  - 生产者读取 tail（记为 pos），如果槽位的序号等于 pos，说明槽位空闲，
+ *    CAS tail 为 pos + 1 占有槽位，写入元素后把序号设为 pos + 1（发布）；
+ *    序号小于 pos 说明队列已满；
+ *  - 消费者读取 head（记为 pos），如果序号等于 pos + 1，说明元素已经发布，
+ *    CAS head 为 pos + 1 占有槽位，取出元素后把序号设为 pos + length
+ *    （数组长度），留给下一圈的生产者；序号小于 pos + 1 说明队列为空
+ *    （或者元素还没发布）。
+ * 生产者之间只竞争 tail，消费者之间只竞争 head，两边互不干扰。
+ *
+ * head 和 tail 需要放在不同的缓存行上，避免伪共享。@sun.misc.Contended
+ * 对 JDK 以外的类只有加上 -XX:-RestrictContended 才生效，所以这里手工填充：
+ * head 和 tail 分别声明在一串抽象父类中，每两组字段之间隔着一个只有 16 个
+ * long（128 字节）的填充类。HotSpot 总是先排布父类的字段，所以这个顺序是
+ * 确定的，不依赖任何 JVM 参数。
+ *
+ * 阻塞操作（put、take 和带超时的 offer、poll）先自旋、再 yield，仍然不能
+ * 完成时才在 lock 的条件队列上挂起。等待的线程先登记到 takeWaiters 或
+ * putWaiters，再检查一次 head 和 tail；另一方 CAS 成功以后会检查登记数，
+ * 不为 0 才去加锁唤醒，所以没有线程等待时 offer/poll 完全不碰锁。
+ *
+ * remove(Object) 不移动元素：它从 head 向 tail 扫描，用 CAS 把找到的元素
+ * 换成 REMOVED 标记，槽位仍然占着。消费者用原子交换取出元素，取到
+ * REMOVED 就归还槽位、继续取下一个，所以一个元素只会被 poll 或者 remove
+ * 中的一方拿到。
+ *
+ * 和 ArrayBlockingQueue 的区别：
+ *  - 不支持公平策略；
+ *  - remove(Object) 删除的元素在被消费者跳过之前仍然占用容量；
+ *  - 迭代器是创建时的快照，弱一致，迭代器的 remove 按引用删除元素；
+ *  - 不可序列化。
+ * 数组长度是 2 的幂时用掩码计算下标，否则用取模。长度为 1 时"已发布"
+ * （pos + 1）和"已取走"（pos + length）的序号相同，所以数组至少有 2 个
+ * 槽位；容量为 1 时生产者还要用 head 检查容量。
+ *
+ * @param <E> the type of elements held in this collection
+ * @see ArrayBlockingQueue
+ */
+public class MpmcArrayBlockingQueue<E> extends MpmcArrayBlockingQueuePad2<E>
+        implements BlockingQueue<E> {
+
+    /** 系统 CPU 个数 */
+    static final int NCPUS = Runtime.getRuntime().availableProcessors();
+
+    /** 阻塞前自旋重试的次数，单核时自旋没有意义。 */
+    static final int MAX_SPINS = (NCPUS < 2) ? 0 : 64;
+
+    /** 自旋以后 yield 重试的次数。 */
+    static final int MAX_YIELDS = 8;
+
+    /**
+     * 对方已经占用了位置但还没有完成（通常是被抢占了）时，挂起等待的时间。
+     * 这种情况下对方完成以后不一定能看到登记，所以只能限时等待。
+     */
+    static final long IN_FLIGHT_PARK_NANOS = 50L * 1000L;
+
+    /** 存放元素的数组 */
+    final Object[] items;
+
+    /** 和 items 平行的序号数组 */
+    final long[] sequences;
+
+    /** 容量 */
+    final int capacity;
+
+    /** 环形数组的长度，等于 max(capacity, 2) */
+    final int length;
+
+    /** length 是 2 的幂时为 length - 1，否则为 -1 */
+    final int mask;
+
+    /** remove(Object) 留在槽位中的标记，消费者遇到时跳过 */
+    static final Object REMOVED = new Object();
+
+    /** 挂起等待的消费者个数，只在持有 lock 时修改 */
+    volatile int takeWaiters;
+
+    /** 挂起等待的生产者个数，只在持有 lock 时修改 */
+    volatile int putWaiters;
+
+    /** 只用于挂起和唤醒，offer/poll 的快速路径不使用 */
+    final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition notEmpty = lock.newCondition();
+
+    private final Condition notFull = lock.newCondition();
+
+    /**
+     * 创建一个指定容量的队列。
+     *
+     * @param capacity the capacity of this queue
+     * @throws IllegalArgumentException if {@code capacity < 1}
+     */
+    public MpmcArrayBlockingQueue(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException();
+        int n = Math.max(capacity, 2);
+        this.capacity = capacity;
+        this.length = n;
+        this.mask = ((n & (n - 1)) == 0) ? n - 1 : -1;
+        this.items = new Object[n];
+        long[] seqs = new long[n];
+        for (int i = 0; i < n; i++)
+            seqs[i] = i;
+        this.sequences = seqs;
+    }
+
+    /**
+     * 创建一个指定容量的队列，并按 c 的迭代顺序加入 c 中的元素。
+     *
+     * @throws IllegalArgumentException if {@code capacity} is less than
+     *         {@code c.size()}, or less than 1.
+     * @throws NullPointerException if the specified collection or any
+     *         of its elements are null
+     */
+    public MpmcArrayBlockingQueue(int capacity, Collection<? extends E> c) {
+        this(capacity);
+        for (E e : c) {
+            if (!offer(e))      // offer 会检查 null
+                throw new IllegalArgumentException();
+        }
+    }
+
+    private static void checkNotNull(Object v) {
+        if (v == null)
+            throw new NullPointerException();
+    }
+
+    /** 位置 pos 对应的槽位 */
+    final int index(long pos) {
+        int m = mask;
+        return (m >= 0) ? (int) pos & m : (int) (pos % length);
+    }
+
+    private static long seqOffset(int i) {
+        return ((long) i << LSHIFT) + LBASE;
+    }
+
+    private static long itemOffset(int i) {
+        return ((long) i << ASHIFT) + ABASE;
+    }
+
+    /**
+     * 在队尾插入元素，队列满时立即返回 false。
+     *
+     * @throws NullPointerException if the specified element is null
+     */
+    public boolean offer(E e) {
+        checkNotNull(e);
+        final long[] seqs = sequences;
+        long pos = tail;
+        int i;
+        for (;;) {
+            i = index(pos);
+            long dif = U.getLongVolatile(seqs, seqOffset(i)) - pos;
+            if (dif == 0) {
+                if (length != capacity && pos - head >= capacity)
+                    return false;
+                if (U.compareAndSwapLong(this, TAIL, pos, pos + 1))
+                    break;
+                pos = tail;
+            }
+            else if (dif < 0)           // 上一圈的元素还没有被取走，队列已满
+                return false;
+            else                        // 其他生产者已经占用了这个位置
+                pos = tail;
+        }
+        items[i] = e;
+        U.putOrderedLong(seqs, seqOffset(i), pos + 1);   // 发布
+        // CAS tail 已经是一次完整的内存屏障，和 awaitNotEmpty 中先登记
+        // 再检查 tail 相对应，不会丢失唤醒
+        if (takeWaiters != 0)
+            signalNotEmpty();
+        return true;
+    }
+
+    /**
+     * 取出队首元素，队列为空时立即返回 null。被 remove(Object) 删除的位置
+     * 同样要占有、归还，然后继续取下一个。
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        final long[] seqs = sequences;
+        final Object[] items = this.items;
+        for (;;) {
+            long pos = head;
+            int i;
+            for (;;) {
+                i = index(pos);
+                long dif = U.getLongVolatile(seqs, seqOffset(i)) - (pos + 1);
+                if (dif == 0) {
+                    if (U.compareAndSwapLong(this, HEAD, pos, pos + 1))
+                        break;
+                    pos = head;
+                }
+                else if (dif < 0)       // 队列为空，或者生产者还没有发布
+                    return null;
+                else                    // 其他消费者已经取走了这个位置
+                    pos = head;
+            }
+            // 和 remove(Object) 的 CAS 竞争，只有一方拿到元素
+            Object x = U.getAndSetObject(items, itemOffset(i), null);
+            U.putOrderedLong(seqs, seqOffset(i), pos + length);    // 留给下一圈
+            if (putWaiters != 0)
+                signalNotFull();
+            if (x != REMOVED)
+                return (E) x;
+        }
+    }
+
+    /**
+     * 在队尾插入元素，队列满时等待。
+     *
+     * @throws InterruptedException {@inheritDoc}
+     * @throws NullPointerException {@inheritDoc}
+     */
+    public void put(E e) throws InterruptedException {
+        checkNotNull(e);
+        for (int spins = 0; !offer(e); ) {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            if (spins < MAX_SPINS)
+                ++spins;
+            else if (spins < MAX_SPINS + MAX_YIELDS) {
+                ++spins;
+                Thread.yield();
+            }
+            else
+                awaitNotFull(false, 0L);
+        }
+    }
+
+    /**
+     * 在队尾插入元素，队列满时最多等待指定的时间。
+     *
+     * @throws InterruptedException {@inheritDoc}
+     * @throws NullPointerException {@inheritDoc}
+     */
+    public boolean offer(E e, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        checkNotNull(e);
+        long nanos = unit.toNanos(timeout);
+        final long deadline = System.nanoTime() + nanos;
+        for (int spins = 0; !offer(e); ) {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            if ((nanos = deadline - System.nanoTime()) <= 0L)
+                return false;
+            if (spins < MAX_SPINS)
+                ++spins;
+            else if (spins < MAX_SPINS + MAX_YIELDS) {
+                ++spins;
+                Thread.yield();
+            }
+            else
+                awaitNotFull(true, nanos);
+        }
+        return true;
+    }
+
+    public E take() throws InterruptedException {
+        E x;
+        for (int spins = 0; (x = poll()) == null; ) {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            if (spins < MAX_SPINS)
+                ++spins;
+            else if (spins < MAX_SPINS + MAX_YIELDS) {
+                ++spins;
+                Thread.yield();
+            }
+            else
+                awaitNotEmpty(false, 0L);
+        }
+        return x;
+    }
+
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        final long deadline = System.nanoTime() + nanos;
+        E x;
+        for (int spins = 0; (x = poll()) == null; ) {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            if ((nanos = deadline - System.nanoTime()) <= 0L)
+                return null;
+            if (spins < MAX_SPINS)
+                ++spins;
+            else if (spins < MAX_SPINS + MAX_YIELDS) {
+                ++spins;
+                Thread.yield();
+            }
+            else
+                awaitNotEmpty(true, nanos);
+        }
+        return x;
+    }
+
+    /**
+     * 登记为等待的消费者，然后在 tail == head 时挂起。返回时不保证队列
+     * 非空，调用方需要重新 poll。
+     *
+     * 生产者在 tail 上的 CAS 之后读取 takeWaiters；这里在写 takeWaiters
+     * （volatile 写）之后读取 tail，两者至少有一方能看到另一方的修改。
+     * tail != head 但元素还没有发布时，说明生产者在占用位置和发布之间被
+     * 抢占了，这时只挂起 IN_FLIGHT_PARK_NANOS，让出 CPU 给它。
+     */
+    private void awaitNotEmpty(boolean timed, long nanos)
+            throws InterruptedException {
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            takeWaiters++;
+            try {
+                long h;
+                while (tail == (h = head)) {
+                    if (!timed)
+                        notEmpty.await();
+                    else if (nanos <= 0L)
+                        return;
+                    else
+                        nanos = notEmpty.awaitNanos(nanos);
+                }
+                if (sequenceAt(h) != h + 1)
+                    notEmpty.awaitNanos(timed ? Math.min(nanos, IN_FLIGHT_PARK_NANOS)
+                                              : IN_FLIGHT_PARK_NANOS);
+            } finally {
+                takeWaiters--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 登记为等待的生产者，然后在队列满时挂起，和 awaitNotEmpty 对称。
+     */
+    private void awaitNotFull(boolean timed, long nanos)
+            throws InterruptedException {
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            putWaiters++;
+            try {
+                long t;
+                while ((t = tail) - head >= capacity) {
+                    if (!timed)
+                        notFull.await();
+                    else if (nanos <= 0L)
+                        return;
+                    else
+                        nanos = notFull.awaitNanos(nanos);
+                }
+                // 消费者已经占用了位置，但还没有把槽位还给生产者
+                if (sequenceAt(t) != t)
+                    notFull.awaitNanos(timed ? Math.min(nanos, IN_FLIGHT_PARK_NANOS)
+                                             : IN_FLIGHT_PARK_NANOS);
+            } finally {
+                putWaiters--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** 位置 pos 对应槽位的当前序号 */
+    private long sequenceAt(long pos) {
+        return U.getLongVolatile(sequences, seqOffset(index(pos)));
+    }
+
+    private void signalNotEmpty() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void signalNotFull() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            notFull.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 返回队首元素但不删除，队列为空返回 null。
+     */
+    @SuppressWarnings("unchecked")
+    public E peek() {
+        final long[] seqs = sequences;
+        restart: for (;;) {
+            long h = head;
+            // 跳过已经被 remove(Object) 删除的位置
+            for (long pos = h; ; pos++) {
+                int i = index(pos);
+                long seq = U.getLongVolatile(seqs, seqOffset(i));
+                if (seq - (pos + 1) < 0)
+                    return null;
+                Object x = U.getObjectVolatile(items, itemOffset(i));
+                // head 没有变化说明读到的确实是 pos 处的元素
+                if (x == null || head != h)
+                    continue restart;
+                if (x != REMOVED)
+                    return (E) x;
+            }
+        }
+    }
+
+    /**
+     * 返回元素个数。tail 包含已经占用但还没有发布的位置，以及已经删除但
+     * 还没有被消费者跳过的位置，所以这是一个估计值。
+     */
+    public int size() {
+        for (;;) {
+            long h = head;
+            long t = tail;
+            if (h == head)
+                return (int) Math.max(0L, Math.min(t - h, (long) capacity));
+        }
+    }
+
+    /**
+     * 和 size() 不同，已经删除的位置不算元素，否则 ThreadPoolExecutor 这样
+     * 用 isEmpty 判断能否结束的调用方在队列中只剩删除标记时会一直等待。
+     * 已经占用但还没有发布的位置算作非空。
+     */
+    public boolean isEmpty() {
+        final long[] seqs = sequences;
+        restart: for (;;) {
+            long h = head;
+            long t = tail;
+            if (h != head)
+                continue;
+            for (long pos = h; pos < t; pos++) {
+                int i = index(pos);
+                if (U.getLongVolatile(seqs, seqOffset(i)) != pos + 1) {
+                    if (head != h)
+                        continue restart;
+                    return false;
+                }
+                Object x = U.getObjectVolatile(items, itemOffset(i));
+                if (x == null)              // 被消费者取走了
+                    continue restart;
+                if (x != REMOVED)
+                    return false;
+            }
+            return true;
+        }
+    }
+
+    public int remainingCapacity() {
+        return capacity - size();
+    }
+
+    /**
+     * 删除一个和 o 相等的元素。从 head 向 tail 扫描已经发布的位置，找到后
+     * 用 CAS 把元素换成 REMOVED；CAS 失败说明元素刚刚被消费者取走，继续
+     * 向后找。需要 O(n) 的时间，不加锁。
+     */
+    public boolean remove(Object o) {
+        if (o == null)
+            return false;
+        return removeItem(o, false);
+    }
+
+    /**
+     * remove(Object) 和迭代器 remove 的实现，identity 为 true 时按引用比较。
+     */
+    private boolean removeItem(Object o, boolean identity) {
+        final long[] seqs = sequences;
+        final Object[] items = this.items;
+        for (long pos = head, t = tail; pos < t; pos++) {
+            int i = index(pos);
+            if (U.getLongVolatile(seqs, seqOffset(i)) != pos + 1)
+                continue;
+            long io = itemOffset(i);
+            Object x = U.getObjectVolatile(items, io);
+            if (x != null && x != REMOVED &&
+                (identity ? x == o : o.equals(x)) &&
+                U.compareAndSwapObject(items, io, x, REMOVED))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * 返回当前所有元素的快照，按 FIFO 顺序。每个位置都先检查序号、再读元素、
+     * 再检查序号，两次序号都等于 pos + 1 才说明读到的是这个位置的元素。
+     */
+    public Object[] toArray() {
+        final long[] seqs = sequences;
+        long h = head, t = tail;
+        Object[] a = new Object[(int) Math.max(0L, Math.min(t - h, (long) capacity))];
+        int n = 0;
+        for (long pos = h; pos < t && n < a.length; pos++) {
+            int i = index(pos);
+            long so = seqOffset(i);
+            if (U.getLongVolatile(seqs, so) != pos + 1)
+                continue;
+            Object x = U.getObjectVolatile(items, itemOffset(i));
+            if (x != null && x != REMOVED && U.getLongVolatile(seqs, so) == pos + 1)
+                a[n++] = x;
+        }
+        return (n == a.length) ? a : Arrays.copyOf(a, n);
+    }
+
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        checkNotNull(c);
+        if (c == this)
+            throw new IllegalArgumentException();
+        int n = 0;
+        E x;
+        while (n < maxElements && (x = poll()) != null) {
+            c.add(x);
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * 返回创建时的元素快照上的迭代器。remove 按引用删除上一次返回的元素，
+     * 元素已经被取走时什么也不做。
+     */
+    public Iterator<E> iterator() {
+        return new Itr(toArray());
+    }
+
+    private final class Itr implements Iterator<E> {
+        private final Object[] snapshot;
+        private int cursor;
+        private int lastRet = -1;
+
+        Itr(Object[] snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        public boolean hasNext() {
+            return cursor < snapshot.length;
+        }
+
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (cursor >= snapshot.length)
+                throw new NoSuchElementException();
+            return (E) snapshot[lastRet = cursor++];
+        }
+
+        public void remove() {
+            if (lastRet < 0)
+                throw new IllegalStateException();
+            removeItem(snapshot[lastRet], true);
+            lastRet = -1;
+        }
+    }
+
+    // Unsafe mechanics
+    private static final sun.misc.Unsafe U;
+    private static final long HEAD;
+    private static final long TAIL;
+    private static final long ABASE;
+    private static final int ASHIFT;
+    private static final long LBASE;
+    private static final int LSHIFT;
+    static {
+        try {
+            U = sun.misc.Unsafe.getUnsafe();
+            HEAD = U.objectFieldOffset(MpmcArrayBlockingQueueHead.class
+                    .getDeclaredField("head"));
+            TAIL = U.objectFieldOffset(MpmcArrayBlockingQueueTail.class
+                    .getDeclaredField("tail"));
+            ABASE = U.arrayBaseOffset(Object[].class);
+            int scale = U.arrayIndexScale(Object[].class);
+            if ((scale & (scale - 1)) != 0)
+                throw new Error("data type scale not a power of two");
+            ASHIFT = 31 - Integer.numberOfLeadingZeros(scale);
+            LBASE = U.arrayBaseOffset(long[].class);
+            scale = U.arrayIndexScale(long[].class);
+            LSHIFT = 31 - Integer.numberOfLeadingZeros(scale);
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
+
+/**
+ * MpmcArrayBlockingQueue 的填充：把 head 和对象头以及之前分配的对象隔开。
+ */
+abstract class MpmcArrayBlockingQueuePad0<E> extends AbstractQueue<E> {
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+}
+
+/**
+ * 消费者竞争的字段。
+ */
+abstract class MpmcArrayBlockingQueueHead<E> extends MpmcArrayBlockingQueuePad0<E> {
+    /** 下一个消费者要取的位置 */
+    volatile long head;
+}
+
+/**
+ * MpmcArrayBlockingQueue 的填充：把 head 和 tail 隔开。
+ */
+abstract class MpmcArrayBlockingQueuePad1<E> extends MpmcArrayBlockingQueueHead<E> {
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+}
+
+/**
+ * 生产者竞争的字段。
+ */
+abstract class MpmcArrayBlockingQueueTail<E> extends MpmcArrayBlockingQueuePad1<E> {
+    /** 下一个生产者要放的位置 */
+    volatile long tail;
+}
+
+/**
+ * MpmcArrayBlockingQueue 的填充：把 tail 和子类中双方都要读的字段隔开。
+ */
+abstract class MpmcArrayBlockingQueuePad2<E> extends MpmcArrayBlockingQueueTail<E> {
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+}
@@ -0,0 +1,406 @@
+package JUC.JUCCollections;
+
+import java.util.AbstractQueue;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 多生产者单消费者（MPSC）的有界阻塞队列，FIFO。
+ *
+ * 和 SpscArrayBlockingQueue 相比，插入可以由任意多个线程并发执行，取出
+ * 操作（poll、take、peek、drainTo、remove）仍然只能由一个线程执行：
+ *  - 生产者用 CAS 推进 tail 占住一个槽位，再用有序写（putOrderedObject）
+ *    把元素写入槽位；
+ *  - 消费者不读 tail，直接读槽位：不为 null 就是已经发布的元素，取走以后
+ *    清空槽位，用有序写推进 head。槽位为 null 而 tail 已经越过它时，说明
+ *    生产者占位以后还没写入，消费者等它写完；
+ *  - 生产者共享一个缓存的上限 producerLimit（head + capacity），tail 小于
+ *    它时不需要读 head。
+ *
+ * 消费者阻塞时登记到 consumerWaiter，登记后再读一次 tail；生产者的 CAS 是
+ * 完整的内存屏障，CAS 以后再读 consumerWaiter，所以双方至少有一方能看到
+ * 对方，不会错过唤醒。队列满时生产者不登记，自旋、yield 以后限时挂起重试，
+ * 挂起时间从 1 微秒开始加倍，最多 MAX_PARK_NANOS。
+ *
+ * tail、producerLimit 由生产者争用，head 只由消费者写，两组字段按
+ * MpmcArrayBlockingQueue 的方式填充隔开。
+ *
+ * remove(Object) 和 SpscArrayBlockingQueue 一样由消费者挪动 head 一侧的
+ * 元素；遇到已经占位还没写入的槽位时，像 poll 一样等生产者写完。
+ *
+ * 内部数组的长度是不小于容量的 2 的幂。迭代器是快照，弱一致，它的
+ * remove 只能由消费者线程调用。不可序列化。
+ *
+ * @param <E> the type of elements held in this collection
+ * @see SpscArrayBlockingQueue
+ * @see MpmcArrayBlockingQueue
+ */
+public class MpscArrayBlockingQueue<E> extends MpscArrayBlockingQueuePad2<E>
+        implements BlockingQueue<E> {
+
+    /** 退避的参数和 SpscArrayBlockingQueue 相同 */
+    static final int MAX_SPINS = SpscArrayBlockingQueue.MAX_SPINS;
+    static final int MAX_YIELDS = SpscArrayBlockingQueue.MAX_YIELDS;
+    static final long MAX_PARK_NANOS = SpscArrayBlockingQueue.MAX_PARK_NANOS;
+
+    /** 存放元素的数组，长度是 2 的幂，null 表示槽位空闲 */
+    final Object[] buffer;
+
+    /** buffer.length - 1 */
+    final int mask;
+
+    /** 容量 */
+    final int capacity;
+
+    /** 挂起等待元素的消费者 */
+    volatile Thread consumerWaiter;
+
+    /**
+     * 创建一个指定容量的队列。
+     *
+     * @param capacity the capacity of this queue
+     * @throws IllegalArgumentException if {@code capacity < 1}
+     */
+    public MpscArrayBlockingQueue(int capacity) {
+        if (capacity <= 0 || capacity > (1 << 30))
+            throw new IllegalArgumentException();
+        int n = (capacity == 1) ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.capacity = capacity;
+        this.mask = n - 1;
+        this.buffer = new Object[n];
+        this.producerLimit = capacity;
+    }
+
+    private static void checkNotNull(Object v) {
+        if (v == null)
+            throw new NullPointerException();
+    }
+
+    private long itemOffset(long pos) {
+        return ((long) ((int) pos & mask) << ASHIFT) + ABASE;
+    }
+
+    /**
+     * 在队尾插入元素，队列满时立即返回 false。可以由任意线程调用。
+     *
+     * @throws NullPointerException if the specified element is null
+     */
+    public boolean offer(E e) {
+        checkNotNull(e);
+        long limit = producerLimit;
+        long t;
+        do {
+            t = tail;
+            if (t >= limit) {
+                // 按缓存已满，读取真实的 head 刷新上限
+                limit = head + capacity;
+                if (t >= limit)
+                    return false;
+                producerLimit = limit;
+            }
+        } while (!U.compareAndSwapLong(this, TAIL, t, t + 1));
+        U.putOrderedObject(buffer, itemOffset(t), e);   // lazySet 发布
+        Thread w = consumerWaiter;
+        if (w != null)
+            LockSupport.unpark(w);
+        return true;
+    }
+
+    /**
+     * 取出队首元素，队列为空时立即返回 null。只能由消费者线程调用。
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        final long h = head;
+        final long offset = itemOffset(h);
+        Object x = U.getObjectVolatile(buffer, offset);
+        if (x == null) {
+            if (h == tail)
+                return null;
+            // 生产者已经占住槽位，还没写入元素
+            while ((x = U.getObjectVolatile(buffer, offset)) == null)
+                Thread.yield();
+        }
+        U.putObject(buffer, offset, null);
+        U.putOrderedLong(this, HEAD, h + 1);    // lazySet 归还槽位
+        return (E) x;
+    }
+
+    /**
+     * 返回队首元素但不删除。只能由消费者线程调用。
+     */
+    @SuppressWarnings("unchecked")
+    public E peek() {
+        final long h = head;
+        final long offset = itemOffset(h);
+        Object x = U.getObjectVolatile(buffer, offset);
+        if (x == null && h != tail) {
+            while ((x = U.getObjectVolatile(buffer, offset)) == null)
+                Thread.yield();
+        }
+        return (E) x;
+    }
+
+    public void put(E e) throws InterruptedException {
+        checkNotNull(e);
+        for (int k = 0; !offer(e); k++) {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            backoff(k, false, Long.MAX_VALUE);
+        }
+    }
+
+    public boolean offer(E e, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        checkNotNull(e);
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (int k = 0; !offer(e); k++) {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            long nanos = deadline - System.nanoTime();
+            if (nanos <= 0L)
+                return false;
+            backoff(k, false, nanos);
+        }
+        return true;
+    }
+
+    public E take() throws InterruptedException {
+        E x;
+        for (int k = 0; (x = poll()) == null; k++) {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            backoff(k, true, Long.MAX_VALUE);
+        }
+        return x;
+    }
+
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        E x;
+        for (int k = 0; (x = poll()) == null; k++) {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            long nanos = deadline - System.nanoTime();
+            if (nanos <= 0L)
+                return null;
+            backoff(k, true, nanos);
+        }
+        return x;
+    }
+
+    /**
+     * 第 k 次重试失败以后的退避：先自旋，再 yield，最后挂起最多 nanos 纳秒。
+     * 消费者挂起前登记到 consumerWaiter 并再检查一次 tail；生产者不登记，
+     * 只是限时挂起。
+     *
+     * @param consumer true 表示等待元素，false 表示等待空间
+     */
+    private void backoff(int k, boolean consumer, long nanos) {
+        if (k < MAX_SPINS)
+            return;
+        if (k < MAX_SPINS + MAX_YIELDS) {
+            Thread.yield();
+            return;
+        }
+        int shift = Math.min(k - MAX_SPINS - MAX_YIELDS, 20);
+        long park = Math.min(Math.min(1000L << shift, MAX_PARK_NANOS), nanos);
+        if (consumer) {
+            consumerWaiter = Thread.currentThread();
+            if (head == tail)
+                LockSupport.parkNanos(this, park);
+            consumerWaiter = null;
+        } else {
+            LockSupport.parkNanos(this, park);
+        }
+    }
+
+    /**
+     * 返回元素个数的估计值，包括已经占位还没写入的元素。
+     */
+    public int size() {
+        for (;;) {
+            long h = head;
+            long t = tail;
+            if (h == head)
+                return (int) Math.max(0L, Math.min(t - h, (long) capacity));
+        }
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int remainingCapacity() {
+        return capacity - size();
+    }
+
+    /**
+     * 删除一个和 o 相等的元素。只能由消费者线程调用，需要 O(n) 的时间。
+     */
+    public boolean remove(Object o) {
+        return (o != null) && removeItem(o, false);
+    }
+
+    /**
+     * remove(Object) 和迭代器 remove 的实现，identity 为 true 时按引用比较。
+     * [head, tail) 中的槽位都已经被生产者占住，写入以后只有消费者会修改，
+     * 所以可以把被删除元素前面的元素各向后挪一格，再像 poll 一样清空
+     * head 槽位、推进 head。
+     */
+    private boolean removeItem(Object o, boolean identity) {
+        final Object[] buffer = this.buffer;
+        final long h = head;
+        final long t = tail;
+        for (long pos = h; pos < t; pos++) {
+            Object x;
+            // 生产者已经占住槽位，还没写入元素
+            while ((x = U.getObjectVolatile(buffer, itemOffset(pos))) == null)
+                Thread.yield();
+            if (identity ? x == o : o.equals(x)) {
+                for (long p = pos; p > h; p--)
+                    U.putObject(buffer, itemOffset(p),
+                                U.getObject(buffer, itemOffset(p - 1)));
+                U.putObject(buffer, itemOffset(h), null);
+                U.putOrderedLong(this, HEAD, h + 1);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 返回当前元素的快照，按 FIFO 顺序。还没写入的槽位和并发时已经被取走的
+     * 槽位为 null，会被跳过。
+     */
+    public Object[] toArray() {
+        long h = head, t = tail;
+        Object[] a = new Object[(int) Math.max(0L, Math.min(t - h, (long) capacity))];
+        int n = 0;
+        for (long pos = h; pos < t && n < a.length; pos++) {
+            Object x = U.getObjectVolatile(buffer, itemOffset(pos));
+            if (x != null)
+                a[n++] = x;
+        }
+        return (n == a.length) ? a : Arrays.copyOf(a, n);
+    }
+
+    /**
+     * 只能由消费者线程调用。
+     */
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 只能由消费者线程调用。
+     */
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        checkNotNull(c);
+        if (c == this)
+            throw new IllegalArgumentException();
+        int n = 0;
+        E x;
+        while (n < maxElements && (x = poll()) != null) {
+            c.add(x);
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * 返回创建时的元素快照上的迭代器。remove 按引用删除上一次返回的元素，
+     * 只能由消费者线程调用。
+     */
+    public Iterator<E> iterator() {
+        final Object[] snapshot = toArray();
+        return new Iterator<E>() {
+            int cursor;
+            int lastRet = -1;
+
+            public boolean hasNext() {
+                return cursor < snapshot.length;
+            }
+
+            @SuppressWarnings("unchecked")
+            public E next() {
+                if (cursor >= snapshot.length)
+                    throw new NoSuchElementException();
+                return (E) snapshot[lastRet = cursor++];
+            }
+
+            public void remove() {
+                if (lastRet < 0)
+                    throw new IllegalStateException();
+                removeItem(snapshot[lastRet], true);
+                lastRet = -1;
+            }
+        };
+    }
+
+    // Unsafe mechanics
+    private static final sun.misc.Unsafe U;
+    private static final long HEAD;
+    private static final long TAIL;
+    private static final long ABASE;
+    private static final int ASHIFT;
+    static {
+        try {
+            U = sun.misc.Unsafe.getUnsafe();
+            HEAD = U.objectFieldOffset(MpscArrayBlockingQueueConsumer.class
+                    .getDeclaredField("head"));
+            TAIL = U.objectFieldOffset(MpscArrayBlockingQueueProducer.class
+                    .getDeclaredField("tail"));
+            ABASE = U.arrayBaseOffset(Object[].class);
+            int scale = U.arrayIndexScale(Object[].class);
+            if ((scale & (scale - 1)) != 0)
+                throw new Error("data type scale not a power of two");
+            ASHIFT = 31 - Integer.numberOfLeadingZeros(scale);
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
+
+/*
+ * MpscArrayBlockingQueue 的字段和填充，排布方式见 MpmcArrayBlockingQueue。
+ */
+
+abstract class MpscArrayBlockingQueuePad0<E> extends AbstractQueue<E> {
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+}
+
+/**
+ * 生产者的字段。
+ */
+abstract class MpscArrayBlockingQueueProducer<E> extends MpscArrayBlockingQueuePad0<E> {
+    /** 下一个被占用的位置，生产者 CAS 修改 */
+    volatile long tail;
+
+    /** 生产者缓存的插入上限，不大于 head + capacity */
+    volatile long producerLimit;
+}
+
+abstract class MpscArrayBlockingQueuePad1<E> extends MpscArrayBlockingQueueProducer<E> {
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+}
+
+/**
+ * 消费者的字段。
+ */
+abstract class MpscArrayBlockingQueueConsumer<E> extends MpscArrayBlockingQueuePad1<E> {
+    /** 下一个取出的位置，只有消费者修改 */
+    volatile long head;
+}
+
+abstract class MpscArrayBlockingQueuePad2<E> extends MpscArrayBlockingQueueConsumer<E> {
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+}
@@ -0,0 +1,413 @@
+package JUC.JUCCollections;
+
+import java.util.AbstractQueue;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 单生产者单消费者（SPSC）的有界阻塞队列，FIFO。
+ *
+ * LinkedBlockingQueue 的 putLock/takeLock 加上 AtomicInteger count，即使
+ * 只有一个生产者和一个消费者，每个元素也要两次加解锁和一次 CAS。此类假定
+ * 任何时候只有一个线程执行插入操作（offer、put、add），只有一个线程执行
+ * 取出操作（poll、take、peek、drainTo、remove），在此前提下：
+ *  - 没有锁，也没有 CAS：生产者只写 tail，消费者只写 head，都用有序写
+ *    （lazySet，即 putOrderedLong）发布，不需要完整的内存屏障；
+ *  - 生产者缓存 head（headCache），只有按缓存判断队列已满时才去读 head；
+ *    消费者同样缓存 tail（tailCache）。两边大多数时候只访问自己的缓存行；
+ *  - 生产者的字段和消费者的字段放在父类链中，用填充隔开，排布方式见
+ *    MpmcArrayBlockingQueue。
+ * 多个线程同时插入（或同时取出）会破坏队列，需要多生产者时使用
+ * MpscArrayBlockingQueue。size、isEmpty、remainingCapacity 和 toArray
+ * 可以在任何线程调用，结果是估计值。
+ *
+ * 阻塞操作先自旋、再 yield，然后把自己登记为等待者（consumerWaiter 或
+ * producerWaiter）并挂起；另一方每次操作以后检查等待者，不为 null 才调用
+ * unpark。有序写之后读取等待者之间没有 StoreLoad 屏障，极少数情况下会错过
+ * 唤醒，所以挂起总是限时的：从 1 微秒开始加倍，最多 MAX_PARK_NANOS，错过
+ * 的唤醒最多延迟这么久。
+ *
+ * remove(Object) 由消费者执行：把 head 到被删除元素之间的元素各向后挪
+ * 一格，再推进 head。挪动的槽位都在 head 和 tail 之间，生产者不会写入，
+ * 所以插入路径不需要为删除付出任何代价。
+ *
+ * 内部数组的长度是不小于容量的 2 的幂，下标用掩码计算。迭代器是快照，
+ * 弱一致，它的 remove 同样只能由消费者线程调用。不可序列化。
+ *
+ * @param <E> the type of elements held in this collection
+ * @see LinkedBlockingQueue
+ * @see MpscArrayBlockingQueue
+ */
+public class SpscArrayBlockingQueue<E> extends SpscArrayBlockingQueuePad2<E>
+        implements BlockingQueue<E> {
+
+    /** 挂起前自旋重试的次数，单核时不自旋。 */
+    static final int MAX_SPINS = (MpmcArrayBlockingQueue.NCPUS < 2) ? 0 : 128;
+
+    /** 自旋以后 yield 重试的次数。 */
+    static final int MAX_YIELDS = 16;
+
+    /** 每次挂起的最长时间，也是错过唤醒时的最大延迟。 */
+    static final long MAX_PARK_NANOS = 1000L * 1000L;
+
+    /** 存放元素的数组，长度是 2 的幂 */
+    final Object[] buffer;
+
+    /** buffer.length - 1 */
+    final int mask;
+
+    /** 容量 */
+    final int capacity;
+
+    /** 挂起等待元素的消费者 */
+    volatile Thread consumerWaiter;
+
+    /** 挂起等待空间的生产者 */
+    volatile Thread producerWaiter;
+
+    /**
+     * 创建一个指定容量的队列。
+     *
+     * @param capacity the capacity of this queue
+     * @throws IllegalArgumentException if {@code capacity < 1}
+     */
+    public SpscArrayBlockingQueue(int capacity) {
+        if (capacity <= 0 || capacity > (1 << 30))
+            throw new IllegalArgumentException();
+        int n = (capacity == 1) ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.capacity = capacity;
+        this.mask = n - 1;
+        this.buffer = new Object[n];
+    }
+
+    private static void checkNotNull(Object v) {
+        if (v == null)
+            throw new NullPointerException();
+    }
+
+    /**
+     * 在队尾插入元素，队列满时立即返回 false。只能由生产者线程调用。
+     *
+     * @throws NullPointerException if the specified element is null
+     */
+    public boolean offer(E e) {
+        checkNotNull(e);
+        final long t = tail;
+        if (t - headCache >= capacity) {
+            // 按缓存已满，读取真实的 head
+            if (t - (headCache = head) >= capacity)
+                return false;
+        }
+        buffer[(int) t & mask] = e;
+        U.putOrderedLong(this, TAIL, t + 1);    // lazySet 发布
+        Thread w = consumerWaiter;
+        if (w != null)
+            LockSupport.unpark(w);
+        return true;
+    }
+
+    /**
+     * 取出队首元素，队列为空时立即返回 null。只能由消费者线程调用。
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        final long h = head;
+        if (h >= tailCache) {
+            // 按缓存为空，读取真实的 tail
+            if (h >= (tailCache = tail))
+                return null;
+        }
+        final Object[] buffer = this.buffer;
+        final int i = (int) h & mask;
+        E x = (E) buffer[i];
+        buffer[i] = null;
+        U.putOrderedLong(this, HEAD, h + 1);    // lazySet 归还槽位
+        Thread w = producerWaiter;
+        if (w != null)
+            LockSupport.unpark(w);
+        return x;
+    }
+
+    /**
+     * 返回队首元素但不删除。只能由消费者线程调用。
+     */
+    @SuppressWarnings("unchecked")
+    public E peek() {
+        final long h = head;
+        if (h >= tailCache && h >= (tailCache = tail))
+            return null;
+        return (E) buffer[(int) h & mask];
+    }
+
+    public void put(E e) throws InterruptedException {
+        checkNotNull(e);
+        for (int k = 0; !offer(e); k++) {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            backoff(k, false, Long.MAX_VALUE);
+        }
+    }
+
+    public boolean offer(E e, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        checkNotNull(e);
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (int k = 0; !offer(e); k++) {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            long nanos = deadline - System.nanoTime();
+            if (nanos <= 0L)
+                return false;
+            backoff(k, false, nanos);
+        }
+        return true;
+    }
+
+    public E take() throws InterruptedException {
+        E x;
+        for (int k = 0; (x = poll()) == null; k++) {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            backoff(k, true, Long.MAX_VALUE);
+        }
+        return x;
+    }
+
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        E x;
+        for (int k = 0; (x = poll()) == null; k++) {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            long nanos = deadline - System.nanoTime();
+            if (nanos <= 0L)
+                return null;
+            backoff(k, true, nanos);
+        }
+        return x;
+    }
+
+    /**
+     * 第 k 次重试失败以后的退避：先自旋，再 yield，最后登记为等待者并挂起
+     * 最多 nanos 纳秒。登记以后要再检查一次，避免对方在登记之前完成了操作。
+     *
+     * @param consumer true 表示等待元素，false 表示等待空间
+     */
+    private void backoff(int k, boolean consumer, long nanos) {
+        if (k < MAX_SPINS)
+            return;
+        if (k < MAX_SPINS + MAX_YIELDS) {
+            Thread.yield();
+            return;
+        }
+        int shift = Math.min(k - MAX_SPINS - MAX_YIELDS, 20);
+        long park = Math.min(Math.min(1000L << shift, MAX_PARK_NANOS), nanos);
+        Thread current = Thread.currentThread();
+        if (consumer) {
+            consumerWaiter = current;
+            if (head >= tail)
+                LockSupport.parkNanos(this, park);
+            consumerWaiter = null;
+        } else {
+            producerWaiter = current;
+            if (tail - head >= capacity)
+                LockSupport.parkNanos(this, park);
+            producerWaiter = null;
+        }
+    }
+
+    /**
+     * 返回元素个数的估计值，可以在任何线程调用。
+     */
+    public int size() {
+        for (;;) {
+            long h = head;
+            long t = tail;
+            if (h == head)
+                return (int) Math.max(0L, Math.min(t - h, (long) capacity));
+        }
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int remainingCapacity() {
+        return capacity - size();
+    }
+
+    /**
+     * 删除一个和 o 相等的元素。只能由消费者线程调用，需要 O(n) 的时间。
+     */
+    public boolean remove(Object o) {
+        return (o != null) && removeItem(o, false);
+    }
+
+    /**
+     * remove(Object) 和迭代器 remove 的实现，identity 为 true 时按引用比较。
+     * 找到元素以后把它前面的元素各向后挪一格，空出的 head 槽位清空以后
+     * 推进 head，效果和 poll 一样，生产者看到的只是 head 前进了一格。
+     */
+    private boolean removeItem(Object o, boolean identity) {
+        final Object[] buffer = this.buffer;
+        final int mask = this.mask;
+        final long h = head;
+        final long t = tailCache = tail;
+        for (long pos = h; pos < t; pos++) {
+            Object x = buffer[(int) pos & mask];
+            if (identity ? x == o : o.equals(x)) {
+                for (long p = pos; p > h; p--)
+                    buffer[(int) p & mask] = buffer[(int) (p - 1) & mask];
+                buffer[(int) h & mask] = null;
+                U.putOrderedLong(this, HEAD, h + 1);
+                Thread w = producerWaiter;
+                if (w != null)
+                    LockSupport.unpark(w);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 返回当前元素的快照，按 FIFO 顺序。和消费者并发时，已经被取走的元素
+     * 对应的槽位为 null，会被跳过。
+     */
+    public Object[] toArray() {
+        long h = head, t = tail;
+        Object[] a = new Object[(int) Math.max(0L, Math.min(t - h, (long) capacity))];
+        int n = 0;
+        for (long pos = h; pos < t && n < a.length; pos++) {
+            Object x = U.getObjectVolatile(buffer, itemOffset((int) pos & mask));
+            if (x != null)
+                a[n++] = x;
+        }
+        return (n == a.length) ? a : Arrays.copyOf(a, n);
+    }
+
+    /**
+     * 只能由消费者线程调用。
+     */
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 只能由消费者线程调用。
+     */
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        checkNotNull(c);
+        if (c == this)
+            throw new IllegalArgumentException();
+        int n = 0;
+        E x;
+        while (n < maxElements && (x = poll()) != null) {
+            c.add(x);
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * 返回创建时的元素快照上的迭代器。remove 按引用删除上一次返回的元素，
+     * 只能由消费者线程调用。
+     */
+    public Iterator<E> iterator() {
+        final Object[] snapshot = toArray();
+        return new Iterator<E>() {
+            int cursor;
+            int lastRet = -1;
+
+            public boolean hasNext() {
+                return cursor < snapshot.length;
+            }
+
+            @SuppressWarnings("unchecked")
+            public E next() {
+                if (cursor >= snapshot.length)
+                    throw new NoSuchElementException();
+                return (E) snapshot[lastRet = cursor++];
+            }
+
+            public void remove() {
+                if (lastRet < 0)
+                    throw new IllegalStateException();
+                removeItem(snapshot[lastRet], true);
+                lastRet = -1;
+            }
+        };
+    }
+
+    private static long itemOffset(int i) {
+        return ((long) i << ASHIFT) + ABASE;
+    }
+
+    // Unsafe mechanics
+    private static final sun.misc.Unsafe U;
+    private static final long HEAD;
+    private static final long TAIL;
+    private static final long ABASE;
+    private static final int ASHIFT;
+    static {
+        try {
+            U = sun.misc.Unsafe.getUnsafe();
+            HEAD = U.objectFieldOffset(SpscArrayBlockingQueueConsumer.class
+                    .getDeclaredField("head"));
+            TAIL = U.objectFieldOffset(SpscArrayBlockingQueueProducer.class
+                    .getDeclaredField("tail"));
+            ABASE = U.arrayBaseOffset(Object[].class);
+            int scale = U.arrayIndexScale(Object[].class);
+            if ((scale & (scale - 1)) != 0)
+                throw new Error("data type scale not a power of two");
+            ASHIFT = 31 - Integer.numberOfLeadingZeros(scale);
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
+
+/*
+ * SpscArrayBlockingQueue 的字段和填充，排布方式见 MpmcArrayBlockingQueue。
+ */
+
+abstract class SpscArrayBlockingQueuePad0<E> extends AbstractQueue<E> {
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+}
+
+/**
+ * 生产者的字段。
+ */
+abstract class SpscArrayBlockingQueueProducer<E> extends SpscArrayBlockingQueuePad0<E> {
+    /** 下一个插入的位置，只有生产者修改 */
+    volatile long tail;
+
+    /** 生产者缓存的 head，不大于真实的 head */
+    long headCache;
+}
+
+abstract class SpscArrayBlockingQueuePad1<E> extends SpscArrayBlockingQueueProducer<E> {
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+}
+
+/**
+ * 消费者的字段。
+ */
+abstract class SpscArrayBlockingQueueConsumer<E> extends SpscArrayBlockingQueuePad1<E> {
+    /** 下一个取出的位置，只有消费者修改 */
+    volatile long head;
+
+    /** 消费者缓存的 tail，不大于真实的 tail */
+    long tailCache;
+}
+
+abstract class SpscArrayBlockingQueuePad2<E> extends SpscArrayBlockingQueueConsumer<E> {
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+}
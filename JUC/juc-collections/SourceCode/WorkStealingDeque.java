@@ -0,0 +1,329 @@
+package JUC.JUCCollections;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Chase-Lev 工作窃取双端队列，无界，基于可扩容的循环数组。
+ *
+ * LinkedBlockingDeque 的两端共用一把 ReentrantLock，所有者线程在头部
+ * push/pop 时会和从尾部窃取任务的线程竞争同一把锁。此类把两端分开：
+ *  - 所有者端（push、pollFirst）只能由一个线程（所有者）调用，LIFO。push
+ *    写入槽位以后用有序写（putOrderedLong）推进 bottom，没有锁和 CAS；
+ *    pollFirst 把槽位 CAS 成 null 取得元素，再用有序写减小 bottom；
+ *  - 窃取端（pollLast、takeLast）可以由任意线程调用，FIFO。和 ForkJoinPool
+ *    的 WorkQueue 一样，先确认 top 没有变化，再把 top 处的槽位 CAS 成 null
+ *    取得元素，然后才发布 top + 1。
+ * 元素的归属总是由槽位上的 CAS 决定，槽位在 top 越过它之前已经是 null，
+ * 所以所有者绕回来写同一个槽位时不会被迟到的窃取者清掉（除非在窃取者
+ * 读 top 和 CAS 之间数组整整绕了一圈、又放入了同一个引用，和 ForkJoinPool
+ * 一样不处理这种情况）。数组满时由所有者扩容为两倍：先发布新数组，再把
+ * [top, bottom) 的元素逐个从旧数组 CAS 出来写入新数组，和还在读旧数组的
+ * 窃取者竞争同一个槽位，一个元素只会被取走一次。
+ *
+ * top 被窃取者争用，bottom 由所有者频繁写入，两者按
+ * MpmcArrayBlockingQueue 的方式填充隔开。
+ *
+ * 没有元素时窃取者可以用 takeLast 或限时的 pollLast 阻塞：先自旋、yield，
+ * 再在 lock 的条件队列上等待，push 以后发现 waiters 不为 0 才加锁唤醒一个
+ * 窃取者。push 发布 bottom 和读取 waiters 之间没有 StoreLoad 屏障，所以
+ * 等待总是限时的（MAX_WAIT_NANOS），错过的唤醒最多延迟这么久。
+ *
+ * 不允许 null 元素。size 和 isEmpty 可以在任何线程调用，结果是估计值。
+ * 此类不是 Collection，也不可序列化。
+ *
+ * @param <E> the type of elements held in this deque
+ * @see LinkedBlockingDeque
+ */
+public class WorkStealingDeque<E> extends WorkStealingDequePad2 {
+
+    /** 初始容量，必须是 2 的幂 */
+    static final int INITIAL_CAPACITY = 1 << 6;
+
+    /** 最大容量 */
+    static final int MAXIMUM_CAPACITY = 1 << 26;
+
+    /** 窃取者阻塞前的自旋和 yield 次数，和 MpmcArrayBlockingQueue 相同 */
+    static final int MAX_SPINS = MpmcArrayBlockingQueue.MAX_SPINS;
+    static final int MAX_YIELDS = MpmcArrayBlockingQueue.MAX_YIELDS;
+
+    /** 窃取者每次在条件队列上等待的最长时间。 */
+    static final long MAX_WAIT_NANOS = 1000L * 1000L;
+
+    /** 循环数组，长度是 2 的幂，只有所有者替换 */
+    volatile Object[] array;
+
+    /** 保护条件队列 */
+    final ReentrantLock lock = new ReentrantLock();
+
+    /** 等待元素的窃取者 */
+    private final Condition notEmpty = lock.newCondition();
+
+    /** 在 notEmpty 上等待的窃取者个数，持有 lock 时修改 */
+    volatile int waiters;
+
+    /**
+     * 创建一个初始容量为 64 的空队列。
+     */
+    public WorkStealingDeque() {
+        array = new Object[INITIAL_CAPACITY];
+    }
+
+    /**
+     * 创建一个空队列，初始容量是不小于 initialCapacity 的 2 的幂。
+     *
+     * @throws IllegalArgumentException if {@code initialCapacity < 1}
+     *         or greater than {@code MAXIMUM_CAPACITY}
+     */
+    public WorkStealingDeque(int initialCapacity) {
+        if (initialCapacity < 1 || initialCapacity > MAXIMUM_CAPACITY)
+            throw new IllegalArgumentException();
+        int n = (initialCapacity == 1) ? 1 :
+                Integer.highestOneBit(initialCapacity - 1) << 1;
+        array = new Object[n];
+    }
+
+    private static long slotOffset(Object[] a, long i) {
+        return ((long) ((int) i & (a.length - 1)) << ASHIFT) + ABASE;
+    }
+
+    /**
+     * 在所有者端插入元素。只能由所有者线程调用。
+     *
+     * @throws NullPointerException if the specified element is null
+     * @throws IllegalStateException 如果容量超过 MAXIMUM_CAPACITY
+     */
+    public void push(E e) {
+        if (e == null)
+            throw new NullPointerException();
+        final long b = bottom;
+        final long t = top;
+        Object[] a = array;
+        if (b - t >= a.length)
+            a = grow(a, t, b);
+        U.putOrderedObject(a, slotOffset(a, b), e);
+        U.putOrderedLong(this, BOTTOM, b + 1);    // lazySet 发布
+        if (waiters != 0)
+            signalNotEmpty();
+    }
+
+    /**
+     * 容量加倍。只有所有者调用。先发布新数组，再把 [t, b) 的元素从旧数组
+     * CAS 成 null 以后写入新数组；CAS 失败说明元素已经被读旧数组的窃取者
+     * 取走，新数组中对应的槽位保持 null。
+     */
+    private Object[] grow(Object[] old, long t, long b) {
+        int n = old.length;
+        if (n >= MAXIMUM_CAPACITY)
+            throw new IllegalStateException("Deque capacity exceeded");
+        Object[] a = array = new Object[n << 1];
+        for (long i = t; i < b; i++) {
+            long oldOffset = slotOffset(old, i);
+            Object x = U.getObjectVolatile(old, oldOffset);
+            if (x != null && U.compareAndSwapObject(old, oldOffset, x, null))
+                U.putObjectVolatile(a, slotOffset(a, i), x);
+        }
+        return a;
+    }
+
+    /**
+     * 从所有者端取出最近 push 的元素，没有元素时返回 null。只能由所有者
+     * 线程调用。
+     */
+    @SuppressWarnings("unchecked")
+    public E pollFirst() {
+        final long s = bottom - 1;
+        if (s < top)
+            return null;
+        final Object[] a = array;
+        final long offset = slotOffset(a, s);
+        // 只有最后一个元素可能和窃取者竞争，槽位为 null 或 CAS 失败都说明
+        // 它已经被窃取
+        Object x = U.getObject(a, offset);
+        if (x == null || !U.compareAndSwapObject(a, offset, x, null))
+            return null;
+        U.putOrderedLong(this, BOTTOM, s);
+        return (E) x;
+    }
+
+    /**
+     * 从窃取端取出最早 push 的元素，没有元素时返回 null。可以由任意线程
+     * 调用；CAS 失败说明其他线程取走了这个元素，重试下一个。
+     *
+     * 槽位为 null 而 top 没有变化时：如果它是最后一个元素，说明所有者正在
+     * 取走它，返回 null；否则是另一个窃取者已经取走、还没发布 top，或者
+     * 所有者扩容时还没把它搬到新数组，yield 以后重试。
+     */
+    @SuppressWarnings("unchecked")
+    public E pollLast() {
+        for (;;) {
+            final long t = top;
+            final long b = bottom;
+            if (t >= b)
+                return null;
+            final Object[] a = array;
+            final long offset = slotOffset(a, t);
+            Object x = U.getObjectVolatile(a, offset);
+            if (t != top)
+                continue;
+            if (x != null) {
+                if (U.compareAndSwapObject(a, offset, x, null)) {
+                    top = t + 1;
+                    return (E) x;
+                }
+            } else if (t + 1 == bottom)
+                return null;
+            else
+                Thread.yield();
+        }
+    }
+
+    /**
+     * 从窃取端取出元素，没有元素时等待。
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public E takeLast() throws InterruptedException {
+        E x;
+        int spins = 0;
+        while ((x = pollLast()) == null) {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            if (spins < MAX_SPINS)
+                ++spins;
+            else if (spins < MAX_SPINS + MAX_YIELDS) {
+                ++spins;
+                Thread.yield();
+            } else
+                awaitNotEmpty(MAX_WAIT_NANOS);
+        }
+        return x;
+    }
+
+    /**
+     * 从窃取端取出元素，没有元素时最多等待指定的时间，超时返回 null。
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public E pollLast(long timeout, TimeUnit unit)
+            throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        E x;
+        int spins = 0;
+        while ((x = pollLast()) == null) {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            long nanos = deadline - System.nanoTime();
+            if (nanos <= 0L)
+                return null;
+            if (spins < MAX_SPINS)
+                ++spins;
+            else if (spins < MAX_SPINS + MAX_YIELDS) {
+                ++spins;
+                Thread.yield();
+            } else
+                awaitNotEmpty(Math.min(nanos, MAX_WAIT_NANOS));
+        }
+        return x;
+    }
+
+    /**
+     * 登记到 waiters，队列仍然为空时在 notEmpty 上等待最多 nanos 纳秒。
+     */
+    private void awaitNotEmpty(long nanos) throws InterruptedException {
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            waiters++;
+            try {
+                if (top >= bottom)
+                    notEmpty.awaitNanos(nanos);
+            } finally {
+                waiters--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 唤醒一个等待的窃取者。在 push 里调用。
+     */
+    private void signalNotEmpty() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 返回元素个数的估计值。
+     */
+    public int size() {
+        long n = bottom - top;
+        return (n <= 0L) ? 0 : (int) n;
+    }
+
+    public boolean isEmpty() {
+        return bottom <= top;
+    }
+
+    // Unsafe mechanics
+    private static final sun.misc.Unsafe U;
+    private static final long BOTTOM;
+    private static final long ABASE;
+    private static final int ASHIFT;
+    static {
+        try {
+            U = sun.misc.Unsafe.getUnsafe();
+            BOTTOM = U.objectFieldOffset(WorkStealingDequeBottom.class
+                    .getDeclaredField("bottom"));
+            ABASE = U.arrayBaseOffset(Object[].class);
+            int scale = U.arrayIndexScale(Object[].class);
+            if ((scale & (scale - 1)) != 0)
+                throw new Error("data type scale not a power of two");
+            ASHIFT = 31 - Integer.numberOfLeadingZeros(scale);
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
+
+/*
+ * WorkStealingDeque 的字段和填充，排布方式见 MpmcArrayBlockingQueue。
+ */
+
+abstract class WorkStealingDequePad0 {
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+}
+
+/**
+ * 窃取端的字段。
+ */
+abstract class WorkStealingDequeTop extends WorkStealingDequePad0 {
+    /** 下一个被窃取的位置，只有 CAS 取得该槽位的窃取者推进 */
+    volatile long top;
+}
+
+abstract class WorkStealingDequePad1 extends WorkStealingDequeTop {
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+}
+
+/**
+ * 所有者端的字段。
+ */
+abstract class WorkStealingDequeBottom extends WorkStealingDequePad1 {
+    /** 下一个 push 的位置，只有所有者修改 */
+    volatile long bottom;
+}
+
+abstract class WorkStealingDequePad2 extends WorkStealingDequeBottom {
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+}
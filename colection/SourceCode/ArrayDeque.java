@@ -694,6 +694,151 @@ public class ArrayDeque<E> extends AbstractCollection<E>
         }
     }
 
+    // *** Bulk operations ***
+    // 批量操作。和逐个调用 addLast/pollFirst 相比，下面的方法最多扩容一次，
+    // 并且在循环数组的回绕点两侧各用一次 System.arraycopy 完成复制。
+
+    /**
+     * 确保可以再添加 extra 个元素而不触发 doubleCapacity。容量不够时直接
+     * 分配能容纳 size + extra 个元素的最小的 2 的幂（至少保留一个空槽，
+     * 保证 head == tail 只表示队列为空），只复制一次。
+     */
+    private void ensureCapacityForAdd(int extra) {
+        int size = size();
+        int need = size + extra;
+        if (need < elements.length)
+            return;
+        if (need < 0 || need >= (1 << 30))
+            throw new IllegalStateException("Sorry, deque too big");
+        Object[] a = new Object[Integer.highestOneBit(need) << 1];
+        copyElements(a);
+        elements = a;
+        head = 0;
+        tail = size;
+    }
+
+    /**
+     * 把 a[off, off + len) 按顺序添加到队列尾部，等价于对每个元素调用
+     * addLast，但是最多扩容一次，最多两次 System.arraycopy。
+     *
+     * @throws NullPointerException 如果 a 中有 null 元素，此时队列不会被修改
+     * @throws IndexOutOfBoundsException 如果 off、len 越界
+     */
+    public void addAllLast(E[] a, int off, int len) {
+        if (off < 0 || len < 0 || len > a.length - off)
+            throw new IndexOutOfBoundsException("off: "+off+", len: "+len+
+                    ", length: "+a.length);
+        for (int i = off, end = off + len; i < end; i++) {
+            if (a[i] == null)
+                throw new NullPointerException();
+        }
+        if (len == 0)
+            return;
+        ensureCapacityForAdd(len);
+        final Object[] es = elements;
+        final int t = tail;
+        final int first = Math.min(len, es.length - t);     // 回绕点之前能放下的个数
+        System.arraycopy(a, off, es, t, first);
+        System.arraycopy(a, off + first, es, 0, len - first);
+        tail = (t + len) & (es.length - 1);
+    }
+
+    /**
+     * 从队列头部删除最多 n 个元素，按顺序放进 dst[0, count) 中，返回实际
+     * 删除的个数 count。等价于循环调用 pollFirst，但是最多两次
+     * System.arraycopy 和两次 Arrays.fill。
+     *
+     * @throws IllegalArgumentException 如果 n 为负数
+     * @throws IndexOutOfBoundsException 如果 n 大于 dst.length
+     */
+    public int pollFirst(int n, Object[] dst) {
+        if (n < 0)
+            throw new IllegalArgumentException("n: " + n);
+        if (n > dst.length)
+            throw new IndexOutOfBoundsException("n: "+n+", length: "+dst.length);
+        final Object[] es = elements;
+        final int h = head;
+        final int count = Math.min(n, size());
+        if (count == 0)
+            return 0;
+        final int first = Math.min(count, es.length - h);
+        System.arraycopy(es, h, dst, 0, first);
+        System.arraycopy(es, 0, dst, first, count - first);
+        Arrays.fill(es, h, h + first, null);       // Must null out slots
+        Arrays.fill(es, 0, count - first, null);
+        head = (h + count) & (es.length - 1);
+        return count;
+    }
+
+    /**
+     * 删除第 fromIndex 个（包含）到第 toIndex 个（不包含）元素，下标从队列
+     * 头部开始计数。和 delete 一样，移动被删除区间两侧元素较少的那一边。
+     *
+     * @throws IndexOutOfBoundsException 如果 fromIndex 或 toIndex 越界，
+     *         或者 fromIndex &gt; toIndex
+     */
+    public void removeRange(int fromIndex, int toIndex) {
+        final int size = size();
+        if (fromIndex < 0 || toIndex > size || fromIndex > toIndex)
+            throw new IndexOutOfBoundsException("fromIndex: "+fromIndex+
+                    ", toIndex: "+toIndex+", size: "+size);
+        final int k = toIndex - fromIndex;
+        if (k == 0)
+            return;
+        final Object[] es = elements;
+        final int mask = es.length - 1;
+        final int h = head, t = tail;
+        if (fromIndex < size - toIndex) {
+            // 前面的元素少，[0, fromIndex) 整体后移 k 位，然后清空头部的 k 个槽位
+            circularMove(es, h, (h + k) & mask, fromIndex, true);
+            circularClear(es, h, k);
+            head = (h + k) & mask;
+        } else {
+            // 后面的元素少，[toIndex, size) 整体前移 k 位，然后清空尾部的 k 个槽位
+            int src = (h + toIndex) & mask;
+            circularMove(es, src, (src - k) & mask, size - toIndex, false);
+            circularClear(es, (t - k) & mask, k);
+            tail = (t - k) & mask;
+        }
+    }
+
+    /**
+     * 在循环数组中把从 src 开始的 len 个元素复制到从 dst 开始的位置。每一段
+     * 复制都不跨越 src 或 dst 的回绕点。两个区间可能重叠：元素向后移动
+     * （backward 为 true）时从最后一段开始复制，向前移动时从第一段开始复制，
+     * 这样不会覆盖还没有复制的元素。
+     */
+    private static void circularMove(Object[] es, int src, int dst, int len,
+                                     boolean backward) {
+        final int mask = es.length - 1;
+        if (backward) {
+            while (len > 0) {
+                int s = (src + len - 1) & mask, d = (dst + len - 1) & mask;
+                int n = Math.min(len, Math.min(s, d) + 1);
+                System.arraycopy(es, s - n + 1, es, d - n + 1, n);
+                len -= n;
+            }
+        } else {
+            final int cap = es.length;
+            while (len > 0) {
+                int n = Math.min(len, Math.min(cap - src, cap - dst));
+                System.arraycopy(es, src, es, dst, n);
+                src = (src + n) & mask;
+                dst = (dst + n) & mask;
+                len -= n;
+            }
+        }
+    }
+
+    /**
+     * 把循环数组中从 from 开始的 len 个槽位置为 null，最多两次 Arrays.fill。
+     */
+    private static void circularClear(Object[] es, int from, int len) {
+        final int first = Math.min(len, es.length - from);
+        Arrays.fill(es, from, from + first, null);
+        Arrays.fill(es, 0, len - first, null);
+    }
+
     // *** Collection Methods ***
     // 集合相关的方法
     /**
@@ -1677,4 +1677,186 @@ public class ArrayList<E> extends AbstractList<E>
         }
         modCount++;
     }
+
+    /*
+     * 以下是 sort、replaceAll、removeIf 的并行版本，使用 ForkJoinPool.commonPool()。
+     * 元素个数不超过 PARALLEL_MIN_GRAN，或者公共池只有一个线程时，直接调用
+     * 顺序版本，避免拆分任务的开销。和顺序版本一样，开始时记录 modCount，
+     * 结束时检查，操作成功之后 modCount 加 1。
+     */
+
+    /**
+     * 每个并行子任务至少处理的元素个数，和 Arrays.MIN_ARRAY_SORT_GRAN 相同。
+     * 必须是 64 的倍数，parallelRemoveIf 中每个子任务才能独占位图中的 long。
+     */
+    private static final int PARALLEL_MIN_GRAN = 1 << 13;
+
+    private static boolean useSequential(int size) {
+        return size <= PARALLEL_MIN_GRAN ||
+                java.util.concurrent.ForkJoinPool.getCommonPoolParallelism() == 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    // 根据 Comparator 并行排序。Arrays.parallelSort 把数组切分之后在
+    // ForkJoinPool 中分别排序，再并行归并，是稳定的归并排序。
+    public void parallelSort(Comparator<? super E> c) {
+        final int expectedModCount = modCount;
+        Arrays.parallelSort((E[]) elementData, 0, size, c);
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+        modCount++;
+    }
+
+    // 并行地根据操作符替换列表中所有元素。operator 会被多个线程同时调用，
+    // 调用顺序不确定。
+    public void parallelReplaceAll(UnaryOperator<E> operator) {
+        Objects.requireNonNull(operator);
+        final int size = this.size;
+        if (useSequential(size)) {
+            replaceAll(operator);
+            return;
+        }
+        final int expectedModCount = modCount;
+        new ReplaceAllTask<>(this, operator, 0, size, expectedModCount).invoke();
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+        modCount++;
+    }
+
+    // 并行地删除满足过滤器的元素。filter 会被多个线程同时调用。
+    // 分两个阶段：
+    //  1. 每个子任务对自己负责的一段元素调用 filter，把要删除的下标记录在
+    //     共享的位图中（每段的长度是 64 的倍数，不会写到同一个 long），并
+    //     统计这一段留下的元素个数；
+    //  2. 各个子任务并行地把自己这一段留下的元素原地压缩到段的开头，段与段
+    //     之间互不影响；再由各段留下的个数求前缀和，按顺序把每段压缩后的
+    //     元素整块左移到它在结果中的位置。目标位置不大于源位置，并且不会超过
+    //     前一段压缩后的末尾，所以从左到右 System.arraycopy 是安全的，不需要
+    //     另外分配数组。
+    // 和 removeIf 一样，filter 抛出异常时列表不会被修改。
+    public boolean parallelRemoveIf(Predicate<? super E> filter) {
+        Objects.requireNonNull(filter);
+        final int size = this.size;
+        if (useSequential(size))
+            return removeIf(filter);
+        final int expectedModCount = modCount;
+        final int chunks = (size + PARALLEL_MIN_GRAN - 1) / PARALLEL_MIN_GRAN;
+        final long[] removeSet = new long[(size + 63) >>> 6];
+        final int[] offsets = new int[chunks + 1];
+        new RemoveIfTask<>(this, filter, removeSet, offsets, 0, chunks,
+                size, expectedModCount, false).invoke();
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+
+        // offsets[k + 1] 此时是第 k 段留下的个数，求前缀和之后 offsets[k]
+        // 是第 k 段在结果中的起始位置
+        for (int k = 0; k < chunks; k++)
+            offsets[k + 1] += offsets[k];
+        final int newSize = offsets[chunks];
+        final boolean anyToRemove = newSize < size;
+        if (anyToRemove) {
+            new RemoveIfTask<>(this, filter, removeSet, offsets, 0, chunks,
+                    size, expectedModCount, true).invoke();
+            final Object[] es = elementData;
+            for (int k = 1; k < chunks; k++) {
+                int from = k * PARALLEL_MIN_GRAN, to = offsets[k];
+                if (from != to)
+                    System.arraycopy(es, from, es, to, offsets[k + 1] - to);
+            }
+            Arrays.fill(es, newSize, size, null);
+            this.size = newSize;
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            modCount++;
+        }
+
+        return anyToRemove;
+    }
+
+    // parallelReplaceAll 的子任务，负责 [lo, hi)
+    static final class ReplaceAllTask<E> extends java.util.concurrent.RecursiveAction {
+        private static final long serialVersionUID = 4139327451716298742L;
+        final ArrayList<E> list;
+        final UnaryOperator<E> operator;
+        final int lo, hi, expectedModCount;
+
+        ReplaceAllTask(ArrayList<E> list, UnaryOperator<E> operator,
+                       int lo, int hi, int expectedModCount) {
+            this.list = list; this.operator = operator;
+            this.lo = lo; this.hi = hi;
+            this.expectedModCount = expectedModCount;
+        }
+
+        @SuppressWarnings("unchecked")
+        protected void compute() {
+            if (hi - lo > PARALLEL_MIN_GRAN) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new ReplaceAllTask<>(list, operator, lo, mid, expectedModCount),
+                          new ReplaceAllTask<>(list, operator, mid, hi, expectedModCount));
+                return;
+            }
+            final Object[] es = list.elementData;
+            for (int i = lo; list.modCount == expectedModCount && i < hi; i++)
+                es[i] = operator.apply((E) es[i]);
+        }
+    }
+
+    // parallelRemoveIf 的子任务，负责第 [lo, hi) 段。compact 为 false 时执行
+    // 第一阶段（标记），为 true 时把每段留下的元素原地压缩到段的开头。
+    static final class RemoveIfTask<E> extends java.util.concurrent.RecursiveAction {
+        private static final long serialVersionUID = -3571069925162618711L;
+        final ArrayList<E> list;
+        final Predicate<? super E> filter;
+        final long[] removeSet;
+        final int[] offsets;
+        final int lo, hi, size, expectedModCount;
+        final boolean compact;
+
+        RemoveIfTask(ArrayList<E> list, Predicate<? super E> filter,
+                     long[] removeSet, int[] offsets, int lo, int hi,
+                     int size, int expectedModCount, boolean compact) {
+            this.list = list; this.filter = filter;
+            this.removeSet = removeSet; this.offsets = offsets;
+            this.lo = lo; this.hi = hi; this.size = size;
+            this.expectedModCount = expectedModCount;
+            this.compact = compact;
+        }
+
+        @SuppressWarnings("unchecked")
+        protected void compute() {
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                RemoveIfTask<E> left = new RemoveIfTask<>(list, filter, removeSet,
+                        offsets, lo, mid, size, expectedModCount, compact);
+                RemoveIfTask<E> right = new RemoveIfTask<>(list, filter, removeSet,
+                        offsets, mid, hi, size, expectedModCount, compact);
+                invokeAll(left, right);
+                return;
+            }
+            final Object[] es = list.elementData;
+            final long[] bits = removeSet;
+            final int from = lo * PARALLEL_MIN_GRAN;
+            final int to = Math.min(from + PARALLEL_MIN_GRAN, size);
+            if (!compact) {
+                int kept = 0;
+                for (int i = from; list.modCount == expectedModCount && i < to; i++) {
+                    if (filter.test((E) es[i]))
+                        bits[i >>> 6] |= 1L << i;
+                    else
+                        kept++;
+                }
+                offsets[lo + 1] = kept;
+            } else {
+                int j = from;
+                for (int i = from; i < to; i++) {
+                    if ((bits[i >>> 6] & (1L << i)) == 0L)
+                        es[j++] = es[i];
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,746 @@
+package java.util;
+
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * 分段存储的数组列表，扩容时从不复制已有的元素。
+ *
+ * ArrayList 的元素存放在一个连续的 Object[] 中，容量不够时 grow 会用
+ * Arrays.copyOf 分配一个 1.5 倍大的新数组，再把所有元素复制过去。列表有
+ * 上亿个元素时，每次扩容都要临时分配几个 GB 的连续内存，在 G1 中这些都是
+ * 巨型对象（humongous object），会频繁触发并发标记甚至 Full GC。
+ *
+ * 此类把元素存放在很多个长度固定为 2 的幂（chunkSize）的小数组（chunk）中，
+ * chunks 是这些小数组组成的目录：
+ *  - 第 i 个元素在 chunks[i &gt;&gt;&gt; chunkShift][i &amp; chunkMask]，
+ *    get/set 只是两次移位和与运算，所以此类实现了 RandomAccess；
+ *  - 末尾添加元素时，当前 chunk 满了就分配一个新的 chunk，已有的元素不会
+ *    被移动，每次分配的大小都是 chunkSize；
+ *  - 只有目录本身会在不够时翻倍复制，但目录的长度只有元素个数的
+ *    1 / chunkSize，复制的代价可以忽略。
+ *
+ * 在中间插入、删除元素时，仍然要像 ArrayList 一样移动后面的所有元素，只是
+ * System.arraycopy 要按 chunk 分段进行（见 moveRange）。
+ *
+ * spliterator 按照 chunk 的边界切分，切分出的每一段都是若干个完整的 chunk，
+ * 遍历时不需要跨 chunk 计算下标。
+ *
+ * 和 ArrayList 一样，此类允许 null 元素，不是线程安全的，iterator、
+ * spliterator、forEach 都是 fail-fast 的。
+ *
+ * @param <E> the type of elements in this list
+ * @see ArrayList
+ */
+public class ChunkedArrayList<E> extends AbstractList<E>
+        implements List<E>, RandomAccess, Cloneable, java.io.Serializable {
+
+    private static final long serialVersionUID = 6520463582750312794L;
+
+    /** 默认的 chunk 大小为 2^12 = 4096 个元素（引用压缩时 16KB）。 */
+    static final int DEFAULT_CHUNK_SHIFT = 12;
+
+    /** chunk 最大为 2^24 个元素，再大就失去了分段的意义。 */
+    static final int MAX_CHUNK_SHIFT = 24;
+
+    /** 目录的初始长度。 */
+    private static final int INITIAL_DIRECTORY_SIZE = 4;
+
+    private static final Object[][] EMPTY_DIRECTORY = {};
+
+    /** chunk 大小的以 2 为底的对数。 */
+    final int chunkShift;
+
+    /** chunkSize - 1。 */
+    final int chunkMask;
+
+    /**
+     * chunk 目录，只有前 chunkCount 个位置上有 chunk，每个 chunk 的长度
+     * 都是 chunkSize。
+     */
+    transient Object[][] chunks;
+
+    /** 已经分配的 chunk 个数，容量为 chunkCount &lt;&lt; chunkShift。 */
+    transient int chunkCount;
+
+    /** 元素的个数。 */
+    private int size;
+
+    /**
+     * 构造一个使用默认 chunk 大小（4096）的空列表。
+     */
+    public ChunkedArrayList() {
+        this(1 << DEFAULT_CHUNK_SHIFT);
+    }
+
+    /**
+     * 构造一个空列表，每个 chunk 可以存放 chunkSize 个元素。chunkSize 会被
+     * 向上取整为 2 的幂。
+     *
+     * @throws IllegalArgumentException 如果 chunkSize 不是正数或者大于 2^24
+     */
+    public ChunkedArrayList(int chunkSize) {
+        if (chunkSize <= 0 || chunkSize > (1 << MAX_CHUNK_SHIFT))
+            throw new IllegalArgumentException("Illegal chunk size: " +
+                    chunkSize);
+        int shift = 32 - Integer.numberOfLeadingZeros(chunkSize - 1);
+        this.chunkShift = shift;
+        this.chunkMask = (1 << shift) - 1;
+        this.chunks = EMPTY_DIRECTORY;
+    }
+
+    /**
+     * 构造一个使用默认 chunk 大小、包含 c 中所有元素的列表，顺序和 c 的
+     * 迭代器返回的顺序相同。
+     *
+     * @throws NullPointerException 如果 c 为 null
+     */
+    public ChunkedArrayList(Collection<? extends E> c) {
+        this();
+        addAll(c);
+    }
+
+    /**
+     * 返回每个 chunk 可以存放的元素个数。
+     */
+    public int chunkSize() {
+        return chunkMask + 1;
+    }
+
+    /**
+     * 当前的容量，即已经分配的 chunk 可以存放的元素个数。
+     */
+    final long capacity() {
+        return (long)chunkCount << chunkShift;
+    }
+
+    /**
+     * 如果有需要，分配新的 chunk 以确保至少可以容纳 minCapacity 个元素。
+     */
+    public void ensureCapacity(int minCapacity) {
+        if (minCapacity > 0) {
+            modCount++;
+            ensureCapacityInternal(minCapacity);
+        }
+    }
+
+    /**
+     * 分配 chunk 直到容量不小于 minCapacity。已有的 chunk 不会被复制，
+     * 目录不够时翻倍。
+     */
+    private void ensureCapacityInternal(int minCapacity) {
+        if (minCapacity < 0) // overflow
+            throw new OutOfMemoryError();
+        int need = (int)(((long)minCapacity + chunkMask) >>> chunkShift);
+        if (need <= chunkCount)
+            return;
+        Object[][] dir = chunks;
+        if (need > dir.length) {
+            int newLength = Math.max(need,
+                    Math.max(INITIAL_DIRECTORY_SIZE, dir.length << 1));
+            chunks = dir = Arrays.copyOf(dir, newLength);
+        }
+        int chunkSize = chunkMask + 1;
+        for (int c = chunkCount; c < need; c++)
+            dir[c] = new Object[chunkSize];
+        chunkCount = need;
+    }
+
+    /**
+     * 释放末尾没有使用的 chunk，并把目录缩小到刚好容纳剩下的 chunk。
+     */
+    public void trimToSize() {
+        modCount++;
+        int need = (int)(((long)size + chunkMask) >>> chunkShift);
+        if (need < chunks.length) {
+            chunks = (need == 0) ? EMPTY_DIRECTORY : Arrays.copyOf(chunks, need);
+            chunkCount = need;
+        }
+    }
+
+    // 查询操作
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    /**
+     * 返回 o 第一次出现的下标，不存在返回 -1。逐个 chunk 线性查找。
+     */
+    public int indexOf(Object o) {
+        Object[][] dir = chunks;
+        int chunkSize = chunkMask + 1;
+        for (int c = 0, base = 0; base < size; c++, base += chunkSize) {
+            Object[] chunk = dir[c];
+            int end = Math.min(chunkSize, size - base);
+            if (o == null) {
+                for (int j = 0; j < end; j++)
+                    if (chunk[j] == null)
+                        return base + j;
+            } else {
+                for (int j = 0; j < end; j++)
+                    if (o.equals(chunk[j]))
+                        return base + j;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 返回 o 最后一次出现的下标，不存在返回 -1。
+     */
+    public int lastIndexOf(Object o) {
+        Object[][] dir = chunks;
+        int shift = chunkShift, mask = chunkMask;
+        for (int i = size - 1; i >= 0; i--) {
+            Object e = dir[i >>> shift][i & mask];
+            if (o == null ? e == null : o.equals(e))
+                return i;
+        }
+        return -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    E elementData(int index) {
+        return (E) chunks[index >>> chunkShift][index & chunkMask];
+    }
+
+    /**
+     * 返回指定位置的元素。
+     *
+     * @throws IndexOutOfBoundsException 如果 index 越界
+     */
+    public E get(int index) {
+        rangeCheck(index);
+        return elementData(index);
+    }
+
+    /**
+     * 替换指定位置的元素，返回原来的元素。
+     *
+     * @throws IndexOutOfBoundsException 如果 index 越界
+     */
+    public E set(int index, E element) {
+        rangeCheck(index);
+        Object[] chunk = chunks[index >>> chunkShift];
+        int j = index & chunkMask;
+        @SuppressWarnings("unchecked") E oldValue = (E) chunk[j];
+        chunk[j] = element;
+        return oldValue;
+    }
+
+    public Object[] toArray() {
+        Object[] r = new Object[size];
+        copyOut(0, r, size);
+        return r;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T[] toArray(T[] a) {
+        if (a.length < size)
+            a = (T[]) java.lang.reflect.Array.newInstance(
+                    a.getClass().getComponentType(), size);
+        copyOut(0, a, size);
+        if (a.length > size)
+            a[size] = null;
+        return a;
+    }
+
+    /**
+     * 把 [from, from + len) 之间的元素按 chunk 分段复制到 dst[0, len)。
+     */
+    private void copyOut(int from, Object[] dst, int len) {
+        Object[][] dir = chunks;
+        int chunkSize = chunkMask + 1;
+        for (int d = 0; d < len; ) {
+            int i = from + d;
+            int j = i & chunkMask;
+            int n = Math.min(chunkSize - j, len - d);
+            System.arraycopy(dir[i >>> chunkShift], j, dst, d, n);
+            d += n;
+        }
+    }
+
+    // 修改操作
+
+    /**
+     * 把元素添加到列表末尾。当前 chunk 满了才会分配一个新的 chunk。
+     */
+    public boolean add(E e) {
+        modCount++;
+        int s = size;
+        if (s == capacity())
+            ensureCapacityInternal(s + 1);
+        chunks[s >>> chunkShift][s & chunkMask] = e;
+        size = s + 1;
+        return true;
+    }
+
+    /**
+     * 把元素插入到指定位置，原来在这个位置及之后的元素右移一位。
+     *
+     * @throws IndexOutOfBoundsException 如果 index 越界
+     */
+    public void add(int index, E element) {
+        rangeCheckForAdd(index);
+        modCount++;
+        ensureCapacityInternal(size + 1);
+        moveRange(index, index + 1, size - index);
+        chunks[index >>> chunkShift][index & chunkMask] = element;
+        size++;
+    }
+
+    /**
+     * 把 c 中所有元素按顺序添加到列表末尾。先一次分配好需要的 chunk，
+     * 再按 chunk 分段复制。
+     */
+    public boolean addAll(Collection<? extends E> c) {
+        Object[] a = c.toArray();
+        int numNew = a.length;
+        modCount++;
+        if (numNew == 0)
+            return false;
+        ensureCapacityInternal(size + numNew);
+        copyIn(a, size, numNew);
+        size += numNew;
+        return true;
+    }
+
+    /**
+     * 把 c 中所有元素按顺序插入到指定位置。
+     *
+     * @throws IndexOutOfBoundsException 如果 index 越界
+     */
+    public boolean addAll(int index, Collection<? extends E> c) {
+        rangeCheckForAdd(index);
+        Object[] a = c.toArray();
+        int numNew = a.length;
+        modCount++;
+        if (numNew == 0)
+            return false;
+        ensureCapacityInternal(size + numNew);
+        moveRange(index, index + numNew, size - index);
+        copyIn(a, index, numNew);
+        size += numNew;
+        return true;
+    }
+
+    /**
+     * 把 src[0, len) 按 chunk 分段复制到 [to, to + len)。
+     */
+    private void copyIn(Object[] src, int to, int len) {
+        Object[][] dir = chunks;
+        int chunkSize = chunkMask + 1;
+        for (int d = 0; d < len; ) {
+            int i = to + d;
+            int j = i & chunkMask;
+            int n = Math.min(chunkSize - j, len - d);
+            System.arraycopy(src, d, dir[i >>> chunkShift], j, n);
+            d += n;
+        }
+    }
+
+    /**
+     * 把 [from, from + len) 之间的元素移动到 [to, to + len)，相当于跨 chunk
+     * 的 System.arraycopy。两个区间可以重叠：向后移动时从末尾开始复制，
+     * 向前移动时从开头开始复制，每一次复制的片段都不会跨越源或目标的
+     * chunk 边界。
+     */
+    private void moveRange(int from, int to, int len) {
+        if (len <= 0 || from == to)
+            return;
+        Object[][] dir = chunks;
+        int shift = chunkShift, mask = chunkMask;
+        if (to > from) {
+            // 向后移动，从末尾开始
+            int end = len;
+            while (end > 0) {
+                int s = from + end - 1, d = to + end - 1;
+                int n = Math.min(Math.min((s & mask) + 1, (d & mask) + 1), end);
+                System.arraycopy(dir[s >>> shift], (s & mask) - n + 1,
+                        dir[d >>> shift], (d & mask) - n + 1, n);
+                end -= n;
+            }
+        } else {
+            int chunkSize = mask + 1;
+            for (int k = 0; k < len; ) {
+                int s = from + k, d = to + k;
+                int n = Math.min(Math.min(chunkSize - (s & mask),
+                        chunkSize - (d & mask)), len - k);
+                System.arraycopy(dir[s >>> shift], s & mask,
+                        dir[d >>> shift], d & mask, n);
+                k += n;
+            }
+        }
+    }
+
+    /**
+     * 把 [from, to) 之间的引用置为 null，帮助 GC。
+     */
+    private void clearRange(int from, int to) {
+        Object[][] dir = chunks;
+        int chunkSize = chunkMask + 1;
+        for (int i = from; i < to; ) {
+            int j = i & chunkMask;
+            int n = Math.min(chunkSize - j, to - i);
+            Arrays.fill(dir[i >>> chunkShift], j, j + n, null);
+            i += n;
+        }
+    }
+
+    /**
+     * 删除指定位置的元素，后面的元素左移一位，返回被删除的元素。
+     *
+     * @throws IndexOutOfBoundsException 如果 index 越界
+     */
+    public E remove(int index) {
+        rangeCheck(index);
+
+        modCount++;
+        E oldValue = elementData(index);
+        moveRange(index + 1, index, size - index - 1);
+        int last = --size;
+        chunks[last >>> chunkShift][last & chunkMask] = null; // clear to let GC do its work
+        return oldValue;
+    }
+
+    /**
+     * 删除第一个等于 o 的元素，存在时返回 true。
+     */
+    public boolean remove(Object o) {
+        int index = indexOf(o);
+        if (index < 0)
+            return false;
+        remove(index);
+        return true;
+    }
+
+    /**
+     * 删除所有元素。已经分配的 chunk 会保留下来供之后使用，需要释放时
+     * 调用 trimToSize。
+     */
+    public void clear() {
+        modCount++;
+        clearRange(0, size);
+        size = 0;
+    }
+
+    /**
+     * 删除 [fromIndex, toIndex) 之间的元素。
+     */
+    protected void removeRange(int fromIndex, int toIndex) {
+        modCount++;
+        int newSize = size - (toIndex - fromIndex);
+        moveRange(toIndex, fromIndex, size - toIndex);
+        clearRange(newSize, size);
+        size = newSize;
+    }
+
+    /**
+     * 删除所有满足 filter 的元素。先用 BitSet 记录要删除的下标，再把留下的
+     * 元素依次往前挪，和 ArrayList.removeIf 相同。
+     */
+    @Override
+    public boolean removeIf(Predicate<? super E> filter) {
+        Objects.requireNonNull(filter);
+        int removeCount = 0;
+        final int size = this.size;
+        final BitSet removeSet = new BitSet(size);
+        final int expectedModCount = modCount;
+        for (int i=0; modCount == expectedModCount && i < size; i++) {
+            if (filter.test(elementData(i))) {
+                removeSet.set(i);
+                removeCount++;
+            }
+        }
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+
+        final boolean anyToRemove = removeCount > 0;
+        if (anyToRemove) {
+            final int newSize = size - removeCount;
+            Object[][] dir = chunks;
+            int shift = chunkShift, mask = chunkMask;
+            for (int i=0, j=0; (i < size) && (j < newSize); i++, j++) {
+                i = removeSet.nextClearBit(i);
+                dir[j >>> shift][j & mask] = dir[i >>> shift][i & mask];
+            }
+            clearRange(newSize, size);
+            this.size = newSize;
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            modCount++;
+        }
+
+        return anyToRemove;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void replaceAll(UnaryOperator<E> operator) {
+        Objects.requireNonNull(operator);
+        final int expectedModCount = modCount;
+        final int size = this.size;
+        Object[][] dir = chunks;
+        int chunkSize = chunkMask + 1;
+        for (int c = 0, base = 0; modCount == expectedModCount && base < size;
+             c++, base += chunkSize) {
+            Object[] chunk = dir[c];
+            int end = Math.min(chunkSize, size - base);
+            for (int j = 0; modCount == expectedModCount && j < end; j++)
+                chunk[j] = operator.apply((E) chunk[j]);
+        }
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+        modCount++;
+    }
+
+    /**
+     * 排序。元素分散在多个 chunk 中，不能直接交给 Arrays.sort，所以先复制到
+     * 一个临时数组中排序，再按 chunk 复制回来。
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void sort(Comparator<? super E> c) {
+        final int expectedModCount = modCount;
+        Object[] a = toArray();
+        Arrays.sort((E[]) a, c);
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+        copyIn(a, 0, a.length);
+        modCount++;
+    }
+
+    // 下标检查
+
+    private void rangeCheck(int index) {
+        if (index >= size)
+            throw new IndexOutOfBoundsException(outOfBoundsMsg(index));
+    }
+
+    private void rangeCheckForAdd(int index) {
+        if (index > size || index < 0)
+            throw new IndexOutOfBoundsException(outOfBoundsMsg(index));
+    }
+
+    private String outOfBoundsMsg(int index) {
+        return "Index: "+index+", Size: "+size;
+    }
+
+    // 遍历
+
+    /**
+     * 按顺序对每个元素执行 action，按 chunk 遍历，内层循环没有下标换算。
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(Consumer<? super E> action) {
+        Objects.requireNonNull(action);
+        final int expectedModCount = modCount;
+        final int size = this.size;
+        Object[][] dir = chunks;
+        int chunkSize = chunkMask + 1;
+        for (int c = 0, base = 0; modCount == expectedModCount && base < size;
+             c++, base += chunkSize) {
+            Object[] chunk = dir[c];
+            int end = Math.min(chunkSize, size - base);
+            for (int j = 0; modCount == expectedModCount && j < end; j++)
+                action.accept((E) chunk[j]);
+        }
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    /**
+     * 返回按 chunk 边界切分的 Spliterator，特征值为 ORDERED、SIZED 和
+     * SUBSIZED。
+     */
+    @Override
+    public Spliterator<E> spliterator() {
+        return new ChunkedSpliterator<>(this, 0, -1, 0);
+    }
+
+    /**
+     * 由 ArrayList.ArrayListSpliterator 改写：fence 和 expectedModCount
+     * 同样延迟初始化；trySplit 把中点对齐到 chunk 边界，只有范围落在同一个
+     * chunk 里时才按元素二分。
+     */
+    static final class ChunkedSpliterator<E> implements Spliterator<E> {
+        private final ChunkedArrayList<E> list;
+        private int index; // current index, modified on advance/split
+        private int fence; // -1 until used; then one past last index
+        private int expectedModCount; // initialized when fence set
+
+        ChunkedSpliterator(ChunkedArrayList<E> list, int origin, int fence,
+                           int expectedModCount) {
+            this.list = list;
+            this.index = origin;
+            this.fence = fence;
+            this.expectedModCount = expectedModCount;
+        }
+
+        private int getFence() { // initialize fence to size on first use
+            int hi;
+            ChunkedArrayList<E> lst;
+            if ((hi = fence) < 0) {
+                if ((lst = list) == null)
+                    hi = fence = 0;
+                else {
+                    expectedModCount = lst.modCount;
+                    hi = fence = lst.size;
+                }
+            }
+            return hi;
+        }
+
+        public ChunkedSpliterator<E> trySplit() {
+            int hi = getFence(), lo = index, mid = (lo + hi) >>> 1;
+            if (list != null) {
+                // 中点向下对齐到 chunk 边界，对齐之后为空时再向上对齐
+                int mask = list.chunkMask;
+                int aligned = mid & ~mask;
+                if (aligned <= lo)
+                    aligned = (mid + mask) & ~mask;
+                if (aligned > lo && aligned < hi)
+                    mid = aligned;
+            }
+            return (lo >= mid) ? null : // divide range in half unless too small
+                    new ChunkedSpliterator<E>(list, lo, index = mid,
+                            expectedModCount);
+        }
+
+        public boolean tryAdvance(Consumer<? super E> action) {
+            if (action == null)
+                throw new NullPointerException();
+            int hi = getFence(), i = index;
+            if (i < hi) {
+                index = i + 1;
+                E e = list.elementData(i);
+                action.accept(e);
+                if (list.modCount != expectedModCount)
+                    throw new ConcurrentModificationException();
+                return true;
+            }
+            return false;
+        }
+
+        @SuppressWarnings("unchecked")
+        public void forEachRemaining(Consumer<? super E> action) {
+            int i, hi, mc; // hoist accesses and checks from loop
+            ChunkedArrayList<E> lst; Object[][] dir;
+            if (action == null)
+                throw new NullPointerException();
+            if ((lst = list) != null && (dir = lst.chunks) != null) {
+                if ((hi = fence) < 0) {
+                    mc = lst.modCount;
+                    hi = lst.size;
+                }
+                else
+                    mc = expectedModCount;
+                int shift = lst.chunkShift, mask = lst.chunkMask;
+                if ((i = index) >= 0 && (index = hi) <= lst.capacity()) {
+                    // 每次处理一个 chunk 中的一段
+                    while (i < hi) {
+                        Object[] chunk = dir[i >>> shift];
+                        int j = i & mask;
+                        int end = Math.min(mask + 1, j + (hi - i));
+                        i += end - j;
+                        for (; j < end; j++)
+                            action.accept((E) chunk[j]);
+                    }
+                    if (lst.modCount == mc)
+                        return;
+                }
+            }
+            throw new ConcurrentModificationException();
+        }
+
+        public long estimateSize() {
+            return (long) (getFence() - index);
+        }
+
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED;
+        }
+    }
+
+    // Object 方法
+
+    /**
+     * 返回浅拷贝：每个 chunk 都会被复制，元素本身不会。
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public ChunkedArrayList<E> clone() {
+        try {
+            ChunkedArrayList<E> v = (ChunkedArrayList<E>) super.clone();
+            int n = (int)(((long)size + chunkMask) >>> chunkShift);
+            Object[][] dir = new Object[n][];
+            for (int c = 0; c < n; c++)
+                dir[c] = chunks[c].clone();
+            v.chunks = (n == 0) ? EMPTY_DIRECTORY : dir;
+            v.chunkCount = n;
+            v.modCount = 0;
+            return v;
+        } catch (CloneNotSupportedException e) {
+            // this shouldn't happen, since we are Cloneable
+            throw new InternalError(e);
+        }
+    }
+
+    /**
+     * 把列表保存到流中（序列化）。
+     *
+     * @serialData 先写入 chunkShift 和元素个数（默认序列化的字段），
+     *             然后按顺序写入所有元素。
+     */
+    private void writeObject(java.io.ObjectOutputStream s)
+            throws java.io.IOException{
+        int expectedModCount = modCount;
+        s.defaultWriteObject();
+
+        for (int i=0; i<size; i++) {
+            s.writeObject(elementData(i));
+        }
+
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    /**
+     * 从流中恢复列表（反序列化）。
+     */
+    private void readObject(java.io.ObjectInputStream s)
+            throws java.io.IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        if (chunkShift < 0 || chunkShift > MAX_CHUNK_SHIFT ||
+                chunkMask != (1 << chunkShift) - 1)
+            throw new java.io.InvalidObjectException("Illegal chunk size");
+        int n = size;
+        if (n < 0)
+            throw new java.io.InvalidObjectException("Illegal size: " + n);
+        chunks = EMPTY_DIRECTORY;
+        chunkCount = 0;
+        size = 0;
+        ensureCapacityInternal(n);
+        for (int i=0; i<n; i++) {
+            chunks[i >>> chunkShift][i & chunkMask] = s.readObject();
+        }
+        size = n;
+    }
+}
@@ -0,0 +1,605 @@
+package java.util;
+
+import java.util.function.BiConsumer;
+
+/**
+ * 用平行数组代替节点对象实现的 LinkedHashMap，主要用作 LRU 缓存。
+ *
+ * LinkedHashMap 的每个映射都是一个 LinkedHashMap.Entry 对象：对象头加上
+ * hash、key、value、next、before、after 六个字段，在开启压缩指针的 64 位
+ * JVM 上每个映射大约要 40 多个字节的额外开销，缓存几百万个映射时既占内存
+ * 又给 GC 增加了大量要扫描的对象。此类把这些字段拆成按槽位下标访问的平行
+ * 数组：
+ * <pre>
+ *   Object[] keys, vals;   键和值
+ *   int[] hashes;          HashMap.hash(key)
+ *   int[] next;            同一个桶里的下一个槽位（空闲时串成空闲链表）
+ *   int[] before, after;   双向链表中的前后槽位
+ *   int[] buckets;         桶数组，保存桶中第一个槽位
+ * </pre>
+ * 所有的"引用"都是 int 下标，-1 表示空（NIL）。不管有多少映射，堆上都只有
+ * 这几个数组。
+ *
+ * 语义和 LinkedHashMap 相同：
+ *  - accessOrder 为 false 时按插入顺序迭代，为 true 时按访问顺序迭代
+ *    （get/put 已存在的 key 等操作会把映射移到链表末尾）；
+ *  - 插入新映射之后调用 removeEldestEntry，返回 true 时删除链表头部（最久
+ *    没有被访问）的映射，重写它就可以得到一个 LRU 缓存；
+ *  - 内部通过 afterNodeAccess、afterNodeInsertion、afterNodeRemoval 三个
+ *    钩子维护链表，含义和 LinkedHashMap 中的同名方法一致，只是参数是槽位下标。
+ *
+ * 映射数达到阈值时，桶数组和所有平行数组一起扩容为原来的两倍。槽位数组的
+ * 长度等于阈值（桶数 * 负载因子），不会为空桶预留槽位。
+ *
+ * 迭代器和 entrySet 返回的 Map.Entry 直接读写槽位，在 map 被结构性修改
+ * （包括访问顺序模式下的 get）之后不应该再使用。迭代器是 fail-fast 的。
+ * 此类不是线程安全的。
+ *
+ * @param <K> the type of keys maintained by this map
+ * @param <V> the type of mapped values
+ * @see LinkedHashMap
+ */
+public class CompactLinkedHashMap<K,V> extends AbstractMap<K,V>
+        implements Map<K,V>, Cloneable {
+
+    /** 空下标。 */
+    static final int NIL = -1;
+
+    /** 桶数组，保存每个桶中第一个槽位，第一次使用时才分配。 */
+    transient int[] buckets;
+
+    /** 每个槽位的 hash。 */
+    transient int[] hashes;
+
+    /** 同一个桶中的下一个槽位；空闲槽位用它串成空闲链表。 */
+    transient int[] next;
+
+    /** 双向链表中的前一个、后一个槽位。 */
+    transient int[] before, after;
+
+    /** 每个槽位的键和值。 */
+    transient Object[] keys, vals;
+
+    /** 双向链表的头（最老的映射）和尾（最新的映射）。 */
+    transient int head = NIL, tail = NIL;
+
+    /** 空闲链表的头。 */
+    transient int free = NIL;
+
+    /** 从来没有使用过的第一个槽位，小于它的槽位要么在使用，要么在空闲链表中。 */
+    transient int unused;
+
+    /** 映射的个数。 */
+    transient int size;
+
+    /** 结构修改次数，用于 fail-fast。 */
+    transient int modCount;
+
+    /**
+     * 扩容阈值，等于槽位数组的长度。buckets 还没有分配时保存初始桶数。
+     */
+    int threshold;
+
+    /** 负载因子。 */
+    final float loadFactor;
+
+    /** true 表示按访问顺序，false 表示按插入顺序。 */
+    final boolean accessOrder;
+
+    transient Set<Map.Entry<K,V>> entrySet;
+
+    /** 传给 removeEldestEntry 的视图，每次插入复用，见 afterNodeInsertion。 */
+    transient SlotEntry eldestView;
+
+    /**
+     * 使用指定的初始容量、负载因子和顺序模式构造一个空的 map。
+     *
+     * @param initialCapacity the initial capacity
+     * @param loadFactor the load factor
+     * @param accessOrder true 表示按访问顺序，false 表示按插入顺序
+     * @throws IllegalArgumentException if the initial capacity is negative
+     *         or the load factor is nonpositive
+     */
+    public CompactLinkedHashMap(int initialCapacity, float loadFactor,
+                                boolean accessOrder) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal initial capacity: " +
+                    initialCapacity);
+        if (initialCapacity > HashMap.MAXIMUM_CAPACITY)
+            initialCapacity = HashMap.MAXIMUM_CAPACITY;
+        if (loadFactor <= 0 || Float.isNaN(loadFactor))
+            throw new IllegalArgumentException("Illegal load factor: " +
+                    loadFactor);
+        this.loadFactor = loadFactor;
+        this.accessOrder = accessOrder;
+        this.threshold = HashMap.tableSizeFor(initialCapacity);
+    }
+
+    /**
+     * 使用指定的初始容量和默认负载因子（0.75）构造一个按插入顺序的空 map。
+     */
+    public CompactLinkedHashMap(int initialCapacity) {
+        this(initialCapacity, HashMap.DEFAULT_LOAD_FACTOR, false);
+    }
+
+    /**
+     * 使用默认初始容量（16）和默认负载因子（0.75）构造一个按插入顺序的空 map。
+     */
+    public CompactLinkedHashMap() {
+        this.loadFactor = HashMap.DEFAULT_LOAD_FACTOR;
+        this.accessOrder = false;
+    }
+
+    /**
+     * 构造一个按插入顺序、包含 m 中所有映射的 map。
+     */
+    public CompactLinkedHashMap(Map<? extends K, ? extends V> m) {
+        this(Math.max((int)(m.size() / HashMap.DEFAULT_LOAD_FACTOR) + 1,
+                HashMap.DEFAULT_INITIAL_CAPACITY),
+                HashMap.DEFAULT_LOAD_FACTOR, false);
+        putAll(m);
+    }
+
+    /* ---------------- Internal -------------- */
+
+    /**
+     * 查找 key 所在的槽位，找不到返回 NIL。
+     */
+    final int indexOf(Object key) {
+        int[] tab; int i; Object k;
+        if ((tab = buckets) == null)
+            return NIL;
+        int hash = HashMap.hash(key);
+        for (i = tab[hash & (tab.length - 1)]; i != NIL; i = next[i]) {
+            if (hashes[i] == hash &&
+                    ((k = keys[i]) == key || (key != null && key.equals(k))))
+                return i;
+        }
+        return NIL;
+    }
+
+    /**
+     * 初始化或者加倍桶数组，槽位数组随之扩容到新的阈值。和 HashMap.resize
+     * 不同，不需要拆分链表：直接按双向链表的顺序把所有槽位重新挂到新的桶上。
+     */
+    final void resize() {
+        int[] oldTab = buckets;
+        int oldCap = (oldTab == null) ? 0 : oldTab.length;
+        int newCap, newThr;
+        if (oldCap > 0) {
+            if (oldCap >= HashMap.MAXIMUM_CAPACITY) {
+                if (threshold == Integer.MAX_VALUE)
+                    throw new IllegalStateException("Map too big");
+                newThr = Integer.MAX_VALUE;
+                newCap = oldCap;
+            }
+            else {
+                newCap = oldCap << 1;
+                // 桶数很小时 slotsFor 可能不变（例如 1 和 2 都是 1 个槽位），
+                // 槽位数必须严格增加，否则扩容以后仍然放不下新映射
+                newThr = Math.max(slotsFor(newCap), threshold + 1);
+            }
+        }
+        else {
+            newCap = (threshold > 0) ? threshold : HashMap.DEFAULT_INITIAL_CAPACITY;
+            newThr = slotsFor(newCap);
+        }
+        threshold = newThr;
+        int slots = (newThr == Integer.MAX_VALUE) ? Integer.MAX_VALUE - 8 : newThr;
+        if (oldTab == null) {
+            hashes = new int[slots];
+            next = new int[slots];
+            before = new int[slots];
+            after = new int[slots];
+            keys = new Object[slots];
+            vals = new Object[slots];
+        }
+        else {
+            hashes = Arrays.copyOf(hashes, slots);
+            next = Arrays.copyOf(next, slots);
+            before = Arrays.copyOf(before, slots);
+            after = Arrays.copyOf(after, slots);
+            keys = Arrays.copyOf(keys, slots);
+            vals = Arrays.copyOf(vals, slots);
+        }
+        if (newCap != oldCap) {
+            int[] tab = new int[newCap];
+            Arrays.fill(tab, NIL);
+            int mask = newCap - 1;
+            for (int i = head; i != NIL; i = after[i]) {
+                int b = hashes[i] & mask;
+                next[i] = tab[b];
+                tab[b] = i;
+            }
+            buckets = tab;
+        }
+    }
+
+    /**
+     * 桶数为 cap 时的槽位数（也就是阈值）。
+     */
+    final int slotsFor(int cap) {
+        float ft = (float)cap * loadFactor;
+        return (cap < HashMap.MAXIMUM_CAPACITY && ft < (float)HashMap.MAXIMUM_CAPACITY) ?
+                Math.max((int)ft, 1) : Integer.MAX_VALUE;
+    }
+
+    /**
+     * 分配一个槽位，优先使用空闲链表。
+     */
+    final int allocateSlot() {
+        int i;
+        if ((i = free) != NIL)
+            free = next[i];
+        else
+            i = unused++;
+        return i;
+    }
+
+    /**
+     * 把槽位 i 放回空闲链表，清除键和值方便 GC。
+     */
+    final void freeSlot(int i) {
+        keys[i] = null;
+        vals[i] = null;
+        next[i] = free;
+        free = i;
+    }
+
+    /**
+     * 把槽位 i 链接到双向链表末尾。
+     */
+    final void linkLast(int i) {
+        int last = tail;
+        tail = i;
+        after[i] = NIL;
+        before[i] = last;
+        if (last == NIL)
+            head = i;
+        else
+            after[last] = i;
+    }
+
+    /**
+     * put 的实现，和 HashMap.putVal 对应。
+     */
+    final V putVal(K key, V value, boolean onlyIfAbsent, boolean evict) {
+        if (buckets == null)
+            resize();
+        int hash = HashMap.hash(key);
+        int b = hash & (buckets.length - 1);
+        Object k;
+        for (int i = buckets[b]; i != NIL; i = next[i]) {
+            if (hashes[i] == hash &&
+                    ((k = keys[i]) == key || (key != null && key.equals(k)))) {
+                @SuppressWarnings("unchecked") V oldValue = (V)vals[i];
+                if (!onlyIfAbsent || oldValue == null)
+                    vals[i] = value;
+                afterNodeAccess(i);
+                return oldValue;
+            }
+        }
+        // 确认是新映射以后才扩容，替换已有的值不需要新槽位
+        if (size >= threshold) {
+            resize();
+            b = hash & (buckets.length - 1);
+        }
+        int i = allocateSlot();
+        hashes[i] = hash;
+        keys[i] = key;
+        vals[i] = value;
+        next[i] = buckets[b];
+        buckets[b] = i;
+        linkLast(i);
+        ++modCount;
+        ++size;
+        afterNodeInsertion(evict);
+        return null;
+    }
+
+    /**
+     * 删除槽位 i 的映射。
+     */
+    final void removeSlot(int i) {
+        int b = hashes[i] & (buckets.length - 1);
+        int p = buckets[b];
+        if (p == i)
+            buckets[b] = next[i];
+        else {
+            while (next[p] != i)
+                p = next[p];
+            next[p] = next[i];
+        }
+        ++modCount;
+        --size;
+        afterNodeRemoval(i);
+        freeSlot(i);
+    }
+
+    // 钩子，含义和 LinkedHashMap 中的同名方法相同
+
+    /**
+     * 把槽位 i 从双向链表中摘除。
+     */
+    void afterNodeRemoval(int i) { // unlink
+        int b = before[i], a = after[i];
+        before[i] = after[i] = NIL;
+        if (b == NIL)
+            head = a;
+        else
+            after[b] = a;
+        if (a == NIL)
+            tail = b;
+        else
+            before[a] = b;
+    }
+
+    /**
+     * 插入新映射之后调用，可能删除最老的映射。传给 removeEldestEntry 的
+     * Map.Entry 是复用的视图，每次插入只修改它指向的槽位，不创建新对象。
+     */
+    void afterNodeInsertion(boolean evict) { // possibly remove eldest
+        int first;
+        if (evict && (first = head) != NIL) {
+            SlotEntry e = eldestView;
+            if (e == null)
+                eldestView = e = new SlotEntry(first);
+            else
+                e.slot = first;
+            if (removeEldestEntry(e))
+                removeSlot(first);
+        }
+    }
+
+    /**
+     * 访问模式下把槽位 i 移到双向链表末尾。
+     */
+    void afterNodeAccess(int i) { // move node to last
+        if (accessOrder && tail != i) {
+            afterNodeRemoval(i);
+            linkLast(i);
+            ++modCount;
+        }
+    }
+
+    /**
+     * 插入新映射之后，如果应该删除最老的映射，返回 true。默认总是返回
+     * false。用法和 LinkedHashMap.removeEldestEntry 相同，例如最多保存
+     * 100 个映射的 LRU 缓存：
+     * <pre>
+     *     new CompactLinkedHashMap&lt;K,V&gt;(128, 0.75f, true) {
+     *         protected boolean removeEldestEntry(Map.Entry&lt;K,V&gt; eldest) {
+     *             return size() &gt; 100;
+     *         }
+     *     };
+     * </pre>
+     *
+     * @param eldest 最老的映射，只在此方法调用期间有效
+     * @return true 表示删除最老的映射
+     */
+    protected boolean removeEldestEntry(Map.Entry<K,V> eldest) {
+        return false;
+    }
+
+    /* ---------------- Map operations -------------- */
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        int i;
+        if ((i = indexOf(key)) == NIL)
+            return null;
+        if (accessOrder)
+            afterNodeAccess(i);
+        return (V)vals[i];
+    }
+
+    @SuppressWarnings("unchecked")
+    public V getOrDefault(Object key, V defaultValue) {
+        int i;
+        if ((i = indexOf(key)) == NIL)
+            return defaultValue;
+        if (accessOrder)
+            afterNodeAccess(i);
+        return (V)vals[i];
+    }
+
+    public boolean containsKey(Object key) {
+        return indexOf(key) != NIL;
+    }
+
+    public boolean containsValue(Object value) {
+        Object v;
+        for (int i = head; i != NIL; i = after[i]) {
+            if ((v = vals[i]) == value || (value != null && value.equals(v)))
+                return true;
+        }
+        return false;
+    }
+
+    public V put(K key, V value) {
+        return putVal(key, value, false, true);
+    }
+
+    public V putIfAbsent(K key, V value) {
+        return putVal(key, value, true, true);
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        int i;
+        if ((i = indexOf(key)) == NIL)
+            return null;
+        V oldValue = (V)vals[i];
+        removeSlot(i);
+        return oldValue;
+    }
+
+    /**
+     * 删除所有映射，保留已经分配的数组。
+     */
+    public void clear() {
+        ++modCount;
+        if (buckets != null && size > 0) {
+            Arrays.fill(buckets, NIL);
+            Arrays.fill(keys, 0, unused, null);
+            Arrays.fill(vals, 0, unused, null);
+        }
+        head = tail = free = NIL;
+        unused = 0;
+        size = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        if (action == null)
+            throw new NullPointerException();
+        int mc = modCount;
+        for (int i = head; i != NIL && modCount == mc; i = after[i])
+            action.accept((K)keys[i], (V)vals[i]);
+        if (modCount != mc)
+            throw new ConcurrentModificationException();
+    }
+
+    /* ---------------- Views -------------- */
+
+    public Set<Map.Entry<K,V>> entrySet() {
+        Set<Map.Entry<K,V>> es;
+        return (es = entrySet) == null ? (entrySet = new EntrySet()) : es;
+    }
+
+    final class EntrySet extends AbstractSet<Map.Entry<K,V>> {
+        public final int size()                 { return size; }
+        public final void clear()               { CompactLinkedHashMap.this.clear(); }
+        public final Iterator<Map.Entry<K,V>> iterator() {
+            return new EntryIterator();
+        }
+        public final boolean contains(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?,?> e = (Map.Entry<?,?>) o;
+            int i = indexOf(e.getKey());
+            return i != NIL && Objects.equals(vals[i], e.getValue());
+        }
+        public final boolean remove(Object o) {
+            if (o instanceof Map.Entry) {
+                Map.Entry<?,?> e = (Map.Entry<?,?>) o;
+                int i = indexOf(e.getKey());
+                if (i != NIL && Objects.equals(vals[i], e.getValue())) {
+                    removeSlot(i);
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 直接读写槽位的 Map.Entry。
+     */
+    final class SlotEntry implements Map.Entry<K,V> {
+        int slot;
+        SlotEntry(int slot) { this.slot = slot; }
+
+        @SuppressWarnings("unchecked")
+        public K getKey()   { return (K)keys[slot]; }
+        @SuppressWarnings("unchecked")
+        public V getValue() { return (V)vals[slot]; }
+        public V setValue(V value) {
+            V oldValue = getValue();
+            vals[slot] = value;
+            return oldValue;
+        }
+        public int hashCode() {
+            return Objects.hashCode(getKey()) ^ Objects.hashCode(getValue());
+        }
+        public boolean equals(Object o) {
+            if (o == this)
+                return true;
+            if (o instanceof Map.Entry) {
+                Map.Entry<?,?> e = (Map.Entry<?,?>)o;
+                return Objects.equals(getKey(), e.getKey()) &&
+                        Objects.equals(getValue(), e.getValue());
+            }
+            return false;
+        }
+        public String toString() { return getKey() + "=" + getValue(); }
+    }
+
+    /**
+     * 按双向链表顺序遍历的迭代器，对应 LinkedHashMap.LinkedHashIterator。
+     */
+    final class EntryIterator implements Iterator<Map.Entry<K,V>> {
+        int next;
+        int current;
+        int expectedModCount;
+
+        EntryIterator() {
+            next = head;
+            expectedModCount = modCount;
+            current = NIL;
+        }
+
+        public final boolean hasNext() {
+            return next != NIL;
+        }
+
+        public final Map.Entry<K,V> next() {
+            int e = next;
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (e == NIL)
+                throw new NoSuchElementException();
+            current = e;
+            next = after[e];
+            return new SlotEntry(e);
+        }
+
+        public final void remove() {
+            int p = current;
+            if (p == NIL)
+                throw new IllegalStateException();
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            current = NIL;
+            removeSlot(p);
+            expectedModCount = modCount;
+        }
+    }
+
+    /* ---------------- Cloneable -------------- */
+
+    /**
+     * 返回浅拷贝：键和值本身不会被复制。
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public CompactLinkedHashMap<K,V> clone() {
+        CompactLinkedHashMap<K,V> result;
+        try {
+            result = (CompactLinkedHashMap<K,V>)super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new InternalError(e);
+        }
+        if (buckets != null) {
+            result.buckets = buckets.clone();
+            result.hashes = hashes.clone();
+            result.next = next.clone();
+            result.before = before.clone();
+            result.after = after.clone();
+            result.keys = keys.clone();
+            result.vals = vals.clone();
+        }
+        result.entrySet = null;
+        result.eldestView = null;
+        result.modCount = 0;
+        return result;
+    }
+}
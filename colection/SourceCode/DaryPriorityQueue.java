@@ -0,0 +1,550 @@
+package java.util;
+
+/**
+ * 基于 d 叉堆的优先级队列。和 PriorityQueue 一样，元素按 Comparator 或者
+ * 自然顺序排序，队首是最小的元素，不允许 null 元素。
+ *
+ * 与二叉堆相比，d 叉堆（d = 4 或 8）的高度只有 log_d(n)：siftUp 的比较次数
+ * 更少；siftDown 每层要在 d 个孩子中找最小值，但这 d 个孩子在数组中是连续的，
+ * 通常落在同一个或相邻的缓存行上，所以总的访存次数比二叉堆少。
+ * queue[k] 的孩子是 queue[d*k+1] 到 queue[d*k+d]，父节点是 queue[(k-1)/d]。
+ * d 必须是 2 的幂，这样乘除都可以用移位完成。
+ *
+ * <p>索引模式（indexed 为 true）下队列额外维护一个元素到槽位的映射：
+ * <ul>
+ * <li>remove(Object) 和 contains(Object) 的时间复杂度从 O(n) 降到 O(log n) 和 O(1)；
+ * <li>可以调用 decreaseKey/update，在元素的优先级变化以后原地调整它的位置，
+ *     而不必先删除再插入。
+ * </ul>
+ * 映射使用元素的 equals/hashCode，所以索引模式下队列中不能有相等的元素，
+ * 并且 equals/hashCode 不能依赖于会变化的优先级字段。
+ *
+ * <p>此类不是线程安全的；迭代器是 fail-fast 的，遍历顺序不确定。
+ *
+ * @param <E> the type of elements held in this collection
+ * @see PriorityQueue
+ */
+public class DaryPriorityQueue<E> extends AbstractQueue<E>
+        implements java.io.Serializable {
+
+    private static final long serialVersionUID = 2403615813127453710L;
+
+    private static final int DEFAULT_INITIAL_CAPACITY = 16;
+
+    /** 默认是 4 叉堆。 */
+    private static final int DEFAULT_ARITY = 4;
+
+    /** 允许的最大分叉数，再大每层在孩子中找最小值的开销就超过了层数减少的收益。 */
+    private static final int MAX_ARITY = 64;
+
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    /** 堆数组，queue[0] 是最小的元素。 */
+    transient Object[] queue;
+
+    /** 元素个数。 */
+    private int size;
+
+    /** 比较器，按自然顺序排序时为 null。 */
+    private final Comparator<? super E> comparator;
+
+    /** log2(d)，孩子下标 = (k << shift) + 1 + j，父节点下标 = (k - 1) >>> shift。 */
+    private final int shift;
+
+    /** 是否为索引模式。 */
+    private final boolean indexed;
+
+    /**
+     * 索引模式下和 queue 平行的数组，handles[k] 记录 queue[k] 的槽位。
+     * 非索引模式下为 null。
+     */
+    private transient Handle[] handles;
+
+    /** 索引模式下元素到 Handle 的映射，非索引模式下为 null。 */
+    private transient HashMap<Object, Handle> index;
+
+    /** 结构修改次数，用于迭代器的 fail-fast。 */
+    transient int modCount;
+
+    /**
+     * 索引模式下每个元素对应一个 Handle，元素在堆中移动时只更新 slot，
+     * 不需要修改 HashMap。
+     */
+    static final class Handle {
+        int slot;
+    }
+
+    /**
+     * 创建一个 4 叉堆，使用默认初始容量和自然顺序，非索引模式。
+     */
+    public DaryPriorityQueue() {
+        this(DEFAULT_ARITY, DEFAULT_INITIAL_CAPACITY, null, false);
+    }
+
+    /**
+     * 创建一个 d 叉堆，使用默认初始容量和自然顺序，非索引模式。
+     *
+     * @throws IllegalArgumentException 如果 arity 不是 [2, 64] 之间的 2 的幂
+     */
+    public DaryPriorityQueue(int arity) {
+        this(arity, DEFAULT_INITIAL_CAPACITY, null, false);
+    }
+
+    /**
+     * 创建一个 d 叉堆，使用默认初始容量和指定的比较器，非索引模式。
+     *
+     * @throws IllegalArgumentException 如果 arity 不是 [2, 64] 之间的 2 的幂
+     */
+    public DaryPriorityQueue(int arity, Comparator<? super E> comparator) {
+        this(arity, DEFAULT_INITIAL_CAPACITY, comparator, false);
+    }
+
+    /**
+     * 创建一个 d 叉堆。
+     *
+     * @param arity 分叉数 d，必须是 [2, 64] 之间的 2 的幂
+     * @param initialCapacity 初始容量
+     * @param comparator 比较器，为 null 时使用元素的自然顺序
+     * @param indexed 是否维护元素到槽位的映射
+     * @throws IllegalArgumentException 如果 arity 不合法或者 initialCapacity 小于 1
+     */
+    public DaryPriorityQueue(int arity, int initialCapacity,
+                             Comparator<? super E> comparator, boolean indexed) {
+        if (arity < 2 || arity > MAX_ARITY || (arity & (arity - 1)) != 0)
+            throw new IllegalArgumentException("Illegal arity: " + arity);
+        if (initialCapacity < 1)
+            throw new IllegalArgumentException("Illegal initial capacity: " +
+                    initialCapacity);
+        this.shift = Integer.numberOfTrailingZeros(arity);
+        this.comparator = comparator;
+        this.indexed = indexed;
+        this.queue = new Object[initialCapacity];
+        if (indexed)
+            initIndex(initialCapacity);
+    }
+
+    private void initIndex(int capacity) {
+        handles = new Handle[queue.length];
+        index = new HashMap<>(Math.max((int) (capacity / .75f) + 1, 16));
+    }
+
+    /**
+     * 扩容，规则和 PriorityQueue.grow 相同。
+     */
+    private void grow(int minCapacity) {
+        int oldCapacity = queue.length;
+        // Double size if small; else grow by 50%
+        int newCapacity = oldCapacity + ((oldCapacity < 64) ?
+                (oldCapacity + 2) :
+                (oldCapacity >> 1));
+        // overflow-conscious code
+        if (newCapacity - MAX_ARRAY_SIZE > 0)
+            newCapacity = hugeCapacity(minCapacity);
+        queue = Arrays.copyOf(queue, newCapacity);
+        if (handles != null)
+            handles = Arrays.copyOf(handles, newCapacity);
+    }
+
+    private static int hugeCapacity(int minCapacity) {
+        if (minCapacity < 0) // overflow
+            throw new OutOfMemoryError();
+        return (minCapacity > MAX_ARRAY_SIZE) ?
+                Integer.MAX_VALUE :
+                MAX_ARRAY_SIZE;
+    }
+
+    /**
+     * 返回分叉数 d。
+     */
+    public int arity() {
+        return 1 << shift;
+    }
+
+    /**
+     * 是否为索引模式。
+     */
+    public boolean isIndexed() {
+        return indexed;
+    }
+
+    public Comparator<? super E> comparator() {
+        return comparator;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 插入指定元素。
+     *
+     * @return {@code true} (as specified by {@link Queue#offer})
+     * @throws ClassCastException 如果元素不能和队列中的元素比较，此时元素
+     *         不会留在队列和索引中
+     * @throws NullPointerException 如果元素为 null
+     * @throws IllegalArgumentException 如果是索引模式并且队列中已经有相等的元素
+     */
+    public boolean offer(E e) {
+        if (e == null)
+            throw new NullPointerException();
+        Handle h = null;
+        if (indexed) {
+            h = new Handle();
+            if (index.putIfAbsent(e, h) != null)
+                throw new IllegalArgumentException("Duplicate element: " + e);
+        }
+        modCount++;
+        int i = size;
+        if (i >= queue.length)
+            grow(i + 1);
+        try {
+            siftUp(i, e, h);
+        } catch (RuntimeException | Error ex) {
+            // 比较失败（通常是第一次比较就抛出 ClassCastException，此时还没有
+            // 移动任何元素），撤销索引中的登记，不留下不在堆中的元素
+            if (h != null)
+                index.remove(e);
+            throw ex;
+        }
+        size = i + 1;
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    public E peek() {
+        return (size == 0) ? null : (E) queue[0];
+    }
+
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        if (size == 0)
+            return null;
+        int s = --size;
+        modCount++;
+        final Object[] es = queue;
+        E result = (E) es[0];
+        Object x = es[s];
+        es[s] = null;
+        Handle h = null;
+        if (indexed) {
+            index.remove(result);
+            h = handles[s];
+            handles[s] = null;
+            handles[0] = null;
+        }
+        if (s != 0)
+            siftDown(0, x, h);
+        return result;
+    }
+
+    /**
+     * 返回 o 的槽位，找不到返回 -1。索引模式下查 HashMap，否则线性查找。
+     */
+    private int indexOf(Object o) {
+        if (o != null) {
+            if (indexed) {
+                Handle h = index.get(o);
+                return (h == null) ? -1 : h.slot;
+            }
+            for (int i = 0; i < size; i++)
+                if (o.equals(queue[i]))
+                    return i;
+        }
+        return -1;
+    }
+
+    /**
+     * 删除一个和 o 相等的元素。索引模式下是 O(log n)，否则是 O(n)。
+     */
+    public boolean remove(Object o) {
+        int i = indexOf(o);
+        if (i == -1)
+            return false;
+        removeAt(i);
+        return true;
+    }
+
+    /**
+     * 按引用删除，迭代器删除 forgetMeNot 中的元素时使用。
+     */
+    boolean removeEq(Object o) {
+        if (indexed) {
+            Handle h = index.get(o);
+            if (h != null && queue[h.slot] == o) {
+                removeAt(h.slot);
+                return true;
+            }
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (o == queue[i]) {
+                removeAt(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 如果队列中有和 o 相等的元素，返回 true。索引模式下是 O(1)。
+     */
+    public boolean contains(Object o) {
+        return indexOf(o) != -1;
+    }
+
+    /**
+     * 元素 e 的优先级变高（按比较器变小）以后调用，把它向上调整到正确的位置。
+     * 查找和调整一共是 O(log n)。
+     *
+     * @return 如果队列中有和 e 相等的元素，返回 true
+     * @throws UnsupportedOperationException 如果不是索引模式
+     */
+    public boolean decreaseKey(E e) {
+        Handle h = handleOf(e);
+        if (h == null)
+            return false;
+        modCount++;
+        int k = h.slot;
+        siftUp(k, queue[k], h);
+        return true;
+    }
+
+    /**
+     * 元素 e 的优先级发生了任意变化以后调用，先尝试向上调整，没有移动的话
+     * 再向下调整。
+     *
+     * @return 如果队列中有和 e 相等的元素，返回 true
+     * @throws UnsupportedOperationException 如果不是索引模式
+     */
+    public boolean update(E e) {
+        Handle h = handleOf(e);
+        if (h == null)
+            return false;
+        modCount++;
+        int k = h.slot;
+        Object x = queue[k];
+        siftUp(k, x, h);
+        if (queue[k] == x)
+            siftDown(k, x, h);
+        return true;
+    }
+
+    private Handle handleOf(Object e) {
+        if (!indexed)
+            throw new UnsupportedOperationException("Not an indexed queue");
+        return (e == null) ? null : index.get(e);
+    }
+
+    public Object[] toArray() {
+        return Arrays.copyOf(queue, size);
+    }
+
+    public void clear() {
+        modCount++;
+        Arrays.fill(queue, 0, size, null);
+        if (indexed) {
+            Arrays.fill(handles, 0, size, null);
+            index.clear();
+        }
+        size = 0;
+    }
+
+    /**
+     * 删除第 i 个元素，用最后一个元素填补，先尝试向下调整再尝试向上调整。
+     * 和 PriorityQueue.removeAt 一样，如果最后一个元素被移到了 i 之前，
+     * 返回这个元素，供迭代器记录到 forgetMeNot 中；否则返回 null。
+     */
+    @SuppressWarnings("unchecked")
+    private E removeAt(int i) {
+        // assert i >= 0 && i < size;
+        final Object[] es = queue;
+        modCount++;
+        int s = --size;
+        Handle h = null;
+        if (indexed) {
+            index.remove(es[i]);
+            h = handles[s];
+            handles[s] = null;
+            handles[i] = null;
+        }
+        if (s == i) // removed last element
+            es[i] = null;
+        else {
+            Object moved = es[s];
+            es[s] = null;
+            siftDown(i, moved, h);
+            if (es[i] == moved) {
+                siftUp(i, moved, h);
+                if (es[i] != moved)
+                    return (E) moved;
+            }
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(Object a, Object b) {
+        return (comparator == null)
+                ? ((Comparable<? super E>) a).compareTo((E) b)
+                : comparator.compare((E) a, (E) b);
+    }
+
+    /**
+     * 把 x 放到槽位 k，并向上调整。h 是 x 的 Handle，非索引模式下为 null。
+     */
+    private void siftUp(int k, Object x, Handle h) {
+        final Object[] es = queue;
+        final Handle[] hs = handles;
+        final int sh = shift;
+        while (k > 0) {
+            int parent = (k - 1) >>> sh;
+            Object e = es[parent];
+            if (compare(x, e) >= 0)
+                break;
+            es[k] = e;
+            if (hs != null)
+                (hs[k] = hs[parent]).slot = k;
+            k = parent;
+        }
+        es[k] = x;
+        if (hs != null)
+            (hs[k] = h).slot = k;
+    }
+
+    /**
+     * 把 x 放到槽位 k，并向下调整：每一层在连续的 d 个孩子中找出最小的，
+     * 如果它比 x 小就上移一层。
+     */
+    private void siftDown(int k, Object x, Handle h) {
+        final Object[] es = queue;
+        final Handle[] hs = handles;
+        final int n = size, sh = shift, d = 1 << sh;
+        // 最后一个有孩子的节点，n < 2 时没有这样的节点
+        final int lastParent = (n < 2) ? -1 : (n - 2) >>> sh;
+        while (k <= lastParent) {
+            int c = (k << sh) + 1;
+            int end = (n - c > d) ? c + d : n;
+            Object ce = es[c];
+            for (int i = c + 1; i < end; i++) {
+                Object e = es[i];
+                if (compare(e, ce) < 0) {
+                    c = i;
+                    ce = e;
+                }
+            }
+            if (compare(x, ce) <= 0)
+                break;
+            es[k] = ce;
+            if (hs != null)
+                (hs[k] = hs[c]).slot = k;
+            k = c;
+        }
+        es[k] = x;
+        if (hs != null)
+            (hs[k] = h).slot = k;
+    }
+
+    /**
+     * 从最后一个有孩子的节点开始倒序向下调整，建立堆。
+     */
+    private void heapify() {
+        final Handle[] hs = handles;
+        final int n = size;
+        for (int i = (n < 2) ? -1 : (n - 2) >>> shift; i >= 0; i--)
+            siftDown(i, queue[i], (hs == null) ? null : hs[i]);
+    }
+
+    public Iterator<E> iterator() {
+        return new Itr();
+    }
+
+    /**
+     * 和 PriorityQueue.Itr 相同：按数组顺序遍历，删除导致末尾元素被移到
+     * 游标之前时，把它记到 forgetMeNot 中，最后再遍历。
+     */
+    private final class Itr implements Iterator<E> {
+        private int cursor;
+        private int lastRet = -1;
+        private ArrayDeque<E> forgetMeNot;
+        private E lastRetElt;
+        private int expectedModCount = modCount;
+
+        public boolean hasNext() {
+            return cursor < size ||
+                    (forgetMeNot != null && !forgetMeNot.isEmpty());
+        }
+
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (expectedModCount != modCount)
+                throw new ConcurrentModificationException();
+            if (cursor < size)
+                return (E) queue[lastRet = cursor++];
+            if (forgetMeNot != null) {
+                lastRet = -1;
+                lastRetElt = forgetMeNot.poll();
+                if (lastRetElt != null)
+                    return lastRetElt;
+            }
+            throw new NoSuchElementException();
+        }
+
+        public void remove() {
+            if (expectedModCount != modCount)
+                throw new ConcurrentModificationException();
+            if (lastRet != -1) {
+                E moved = DaryPriorityQueue.this.removeAt(lastRet);
+                lastRet = -1;
+                if (moved == null)
+                    cursor--;
+                else {
+                    if (forgetMeNot == null)
+                        forgetMeNot = new ArrayDeque<>();
+                    forgetMeNot.add(moved);
+                }
+            } else if (lastRetElt != null) {
+                DaryPriorityQueue.this.removeEq(lastRetElt);
+                lastRetElt = null;
+            } else {
+                throw new IllegalStateException();
+            }
+            expectedModCount = modCount;
+        }
+    }
+
+    /**
+     * 序列化：先写出 size、comparator、分叉数和是否为索引模式，再按数组顺序
+     * 写出所有元素。
+     */
+    private void writeObject(java.io.ObjectOutputStream s)
+            throws java.io.IOException {
+        s.defaultWriteObject();
+        for (int i = 0; i < size; i++)
+            s.writeObject(queue[i]);
+    }
+
+    /**
+     * 反序列化：读出所有元素，索引模式下重建映射，然后重新建堆。
+     */
+    private void readObject(java.io.ObjectInputStream s)
+            throws java.io.IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        if (size < 0 || shift < 1 || shift > Integer.numberOfTrailingZeros(MAX_ARITY))
+            throw new java.io.InvalidObjectException("Invalid queue state");
+        queue = new Object[Math.max(size, 1)];
+        for (int i = 0; i < size; i++)
+            queue[i] = s.readObject();
+        if (indexed) {
+            initIndex(queue.length);
+            for (int i = 0; i < size; i++) {
+                Handle h = new Handle();
+                h.slot = i;
+                if (index.putIfAbsent(queue[i], h) != null)
+                    throw new java.io.InvalidObjectException("Duplicate element");
+                handles[i] = h;
+            }
+        }
+        // 流中的元素本来就是堆序的，但是不能信任外部数据，重新建堆
+        heapify();
+    }
+}
@@ -0,0 +1,915 @@
+package java.util;
+
+import java.util.function.DoubleConsumer;
+import java.util.stream.DoubleStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 元素是原始类型 double 的可变长数组列表，是 ArrayList&lt;Double&gt; 的特化版本。
+ *
+ * ArrayList&lt;Double&gt; 的 elementData 是 Object[]，每个元素都是一个单独分配
+ * 的 Double 对象：读取时要多一次指针跳转，遍历时元素分散在堆中，对 CPU 缓存
+ * 不友好，累加、排序之前还要逐个拆箱。此类直接把元素放在 double[] elementData
+ * 中，没有装箱：
+ *  - 扩容策略和 ArrayList 完全相同：无参构造的列表在第一次添加元素时扩容到
+ *    DEFAULT_CAPACITY，之后每次扩容到原来的 1.5 倍（见 grow）；
+ *  - 批量的 addAll(double[])、toArray、删除区间都使用 System.arraycopy；
+ *  - sort 直接调用 Arrays.sort(double[])（双轴快排），不需要 Comparator；
+ *  - spliterator 返回 Spliterator.OfDouble，可以二分切割，stream() 得到的
+ *    是 DoubleStream，并行流也不会装箱。
+ *
+ * 元素的比较（indexOf、contains、remove、equals）和 Double.equals 相同，
+ * 按 Double.doubleToLongBits 比较：NaN 等于 NaN，0.0 不等于 -0.0。
+ *
+ * 此类不实现 List&lt;Double&gt;，因为 List 的方法签名都以 Double 为参数和返回值，
+ * 实现它就会重新引入装箱。需要和集合框架交互时使用 boxed()。
+ *
+ * 和 ArrayList 一样，此类不是线程安全的；iterator、spliterator、forEach
+ * 和子列表都是 fail-fast 的。
+ *
+ * @see ArrayList
+ * @see LongArrayList
+ * @see IntArrayList
+ */
+public class DoubleArrayList implements RandomAccess, Cloneable, java.io.Serializable {
+
+    private static final long serialVersionUID = 3468527712948716093L;
+
+    /** 默认的初始容量，和 ArrayList 相同。 */
+    private static final int DEFAULT_CAPACITY = 10;
+
+    /** 指定初始容量为 0 的空列表共享的数组。 */
+    private static final double[] EMPTY_ELEMENTDATA = {};
+
+    /**
+     * 无参构造的空列表共享的数组。和 EMPTY_ELEMENTDATA 区分开是为了在添加
+     * 第一个元素时知道要扩容到 DEFAULT_CAPACITY。
+     */
+    private static final double[] DEFAULTCAPACITY_EMPTY_ELEMENTDATA = {};
+
+    /** 能分配的最大数组大小，见 ArrayList.MAX_ARRAY_SIZE。 */
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    /** 存放元素的数组，列表的容量就是它的长度。 */
+    transient double[] elementData; // non-private to simplify nested class access
+
+    /** 元素的个数。 */
+    private int size;
+
+    /** 结构修改次数，用于 fail-fast。 */
+    protected transient int modCount = 0;
+
+    /**
+     * 构造一个指定初始容量的空列表。
+     *
+     * @throws IllegalArgumentException 如果初始容量为负数
+     */
+    public DoubleArrayList(int initialCapacity) {
+        if (initialCapacity > 0) {
+            this.elementData = new double[initialCapacity];
+        } else if (initialCapacity == 0) {
+            this.elementData = EMPTY_ELEMENTDATA;
+        } else {
+            throw new IllegalArgumentException("Illegal Capacity: "+
+                    initialCapacity);
+        }
+    }
+
+    /**
+     * 构造一个空列表，第一次添加元素时分配容量为 10 的数组。
+     */
+    public DoubleArrayList() {
+        this.elementData = DEFAULTCAPACITY_EMPTY_ELEMENTDATA;
+    }
+
+    /**
+     * 构造一个包含 a 中所有元素的列表。
+     *
+     * @throws NullPointerException 如果 a 为 null
+     */
+    public DoubleArrayList(double[] a) {
+        if ((size = a.length) != 0)
+            elementData = a.clone();
+        else
+            elementData = EMPTY_ELEMENTDATA;
+    }
+
+    /**
+     * 调整容量为当前元素的个数。
+     */
+    public void trimToSize() {
+        modCount++;
+        if (size < elementData.length) {
+            elementData = (size == 0)
+                    ? EMPTY_ELEMENTDATA
+                    : Arrays.copyOf(elementData, size);
+        }
+    }
+
+    /**
+     * 如果有需要，增加容量以确保至少可以容纳 minCapacity 个元素。
+     */
+    public void ensureCapacity(int minCapacity) {
+        int minExpand = (elementData != DEFAULTCAPACITY_EMPTY_ELEMENTDATA)
+                ? 0
+                : DEFAULT_CAPACITY;
+
+        if (minCapacity > minExpand) {
+            ensureExplicitCapacity(minCapacity);
+        }
+    }
+
+    // 以下三个方法和 ArrayList 中的同名方法相同
+    private void ensureCapacityInternal(int minCapacity) {
+        if (elementData == DEFAULTCAPACITY_EMPTY_ELEMENTDATA) {
+            minCapacity = Math.max(DEFAULT_CAPACITY, minCapacity);
+        }
+
+        ensureExplicitCapacity(minCapacity);
+    }
+
+    private void ensureExplicitCapacity(int minCapacity) {
+        modCount++;
+
+        // overflow-conscious code
+        if (minCapacity - elementData.length > 0)
+            grow(minCapacity);
+    }
+
+    /**
+     * 扩容为原来的 1.5 倍，仍然不够时直接扩容到 minCapacity。
+     */
+    private void grow(int minCapacity) {
+        // overflow-conscious code
+        int oldCapacity = elementData.length;
+        int newCapacity = oldCapacity + (oldCapacity >> 1);
+        if (newCapacity - minCapacity < 0)
+            newCapacity = minCapacity;
+        if (newCapacity - MAX_ARRAY_SIZE > 0)
+            newCapacity = hugeCapacity(minCapacity);
+        elementData = Arrays.copyOf(elementData, newCapacity);
+    }
+
+    private static int hugeCapacity(int minCapacity) {
+        if (minCapacity < 0) // overflow
+            throw new OutOfMemoryError();
+        return (minCapacity > MAX_ARRAY_SIZE) ?
+                Integer.MAX_VALUE :
+                MAX_ARRAY_SIZE;
+    }
+
+    // 查询操作
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 如果列表中包含 o，返回 true。
+     */
+    public boolean contains(double o) {
+        return indexOf(o) >= 0;
+    }
+
+    /**
+     * 返回 o 第一次出现的下标，不存在返回 -1。
+     */
+    public int indexOf(double o) {
+        double[] es = elementData;
+        long bits = Double.doubleToLongBits(o);
+        for (int i = 0; i < size; i++)
+            if (Double.doubleToLongBits(es[i]) == bits)
+                return i;
+        return -1;
+    }
+
+    /**
+     * 返回 o 最后一次出现的下标，不存在返回 -1。
+     */
+    public int lastIndexOf(double o) {
+        double[] es = elementData;
+        long bits = Double.doubleToLongBits(o);
+        for (int i = size-1; i >= 0; i--)
+            if (Double.doubleToLongBits(es[i]) == bits)
+                return i;
+        return -1;
+    }
+
+    /**
+     * 返回指定位置的元素。
+     *
+     * @throws IndexOutOfBoundsException 如果 index 越界
+     */
+    public double get(int index) {
+        rangeCheck(index);
+        return elementData[index];
+    }
+
+    /**
+     * 替换指定位置的元素，返回原来的元素。
+     *
+     * @throws IndexOutOfBoundsException 如果 index 越界
+     */
+    public double set(int index, double element) {
+        rangeCheck(index);
+        double oldValue = elementData[index];
+        elementData[index] = element;
+        return oldValue;
+    }
+
+    /**
+     * 返回所有元素之和，按下标顺序直接累加（不做补偿求和）。
+     */
+    public double sum() {
+        double[] es = elementData;
+        double s = 0.0d;
+        for (int i = 0; i < size; i++)
+            s += es[i];
+        return s;
+    }
+
+    /**
+     * 返回包含所有元素的数组。
+     */
+    public double[] toArray() {
+        return Arrays.copyOf(elementData, size);
+    }
+
+    /**
+     * 把所有元素复制到 a 中。a 的长度不够时分配一个新数组；a 更长时，
+     * 多出的部分保持不变。
+     */
+    public double[] toArray(double[] a) {
+        if (a.length < size)
+            return Arrays.copyOf(elementData, size);
+        System.arraycopy(elementData, 0, a, 0, size);
+        return a;
+    }
+
+    // 修改操作
+
+    /**
+     * 把元素添加到列表末尾。
+     */
+    public boolean add(double e) {
+        ensureCapacityInternal(size + 1);  // Increments modCount!!
+        elementData[size++] = e;
+        return true;
+    }
+
+    /**
+     * 把元素插入到指定位置，原来在这个位置及之后的元素右移一位。
+     *
+     * @throws IndexOutOfBoundsException 如果 index 越界
+     */
+    public void add(int index, double element) {
+        rangeCheckForAdd(index);
+
+        ensureCapacityInternal(size + 1);  // Increments modCount!!
+        System.arraycopy(elementData, index, elementData, index + 1,
+                size - index);
+        elementData[index] = element;
+        size++;
+    }
+
+    /**
+     * 把 a 中所有元素添加到列表末尾。
+     */
+    public boolean addAll(double[] a) {
+        return addAll(a, 0, a.length);
+    }
+
+    /**
+     * 把 a[off, off + len) 添加到列表末尾，只做一次扩容和一次
+     * System.arraycopy。
+     *
+     * @throws IndexOutOfBoundsException 如果 off、len 越界
+     */
+    public boolean addAll(double[] a, int off, int len) {
+        if (off < 0 || len < 0 || len > a.length - off)
+            throw new IndexOutOfBoundsException("off: "+off+", len: "+len+
+                    ", length: "+a.length);
+        ensureCapacityInternal(size + len);  // Increments modCount
+        System.arraycopy(a, off, elementData, size, len);
+        size += len;
+        return len != 0;
+    }
+
+    /**
+     * 把另一个列表的所有元素添加到列表末尾。
+     */
+    public boolean addAll(DoubleArrayList c) {
+        return addAll(c.elementData, 0, c.size);
+    }
+
+    /**
+     * 把 a 中所有元素插入到指定位置。
+     *
+     * @throws IndexOutOfBoundsException 如果 index 越界
+     */
+    public boolean addAll(int index, double[] a) {
+        rangeCheckForAdd(index);
+
+        int numNew = a.length;
+        ensureCapacityInternal(size + numNew);  // Increments modCount
+
+        int numMoved = size - index;
+        if (numMoved > 0)
+            System.arraycopy(elementData, index, elementData, index + numNew,
+                    numMoved);
+
+        System.arraycopy(a, 0, elementData, index, numNew);
+        size += numNew;
+        return numNew != 0;
+    }
+
+    /**
+     * 删除指定位置的元素，后面的元素左移一位，返回被删除的元素。
+     * 为了和 remove(double)（按值删除）区分，此方法命名为 removeAt。
+     *
+     * @throws IndexOutOfBoundsException 如果 index 越界
+     */
+    public double removeAt(int index) {
+        rangeCheck(index);
+
+        modCount++;
+        double oldValue = elementData[index];
+
+        int numMoved = size - index - 1;
+        if (numMoved > 0)
+            System.arraycopy(elementData, index+1, elementData, index,
+                    numMoved);
+        size--;
+        return oldValue;
+    }
+
+    /**
+     * 删除第一个等于 o 的元素，存在时返回 true。
+     */
+    public boolean remove(double o) {
+        int index = indexOf(o);
+        if (index < 0)
+            return false;
+        removeAt(index);
+        return true;
+    }
+
+    /**
+     * 删除 [fromIndex, toIndex) 之间的元素。
+     *
+     * @throws IndexOutOfBoundsException 如果下标越界或者 fromIndex &gt; toIndex
+     */
+    public void removeRange(int fromIndex, int toIndex) {
+        subListRangeCheck(fromIndex, toIndex, size);
+        modCount++;
+        System.arraycopy(elementData, toIndex, elementData, fromIndex,
+                size - toIndex);
+        size -= toIndex - fromIndex;
+    }
+
+    /**
+     * 删除所有元素。原始类型的数组不需要清空来帮助 GC。
+     */
+    public void clear() {
+        modCount++;
+        size = 0;
+    }
+
+    /**
+     * 把列表按升序排序。
+     */
+    public void sort() {
+        sort(0, size);
+    }
+
+    /**
+     * 把 [fromIndex, toIndex) 之间的元素按升序排序。
+     */
+    public void sort(int fromIndex, int toIndex) {
+        subListRangeCheck(fromIndex, toIndex, size);
+        final int expectedModCount = modCount;
+        Arrays.sort(elementData, fromIndex, toIndex);
+        if (modCount != expectedModCount)
+            throw new ConcurrentModificationException();
+        modCount++;
+    }
+
+    // 下标检查
+
+    private void rangeCheck(int index) {
+        if (index >= size)
+            throw new IndexOutOfBoundsException(outOfBoundsMsg(index));
+    }
+
+    private void rangeCheckForAdd(int index) {
+        if (index > size || index < 0)
+            throw new IndexOutOfBoundsException(outOfBoundsMsg(index));
+    }
+
+    private String outOfBoundsMsg(int index) {
+        return "Index: "+index+", Size: "+size;
+    }
+
+    static void subListRangeCheck(int fromIndex, int toIndex, int size) {
+        if (fromIndex < 0)
+            throw new IndexOutOfBoundsException("fromIndex = " + fromIndex);
+        if (toIndex > size)
+            throw new IndexOutOfBoundsException("toIndex = " + toIndex);
+        if (fromIndex > toIndex)
+            throw new IllegalArgumentException("fromIndex(" + fromIndex +
+                    ") > toIndex(" + toIndex + ")");
+    }
+
+    // 遍历
+
+    /**
+     * 按顺序对每个元素执行 action。
+     */
+    public void forEach(DoubleConsumer action) {
+        Objects.requireNonNull(action);
+        final int expectedModCount = modCount;
+        final double[] es = elementData;
+        final int size = this.size;
+        for (int i=0; modCount == expectedModCount && i < size; i++) {
+            action.accept(es[i]);
+        }
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    /**
+     * 返回按顺序遍历元素的迭代器，支持 remove。
+     */
+    public PrimitiveIterator.OfDouble iterator() {
+        return new Itr();
+    }
+
+    /**
+     * 和 ArrayList.Itr 相同。
+     */
+    private class Itr implements PrimitiveIterator.OfDouble {
+        int cursor;       // index of next element to return
+        int lastRet = -1; // index of last element returned; -1 if no such
+        int expectedModCount = modCount;
+
+        public boolean hasNext() {
+            return cursor != size;
+        }
+
+        public double nextDouble() {
+            checkForComodification();
+            int i = cursor;
+            if (i >= size)
+                throw new NoSuchElementException();
+            double[] es = DoubleArrayList.this.elementData;
+            if (i >= es.length)
+                throw new ConcurrentModificationException();
+            cursor = i + 1;
+            return es[lastRet = i];
+        }
+
+        public void remove() {
+            if (lastRet < 0)
+                throw new IllegalStateException();
+            checkForComodification();
+
+            try {
+                DoubleArrayList.this.removeAt(lastRet);
+                cursor = lastRet;
+                lastRet = -1;
+                expectedModCount = modCount;
+            } catch (IndexOutOfBoundsException ex) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        final void checkForComodification() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+    }
+
+    /**
+     * 返回可以二分切割的 Spliterator.OfDouble，特征值为 ORDERED、SIZED、
+     * SUBSIZED 和 NONNULL。
+     */
+    public Spliterator.OfDouble spliterator() {
+        return new DoubleArrayListSpliterator(this, 0, -1, 0);
+    }
+
+    /**
+     * 返回以此列表为源的顺序 DoubleStream。
+     */
+    public DoubleStream stream() {
+        return StreamSupport.doubleStream(spliterator(), false);
+    }
+
+    /**
+     * 返回以此列表为源的并行 DoubleStream。
+     */
+    public DoubleStream parallelStream() {
+        return StreamSupport.doubleStream(spliterator(), true);
+    }
+
+    /**
+     * 和 ArrayList.ArrayListSpliterator 相同：fence 和 expectedModCount
+     * 延迟到第一次使用时才初始化，forEachRemaining 只在最后检查一次 modCount。
+     */
+    static final class DoubleArrayListSpliterator implements Spliterator.OfDouble {
+        private final DoubleArrayList list;
+        private int index; // current index, modified on advance/split
+        private int fence; // -1 until used; then one past last index
+        private int expectedModCount; // initialized when fence set
+
+        DoubleArrayListSpliterator(DoubleArrayList list, int origin, int fence,
+                                 int expectedModCount) {
+            this.list = list; // OK if null unless traversed
+            this.index = origin;
+            this.fence = fence;
+            this.expectedModCount = expectedModCount;
+        }
+
+        private int getFence() { // initialize fence to size on first use
+            int hi;
+            DoubleArrayList lst;
+            if ((hi = fence) < 0) {
+                if ((lst = list) == null)
+                    hi = fence = 0;
+                else {
+                    expectedModCount = lst.modCount;
+                    hi = fence = lst.size;
+                }
+            }
+            return hi;
+        }
+
+        public DoubleArrayListSpliterator trySplit() {
+            int hi = getFence(), lo = index, mid = (lo + hi) >>> 1;
+            return (lo >= mid) ? null : // divide range in half unless too small
+                    new DoubleArrayListSpliterator(list, lo, index = mid,
+                            expectedModCount);
+        }
+
+        public boolean tryAdvance(DoubleConsumer action) {
+            if (action == null)
+                throw new NullPointerException();
+            int hi = getFence(), i = index;
+            if (i < hi) {
+                index = i + 1;
+                action.accept(list.elementData[i]);
+                if (list.modCount != expectedModCount)
+                    throw new ConcurrentModificationException();
+                return true;
+            }
+            return false;
+        }
+
+        public void forEachRemaining(DoubleConsumer action) {
+            int i, hi, mc; // hoist accesses and checks from loop
+            DoubleArrayList lst; double[] a;
+            if (action == null)
+                throw new NullPointerException();
+            if ((lst = list) != null && (a = lst.elementData) != null) {
+                if ((hi = fence) < 0) {
+                    mc = lst.modCount;
+                    hi = lst.size;
+                }
+                else
+                    mc = expectedModCount;
+                if ((i = index) >= 0 && (index = hi) <= a.length) {
+                    for (; i < hi; ++i)
+                        action.accept(a[i]);
+                    if (lst.modCount == mc)
+                        return;
+                }
+            }
+            throw new ConcurrentModificationException();
+        }
+
+        public long estimateSize() {
+            return (long) (getFence() - index);
+        }
+
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SIZED |
+                    Spliterator.SUBSIZED | Spliterator.NONNULL;
+        }
+    }
+
+    // 子列表
+
+    /**
+     * 返回 [fromIndex, toIndex) 之间的子列表视图。对子列表的修改会反映到
+     * 此列表中；通过子列表以外的方式结构性修改此列表之后，再使用子列表会
+     * 抛出 ConcurrentModificationException。
+     *
+     * @throws IndexOutOfBoundsException 如果下标越界
+     * @throws IllegalArgumentException 如果 fromIndex &gt; toIndex
+     */
+    public SubList subList(int fromIndex, int toIndex) {
+        subListRangeCheck(fromIndex, toIndex, size);
+        return new SubList(null, fromIndex, toIndex);
+    }
+
+    /**
+     * 子列表视图，结构和 ArrayList.SubList 相同：所有操作都换算成 root
+     * 列表上的下标，结构性修改之后沿着 parent 链更新每一层的 size 和
+     * modCount。
+     */
+    public class SubList implements RandomAccess {
+        private final SubList parent;
+        private final int offset;
+        int size;
+        int modCount;
+
+        SubList(SubList parent, int fromIndex, int toIndex) {
+            this.parent = parent;
+            this.offset = (parent == null) ? fromIndex : parent.offset + fromIndex;
+            this.size = toIndex - fromIndex;
+            this.modCount = DoubleArrayList.this.modCount;
+        }
+
+        public int size() {
+            checkForComodification();
+            return size;
+        }
+
+        public boolean isEmpty() {
+            return size() == 0;
+        }
+
+        public double get(int index) {
+            rangeCheck(index);
+            checkForComodification();
+            return DoubleArrayList.this.elementData[offset + index];
+        }
+
+        public double set(int index, double e) {
+            rangeCheck(index);
+            checkForComodification();
+            double oldValue = DoubleArrayList.this.elementData[offset + index];
+            DoubleArrayList.this.elementData[offset + index] = e;
+            return oldValue;
+        }
+
+        public int indexOf(double o) {
+            checkForComodification();
+            double[] es = DoubleArrayList.this.elementData;
+            long bits = Double.doubleToLongBits(o);
+            for (int i = 0; i < size; i++)
+                if (Double.doubleToLongBits(es[offset + i]) == bits)
+                    return i;
+            return -1;
+        }
+
+        public boolean contains(double o) {
+            return indexOf(o) >= 0;
+        }
+
+        public boolean add(double e) {
+            add(size, e);
+            return true;
+        }
+
+        public void add(int index, double e) {
+            rangeCheckForAdd(index);
+            checkForComodification();
+            DoubleArrayList.this.add(offset + index, e);
+            updateSizeAndModCount(1);
+        }
+
+        public boolean addAll(double[] a) {
+            return addAll(size, a);
+        }
+
+        public boolean addAll(int index, double[] a) {
+            rangeCheckForAdd(index);
+            checkForComodification();
+            DoubleArrayList.this.addAll(offset + index, a);
+            updateSizeAndModCount(a.length);
+            return a.length != 0;
+        }
+
+        public double removeAt(int index) {
+            rangeCheck(index);
+            checkForComodification();
+            double result = DoubleArrayList.this.removeAt(offset + index);
+            updateSizeAndModCount(-1);
+            return result;
+        }
+
+        public void removeRange(int fromIndex, int toIndex) {
+            subListRangeCheck(fromIndex, toIndex, size);
+            checkForComodification();
+            DoubleArrayList.this.removeRange(offset + fromIndex, offset + toIndex);
+            updateSizeAndModCount(fromIndex - toIndex);
+        }
+
+        public void clear() {
+            removeRange(0, size);
+        }
+
+        public double sum() {
+            checkForComodification();
+            double[] es = DoubleArrayList.this.elementData;
+            double s = 0.0d;
+            for (int i = offset, end = offset + size; i < end; i++)
+                s += es[i];
+            return s;
+        }
+
+        public void sort() {
+            checkForComodification();
+            DoubleArrayList.this.sort(offset, offset + size);
+            updateSizeAndModCount(0);
+        }
+
+        public double[] toArray() {
+            checkForComodification();
+            return Arrays.copyOfRange(DoubleArrayList.this.elementData, offset,
+                    offset + size);
+        }
+
+        public void forEach(DoubleConsumer action) {
+            Objects.requireNonNull(action);
+            checkForComodification();
+            double[] es = DoubleArrayList.this.elementData;
+            for (int i = offset, end = offset + size; i < end; i++)
+                action.accept(es[i]);
+            checkForComodification();
+        }
+
+        public Spliterator.OfDouble spliterator() {
+            checkForComodification();
+            return new DoubleArrayListSpliterator(DoubleArrayList.this, offset,
+                    offset + size, this.modCount);
+        }
+
+        public DoubleStream stream() {
+            return StreamSupport.doubleStream(spliterator(), false);
+        }
+
+        public SubList subList(int fromIndex, int toIndex) {
+            subListRangeCheck(fromIndex, toIndex, size);
+            return new SubList(this, fromIndex, toIndex);
+        }
+
+        private void rangeCheck(int index) {
+            if (index < 0 || index >= this.size)
+                throw new IndexOutOfBoundsException(outOfBoundsMsg(index));
+        }
+
+        private void rangeCheckForAdd(int index) {
+            if (index < 0 || index > this.size)
+                throw new IndexOutOfBoundsException(outOfBoundsMsg(index));
+        }
+
+        private String outOfBoundsMsg(int index) {
+            return "Index: "+index+", Size: "+this.size;
+        }
+
+        private void checkForComodification() {
+            if (DoubleArrayList.this.modCount != this.modCount)
+                throw new ConcurrentModificationException();
+        }
+
+        private void updateSizeAndModCount(int sizeChange) {
+            SubList slist = this;
+            do {
+                slist.size += sizeChange;
+                slist.modCount = DoubleArrayList.this.modCount;
+                slist = slist.parent;
+            } while (slist != null);
+        }
+
+        @Override
+        public String toString() {
+            checkForComodification();
+            return DoubleArrayList.toString(DoubleArrayList.this.elementData,
+                    offset, offset + size);
+        }
+    }
+
+    // 和集合框架的交互
+
+    /**
+     * 返回包含所有元素（装箱之后）的 ArrayList。
+     */
+    public ArrayList<Double> boxed() {
+        ArrayList<Double> r = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            r.add(elementData[i]);
+        return r;
+    }
+
+    // Object 方法
+
+    @Override
+    public DoubleArrayList clone() {
+        try {
+            DoubleArrayList v = (DoubleArrayList) super.clone();
+            v.elementData = Arrays.copyOf(elementData, size);
+            v.modCount = 0;
+            return v;
+        } catch (CloneNotSupportedException e) {
+            // this shouldn't happen, since we are Cloneable
+            throw new InternalError(e);
+        }
+    }
+
+    /**
+     * 两个列表的元素个数相同，并且对应位置的元素按 Double.equals 都相等时返回 true。
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (o == this)
+            return true;
+        if (!(o instanceof DoubleArrayList))
+            return false;
+        DoubleArrayList other = (DoubleArrayList) o;
+        if (other.size != size)
+            return false;
+        double[] a = elementData, b = other.elementData;
+        for (int i = 0; i < size; i++)
+            if (Double.doubleToLongBits(a[i]) != Double.doubleToLongBits(b[i]))
+                return false;
+        return true;
+    }
+
+    /**
+     * 和 List&lt;Double&gt; 的 hashCode 相同，见 AbstractList.hashCode。
+     */
+    @Override
+    public int hashCode() {
+        double[] es = elementData;
+        int hashCode = 1;
+        for (int i = 0; i < size; i++)
+            hashCode = 31*hashCode + Double.hashCode(es[i]);
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return toString(elementData, 0, size);
+    }
+
+    static String toString(double[] es, int from, int to) {
+        if (from == to)
+            return "[]";
+        StringBuilder sb = new StringBuilder();
+        sb.append('[');
+        for (int i = from; ; ) {
+            sb.append(es[i]);
+            if (++i == to)
+                return sb.append(']').toString();
+            sb.append(',').append(' ');
+        }
+    }
+
+    /**
+     * 把列表保存到流中（序列化）。
+     *
+     * @serialData 先写入元素个数（int），然后按顺序写入所有元素（double）。
+     */
+    private void writeObject(java.io.ObjectOutputStream s)
+            throws java.io.IOException{
+        int expectedModCount = modCount;
+        s.defaultWriteObject();
+
+        s.writeInt(size);
+        for (int i=0; i<size; i++) {
+            s.writeDouble(elementData[i]);
+        }
+
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    /**
+     * 从流中恢复列表（反序列化）。
+     */
+    private void readObject(java.io.ObjectInputStream s)
+            throws java.io.IOException, ClassNotFoundException {
+        elementData = EMPTY_ELEMENTDATA;
+
+        s.defaultReadObject();
+
+        int n = s.readInt();
+        if (n < 0)
+            throw new java.io.InvalidObjectException("Illegal size: " + n);
+        if (n > 0) {
+            double[] a = new double[n];
+            for (int i=0; i<n; i++) {
+                a[i] = s.readDouble();
+            }
+            elementData = a;
+        }
+        size = n;
+    }
+}
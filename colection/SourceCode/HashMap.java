@@ -512,6 +512,41 @@ public class HashMap<K,V> extends AbstractMap<K,V>
      */
     final float loadFactor;    //哈希表的负载因子
 
+    /**
+     * The number of buckets migrated from {@link #oldTable} on each keyed
+     * operation while an incremental resize is in progress, or zero if
+     * the table is rehashed all at once by {@link #resize()}.  Not
+     * serialized, so the serial form is unchanged and a deserialized map
+     * always rehashes all at once.
+     */
+    //渐进式扩容每次操作最多迁移的桶数。为 0 表示关闭渐进式扩容，resize 一次性迁移整个旧表。
+    //不参与序列化，序列化格式保持不变，反序列化得到的 HashMap 总是一次性扩容。
+    final transient int resizeBatch;
+
+    /**
+     * The table being drained by an incremental resize, or null if no
+     * incremental resize is in progress.
+     */
+    //渐进式扩容中还没迁移完的旧表，不为 null 说明正在渐进式扩容。
+    //此时 table 已经是新表，旧表中某个桶一旦迁移完毕就被置为 null。
+    transient Node<K,V>[] oldTable;
+
+    /**
+     * The next bucket of {@link #oldTable} to be migrated sequentially.
+     */
+    //下一个按顺序迁移的旧表桶下标，小于它的旧表桶都已经迁移完毕。
+    transient int migrateIndex;
+
+    /**
+     * The number of old buckets migrated sequentially per operation during
+     * the current incremental resize: at least {@link #resizeBatch}, and
+     * large enough that the old table is drained before the insertions
+     * that can trigger the next resize run out.
+     */
+    //本次渐进式扩容每次操作顺序迁移的旧桶数。不小于 resizeBatch，并且保证在
+    //size 再次超过 threshold 之前旧表已经迁移完，resize 不会退化成一次性迁移。
+    transient int migrateStep;
+
     /* ---------------- Public operations -------------- */
 
     /**
@@ -525,6 +560,46 @@ public class HashMap<K,V> extends AbstractMap<K,V>
      */
     //使用指定的初始容量和负载因子，重新构建空的哈希表。如果初始容量和负载因子出现负数，抛出异常、
     public HashMap(int initialCapacity, float loadFactor) {//双参数的构造函数
+        this(initialCapacity, loadFactor, 0);
+    }
+
+    /**
+     * Constructs an empty <tt>HashMap</tt> with the specified initial
+     * capacity and load factor, resizing incrementally if
+     * {@code resizeBatch} is positive.  In that mode a resize only
+     * allocates the new table; the old buckets are then migrated, using
+     * the same lo/hi split as {@link #resize()}, a few at a time by later
+     * {@code put}, {@code remove} and other writing calls, so that no single
+     * call pays for rehashing the whole table.  {@code get},
+     * {@code containsKey} and {@code containsValue} only read both tables.
+     * Iterators, spliterators and the bulk {@code forEach}/{@code replaceAll}
+     * methods first finish the migration, which is a write: while a resize
+     * is pending they must not run concurrently with other readers without
+     * external synchronization.
+     * 使用指定的初始容量和负载因子构造空的哈希表。如果 resizeBatch 大于 0，
+     * 使用渐进式扩容（类似 Redis 的 progressive rehash）：扩容时只分配新表，
+     * 新旧两个表同时存在，之后每次按 key 的写操作（put、remove、compute 等）
+     * 先迁移 key 所在的旧桶，再顺序迁移若干个旧桶，把一次 O(n) 的停顿分摊到
+     * 后续操作中。每次迁移的桶数不小于 resizeBatch，并且按扩容时距离下一个
+     * 阈值还剩的插入次数放大，保证下一次扩容之前旧表已经迁移完。get、containsKey、containsValue 不迁移，只读取
+     * 两个表，所以没有写线程时仍然可以被多个线程并发读取。
+     * 迭代器、spliterator、forEach、replaceAll 会先把剩下的桶一次性迁移完：
+     * 迭代器按新表的桶顺序遍历，遍历过程中 put 已有的 key 也会触发迁移，
+     * 同时遍历两个表无法保证每个节点恰好访问一次。这一步的代价不超过遍历
+     * 本身的 O(n)，但它修改了内部结构，扩容未完成时不能和其他读线程无同步地
+     * 并发遍历。
+     *
+     * @param  initialCapacity the initial capacity
+     * @param  loadFactor      the load factor
+     * @param  resizeBatch     the minimum number of old buckets migrated
+     *         per operation, or zero to rehash the whole table at once.
+     *         More are migrated when needed to finish before the next
+     *         resize, e.g. one when the load factor is at least 1 but two
+     *         with the default load factor
+     * @throws IllegalArgumentException if the initial capacity or
+     *         resizeBatch is negative or the load factor is nonpositive
+     */
+    public HashMap(int initialCapacity, float loadFactor, int resizeBatch) {
         if (initialCapacity < 0)              //初始容量为负 ，抛出异常。
             throw new IllegalArgumentException("Illegal initial capacity: " +
                     initialCapacity);
@@ -533,7 +608,11 @@ public class HashMap<K,V> extends AbstractMap<K,V>
         if (loadFactor <= 0 || Float.isNaN(loadFactor))          //如果负载因子小于等于0，或者负载因子not a number，非数字值，则抛出异常
             throw new IllegalArgumentException("Illegal load factor: " +
                     loadFactor);
+        if (resizeBatch < 0)
+            throw new IllegalArgumentException("Illegal resize batch: " +
+                    resizeBatch);
         this.loadFactor = loadFactor;                         //赋值hashmap的负载因子
+        this.resizeBatch = resizeBatch;
         this.threshold = tableSizeFor(initialCapacity);      //将初始容量变为大于等于它的最小的2的整数次幂，然后赋值给初始容量
     }
 
@@ -554,6 +633,7 @@ public class HashMap<K,V> extends AbstractMap<K,V>
      */
     public HashMap() {               //没有参数的构造函数。初始容量为16.负载因子为0.75
         this.loadFactor = DEFAULT_LOAD_FACTOR; // all other fields defaulted
+        this.resizeBatch = 0;
     }
 
     /**
@@ -568,6 +648,7 @@ public class HashMap<K,V> extends AbstractMap<K,V>
      */
     public HashMap(Map<? extends K, ? extends V> m) {      //使用和指定Map相同的映射来创建哈希表。
         this.loadFactor = DEFAULT_LOAD_FACTOR;   // 负载因子为默认0.75
+        this.resizeBatch = 0;
         putMapEntries(m, false);
     }
 
@@ -653,7 +734,11 @@ public class HashMap<K,V> extends AbstractMap<K,V>
      */
     final Node<K,V> getNode(int hash, Object key) {      //根据key,和key的hash出的值，找到hashmap中对应的节点。
         Node<K,V>[] tab; Node<K,V> first, e; int n; K k;
-        if ((tab = table) != null && (n = tab.length) > 0 &&    //如果表不为空，且表长度大于0，
+        //正在渐进式扩容时只读不迁移：hash 对应的旧桶还没迁移，key 就只可能在旧桶中
+        //（写操作总是先迁移旧桶再写新表），否则在新表中查找。
+        if ((tab = oldTable) == null || tab[(tab.length - 1) & hash] == null)
+            tab = table;
+        if (tab != null && (n = tab.length) > 0 &&    //如果表不为空，且表长度大于0，
                 (first = tab[(n - 1) & hash]) != null) {            //根据hash值找到对应的表的索引位置上的桶，桶不为空时，将这个桶的头结点赋值给first。
             if (first.hash == hash && // always check first node    //判断first头结点hash值，
                     ((k = first.key) == key || (key != null && key.equals(k))))    //判断传入的hash,key和头结点first的相同，说明找到了这个点
@@ -715,6 +800,8 @@ public class HashMap<K,V> extends AbstractMap<K,V>
         //判断table是否为空，或长度为0 ，如果满足，则调用resize(),进行初始化，并且把数组长度赋值给n。
         if ((tab = table) == null || (n = tab.length) == 0)
             n = (tab = resize()).length;
+        if (oldTable != null)      //正在渐进式扩容，先迁移 hash 对应的旧桶。
+            migrate(hash);
         if ((p = tab[i = (n - 1) & hash]) == null)      //(n-1) &hash, 与hash%length 相同，即散列函数，得到索引i，并且判断对应桶tab[i]是否为空。
             tab[i] = newNode(hash, key, value, null);  //如果为空，则新建一个链表节点放入哈希桶中。
         else {  //如果对应桶位置tab[i]不为空。
@@ -762,6 +849,8 @@ public class HashMap<K,V> extends AbstractMap<K,V>
      * @return the table
      */
     final Node<K,V>[] resize() {      //resize，重新构造哈希表结构大小，返回 哈希桶数组。
+        if (oldTable != null)      //上一次渐进式扩容还没有完成（只有 putAll 预扩容和 treeifyBin 扩小表时会发生），先把剩下的桶迁移完。
+            finishMigration();
         Node<K,V>[] oldTab = table;
         int oldCap = (oldTab == null) ? 0 : oldTab.length; //如果旧表为空，容量桶数显然为0，如果不为空，则容量桶数为旧表的长度。
         int oldThr = threshold;  //初始容量阈值赋值给oldThr
@@ -792,51 +881,119 @@ public class HashMap<K,V> extends AbstractMap<K,V>
         Node<K,V>[] newTab = (Node<K,V>[])new Node[newCap];
         table = newTab; //对hashmap的table成员赋值为新表。
         if (oldTab != null) {         //如果旧表不为空，
-            for (int j = 0; j < oldCap; ++j) {         //遍历旧表
-                Node<K,V> e;
-                if ((e = oldTab[j]) != null) {           //将遍历到索引为j的表头节点赋值给e,如果表头节点不为null,说明桶不为空，
-                    oldTab[j] = null;         //将表头节点直接赋值为null,便于垃圾回收。
-                    if (e.next == null)    //如果上一步存的表头节点的e为空，代表旧表的这个桶上只有一个节点，
-                        newTab[e.hash & (newCap - 1)] = e;  //只有一个节点时，这个hash值从新通过%(length-1)求得新索引，直接放入
-                    else if (e instanceof TreeNode)  //如果这个节点是红黑树节点。
-                        ((TreeNode<K,V>)e).split(this, newTab, j, oldCap);    //就调用split方法对这个桶中红黑树所有节点进行重新hash分布
-                    else { // preserve order           //如果为普通链表节点
-                        Node<K,V> loHead = null, loTail = null;//存储跟原索引位置相同的节点。
-                        Node<K,V> hiHead = null, hiTail = null;//存储跟原索引+oldCap的节点。
-                        //因为在旧表同索引位置，它们的n(n为2^n=oldCap)位右边相同，则扩容后，n位上为0还是为1决定了它们是散列到原索引，还是索引+oldCap上。
-                        Node<K,V> next;
-                        do {
-                            next = e.next;
-                            if ((e.hash & oldCap) == 0) { //  n位上为零，放入原索引相同位置。即链入lo链表
-                                if (loTail == null)        //首次时，将loHead赋值为第一个节点。
-                                    loHead = e;
-                                else       //    不是第一个节点，就正常遍历，
-                                    loTail.next = e;   //将遍历到尾节点串在当前节点next后面
-                                loTail = e;        //更新尾结点。
-                            }
-                            else {              //和上面的情况相似，只是这边连接的是应该放入原索引+oldCap位置的节点。链入hi链表
-                                if (hiTail == null)
-                                    hiHead = e;
-                                else
-                                    hiTail.next = e;
-                                hiTail = e;
-                            }
-                        } while ((e = next) != null); //e赋值为下一个链表节点。直到末尾。
-                        if (loTail != null) {       //如果尾结点不为空，即lo不为空
-                            loTail.next = null;    //设置tail尾结点的next为null.
-                            newTab[j] = loHead;   //原索引位置桶放入lo链表的头结点
-                        }
-                        if (hiTail != null) {  //与上面类似
-                            hiTail.next = null;
-                            newTab[j + oldCap] = hiHead;  //原索引位置+oldCap的位置放入hi链表头结点。
-                        }
-                    }
+            if (resizeBatch > 0) {     //渐进式扩容：只记录旧表，桶的迁移分摊到之后的 get/put/remove 中。
+                //下一次因为 size 超过阈值而扩容之前（包括触发扩容的那一次）至少还有 room 次插入，
+                //每次操作迁移 migrateStep 个桶，保证这之前 oldCap 个旧桶都已经迁移完。
+                long room = (long)newThr - size + 1;
+                oldTable = oldTab;
+                migrateIndex = 0;
+                migrateStep = (room <= 0) ? oldCap :
+                        Math.max(resizeBatch, (int)((oldCap + room - 1) / room));
+            }
+            else {
+                for (int j = 0; j < oldCap; ++j) {         //遍历旧表
+                    if (oldTab[j] != null)           //桶不为空时，把它拆分到新表中。
+                        transferBin(oldTab, newTab, j);
                 }
             }
         }
         return newTab;     //返回扩容后的表。
     }
 
+    /**
+     * Moves the bin at index j of oldTab into newTab, whose length is
+     * twice that of oldTab.  Nodes stay at index j or move to
+     * j + oldTab.length depending on the newly significant hash bit.
+     * Both target bins must still be empty, which holds for
+     * {@link #resize()} and for incremental migration, since no key can
+     * reach those bins of the new table before bin j has been moved.
+     * 把旧表 j 位置的桶拆分到新表中：节点要么留在 j，要么移到 j + oldCap。
+     * 此方法由 resize 和渐进式扩容共用。
+     */
+    final void transferBin(Node<K,V>[] oldTab, Node<K,V>[] newTab, int j) {
+        Node<K,V> e = oldTab[j];
+        int oldCap = oldTab.length, newCap = newTab.length;
+        oldTab[j] = null;         //将表头节点直接赋值为null,便于垃圾回收。
+        if (e.next == null)    //如果上一步存的表头节点的e为空，代表旧表的这个桶上只有一个节点，
+            newTab[e.hash & (newCap - 1)] = e;  //只有一个节点时，这个hash值从新通过%(length-1)求得新索引，直接放入
+        else if (e instanceof TreeNode)  //如果这个节点是红黑树节点。
+            ((TreeNode<K,V>)e).split(this, newTab, j, oldCap);    //就调用split方法对这个桶中红黑树所有节点进行重新hash分布
+        else { // preserve order           //如果为普通链表节点
+            Node<K,V> loHead = null, loTail = null;//存储跟原索引位置相同的节点。
+            Node<K,V> hiHead = null, hiTail = null;//存储跟原索引+oldCap的节点。
+            //因为在旧表同索引位置，它们的n(n为2^n=oldCap)位右边相同，则扩容后，n位上为0还是为1决定了它们是散列到原索引，还是索引+oldCap上。
+            Node<K,V> next;
+            do {
+                next = e.next;
+                if ((e.hash & oldCap) == 0) { //  n位上为零，放入原索引相同位置。即链入lo链表
+                    if (loTail == null)        //首次时，将loHead赋值为第一个节点。
+                        loHead = e;
+                    else       //    不是第一个节点，就正常遍历，
+                        loTail.next = e;   //将遍历到尾节点串在当前节点next后面
+                    loTail = e;        //更新尾结点。
+                }
+                else {              //和上面的情况相似，只是这边连接的是应该放入原索引+oldCap位置的节点。链入hi链表
+                    if (hiTail == null)
+                        hiHead = e;
+                    else
+                        hiTail.next = e;
+                    hiTail = e;
+                }
+            } while ((e = next) != null); //e赋值为下一个链表节点。直到末尾。
+            if (loTail != null) {       //如果尾结点不为空，即lo不为空
+                loTail.next = null;    //设置tail尾结点的next为null.
+                newTab[j] = loHead;   //原索引位置桶放入lo链表的头结点
+            }
+            if (hiTail != null) {  //与上面类似
+                hiTail.next = null;
+                newTab[j + oldCap] = hiHead;  //原索引位置+oldCap的位置放入hi链表头结点。
+            }
+        }
+    }
+
+    /**
+     * Migrates the old bin that hash maps to, followed by up to
+     * migrateStep further old bins in index order.  Called at the start
+     * of keyed operations while an incremental resize is in progress.
+     * 渐进式扩容时，在按 key 的操作开始前调用：先迁移 hash 所在的旧桶，
+     * 保证接下来只需要访问新表；再顺序迁移至多 migrateStep 个旧桶，
+     * 全部迁移完毕后丢弃旧表。
+     */
+    final void migrate(int hash) {
+        Node<K,V>[] oldTab = oldTable, newTab = table;
+        int oldCap = oldTab.length;
+        int j = hash & (oldCap - 1);
+        if (oldTab[j] != null)
+            transferBin(oldTab, newTab, j);
+        int i = migrateIndex, bound = (oldCap - i > migrateStep) ? i + migrateStep : oldCap;
+        for (; i < bound; ++i) {
+            if (oldTab[i] != null)
+                transferBin(oldTab, newTab, i);
+        }
+        if ((migrateIndex = i) >= oldCap) {
+            oldTable = null;
+            migrateIndex = 0;
+        }
+    }
+
+    /**
+     * Completes any incremental resize in progress.  Called before
+     * operations that traverse the whole table.
+     * 一次性迁移完剩下的旧桶。遍历整个表的操作在开始前调用。
+     */
+    final void finishMigration() {
+        Node<K,V>[] oldTab;
+        if ((oldTab = oldTable) != null) {
+            Node<K,V>[] newTab = table;
+            for (int j = migrateIndex; j < oldTab.length; ++j) {
+                if (oldTab[j] != null)
+                    transferBin(oldTab, newTab, j);
+            }
+            oldTable = null;
+            migrateIndex = 0;
+        }
+    }
+
     /**
      * Replaces all linked nodes in bin at index for given hash unless
      * table is too small, in which case resizes instead.
@@ -907,6 +1064,8 @@ public class HashMap<K,V> extends AbstractMap<K,V>
     final Node<K,V> removeNode(int hash, Object key, Object value,
                                                  boolean matchValue, boolean movable) {
         Node<K,V>[] tab; Node<K,V> p; int n, index;               //removeNode,第一步是从hashmap中找到节点。第二步才是删除。
+        if (oldTable != null)
+            migrate(hash);
         //哈希表不为空，且容量大于0，并且传入的hash值计算得到的索引位置上存在节点。
         if ((tab = table) != null && (n = tab.length) > 0 &&
                 (p = tab[index = (n - 1) & hash]) != null) {       //将头结点赋值给p
@@ -954,6 +1113,8 @@ public class HashMap<K,V> extends AbstractMap<K,V>
     public void clear() {              //清空hashmap
         Node<K,V>[] tab;
         modCount++;           //清空也算是改变了哈希表结构，所以次数加1。
+        oldTable = null;      //正在渐进式扩容的话，旧表中剩下的节点直接丢弃。
+        migrateIndex = 0;
         if ((tab = table) != null && size > 0) {  //如果表不为空，且键值对不为0.
             size = 0;      //将表清空以后，键值对为0；
             for (int i = 0; i < tab.length; ++i)   //将数组中的每一个桶都赋值null。方便垃圾回收机制。
@@ -979,6 +1140,15 @@ public class HashMap<K,V> extends AbstractMap<K,V>
                         return true;
                 }
             }
+            if ((tab = oldTable) != null) {      //正在渐进式扩容，还没迁移的旧桶也要查找，但不迁移。
+                for (int i = 0; i < tab.length; ++i) {
+                    for (Node<K,V> e = tab[i]; e != null; e = e.next) {
+                        if ((v = e.value) == value ||
+                                (value != null && value.equals(v)))
+                            return true;
+                    }
+                }
+            }
         }
         return false;      //没找到就返回false；
     }
@@ -1029,6 +1199,7 @@ public class HashMap<K,V> extends AbstractMap<K,V>
             Node<K,V>[] tab;
             if (action == null)
                 throw new NullPointerException();
+            finishMigration();
             if (size > 0 && (tab = table) != null) {
                 int mc = modCount;
                 for (int i = 0; i < tab.length; ++i) {
@@ -1083,6 +1254,7 @@ public class HashMap<K,V> extends AbstractMap<K,V>
             Node<K,V>[] tab;
             if (action == null)
                 throw new NullPointerException();
+            finishMigration();
             if (size > 0 && (tab = table) != null) {
                 int mc = modCount;
                 for (int i = 0; i < tab.length; ++i) {
@@ -1150,6 +1322,7 @@ public class HashMap<K,V> extends AbstractMap<K,V>
             Node<K,V>[] tab;
             if (action == null)
                 throw new NullPointerException();
+            finishMigration();
             if (size > 0 && (tab = table) != null) {
                 int mc = modCount;
                 for (int i = 0; i < tab.length; ++i) {
@@ -1217,6 +1390,8 @@ public class HashMap<K,V> extends AbstractMap<K,V>
         if (size > threshold || (tab = table) == null ||
                 (n = tab.length) == 0)
             n = (tab = resize()).length;
+        if (oldTable != null)
+            migrate(hash);
         if ((first = tab[i = (n - 1) & hash]) != null) {
             if (first instanceof TreeNode)
                 old = (t = (TreeNode<K,V>)first).getTreeNode(hash, key);
@@ -1291,6 +1466,8 @@ public class HashMap<K,V> extends AbstractMap<K,V>
         if (size > threshold || (tab = table) == null ||
                 (n = tab.length) == 0)
             n = (tab = resize()).length;
+        if (oldTable != null)
+            migrate(hash);
         if ((first = tab[i = (n - 1) & hash]) != null) {
             if (first instanceof TreeNode)
                 old = (t = (TreeNode<K,V>)first).getTreeNode(hash, key);
@@ -1346,6 +1523,8 @@ public class HashMap<K,V> extends AbstractMap<K,V>
         if (size > threshold || (tab = table) == null ||
                 (n = tab.length) == 0)
             n = (tab = resize()).length;
+        if (oldTable != null)
+            migrate(hash);
         if ((first = tab[i = (n - 1) & hash]) != null) {
             if (first instanceof TreeNode)
                 old = (t = (TreeNode<K,V>)first).getTreeNode(hash, key);
@@ -1395,6 +1574,7 @@ public class HashMap<K,V> extends AbstractMap<K,V>
         Node<K,V>[] tab;
         if (action == null)
             throw new NullPointerException();
+        finishMigration();
         if (size > 0 && (tab = table) != null) {
             int mc = modCount;
             for (int i = 0; i < tab.length; ++i) {
@@ -1411,6 +1591,7 @@ public class HashMap<K,V> extends AbstractMap<K,V>
         Node<K,V>[] tab;
         if (function == null)
             throw new NullPointerException();
+        finishMigration();
         if (size > 0 && (tab = table) != null) {
             int mc = modCount;
             for (int i = 0; i < tab.length; ++i) {
@@ -1531,6 +1712,7 @@ public class HashMap<K,V> extends AbstractMap<K,V>
         int index;             // current slot
 
         HashIterator() {
+            finishMigration();      //迭代器只遍历新表，所以先完成渐进式扩容。
             expectedModCount = modCount;
             Node<K,V>[] t = table;
             current = next = null;
@@ -1610,6 +1792,7 @@ public class HashMap<K,V> extends AbstractMap<K,V>
             int hi;
             if ((hi = fence) < 0) {
                 HashMap<K,V> m = map;
+                m.finishMigration();
                 est = m.size;
                 expectedModCount = m.modCount;
                 Node<K,V>[] tab = m.table;
@@ -1646,6 +1829,7 @@ public class HashMap<K,V> extends AbstractMap<K,V>
             HashMap<K,V> m = map;
             Node<K,V>[] tab = m.table;
             if ((hi = fence) < 0) {
+                m.finishMigration();
                 mc = expectedModCount = m.modCount;
                 hi = fence = (tab == null) ? 0 : tab.length;
             }
@@ -1718,6 +1902,7 @@ public class HashMap<K,V> extends AbstractMap<K,V>
             HashMap<K,V> m = map;
             Node<K,V>[] tab = m.table;
             if ((hi = fence) < 0) {
+                m.finishMigration();
                 mc = expectedModCount = m.modCount;
                 hi = fence = (tab == null) ? 0 : tab.length;
             }
@@ -1789,6 +1974,7 @@ public class HashMap<K,V> extends AbstractMap<K,V>
             HashMap<K,V> m = map;
             Node<K,V>[] tab = m.table;
             if ((hi = fence) < 0) {
+                m.finishMigration();
                 mc = expectedModCount = m.modCount;
                 hi = fence = (tab == null) ? 0 : tab.length;
             }
@@ -1877,6 +2063,8 @@ public class HashMap<K,V> extends AbstractMap<K,V>
      */      //初始化所有参数。 被clone和readObject调用。
     void reinitialize() {
         table = null;
+        oldTable = null;
+        migrateIndex = 0;
         entrySet = null;
         keySet = null;
         values = null;
@@ -1894,6 +2082,7 @@ public class HashMap<K,V> extends AbstractMap<K,V>
     // Called only from writeObject, to ensure compatible ordering.
     void internalWriteEntries(java.io.ObjectOutputStream s) throws IOException {
         Node<K,V>[] tab;
+        finishMigration();
         if (size > 0 && (tab = table) != null) {
             for (int i = 0; i < tab.length; ++i) {
                 for (Node<K,V> e = tab[i]; e != null; e = e.next) {
@@ -0,0 +1,384 @@
+package java.util;
+
+import java.util.function.IntConsumer;
+
+/**
+ * 元素是原始类型 int 的哈希集合，结构和 IntIntHashMap 相同，只是没有值
+ * 数组：开放定址（线性探测），元素直接存放在 int[] keys 中，没有节点对象，
+ * 也没有装箱。
+ *
+ * 和 HashSet&lt;Integer&gt; 相比，每个元素从一个 HashMap.Node 加一个 Integer
+ * （约 48 字节）变成 int[] 中的一格（负载因子 0.5 时平均 8 字节），适合对
+ * 大量 id 去重。
+ *
+ * 元素 0 被用作空槽的标记，所以它单独用 hasZeroKey 记录。
+ *
+ * 此类不是线程安全的；forEach 和 iterator 是 fail-fast 的。
+ *
+ * @see IntIntHashMap
+ * @see LongHashSet
+ * @see OpenHashSet
+ */
+public class IntHashSet implements Cloneable {
+
+    /** 存放元素的数组，0 表示空槽。第一次使用时才会分配。 */
+    transient int[] keys;
+
+    /** 元素 0 是否存在。 */
+    transient boolean hasZeroKey;
+
+    /** 元素的个数（包括 0）。 */
+    transient int size;
+
+    /** 结构修改次数，用于 forEach 和 iterator 的 fail-fast。 */
+    transient int modCount;
+
+    /** 扩容阈值，table 还没有分配时保存初始容量。 */
+    int threshold;
+
+    /** 负载因子。 */
+    final float loadFactor;
+
+    /**
+     * 使用指定的初始容量和负载因子构造一个空集合。
+     *
+     * @param initialCapacity 预计的元素个数
+     * @param loadFactor 负载因子，必须在 (0, 1) 之间
+     * @throws IllegalArgumentException 如果初始容量为负数或者负载因子不合法
+     */
+    public IntHashSet(int initialCapacity, float loadFactor) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal initial capacity: " +
+                    initialCapacity);
+        if (!(loadFactor > 0 && loadFactor < 1))
+            throw new IllegalArgumentException("Illegal load factor: " +
+                    loadFactor);
+        this.loadFactor = loadFactor;
+        this.threshold = LongObjectHashMap.capacityFor(initialCapacity, loadFactor);
+    }
+
+    /**
+     * 使用指定的初始容量和默认负载因子（0.5）构造一个空集合。
+     */
+    public IntHashSet(int initialCapacity) {
+        this(initialCapacity, LongObjectHashMap.DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * 使用默认初始容量（16）和默认负载因子（0.5）构造一个空集合。
+     */
+    public IntHashSet() {
+        this.loadFactor = LongObjectHashMap.DEFAULT_LOAD_FACTOR;
+    }
+
+    // 查询操作
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 如果集合中包含 key，返回 true。
+     */
+    public boolean contains(int key) {
+        return (key == 0) ? hasZeroKey : indexOf(key) >= 0;
+    }
+
+    /**
+     * 查找非 0 的 key 所在的槽位，找不到返回 -1。
+     */
+    final int indexOf(int key) {
+        int[] ks; int k;
+        if ((ks = keys) == null)
+            return -1;
+        int mask = ks.length - 1;
+        for (int i = IntIntHashMap.hash(key) & mask; (k = ks[i]) != 0; i = (i + 1) & mask) {
+            if (k == key)
+                return i;
+        }
+        return -1;
+    }
+
+    // 修改操作
+
+    /**
+     * 如果集合中还没有 key，把它加入集合并返回 true。
+     */
+    public boolean add(int key) {
+        if (key == 0) {
+            if (hasZeroKey)
+                return false;
+            hasZeroKey = true;
+            ++modCount;
+            ++size;
+            return true;
+        }
+        int[] ks; int k;
+        if ((ks = keys) == null)
+            ks = resize();
+        int mask = ks.length - 1;
+        int i = IntIntHashMap.hash(key) & mask;
+        for (; (k = ks[i]) != 0; i = (i + 1) & mask) {
+            if (k == key)
+                return false;
+        }
+        ks[i] = key;
+        ++modCount;
+        if (++size > threshold)
+            resize();
+        return true;
+    }
+
+    /**
+     * 把 a 中的所有元素加入集合，返回新加入的元素个数。先按最终的元素个数
+     * 扩容一次，避免逐个加入时多次扩容。
+     */
+    public int addAll(int... a) {
+        int need = size + a.length;
+        if (keys == null)
+            threshold = Math.max(threshold,
+                    LongObjectHashMap.capacityFor(a.length, loadFactor));
+        else {
+            while (need > threshold && keys.length < HashMap.MAXIMUM_CAPACITY)
+                resize();
+        }
+        int added = 0;
+        for (int k : a) {
+            if (add(k))
+                added++;
+        }
+        return added;
+    }
+
+    /**
+     * 如果集合中有 key，把它删除并返回 true。
+     */
+    public boolean remove(int key) {
+        if (key == 0) {
+            if (!hasZeroKey)
+                return false;
+            hasZeroKey = false;
+            ++modCount;
+            --size;
+            return true;
+        }
+        int i = indexOf(key);
+        if (i < 0)
+            return false;
+        shiftKeys(i);
+        ++modCount;
+        --size;
+        return true;
+    }
+
+    /**
+     * 删除 pos 位置的元素，并把后续探测链上的元素往前挪。
+     * 原理见 LongObjectHashMap.shiftKeys。
+     */
+    final void shiftKeys(int pos) {
+        int[] ks = keys;
+        int mask = ks.length - 1;
+        for (;;) {
+            int last = pos, slot, k;
+            pos = (pos + 1) & mask;
+            for (;;) {
+                if ((k = ks[pos]) == 0) {
+                    ks[last] = 0;
+                    return;
+                }
+                slot = IntIntHashMap.hash(k) & mask;
+                if (last <= pos ? (last >= slot || slot > pos)
+                                : (last >= slot && slot > pos))
+                    break;
+                pos = (pos + 1) & mask;
+            }
+            ks[last] = k;
+        }
+    }
+
+    /**
+     * 删除所有元素。保留已经分配的数组。
+     */
+    public void clear() {
+        ++modCount;
+        if (keys != null && size > 0)
+            Arrays.fill(keys, 0);
+        hasZeroKey = false;
+        size = 0;
+    }
+
+    /**
+     * 初始化或者加倍 table，见 LongObjectHashMap.resize。
+     */
+    final int[] resize() {
+        int[] oldKeys = keys;
+        int oldCap = (oldKeys == null) ? 0 : oldKeys.length;
+        int newCap;
+        if (oldCap > 0) {
+            if (oldCap >= HashMap.MAXIMUM_CAPACITY) {
+                if (size >= oldCap - 1)
+                    throw new IllegalStateException("Set too big");
+                threshold = oldCap - 1;
+                return oldKeys;
+            }
+            newCap = oldCap << 1;
+        }
+        else if (threshold > 0)
+            newCap = threshold;
+        else
+            newCap = LongObjectHashMap.DEFAULT_INITIAL_CAPACITY;
+        threshold = LongObjectHashMap.thresholdFor(newCap, loadFactor);
+        int[] newKeys = new int[newCap];
+        keys = newKeys;
+        if (oldKeys != null) {
+            int mask = newCap - 1;
+            for (int j = 0; j < oldCap; ++j) {
+                int k;
+                if ((k = oldKeys[j]) != 0) {
+                    int i = IntIntHashMap.hash(k) & mask;
+                    while (newKeys[i] != 0)
+                        i = (i + 1) & mask;
+                    newKeys[i] = k;
+                }
+            }
+        }
+        return newKeys;
+    }
+
+    // 遍历
+
+    /**
+     * 对每个元素执行 action，遍历期间如果集合被结构性修改，抛出
+     * ConcurrentModificationException。
+     */
+    public void forEach(IntConsumer action) {
+        if (action == null)
+            throw new NullPointerException();
+        int mc = modCount;
+        if (hasZeroKey)
+            action.accept(0);
+        int[] ks; int k;
+        if ((ks = keys) != null) {
+            for (int i = 0; i < ks.length && modCount == mc; ++i) {
+                if ((k = ks[i]) != 0)
+                    action.accept(k);
+            }
+        }
+        if (modCount != mc)
+            throw new ConcurrentModificationException();
+    }
+
+    /**
+     * 返回集合的迭代器，顺序不确定。迭代器不支持 remove。
+     */
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            int index = hasZeroKey ? -1 : 0;    // -1 表示下一个返回元素 0
+            int remaining = size;
+            final int expectedModCount = modCount;
+
+            public boolean hasNext() {
+                return remaining > 0;
+            }
+
+            public int nextInt() {
+                if (modCount != expectedModCount)
+                    throw new ConcurrentModificationException();
+                if (remaining <= 0)
+                    throw new NoSuchElementException();
+                --remaining;
+                if (index < 0) {
+                    index = 0;
+                    return 0;
+                }
+                int[] ks = keys; int k;
+                while ((k = ks[index++]) == 0)
+                    ;
+                return k;
+            }
+        };
+    }
+
+    /**
+     * 返回包含所有元素的数组，顺序不确定。
+     */
+    public int[] toArray() {
+        int[] r = new int[size];
+        int n = 0;
+        if (hasZeroKey)
+            r[n++] = 0;
+        int[] ks; int k;
+        if ((ks = keys) != null) {
+            for (int i = 0; i < ks.length; ++i) {
+                if ((k = ks[i]) != 0)
+                    r[n++] = k;
+            }
+        }
+        return r;
+    }
+
+    // Object 方法
+
+    @Override
+    public IntHashSet clone() {
+        IntHashSet result;
+        try {
+            result = (IntHashSet)super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new InternalError(e);
+        }
+        if (keys != null)
+            result.keys = keys.clone();
+        result.modCount = 0;
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this)
+            return true;
+        if (!(o instanceof IntHashSet))
+            return false;
+        IntHashSet s = (IntHashSet)o;
+        if (s.size != size || s.hasZeroKey != hasZeroKey)
+            return false;
+        int[] ks; int k;
+        if ((ks = keys) != null) {
+            for (int i = 0; i < ks.length; ++i) {
+                if ((k = ks[i]) != 0 && s.indexOf(k) < 0)
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 和 Set&lt;Integer&gt; 的 hashCode 相同：所有元素的 hashCode 之和。
+     */
+    @Override
+    public int hashCode() {
+        int h = 0;
+        int[] ks;
+        if ((ks = keys) != null) {
+            for (int i = 0; i < ks.length; ++i)
+                h += ks[i];
+        }
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append('[');
+        forEach(k -> {
+            if (sb.length() > 1)
+                sb.append(',').append(' ');
+            sb.append(k);
+        });
+        return sb.append(']').toString();
+    }
+}
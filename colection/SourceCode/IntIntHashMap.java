@@ -0,0 +1,440 @@
+package java.util;
+
+/**
+ * 键和值都是原始类型 int 的哈希表，结构和 LongObjectHashMap 相同：
+ * 开放定址（线性探测），int[] keys 和 int[] values 两个平行数组，没有
+ * 任何节点对象，也没有装箱。
+ *
+ * 因为值是原始类型，不能用 null 表示"不存在"，所以构造时可以指定一个
+ * noEntryValue（默认为 0），get/put/remove 在映射不存在时返回它。
+ * 需要区分"不存在"和"值等于 noEntryValue"时，使用 containsKey。
+ *
+ * 此类适合做计数器（见 addTo），例如按 id 统计出现次数。
+ *
+ * 和 HashMap 一样，此类不是线程安全的；forEach 是 fail-fast 的。
+ *
+ * @see LongObjectHashMap
+ * @see HashMap
+ */
+public class IntIntHashMap implements Cloneable {
+
+    /**
+     * forEach 使用的回调接口。
+     */
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(int key, int value);
+    }
+
+    /** 存放键的数组，0 表示空槽。第一次使用时才会分配。 */
+    transient int[] keys;
+
+    /** 和 keys 平行的值数组。 */
+    transient int[] values;
+
+    /** 键 0 是否存在映射。 */
+    transient boolean hasZeroKey;
+
+    /** 键 0 对应的值。 */
+    transient int zeroValue;
+
+    /** 映射的个数（包括键 0）。 */
+    transient int size;
+
+    /** 结构修改次数，用于 forEach 的 fail-fast。 */
+    transient int modCount;
+
+    /** 扩容阈值，table 还没有分配时保存初始容量。 */
+    int threshold;
+
+    /** 负载因子。 */
+    final float loadFactor;
+
+    /** 映射不存在时返回的值。 */
+    final int noEntryValue;
+
+    /**
+     * 使用指定的初始容量、负载因子和"不存在"返回值构造一个空表。
+     *
+     * @param initialCapacity 预计的映射个数
+     * @param loadFactor 负载因子，必须在 (0, 1) 之间
+     * @param noEntryValue 映射不存在时 get/put/remove 的返回值
+     * @throws IllegalArgumentException 如果初始容量为负数或者负载因子不合法
+     */
+    public IntIntHashMap(int initialCapacity, float loadFactor, int noEntryValue) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal initial capacity: " +
+                    initialCapacity);
+        if (!(loadFactor > 0 && loadFactor < 1))
+            throw new IllegalArgumentException("Illegal load factor: " +
+                    loadFactor);
+        this.loadFactor = loadFactor;
+        this.noEntryValue = noEntryValue;
+        this.threshold = LongObjectHashMap.capacityFor(initialCapacity, loadFactor);
+    }
+
+    /**
+     * 使用指定的初始容量、默认负载因子（0.5）构造一个空表，不存在时返回 0。
+     */
+    public IntIntHashMap(int initialCapacity) {
+        this(initialCapacity, LongObjectHashMap.DEFAULT_LOAD_FACTOR, 0);
+    }
+
+    /**
+     * 使用默认初始容量（16）和默认负载因子（0.5）构造一个空表，不存在时返回 0。
+     */
+    public IntIntHashMap() {
+        this.loadFactor = LongObjectHashMap.DEFAULT_LOAD_FACTOR;
+        this.noEntryValue = 0;
+    }
+
+    /**
+     * 探测的起点，和 LongObjectHashMap.hash 一样用 OpenHashSet.mix 混合。
+     */
+    static int hash(int key) {
+        return OpenHashSet.mix(key);
+    }
+
+    /**
+     * 返回映射不存在时使用的值。
+     */
+    public int getNoEntryValue() {
+        return noEntryValue;
+    }
+
+    // 查询操作
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 返回 key 对应的值，如果不存在返回 noEntryValue。
+     */
+    public int get(int key) {
+        return getOrDefault(key, noEntryValue);
+    }
+
+    /**
+     * 返回 key 对应的值，如果不存在返回 defaultValue。
+     */
+    public int getOrDefault(int key, int defaultValue) {
+        if (key == 0)
+            return hasZeroKey ? zeroValue : defaultValue;
+        int i = indexOf(key);
+        return (i < 0) ? defaultValue : values[i];
+    }
+
+    /**
+     * 如果存在 key 的映射，返回 true。
+     */
+    public boolean containsKey(int key) {
+        return (key == 0) ? hasZeroKey : indexOf(key) >= 0;
+    }
+
+    /**
+     * 查找非 0 的 key 所在的槽位，找不到返回 -1。
+     */
+    final int indexOf(int key) {
+        int[] ks; int k;
+        if ((ks = keys) == null)
+            return -1;
+        int mask = ks.length - 1;
+        for (int i = hash(key) & mask; (k = ks[i]) != 0; i = (i + 1) & mask) {
+            if (k == key)
+                return i;
+        }
+        return -1;
+    }
+
+    // 修改操作
+
+    /**
+     * 把 key 映射到 value，返回之前的值，如果之前不存在返回 noEntryValue。
+     */
+    public int put(int key, int value) {
+        if (key == 0) {
+            int old = hasZeroKey ? zeroValue : noEntryValue;
+            zeroValue = value;
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                ++modCount;
+                ++size;
+            }
+            return old;
+        }
+        int i = insertionSlot(key);
+        if (i < 0) {
+            // 已经存在，覆盖
+            int old = values[i = ~i];
+            values[i] = value;
+            return old;
+        }
+        keys[i] = key;
+        values[i] = value;
+        afterInsertion();
+        return noEntryValue;
+    }
+
+    /**
+     * 把 delta 累加到 key 当前的值上（不存在时从 noEntryValue 开始累加），
+     * 返回累加后的值。只探测一次，比 get 再 put 少一次查找。
+     */
+    public int addTo(int key, int delta) {
+        if (key == 0) {
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                zeroValue = noEntryValue;
+                ++modCount;
+                ++size;
+            }
+            return zeroValue += delta;
+        }
+        int i = insertionSlot(key);
+        if (i < 0)
+            return values[~i] += delta;
+        int v;
+        keys[i] = key;
+        values[i] = v = noEntryValue + delta;
+        afterInsertion();
+        return v;
+    }
+
+    /**
+     * 为非 0 的 key 找到插入位置。如果 key 已经存在，返回 ~index（负数）；
+     * 否则返回应该插入的空槽下标。
+     */
+    final int insertionSlot(int key) {
+        int[] ks; int k;
+        if ((ks = keys) == null)
+            ks = resize();
+        int mask = ks.length - 1;
+        int i = hash(key) & mask;
+        for (; (k = ks[i]) != 0; i = (i + 1) & mask) {
+            if (k == key)
+                return ~i;
+        }
+        return i;
+    }
+
+    /**
+     * 插入新映射之后维护 modCount、size，必要时扩容。
+     */
+    final void afterInsertion() {
+        ++modCount;
+        if (++size > threshold)
+            resize();
+    }
+
+    /**
+     * 删除 key 的映射，返回之前的值，如果不存在返回 noEntryValue。
+     */
+    public int remove(int key) {
+        if (key == 0) {
+            if (!hasZeroKey)
+                return noEntryValue;
+            hasZeroKey = false;
+            ++modCount;
+            --size;
+            return zeroValue;
+        }
+        int i = indexOf(key);
+        if (i < 0)
+            return noEntryValue;
+        int old = values[i];
+        shiftKeys(i);
+        ++modCount;
+        --size;
+        return old;
+    }
+
+    /**
+     * 删除 pos 位置的映射，并把后续探测链上的映射往前挪。
+     * 原理见 LongObjectHashMap.shiftKeys。
+     */
+    final void shiftKeys(int pos) {
+        int[] ks = keys, vs = values;
+        int mask = ks.length - 1;
+        for (;;) {
+            int last = pos, slot, k;
+            pos = (pos + 1) & mask;
+            for (;;) {
+                if ((k = ks[pos]) == 0) {
+                    ks[last] = 0;
+                    return;
+                }
+                slot = hash(k) & mask;
+                if (last <= pos ? (last >= slot || slot > pos)
+                                : (last >= slot && slot > pos))
+                    break;
+                pos = (pos + 1) & mask;
+            }
+            ks[last] = k;
+            vs[last] = vs[pos];
+        }
+    }
+
+    /**
+     * 删除所有映射。保留已经分配的数组。
+     */
+    public void clear() {
+        ++modCount;
+        if (keys != null && size > 0)
+            Arrays.fill(keys, 0);     // 值数组不需要清空，空槽里的值不会被读取
+        hasZeroKey = false;
+        size = 0;
+    }
+
+    /**
+     * 初始化或者加倍 table，见 LongObjectHashMap.resize。
+     */
+    final int[] resize() {
+        int[] oldKeys = keys, oldVals = values;
+        int oldCap = (oldKeys == null) ? 0 : oldKeys.length;
+        int newCap;
+        if (oldCap > 0) {
+            if (oldCap >= HashMap.MAXIMUM_CAPACITY) {
+                if (size >= oldCap - 1)
+                    throw new IllegalStateException("Map too big");
+                threshold = oldCap - 1;
+                return oldKeys;
+            }
+            newCap = oldCap << 1;
+        }
+        else if (threshold > 0)
+            newCap = threshold;
+        else
+            newCap = LongObjectHashMap.DEFAULT_INITIAL_CAPACITY;
+        threshold = LongObjectHashMap.thresholdFor(newCap, loadFactor);
+        int[] newKeys = new int[newCap], newVals = new int[newCap];
+        keys = newKeys;
+        values = newVals;
+        if (oldKeys != null) {
+            int mask = newCap - 1;
+            for (int j = 0; j < oldCap; ++j) {
+                int k;
+                if ((k = oldKeys[j]) != 0) {
+                    int i = hash(k) & mask;
+                    while (newKeys[i] != 0)
+                        i = (i + 1) & mask;
+                    newKeys[i] = k;
+                    newVals[i] = oldVals[j];
+                }
+            }
+        }
+        return newKeys;
+    }
+
+    // 遍历
+
+    /**
+     * 对每个映射执行 action，遍历期间如果表被结构性修改，抛出
+     * ConcurrentModificationException。
+     */
+    public void forEach(EntryConsumer action) {
+        if (action == null)
+            throw new NullPointerException();
+        int mc = modCount;
+        if (hasZeroKey)
+            action.accept(0, zeroValue);
+        int[] ks; int k;
+        if ((ks = keys) != null) {
+            int[] vs = values;
+            for (int i = 0; i < ks.length && modCount == mc; ++i) {
+                if ((k = ks[i]) != 0)
+                    action.accept(k, vs[i]);
+            }
+        }
+        if (modCount != mc)
+            throw new ConcurrentModificationException();
+    }
+
+    /**
+     * 返回包含所有键的数组，顺序不确定。
+     */
+    public int[] keys() {
+        int[] r = new int[size];
+        int n = 0;
+        if (hasZeroKey)
+            r[n++] = 0;
+        int[] ks; int k;
+        if ((ks = keys) != null) {
+            for (int i = 0; i < ks.length; ++i) {
+                if ((k = ks[i]) != 0)
+                    r[n++] = k;
+            }
+        }
+        return r;
+    }
+
+    // Object 方法
+
+    @Override
+    public IntIntHashMap clone() {
+        IntIntHashMap result;
+        try {
+            result = (IntIntHashMap)super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new InternalError(e);
+        }
+        if (keys != null) {
+            result.keys = keys.clone();
+            result.values = values.clone();
+        }
+        result.modCount = 0;
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this)
+            return true;
+        if (!(o instanceof IntIntHashMap))
+            return false;
+        IntIntHashMap m = (IntIntHashMap)o;
+        if (m.size != size)
+            return false;
+        if (hasZeroKey && (!m.hasZeroKey || zeroValue != m.zeroValue))
+            return false;
+        int[] ks; int k;
+        if ((ks = keys) != null) {
+            for (int i = 0; i < ks.length; ++i) {
+                if ((k = ks[i]) != 0) {
+                    int j = m.indexOf(k);
+                    if (j < 0 || values[i] != m.values[j])
+                        return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hasZeroKey ? zeroValue : 0;
+        int[] ks; int k;
+        if ((ks = keys) != null) {
+            for (int i = 0; i < ks.length; ++i) {
+                if ((k = ks[i]) != 0)
+                    h += k ^ values[i];
+            }
+        }
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append('{');
+        forEach((k, v) -> {
+            if (sb.length() > 1)
+                sb.append(',').append(' ');
+            sb.append(k).append('=').append(v);
+        });
+        return sb.append('}').toString();
+    }
+}
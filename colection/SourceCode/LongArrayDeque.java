@@ -0,0 +1,480 @@
+package java.util;
+
+import java.util.function.LongConsumer;
+
+/**
+ * 元素是原始类型 long 的循环数组双端队列，是 ArrayDeque&lt;Long&gt; 的特化版本。
+ *
+ * 结构和 ArrayDeque 相同：
+ *  - elements 的长度总是 2 的幂，head 是第一个元素的下标，tail 是下一个
+ *    addLast 要写入的下标，下标的回绕用 &amp; (elements.length - 1) 代替取模；
+ *  - 插入之后 head == tail 说明数组已满，立即调用 doubleCapacity 扩容为两倍，
+ *    所以在其他时候 head == tail 表示队列为空。
+ * ArrayDeque 用 null 槽位判断队列为空，原始类型没有 null，所以这里改为比较
+ * head 和 tail。pollFirst、pollLast、peekFirst、peekLast 在队列为空时返回
+ * 构造时指定的 noElementValue（默认为 0），和 IntIntHashMap.noEntryValue 的
+ * 用法相同；需要区分时先检查 isEmpty，或者使用会抛出异常的 removeFirst 等方法。
+ *
+ * 入队、出队都不会分配对象。批量的 addAll(long[], int, int) 和
+ * drainTo(long[], int, int) 在回绕点两侧最多各做一次 System.arraycopy。
+ *
+ * 和 ArrayDeque 一样，此类不是线程安全的；iterator 和 forEach 尽力检测
+ * 并发修改。
+ *
+ * @see ArrayDeque
+ * @see IntArrayDeque
+ */
+public class LongArrayDeque implements Cloneable, java.io.Serializable {
+
+    private static final long serialVersionUID = 3298771634203541846L;
+
+    /** 新创建的队列的最小容量，必须是 2 的幂。 */
+    private static final int MIN_INITIAL_CAPACITY = 8;
+
+    /** 存放元素的循环数组，长度总是 2 的幂。 */
+    transient long[] elements; // non-private to simplify nested class access
+
+    /** 第一个元素的下标，队列为空时等于 tail。 */
+    transient int head;
+
+    /** 下一个从尾部添加的元素的下标。 */
+    transient int tail;
+
+    /** 队列为空时 poll/peek 返回的值。 */
+    final long noElementValue;
+
+    /**
+     * 构造一个容量为 16 的空队列，队列为空时 poll/peek 返回 0。
+     */
+    public LongArrayDeque() {
+        elements = new long[16];
+        noElementValue = 0L;
+    }
+
+    /**
+     * 构造一个至少可以容纳 numElements 个元素的空队列，队列为空时
+     * poll/peek 返回 0。
+     */
+    public LongArrayDeque(int numElements) {
+        this(numElements, 0L);
+    }
+
+    /**
+     * 构造一个至少可以容纳 numElements 个元素的空队列，队列为空时
+     * poll/peek 返回 noElementValue。
+     */
+    public LongArrayDeque(int numElements, long noElementValue) {
+        allocateElements(numElements);
+        this.noElementValue = noElementValue;
+    }
+
+    /**
+     * 返回队列为空时 poll/peek 使用的值。
+     */
+    public long getNoElementValue() {
+        return noElementValue;
+    }
+
+    // 数组空间分配和再分配
+
+    /**
+     * 大于 numElements 的最小的 2 的幂，至少为 MIN_INITIAL_CAPACITY。
+     * 和 ArrayDeque.calculateSize 相同。
+     */
+    private static int calculateSize(int numElements) {
+        int initialCapacity = MIN_INITIAL_CAPACITY;
+        // Find the best power of two to hold elements.
+        // Tests "<=" because arrays aren't kept full.
+        if (numElements >= initialCapacity) {
+            initialCapacity = numElements;
+            initialCapacity |= (initialCapacity >>>  1);
+            initialCapacity |= (initialCapacity >>>  2);
+            initialCapacity |= (initialCapacity >>>  4);
+            initialCapacity |= (initialCapacity >>>  8);
+            initialCapacity |= (initialCapacity >>> 16);
+            initialCapacity++;
+
+            if (initialCapacity < 0)   // Too many elements, must back off
+                initialCapacity >>>= 1;// Good luck allocating 2 ^ 30 elements
+        }
+        return initialCapacity;
+    }
+
+    private void allocateElements(int numElements) {
+        elements = new long[calculateSize(numElements)];
+    }
+
+    /**
+     * 队列满（head 和 tail 相遇）时把容量扩大为两倍，和
+     * ArrayDeque.doubleCapacity 相同。
+     */
+    private void doubleCapacity() {
+        assert head == tail;
+        int p = head;
+        int n = elements.length;
+        int r = n - p; // number of elements to the right of p
+        int newCapacity = n << 1;
+        if (newCapacity < 0)
+            throw new IllegalStateException("Sorry, deque too big");
+        long[] a = new long[newCapacity];
+        System.arraycopy(elements, p, a, 0, r);
+        System.arraycopy(elements, 0, a, r, p);
+        elements = a;
+        head = 0;
+        tail = n;
+    }
+
+    /**
+     * 确保可以再添加 extra 个元素而不触发 doubleCapacity。容量不够时
+     * 直接扩容到能容纳 size + extra 个元素的 2 的幂（数组中至少保留一个
+     * 空槽），只复制一次。
+     */
+    private void ensureCapacityForAdd(int extra) {
+        int size = size();
+        int n = elements.length;
+        if (size + extra < n)
+            return;
+        int newCapacity = calculateSize(size + extra);
+        if (size + extra < 0 || newCapacity <= size + extra)
+            throw new IllegalStateException("Sorry, deque too big");
+        long[] a = new long[newCapacity];
+        copyElements(a, 0);
+        elements = a;
+        head = 0;
+        tail = size;
+    }
+
+    /**
+     * 按顺序把所有元素复制到 a[off, off + size) 中，最多两次 arraycopy。
+     */
+    private void copyElements(long[] a, int off) {
+        if (head < tail) {
+            System.arraycopy(elements, head, a, off, size());
+        } else if (head > tail) {
+            int headPortionLen = elements.length - head;
+            System.arraycopy(elements, head, a, off, headPortionLen);
+            System.arraycopy(elements, 0, a, off + headPortionLen, tail);
+        }
+    }
+
+    // 插入、删除和查看
+
+    /**
+     * 在队列头部插入元素。
+     */
+    public void addFirst(long e) {
+        elements[head = (head - 1) & (elements.length - 1)] = e;
+        if (head == tail)
+            doubleCapacity();
+    }
+
+    /**
+     * 在队列尾部插入元素。
+     */
+    public void addLast(long e) {
+        elements[tail] = e;
+        if ( (tail = (tail + 1) & (elements.length - 1)) == head)
+            doubleCapacity();
+    }
+
+    public boolean offerFirst(long e) {
+        addFirst(e);
+        return true;
+    }
+
+    public boolean offerLast(long e) {
+        addLast(e);
+        return true;
+    }
+
+    /**
+     * 删除并返回第一个元素。
+     *
+     * @throws NoSuchElementException 如果队列为空
+     */
+    public long removeFirst() {
+        if (head == tail)
+            throw new NoSuchElementException();
+        return pollFirst();
+    }
+
+    /**
+     * 删除并返回最后一个元素。
+     *
+     * @throws NoSuchElementException 如果队列为空
+     */
+    public long removeLast() {
+        if (head == tail)
+            throw new NoSuchElementException();
+        return pollLast();
+    }
+
+    /**
+     * 删除并返回第一个元素，队列为空时返回 noElementValue。
+     */
+    public long pollFirst() {
+        int h = head;
+        if (h == tail)
+            return noElementValue;
+        long result = elements[h];
+        head = (h + 1) & (elements.length - 1);
+        return result;
+    }
+
+    /**
+     * 删除并返回最后一个元素，队列为空时返回 noElementValue。
+     */
+    public long pollLast() {
+        int t = tail;
+        if (t == head)
+            return noElementValue;
+        tail = t = (t - 1) & (elements.length - 1);
+        return elements[t];
+    }
+
+    /**
+     * 返回第一个元素。
+     *
+     * @throws NoSuchElementException 如果队列为空
+     */
+    public long getFirst() {
+        if (head == tail)
+            throw new NoSuchElementException();
+        return elements[head];
+    }
+
+    /**
+     * 返回最后一个元素。
+     *
+     * @throws NoSuchElementException 如果队列为空
+     */
+    public long getLast() {
+        if (head == tail)
+            throw new NoSuchElementException();
+        return elements[(tail - 1) & (elements.length - 1)];
+    }
+
+    /**
+     * 返回第一个元素，队列为空时返回 noElementValue。
+     */
+    public long peekFirst() {
+        return (head == tail) ? noElementValue : elements[head];
+    }
+
+    /**
+     * 返回最后一个元素，队列为空时返回 noElementValue。
+     */
+    public long peekLast() {
+        return (head == tail) ? noElementValue :
+                elements[(tail - 1) & (elements.length - 1)];
+    }
+
+    // 批量操作
+
+    /**
+     * 把 a 中所有元素按顺序添加到队列尾部。
+     */
+    public void addAll(long[] a) {
+        addAll(a, 0, a.length);
+    }
+
+    /**
+     * 把 a[off, off + len) 按顺序添加到队列尾部。最多扩容一次，然后在
+     * 回绕点两侧最多各做一次 System.arraycopy。
+     *
+     * @throws IndexOutOfBoundsException 如果 off、len 越界
+     */
+    public void addAll(long[] a, int off, int len) {
+        if (off < 0 || len < 0 || len > a.length - off)
+            throw new IndexOutOfBoundsException("off: "+off+", len: "+len+
+                    ", length: "+a.length);
+        if (len == 0)
+            return;
+        ensureCapacityForAdd(len);
+        long[] es = elements;
+        int t = tail;
+        int first = Math.min(len, es.length - t);
+        System.arraycopy(a, off, es, t, first);
+        System.arraycopy(a, off + first, es, 0, len - first);
+        tail = (t + len) & (es.length - 1);
+    }
+
+    /**
+     * 从队列头部取出最多 a.length 个元素，按顺序放进 a 中，返回取出的个数。
+     */
+    public int drainTo(long[] a) {
+        return drainTo(a, 0, a.length);
+    }
+
+    /**
+     * 从队列头部取出最多 len 个元素，按顺序放进 a[off, off + n) 中，返回
+     * 取出的个数 n。在回绕点两侧最多各做一次 System.arraycopy。
+     *
+     * @throws IndexOutOfBoundsException 如果 off、len 越界
+     */
+    public int drainTo(long[] a, int off, int len) {
+        if (off < 0 || len < 0 || len > a.length - off)
+            throw new IndexOutOfBoundsException("off: "+off+", len: "+len+
+                    ", length: "+a.length);
+        int n = Math.min(len, size());
+        if (n == 0)
+            return 0;
+        long[] es = elements;
+        int h = head;
+        int first = Math.min(n, es.length - h);
+        System.arraycopy(es, h, a, off, first);
+        System.arraycopy(es, 0, a, off + first, n - first);
+        head = (h + n) & (es.length - 1);
+        return n;
+    }
+
+    // 集合方法
+
+    /**
+     * 返回队列中元素的个数。
+     */
+    public int size() {
+        return (tail - head) & (elements.length - 1);
+    }
+
+    public boolean isEmpty() {
+        return head == tail;
+    }
+
+    /**
+     * 如果队列中包含 o，返回 true。
+     */
+    public boolean contains(long o) {
+        int mask = elements.length - 1;
+        for (int i = head; i != tail; i = (i + 1) & mask) {
+            if (elements[i] == o)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * 删除所有元素。原始类型的数组不需要清空。
+     */
+    public void clear() {
+        head = tail = 0;
+    }
+
+    /**
+     * 返回按从头到尾的顺序包含所有元素的数组。
+     */
+    public long[] toArray() {
+        long[] a = new long[size()];
+        copyElements(a, 0);
+        return a;
+    }
+
+    /**
+     * 按从头到尾的顺序对每个元素执行 action。
+     */
+    public void forEach(LongConsumer action) {
+        Objects.requireNonNull(action);
+        long[] a = elements;
+        int m = a.length - 1, h = head, t = tail;
+        for (int i = h; i != t; i = (i + 1) & m) {
+            action.accept(a[i]);
+            if (head != h || tail != t || elements != a)
+                throw new ConcurrentModificationException();
+        }
+    }
+
+    /**
+     * 返回从头到尾遍历的迭代器，不支持 remove。
+     */
+    public PrimitiveIterator.OfLong iterator() {
+        return new DeqIterator();
+    }
+
+    /**
+     * 和 ArrayDeque.DeqIterator 相同，创建时记录 head 和 tail，遍历时发现
+     * 它们被修改就抛出 ConcurrentModificationException。
+     */
+    private class DeqIterator implements PrimitiveIterator.OfLong {
+        private int cursor = head;
+        private final int origin = head;
+        private final int fence = tail;
+
+        public boolean hasNext() {
+            return cursor != fence;
+        }
+
+        public long nextLong() {
+            if (cursor == fence)
+                throw new NoSuchElementException();
+            if (tail != fence || head != origin)
+                throw new ConcurrentModificationException();
+            long result = elements[cursor];
+            cursor = (cursor + 1) & (elements.length - 1);
+            return result;
+        }
+    }
+
+    // Object 方法
+
+    @Override
+    public LongArrayDeque clone() {
+        try {
+            LongArrayDeque result = (LongArrayDeque) super.clone();
+            result.elements = Arrays.copyOf(elements, elements.length);
+            return result;
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError();
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append('[');
+        int mask = elements.length - 1;
+        for (int i = head; i != tail; i = (i + 1) & mask) {
+            if (i != head)
+                sb.append(',').append(' ');
+            sb.append(elements[i]);
+        }
+        return sb.append(']').toString();
+    }
+
+    /**
+     * 把队列保存到流中（序列化）。
+     *
+     * @serialData 先写入元素个数（int），然后按从头到尾的顺序写入所有元素。
+     */
+    private void writeObject(java.io.ObjectOutputStream s)
+            throws java.io.IOException {
+        s.defaultWriteObject();
+
+        // Write out size
+        s.writeInt(size());
+
+        // Write out elements in order.
+        int mask = elements.length - 1;
+        for (int i = head; i != tail; i = (i + 1) & mask)
+            s.writeLong(elements[i]);
+    }
+
+    /**
+     * 从流中恢复队列（反序列化）。
+     */
+    private void readObject(java.io.ObjectInputStream s)
+            throws java.io.IOException, ClassNotFoundException {
+        s.defaultReadObject();
+
+        // Read in size and allocate array
+        int size = s.readInt();
+        if (size < 0)
+            throw new java.io.InvalidObjectException("Illegal size: " + size);
+        allocateElements(size);
+        head = 0;
+        tail = size;
+
+        // Read in all elements in the proper order.
+        for (int i = 0; i < size; i++)
+            elements[i] = s.readLong();
+    }
+}
@@ -0,0 +1,251 @@
+package java.util;
+
+/**
+ * 优先级是原始类型 long、附带一个 int 值的优先级队列（最小堆）。
+ *
+ * 结构和 PriorityQueue 相同，都是数组实现的二叉堆，扩容策略也相同，区别是：
+ * <ul>
+ * <li>优先级和值分别存放在平行的 long[] 和 int[] 中，offer/poll 不会创建
+ *     任何对象，也没有装箱；
+ * <li>直接用 &lt; 比较 long，没有经过 Comparator.compare 或
+ *     Comparable.compareTo 的虚方法调用。
+ * </ul>
+ * 值通常是外部数组的下标（例如事件表中的事件编号）。优先级相同的元素出队
+ * 顺序不确定。
+ *
+ * 此类不是线程安全的。
+ *
+ * @see PriorityQueue
+ * @see LongArrayList
+ */
+public class LongIntPriorityQueue implements Cloneable {
+
+    private static final int DEFAULT_INITIAL_CAPACITY = 11;
+
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    /** 优先级，按二叉堆排列：priorities[n] 的孩子是 2*n+1 和 2*n+2。 */
+    long[] priorities;
+
+    /** values[n] 是 priorities[n] 附带的值，和 priorities 一起移动。 */
+    int[] values;
+
+    /** 元素个数。 */
+    int size;
+
+    /**
+     * 使用默认初始容量（11）构造一个空队列。
+     */
+    public LongIntPriorityQueue() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    /**
+     * 使用指定的初始容量构造一个空队列。
+     *
+     * @throws IllegalArgumentException 如果 initialCapacity 小于 1
+     */
+    public LongIntPriorityQueue(int initialCapacity) {
+        if (initialCapacity < 1)
+            throw new IllegalArgumentException("Illegal initial capacity: " +
+                    initialCapacity);
+        this.priorities = new long[initialCapacity];
+        this.values = new int[initialCapacity];
+    }
+
+    /**
+     * 用 priorities[0, length) 和 values[0, length) 构造队列。两个数组会被
+     * 复制，然后用 O(n) 的 heapify 建堆，比逐个 offer 的 O(n log n) 快。
+     *
+     * @throws IllegalArgumentException 如果 length 为负数
+     * @throws IndexOutOfBoundsException 如果 length 大于任意一个数组的长度
+     */
+    public LongIntPriorityQueue(long[] priorities, int[] values, int length) {
+        if (length < 0)
+            throw new IllegalArgumentException("Illegal length: " + length);
+        if (length > priorities.length || length > values.length)
+            throw new IndexOutOfBoundsException("length: " + length);
+        int cap = Math.max(length, 1);
+        this.priorities = Arrays.copyOf(priorities, cap);
+        this.values = Arrays.copyOf(values, cap);
+        this.size = length;
+        heapify();
+    }
+
+    /**
+     * 扩容，规则和 PriorityQueue.grow 相同：容量小于 64 时加倍再加 2，
+     * 否则增加 50%。
+     */
+    private void grow(int minCapacity) {
+        int oldCapacity = priorities.length;
+        // Double size if small; else grow by 50%
+        int newCapacity = oldCapacity + ((oldCapacity < 64) ?
+                (oldCapacity + 2) :
+                (oldCapacity >> 1));
+        // overflow-conscious code
+        if (newCapacity - MAX_ARRAY_SIZE > 0)
+            newCapacity = hugeCapacity(minCapacity);
+        priorities = Arrays.copyOf(priorities, newCapacity);
+        values = Arrays.copyOf(values, newCapacity);
+    }
+
+    private static int hugeCapacity(int minCapacity) {
+        if (minCapacity < 0) // overflow
+            throw new OutOfMemoryError();
+        return (minCapacity > MAX_ARRAY_SIZE) ?
+                Integer.MAX_VALUE :
+                MAX_ARRAY_SIZE;
+    }
+
+    /**
+     * 确保至少能容纳 minCapacity 个元素，之后的 offer 不会再扩容。
+     */
+    public void ensureCapacity(int minCapacity) {
+        if (minCapacity > priorities.length)
+            grow(minCapacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 插入优先级为 priority、值为 value 的元素。
+     */
+    public void offer(long priority, int value) {
+        int i = size;
+        if (i >= priorities.length)
+            grow(i + 1);
+        size = i + 1;
+        siftUp(i, priority, value);
+    }
+
+    /**
+     * 返回最小的优先级。
+     *
+     * @throws NoSuchElementException 如果队列为空
+     */
+    public long peekPriority() {
+        if (size == 0)
+            throw new NoSuchElementException();
+        return priorities[0];
+    }
+
+    /**
+     * 返回优先级最小的元素附带的值。
+     *
+     * @throws NoSuchElementException 如果队列为空
+     */
+    public int peekValue() {
+        if (size == 0)
+            throw new NoSuchElementException();
+        return values[0];
+    }
+
+    /**
+     * 删除优先级最小的元素，返回它附带的值。需要优先级的话先调用
+     * peekPriority。
+     *
+     * @throws NoSuchElementException 如果队列为空
+     */
+    public int poll() {
+        if (size == 0)
+            throw new NoSuchElementException();
+        int s = --size;
+        int result = values[0];
+        if (s != 0)
+            siftDown(0, priorities[s], values[s]);
+        return result;
+    }
+
+    /**
+     * 删除所有元素。数组中只有原始类型，不需要清空。
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * 把 (p, v) 放到位置 k 并向上调整。和 PriorityQueue.siftUp 一样，
+     * 先把父节点往下移，最后才写入 (p, v)。
+     */
+    private void siftUp(int k, long p, int v) {
+        final long[] ps = priorities;
+        final int[] vs = values;
+        while (k > 0) {
+            int parent = (k - 1) >>> 1;
+            long e = ps[parent];
+            if (p >= e)
+                break;
+            ps[k] = e;
+            vs[k] = vs[parent];
+            k = parent;
+        }
+        ps[k] = p;
+        vs[k] = v;
+    }
+
+    /**
+     * 把 (p, v) 放到位置 k 并向下调整。
+     */
+    private void siftDown(int k, long p, int v) {
+        final long[] ps = priorities;
+        final int[] vs = values;
+        final int n = size;
+        int half = n >>> 1;         // loop while a non-leaf
+        while (k < half) {
+            int child = (k << 1) + 1; // assume left child is least
+            long c = ps[child];
+            int right = child + 1;
+            if (right < n && c > ps[right])
+                c = ps[child = right];
+            if (p <= c)
+                break;
+            ps[k] = c;
+            vs[k] = vs[child];
+            k = child;
+        }
+        ps[k] = p;
+        vs[k] = v;
+    }
+
+    /**
+     * 从最后一个非叶子节点开始倒序向下调整，建立堆。
+     */
+    private void heapify() {
+        for (int i = (size >>> 1) - 1; i >= 0; i--)
+            siftDown(i, priorities[i], values[i]);
+    }
+
+    @Override
+    public LongIntPriorityQueue clone() {
+        LongIntPriorityQueue result;
+        try {
+            result = (LongIntPriorityQueue)super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new InternalError(e);
+        }
+        result.priorities = priorities.clone();
+        result.values = values.clone();
+        return result;
+    }
+
+    /**
+     * 按数组顺序（不是出队顺序）输出 priority=value 对。
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append('[');
+        for (int i = 0; i < size; i++) {
+            if (i > 0)
+                sb.append(',').append(' ');
+            sb.append(priorities[i]).append('=').append(values[i]);
+        }
+        return sb.append(']').toString();
+    }
+}
@@ -0,0 +1,505 @@
+package java.util;
+
+import java.util.function.LongFunction;
+
+/**
+ * 以原始类型 long 为键的哈希表，是 HashMap 在 long 键场景下的特化版本。
+ *
+ * HashMap 中每一次 put/get 都要把 long 装箱成 Long，并且每个键值对都会分配
+ * 一个 Node 节点（hash、key、value、next 四个字段再加对象头）。当表中有
+ * 上千万个条目时，这些节点就是 GC 和内存占用的主要来源。
+ *
+ * 此类使用开放定址法（线性探测）：键存放在 long[] keys 中，值存放在与之
+ * 平行的 Object[] values 中，同一个索引上的键和值构成一个映射，整个表中
+ * 不存在任何节点对象。
+ *  - 散列函数沿用 HashMap.hash 的做法：先按 Long.hashCode 折叠高低 32 位，
+ *    再把高 16 位异或到低 16 位，使高位也能参与下标运算。
+ *  - 表的长度总是 2 的幂，由 HashMap.tableSizeFor 计算，下标为 hash & mask。
+ *  - 键 0 被用作空槽的标记，所以键为 0 的映射单独存放在 zeroValue 中。
+ *  - 删除时不使用墓碑（tombstone），而是把后续探测链上的元素往前挪
+ *    （backward shift），保证查找时遇到空槽就可以停止。
+ *
+ * 开放定址法对负载因子比较敏感，默认负载因子为 0.5，而不是 HashMap 的 0.75。
+ *
+ * 和 HashMap 一样，此类不是线程安全的；forEach 是 fail-fast 的。
+ *
+ * @param <V> the type of mapped values
+ * @see HashMap
+ * @see IntIntHashMap
+ */
+public class LongObjectHashMap<V> implements Cloneable {
+
+    /**
+     * 默认初始容量，必须是 2 的幂。
+     */
+    static final int DEFAULT_INITIAL_CAPACITY = 1 << 4;
+
+    /**
+     * 默认负载因子。线性探测在负载因子超过 0.7 之后探测长度增长很快，
+     * 所以这里取 0.5。
+     */
+    static final float DEFAULT_LOAD_FACTOR = 0.5f;
+
+    /**
+     * forEach 使用的回调接口，直接传入原始类型的键，避免为每个条目创建
+     * Map.Entry 和装箱的 Long。
+     */
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+        void accept(long key, V value);
+    }
+
+    /** 存放键的数组，0 表示空槽。第一次使用时才会分配。 */
+    transient long[] keys;
+
+    /** 和 keys 平行的值数组。 */
+    transient Object[] values;
+
+    /** 键 0 是否存在映射。 */
+    transient boolean hasZeroKey;
+
+    /** 键 0 对应的值。 */
+    transient V zeroValue;
+
+    /** 映射的个数（包括键 0）。 */
+    transient int size;
+
+    /** 结构修改次数，用于 forEach 的 fail-fast。 */
+    transient int modCount;
+
+    /**
+     * 下一次扩容的阈值（capacity * loadFactor）。table 还没有分配时，
+     * 它保存的是初始容量，这一点和 HashMap.threshold 的用法相同。
+     */
+    int threshold;
+
+    /** 负载因子。 */
+    final float loadFactor;
+
+    /**
+     * 使用指定的初始容量和负载因子构造一个空表。
+     *
+     * @param initialCapacity 预计的映射个数
+     * @param loadFactor 负载因子，必须在 (0, 1) 之间
+     * @throws IllegalArgumentException 如果初始容量为负数或者负载因子不合法
+     */
+    public LongObjectHashMap(int initialCapacity, float loadFactor) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal initial capacity: " +
+                    initialCapacity);
+        // 开放定址法必须至少保留一个空槽，否则查找不存在的键会无限探测
+        if (!(loadFactor > 0 && loadFactor < 1))
+            throw new IllegalArgumentException("Illegal load factor: " +
+                    loadFactor);
+        this.loadFactor = loadFactor;
+        this.threshold = capacityFor(initialCapacity, loadFactor);
+    }
+
+    /**
+     * 使用指定的初始容量和默认负载因子（0.5）构造一个空表。
+     */
+    public LongObjectHashMap(int initialCapacity) {
+        this(initialCapacity, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * 使用默认初始容量（16）和默认负载因子（0.5）构造一个空表。
+     */
+    public LongObjectHashMap() {
+        this.loadFactor = DEFAULT_LOAD_FACTOR;
+    }
+
+    /**
+     * 对 long 键计算探测的起点：先像 Long.hashCode 一样把高 32 位折叠到低
+     * 32 位，再用 OpenHashSet.mix 做乘法混合。线性探测对聚集很敏感：只做
+     * h ^ (h >>> 16) 时，连续的键占满一段连续的槽位，低位相同的未命中查找
+     * 要走完整段；(i << 16) | i 这样高低位相消的键则全部落在同一个槽位。
+     */
+    static int hash(long key) {
+        return OpenHashSet.mix((int)(key ^ (key >>> 32)));
+    }
+
+    /**
+     * 能装下 expected 个映射而不触发扩容的最小 table 长度（2 的幂）。
+     */
+    static int capacityFor(int expected, float loadFactor) {
+        long cap = (long)Math.ceil(expected / (double)loadFactor);
+        return (cap >= HashMap.MAXIMUM_CAPACITY) ? HashMap.MAXIMUM_CAPACITY :
+                HashMap.tableSizeFor(Math.max((int)cap, 2));
+    }
+
+    /**
+     * 由 table 长度计算扩容阈值。保证阈值小于长度，table 中至少有一个空槽。
+     */
+    static int thresholdFor(int cap, float loadFactor) {
+        return Math.min((int)(cap * loadFactor), cap - 1);
+    }
+
+    // 查询操作
+
+    /**
+     * 返回映射的个数。
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 如果表中没有映射，返回 true。
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 返回 key 对应的值，如果不存在返回 null。
+     */
+    public V get(long key) {
+        if (key == 0)
+            return hasZeroKey ? zeroValue : null;
+        int i = indexOf(key);
+        return (i < 0) ? null : valueAt(i);
+    }
+
+    /**
+     * 返回 key 对应的值，如果不存在返回 defaultValue。
+     */
+    public V getOrDefault(long key, V defaultValue) {
+        if (key == 0)
+            return hasZeroKey ? zeroValue : defaultValue;
+        int i = indexOf(key);
+        return (i < 0) ? defaultValue : valueAt(i);
+    }
+
+    /**
+     * 如果存在 key 的映射，返回 true。
+     */
+    public boolean containsKey(long key) {
+        return (key == 0) ? hasZeroKey : indexOf(key) >= 0;
+    }
+
+    /**
+     * 查找非 0 的 key 所在的槽位，找不到返回 -1。
+     */
+    final int indexOf(long key) {
+        long[] ks; long k;
+        if ((ks = keys) == null)
+            return -1;
+        int mask = ks.length - 1;
+        // 从散列位置开始线性探测，遇到空槽说明 key 不存在
+        for (int i = hash(key) & mask; (k = ks[i]) != 0; i = (i + 1) & mask) {
+            if (k == key)
+                return i;
+        }
+        return -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    final V valueAt(int i) {
+        return (V)values[i];
+    }
+
+    // 修改操作
+
+    /**
+     * 把 key 映射到 value，返回之前的值，如果之前不存在返回 null。
+     * 和 HashMap 一样允许 null 值，所以返回 null 也可能表示之前映射的是 null。
+     */
+    public V put(long key, V value) {
+        return putVal(key, value, false);
+    }
+
+    /**
+     * 只有当 key 不存在（或者映射到 null）时才插入。
+     */
+    public V putIfAbsent(long key, V value) {
+        return putVal(key, value, true);
+    }
+
+    /**
+     * put 和 putIfAbsent 的实现。
+     */
+    final V putVal(long key, V value, boolean onlyIfAbsent) {
+        if (key == 0) {
+            V old = zeroValue;
+            if (hasZeroKey) {
+                if (!onlyIfAbsent || old == null)
+                    zeroValue = value;
+                return old;
+            }
+            hasZeroKey = true;
+            zeroValue = value;
+            ++modCount;
+            ++size;
+            return null;
+        }
+        long[] ks; long k;
+        if ((ks = keys) == null)
+            ks = resize();
+        int mask = ks.length - 1;
+        int i = hash(key) & mask;
+        for (; (k = ks[i]) != 0; i = (i + 1) & mask) {
+            // 已经存在，覆盖值后返回旧值，不是结构性修改
+            if (k == key) {
+                V old = valueAt(i);
+                if (!onlyIfAbsent || old == null)
+                    values[i] = value;
+                return old;
+            }
+        }
+        // 找到了空槽，插入新的映射
+        ks[i] = key;
+        values[i] = value;
+        ++modCount;
+        if (++size > threshold)
+            resize();
+        return null;
+    }
+
+    /**
+     * 如果 key 不存在，使用 mappingFunction 计算值并插入（结果为 null 时不插入），
+     * 返回当前（已有的或者新计算的）值。
+     */
+    public V computeIfAbsent(long key, LongFunction<? extends V> mappingFunction) {
+        if (mappingFunction == null)
+            throw new NullPointerException();
+        V v;
+        if ((v = get(key)) == null) {
+            int mc = modCount;
+            V nv = mappingFunction.apply(key);
+            if (mc != modCount)
+                throw new ConcurrentModificationException();
+            if (nv != null)
+                put(key, v = nv);
+        }
+        return v;
+    }
+
+    /**
+     * 删除 key 的映射，返回之前的值，如果不存在返回 null。
+     */
+    public V remove(long key) {
+        if (key == 0) {
+            if (!hasZeroKey)
+                return null;
+            V old = zeroValue;
+            hasZeroKey = false;
+            zeroValue = null;
+            ++modCount;
+            --size;
+            return old;
+        }
+        int i = indexOf(key);
+        if (i < 0)
+            return null;
+        V old = valueAt(i);
+        shiftKeys(i);
+        ++modCount;
+        --size;
+        return old;
+    }
+
+    /**
+     * 删除 pos 位置的映射，并把后续探测链上的映射往前挪，填补空出的槽位。
+     * 一个映射 k 可以从 pos 挪到 last，当且仅当 k 的散列位置 slot 不在
+     * (last, pos] 这个循环区间内，否则挪过去之后从 slot 开始就探测不到它了。
+     */
+    final void shiftKeys(int pos) {
+        long[] ks = keys; Object[] vs = values;
+        int mask = ks.length - 1;
+        for (;;) {
+            int last = pos, slot; long k;
+            pos = (pos + 1) & mask;
+            for (;;) {
+                // 遇到空槽，探测链结束，last 位置置空即可
+                if ((k = ks[pos]) == 0) {
+                    ks[last] = 0;
+                    vs[last] = null;
+                    return;
+                }
+                slot = hash(k) & mask;
+                if (last <= pos ? (last >= slot || slot > pos)
+                                : (last >= slot && slot > pos))
+                    break;
+                pos = (pos + 1) & mask;
+            }
+            ks[last] = k;
+            vs[last] = vs[pos];
+        }
+    }
+
+    /**
+     * 删除所有映射。保留已经分配的数组。
+     */
+    public void clear() {
+        long[] ks;
+        ++modCount;
+        if ((ks = keys) != null && size > 0) {
+            Arrays.fill(ks, 0L);
+            Arrays.fill(values, null);
+        }
+        hasZeroKey = false;
+        zeroValue = null;
+        size = 0;
+    }
+
+    /**
+     * 初始化或者加倍 table。和 HashMap.resize 不同，开放定址法没有桶内链表
+     * 可以拆分，所以只能按新的 mask 把每个键重新探测插入一遍。
+     *
+     * @return 新的 keys 数组
+     */
+    final long[] resize() {
+        long[] oldKeys = keys;
+        Object[] oldVals = values;
+        int oldCap = (oldKeys == null) ? 0 : oldKeys.length;
+        int newCap;
+        if (oldCap > 0) {
+            if (oldCap >= HashMap.MAXIMUM_CAPACITY) {
+                if (size >= oldCap - 1)
+                    throw new IllegalStateException("Map too big");
+                threshold = oldCap - 1;
+                return oldKeys;
+            }
+            newCap = oldCap << 1;
+        }
+        else if (threshold > 0)    // 初始容量保存在 threshold 中
+            newCap = threshold;
+        else
+            newCap = DEFAULT_INITIAL_CAPACITY;
+        threshold = thresholdFor(newCap, loadFactor);
+        long[] newKeys = new long[newCap];
+        Object[] newVals = new Object[newCap];
+        keys = newKeys;
+        values = newVals;
+        if (oldKeys != null) {
+            int mask = newCap - 1;
+            for (int j = 0; j < oldCap; ++j) {
+                long k;
+                if ((k = oldKeys[j]) != 0) {
+                    int i = hash(k) & mask;
+                    while (newKeys[i] != 0)
+                        i = (i + 1) & mask;
+                    newKeys[i] = k;
+                    newVals[i] = oldVals[j];
+                }
+            }
+        }
+        return newKeys;
+    }
+
+    // 遍历
+
+    /**
+     * 对每个映射执行 action，遍历期间如果表被结构性修改，抛出
+     * ConcurrentModificationException。
+     */
+    public void forEach(EntryConsumer<? super V> action) {
+        if (action == null)
+            throw new NullPointerException();
+        int mc = modCount;
+        if (hasZeroKey)
+            action.accept(0L, zeroValue);
+        long[] ks; long k;
+        if ((ks = keys) != null) {
+            for (int i = 0; i < ks.length && modCount == mc; ++i) {
+                if ((k = ks[i]) != 0)
+                    action.accept(k, valueAt(i));
+            }
+        }
+        if (modCount != mc)
+            throw new ConcurrentModificationException();
+    }
+
+    /**
+     * 返回包含所有键的数组，顺序不确定。
+     */
+    public long[] keys() {
+        long[] r = new long[size];
+        int n = 0;
+        if (hasZeroKey)
+            r[n++] = 0L;
+        long[] ks; long k;
+        if ((ks = keys) != null) {
+            for (int i = 0; i < ks.length; ++i) {
+                if ((k = ks[i]) != 0)
+                    r[n++] = k;
+            }
+        }
+        return r;
+    }
+
+    // Object 方法
+
+    /**
+     * 浅拷贝：键数组和值数组被复制，值对象本身不会被复制。
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public LongObjectHashMap<V> clone() {
+        LongObjectHashMap<V> result;
+        try {
+            result = (LongObjectHashMap<V>)super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new InternalError(e);
+        }
+        if (keys != null) {
+            result.keys = keys.clone();
+            result.values = values.clone();
+        }
+        result.modCount = 0;
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this)
+            return true;
+        if (!(o instanceof LongObjectHashMap))
+            return false;
+        LongObjectHashMap<?> m = (LongObjectHashMap<?>)o;
+        if (m.size != size)
+            return false;
+        if (hasZeroKey && (!m.hasZeroKey || !Objects.equals(zeroValue, m.zeroValue)))
+            return false;
+        long[] ks; long k;
+        if ((ks = keys) != null) {
+            for (int i = 0; i < ks.length; ++i) {
+                if ((k = ks[i]) != 0) {
+                    int j = m.indexOf(k);
+                    if (j < 0 || !Objects.equals(values[i], m.values[j]))
+                        return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 和 Map.hashCode 的约定相同：所有映射的 (Long.hashCode(key) ^ value.hashCode()) 之和。
+     */
+    @Override
+    public int hashCode() {
+        int h = hasZeroKey ? Objects.hashCode(zeroValue) : 0;
+        long[] ks; long k;
+        if ((ks = keys) != null) {
+            for (int i = 0; i < ks.length; ++i) {
+                if ((k = ks[i]) != 0)
+                    h += Long.hashCode(k) ^ Objects.hashCode(values[i]);
+            }
+        }
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append('{');
+        forEach((k, v) -> {
+            if (sb.length() > 1)
+                sb.append(',').append(' ');
+            sb.append(k).append('=').append(v == this ? "(this Map)" : v);
+        });
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,796 @@
+package java.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 表和条目都存放在内存映射文件（堆外）中的哈希表，实现了 Map 接口。
+ *
+ * HashMap 的每个条目都是一个堆上的 Node 对象，缓存几十 GB 的数据时，
+ * Full GC 要扫描的对象数量巨大。此类把桶数组和所有条目都放在
+ * FileChannel.map 得到的 MappedByteBuffer 中，堆上只剩下少量的管理字段，
+ * 条目的数量对 GC 完全不可见。
+ *
+ * 结构上沿用 HashMap 的做法：
+ *  - 桶数组的长度是 2 的幂，hash 和 (n - 1) 做与运算得到下标，冲突的条目
+ *    用 next 串成单向链表；
+ *  - size 超过 capacity * loadFactor 时容量翻倍，每个桶按 (hash & oldCap)
+ *    拆分成 lo/hi 两条链，分别放到 j 和 j + oldCap。
+ * 和 HashMap 不同，桶内不会树化成红黑树：堆外的红黑树需要为每个节点维护
+ * 父/左/右三个偏移量。作为替代，hash 不只是 HashMap.hash 那样的高低位
+ * 异或：对序列化后的字节做 31 多项式累积以后，再经过 murmur3 的 fmix32
+ * 混合，每个输入位都会影响所有输出位，取低位作为下标时，只在高位或者
+ * 末尾几个字节不同的 key 也能均匀地分散开。这只能应对分布不好的普通 key，
+ * 不能防御专门构造的碰撞：key 来自不可信的输入时不要使用此类。
+ *
+ * key 和 value 通过可插拔的 Serializer 序列化成字节保存。两个 key 是否相等
+ * 按序列化后的字节比较，hash 也是对这些字节计算的，与 key.hashCode 无关，
+ * 所以同一个文件在 JVM 重启之后可以重新打开继续使用（warm start）。
+ * 这要求 key 的序列化是规范的：equals 的 key 必须序列化成相同的字节。
+ *
+ * 文件布局（所有偏移量都是 long）：
+ * <pre>
+ *   [0, DATA_START)   头部：魔数、版本、容量、size、桶数组偏移、分配指针、
+ *                     负载因子、关闭标志、各个大小级别的空闲链表头
+ *   [DATA_START, ...) 桶数组和条目，按 2 的幂大小分配
+ *   条目：[next:8][hash:4][keyLen:4][valLen:4][key bytes][value bytes]
+ * </pre>
+ * 文件按 1 GB 的段（segment）分别映射，一个条目或者桶数组不会跨越段的边界，
+ * 所以单个映射的 2 GB 上限不会限制文件的总大小。每个段并不是一开始就映射
+ * 1 GB：新文件的第一个段按初始容量估算映射大小（至少 MIN_MAPPED_SIZE），
+ * 分配越过映射的末尾时再按 2 倍重新映射，文件随之增长，小表只占用很小的
+ * 文件和地址空间。
+ *
+ * 空间按 2 的幂大小分级分配，删除的条目（以及扩容后的旧桶数组）放入对应
+ * 级别的空闲链表中，之后同样大小的条目可以复用。对于定长的记录，这种方式
+ * 没有碎片。
+ *
+ * 不允许 null 的 key 和 value。此类不是线程安全的。所有修改都直接写入映射
+ * 区域，但只有调用 force 或者 close 之后才保证落盘。
+ *
+ * 此类没有崩溃恢复：修改是原地进行的，没有日志，进程在两次 force 之间
+ * 崩溃时，桶、链表和空闲链表可能只写了一部分，无法从文件中重建出一致的
+ * 内容。所以打开期间文件被标记为"未正常关闭"，这样的文件再次打开时会抛出
+ * IOException，而不是读入可能不一致的数据。应当把它当作可以丢弃的缓存：
+ * 遇到这个异常时删除文件，从原始数据重新填充。
+ *
+ * @param <K> the type of keys maintained by this map
+ * @param <V> the type of mapped values
+ * @see HashMap
+ */
+public class MappedHashMap<K,V> extends AbstractMap<K,V>
+        implements Map<K,V>, Closeable {
+
+    /**
+     * key 和 value 的序列化器。
+     */
+    public interface Serializer<T> {
+        /** 返回 value 序列化后的字节数。 */
+        int sizeOf(T value);
+
+        /** 把 value 写入 out 的当前位置，恰好写入 sizeOf(value) 个字节。 */
+        void write(T value, ByteBuffer out);
+
+        /** 从 in 中读出一个值，in 中剩余的字节恰好是写入时的那些字节。 */
+        T read(ByteBuffer in);
+    }
+
+    /** UTF-8 编码的字符串。 */
+    public static final Serializer<String> STRING = new Serializer<String>() {
+        public int sizeOf(String value) {
+            return value.getBytes(StandardCharsets.UTF_8).length;
+        }
+        public void write(String value, ByteBuffer out) {
+            out.put(value.getBytes(StandardCharsets.UTF_8));
+        }
+        public String read(ByteBuffer in) {
+            byte[] b = new byte[in.remaining()];
+            in.get(b);
+            return new String(b, StandardCharsets.UTF_8);
+        }
+    };
+
+    /** 8 字节的 Long。 */
+    public static final Serializer<Long> LONG = new Serializer<Long>() {
+        public int sizeOf(Long value) { return 8; }
+        public void write(Long value, ByteBuffer out) { out.putLong(value); }
+        public Long read(ByteBuffer in) { return in.getLong(); }
+    };
+
+    /** 4 字节的 Integer。 */
+    public static final Serializer<Integer> INTEGER = new Serializer<Integer>() {
+        public int sizeOf(Integer value) { return 4; }
+        public void write(Integer value, ByteBuffer out) { out.putInt(value); }
+        public Integer read(ByteBuffer in) { return in.getInt(); }
+    };
+
+    /** 原样保存的字节数组。 */
+    public static final Serializer<byte[]> BYTES = new Serializer<byte[]>() {
+        public int sizeOf(byte[] value) { return value.length; }
+        public void write(byte[] value, ByteBuffer out) { out.put(value); }
+        public byte[] read(ByteBuffer in) {
+            byte[] b = new byte[in.remaining()];
+            in.get(b);
+            return b;
+        }
+    };
+
+    /* ---------------- Constants -------------- */
+
+    /** 文件头部的魔数。 */
+    static final long MAGIC = 0x4d6170486173684dL;     // "MapHashM"
+
+    /** 文件格式版本。版本 2 改变了 hash 函数，版本 1 的文件不能直接读取。 */
+    static final int VERSION = 2;
+
+    /** 每个映射段的大小，必须是 2 的幂。 */
+    static final int SEGMENT_SHIFT = 30;
+    static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+    static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    /** 每个段最少映射的字节数，必须是 2 的幂。 */
+    static final int MIN_MAPPED_SIZE = 1 << 16;
+
+    /** 最小的分配单位（2 的 MIN_CLASS_SHIFT 次幂字节）。 */
+    static final int MIN_CLASS_SHIFT = 5;
+
+    /** 大小级别的个数：32 B 到 1 GB。 */
+    static final int NUM_CLASSES = SEGMENT_SHIFT - MIN_CLASS_SHIFT + 1;
+
+    /** 默认初始容量，必须是 2 的幂。 */
+    static final int DEFAULT_INITIAL_CAPACITY = 1 << 4;
+
+    /** 最大容量：桶数组（每个桶 8 字节）要放在一个段内。 */
+    static final int MAXIMUM_CAPACITY = 1 << (SEGMENT_SHIFT - 3);
+
+    /** 默认负载因子。 */
+    static final float DEFAULT_LOAD_FACTOR = 0.75f;
+
+    // 头部字段的偏移量
+    static final int H_MAGIC = 0;
+    static final int H_VERSION = 8;
+    static final int H_CAPACITY = 12;
+    static final int H_SIZE = 16;
+    static final int H_TABLE = 24;
+    static final int H_DATA_END = 32;
+    static final int H_LOAD_FACTOR = 40;
+    static final int H_CLEAN = 44;
+    static final int H_FREE_LISTS = 48;
+
+    /** 数据区的起始偏移量。 */
+    static final long DATA_START = 512;
+
+    // 条目内字段的偏移量
+    static final int E_NEXT = 0;
+    static final int E_HASH = 8;
+    static final int E_KEY_LEN = 12;
+    static final int E_VAL_LEN = 16;
+    static final int E_KEY = 20;
+
+    /* ---------------- Fields -------------- */
+
+    final FileChannel channel;
+    final Serializer<K> keySerializer;
+    final Serializer<V> valueSerializer;
+
+    /** 已经映射的段，按需映射。 */
+    MappedByteBuffer[] segments;
+
+    // 以下字段是头部的缓存，修改时同时写回头部
+
+    int capacity;
+    long size;
+    long tableOffset;
+    int threshold;
+    final float loadFactor;
+
+    /** 结构修改次数，用于迭代器的 fail-fast。不持久化。 */
+    transient int modCount;
+
+    /** 序列化 key 用的临时缓冲区，避免每次查找都分配。 */
+    ByteBuffer scratch = ByteBuffer.allocate(64);
+
+    transient Set<Map.Entry<K,V>> entrySet;
+
+    /* ---------------- Construction -------------- */
+
+    /**
+     * 打开或者创建 file。如果文件已经存在并且是上一次正常关闭的，直接使用
+     * 其中的数据；否则创建一个初始容量为 16、负载因子为 0.75 的空表。
+     *
+     * @throws IOException 如果文件无法打开，或者不是正常关闭的 MappedHashMap
+     *         文件（没有崩溃恢复，见类的说明）
+     */
+    public MappedHashMap(Path file, Serializer<K> keySerializer,
+                         Serializer<V> valueSerializer) throws IOException {
+        this(file, keySerializer, valueSerializer,
+                DEFAULT_INITIAL_CAPACITY, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * 打开或者创建 file。initialCapacity 和 loadFactor 只在创建新文件时使用，
+     * 打开已有的文件时使用文件中保存的值。
+     *
+     * @throws IOException 如果文件无法打开，或者不是正常关闭的 MappedHashMap
+     *         文件（没有崩溃恢复，见类的说明）
+     * @throws IllegalArgumentException 如果初始容量为负数或者负载因子不合法
+     */
+    public MappedHashMap(Path file, Serializer<K> keySerializer,
+                         Serializer<V> valueSerializer,
+                         int initialCapacity, float loadFactor) throws IOException {
+        if (keySerializer == null || valueSerializer == null)
+            throw new NullPointerException();
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal initial capacity: " +
+                    initialCapacity);
+        if (loadFactor <= 0 || Float.isNaN(loadFactor))
+            throw new IllegalArgumentException("Illegal load factor: " +
+                    loadFactor);
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        boolean exists = Files.exists(file) && Files.size(file) > 0;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.segments = new MappedByteBuffer[1];
+        try {
+            if (exists) {
+                ByteBuffer h = segment(0);
+                if (h.getLong(H_MAGIC) != MAGIC || h.getInt(H_VERSION) != VERSION)
+                    throw new IOException("Not a MappedHashMap file: " + file);
+                if (h.getInt(H_CLEAN) != 1)
+                    throw new IOException("File was not closed cleanly: " + file);
+                this.loadFactor = h.getFloat(H_LOAD_FACTOR);
+                this.capacity = h.getInt(H_CAPACITY);
+                this.size = h.getLong(H_SIZE);
+                this.tableOffset = h.getLong(H_TABLE);
+                this.threshold = thresholdFor(capacity);
+            }
+            else {
+                this.loadFactor = loadFactor;
+                int cap = (initialCapacity >= MAXIMUM_CAPACITY) ? MAXIMUM_CAPACITY :
+                        HashMap.tableSizeFor(Math.max(initialCapacity, 1));
+                // 按初始容量估算：头部、桶数组，再加上 cap 个最小的条目
+                ByteBuffer h = map(0, DATA_START + ((long)cap << 3) +
+                        ((long)cap << MIN_CLASS_SHIFT));
+                h.putLong(H_MAGIC, MAGIC);
+                h.putInt(H_VERSION, VERSION);
+                h.putFloat(H_LOAD_FACTOR, loadFactor);
+                h.putLong(H_DATA_END, DATA_START);
+                setTable(newTable(cap), cap);
+                setSize(0L);
+            }
+            // 打开期间标记为"未正常关闭"，close 时再改回来
+            segment(0).putInt(H_CLEAN, 0);
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * 把所有修改刷新到磁盘。
+     */
+    public void force() {
+        for (MappedByteBuffer b : segments) {
+            if (b != null)
+                b.force();
+        }
+    }
+
+    /**
+     * 标记文件为正常关闭，刷新到磁盘后关闭文件。关闭之后不能再使用此对象。
+     */
+    public void close() throws IOException {
+        if (channel.isOpen()) {
+            segment(0).putInt(H_CLEAN, 1);
+            force();
+            segments = new MappedByteBuffer[0];
+            channel.close();
+        }
+    }
+
+    /* ---------------- Mapped memory access -------------- */
+
+    /**
+     * 返回第 i 个段的映射，第一次访问时映射它。
+     */
+    final MappedByteBuffer segment(int i) {
+        MappedByteBuffer[] segs = segments;
+        MappedByteBuffer b;
+        if (i < segs.length && (b = segs[i]) != null)
+            return b;
+        return map(i, 0L);
+    }
+
+    /**
+     * 保证第 i 个段至少映射了 need 个字节，返回它的映射。需要重新映射时，
+     * 映射的大小是 2 的幂：不小于 need、原来的 2 倍、MIN_MAPPED_SIZE 和文件
+     * 在这个段中已有的长度，不超过 SEGMENT_SIZE。映射超出文件末尾时文件会
+     * 自动扩展。原来的映射不需要解除：它和新的映射共享同一个文件的页，
+     * 还在使用它的视图读写的仍然是同样的数据。
+     */
+    final MappedByteBuffer map(int i, long need) {
+        MappedByteBuffer[] segs = segments;
+        if (i >= segs.length)
+            segments = segs = Arrays.copyOf(segs, Math.max(i + 1, segs.length << 1));
+        MappedByteBuffer b = segs[i];
+        if (b != null && b.capacity() >= need)
+            return b;
+        long base = (long)i << SEGMENT_SHIFT;
+        try {
+            long len = Math.max(Math.max(need, MIN_MAPPED_SIZE),
+                    Math.max((b == null) ? 0L : (long)b.capacity() << 1,
+                            channel.size() - base));
+            len = (len >= SEGMENT_SIZE) ? SEGMENT_SIZE : Long.highestOneBit(len - 1) << 1;
+            b = channel.map(FileChannel.MapMode.READ_WRITE, base, len);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        segs[i] = b;
+        return b;
+    }
+
+    /** 返回包含偏移量 off 的段。 */
+    final ByteBuffer seg(long off) {
+        return segment((int)(off >>> SEGMENT_SHIFT));
+    }
+
+    static int pos(long off) {
+        return (int)(off & SEGMENT_MASK);
+    }
+
+    final long getLong(long off)           { return seg(off).getLong(pos(off)); }
+    final int getInt(long off)             { return seg(off).getInt(pos(off)); }
+    final void putLong(long off, long v)   { seg(off).putLong(pos(off), v); }
+    final void putInt(long off, int v)     { seg(off).putInt(pos(off), v); }
+
+    /**
+     * 返回 [off, off + len) 这段映射区域的视图，position 为 0，limit 为 len。
+     */
+    final ByteBuffer slice(long off, int len) {
+        ByteBuffer b = seg(off).duplicate();
+        int p = pos(off);
+        b.limit(p + len).position(p);
+        return b.slice();
+    }
+
+    /* ---------------- Allocation -------------- */
+
+    /**
+     * 大小为 size 的区域所属的级别：分配 2 的 (class + MIN_CLASS_SHIFT) 次幂字节。
+     */
+    static int sizeClass(long size) {
+        int shift = 64 - Long.numberOfLeadingZeros(Math.max(size, 1L << MIN_CLASS_SHIFT) - 1);
+        if (shift > SEGMENT_SHIFT)
+            throw new IllegalArgumentException("Entry too large: " + size);
+        return shift - MIN_CLASS_SHIFT;
+    }
+
+    /**
+     * 分配一块属于 sizeClass 级别的区域，优先从空闲链表中取，否则从数据区
+     * 末尾分配。区域不会跨越段的边界。返回的区域内容不确定。
+     */
+    final long allocate(int sizeClass) {
+        ByteBuffer h = segment(0);
+        int headPos = H_FREE_LISTS + (sizeClass << 3);
+        long off;
+        if ((off = h.getLong(headPos)) != 0L) {
+            // 空闲区域的前 8 个字节存放下一个空闲区域
+            h.putLong(headPos, getLong(off));
+            return off;
+        }
+        long len = 1L << (sizeClass + MIN_CLASS_SHIFT);
+        off = h.getLong(H_DATA_END);
+        // 剩余空间放不下，跳到下一个段的开头
+        if ((off & SEGMENT_MASK) + len > SEGMENT_SIZE)
+            off = (off | SEGMENT_MASK) + 1;
+        h.putLong(H_DATA_END, off + len);
+        map((int)(off >>> SEGMENT_SHIFT), pos(off) + len);
+        return off;
+    }
+
+    /**
+     * 把 off 处属于 sizeClass 级别的区域放回空闲链表。
+     */
+    final void free(long off, int sizeClass) {
+        ByteBuffer h = segment(0);
+        int headPos = H_FREE_LISTS + (sizeClass << 3);
+        putLong(off, h.getLong(headPos));
+        h.putLong(headPos, off);
+    }
+
+    /* ---------------- Table -------------- */
+
+    final int thresholdFor(int cap) {
+        float ft = (float)cap * loadFactor;
+        return (cap < MAXIMUM_CAPACITY && ft < (float)MAXIMUM_CAPACITY) ?
+                (int)ft : Integer.MAX_VALUE;
+    }
+
+    /**
+     * 分配并清零一个长度为 cap 的桶数组。
+     */
+    final long newTable(int cap) {
+        long bytes = (long)cap << 3;
+        long off = allocate(sizeClass(bytes));
+        ByteBuffer b = slice(off, (int)bytes);
+        byte[] zeros = new byte[(int)Math.min(bytes, 8192)];
+        while (b.hasRemaining())
+            b.put(zeros, 0, Math.min(zeros.length, b.remaining()));
+        return off;
+    }
+
+    final void setTable(long off, int cap) {
+        ByteBuffer h = segment(0);
+        h.putLong(H_TABLE, tableOffset = off);
+        h.putInt(H_CAPACITY, capacity = cap);
+        threshold = thresholdFor(cap);
+    }
+
+    final void setSize(long s) {
+        segment(0).putLong(H_SIZE, size = s);
+    }
+
+    /** 第 i 个桶在文件中的偏移量。 */
+    final long binOffset(int i) {
+        return tableOffset + ((long)i << 3);
+    }
+
+    /**
+     * 容量翻倍。和 HashMap.resize 一样，每个桶按 (hash & oldCap) 拆分成
+     * lo/hi 两条链表，保持原来的顺序。旧的桶数组放回空闲链表。
+     */
+    final void resize() {
+        int oldCap = capacity;
+        if (oldCap >= MAXIMUM_CAPACITY) {
+            threshold = Integer.MAX_VALUE;
+            return;
+        }
+        int newCap = oldCap << 1;
+        long oldTab = tableOffset;
+        long newTab = newTable(newCap);
+        for (int j = 0; j < oldCap; ++j) {
+            long e = getLong(oldTab + ((long)j << 3));
+            long loHead = 0L, loTail = 0L, hiHead = 0L, hiTail = 0L, next;
+            for (; e != 0L; e = next) {
+                next = getLong(e + E_NEXT);
+                if ((getInt(e + E_HASH) & oldCap) == 0) {
+                    if (loTail == 0L)
+                        loHead = e;
+                    else
+                        putLong(loTail + E_NEXT, e);
+                    loTail = e;
+                }
+                else {
+                    if (hiTail == 0L)
+                        hiHead = e;
+                    else
+                        putLong(hiTail + E_NEXT, e);
+                    hiTail = e;
+                }
+            }
+            if (loTail != 0L) {
+                putLong(loTail + E_NEXT, 0L);
+                putLong(newTab + ((long)j << 3), loHead);
+            }
+            if (hiTail != 0L) {
+                putLong(hiTail + E_NEXT, 0L);
+                putLong(newTab + ((long)(j + oldCap) << 3), hiHead);
+            }
+        }
+        setTable(newTab, newCap);
+        free(oldTab, sizeClass((long)oldCap << 3));
+    }
+
+    /* ---------------- Keys -------------- */
+
+    /**
+     * 把 key 序列化到 scratch 中，返回 scratch（position 为 0，limit 为长度）。
+     */
+    final ByteBuffer serializeKey(Object key) {
+        if (key == null)
+            throw new NullPointerException();
+        @SuppressWarnings("unchecked") K k = (K)key;
+        int len = keySerializer.sizeOf(k);
+        ByteBuffer buf = scratch;
+        if (buf.capacity() < len)
+            scratch = buf = ByteBuffer.allocate(Math.max(len, buf.capacity() << 1));
+        buf.clear();
+        keySerializer.write(k, buf);
+        buf.flip();
+        if (buf.remaining() != len)
+            throw new IllegalStateException("Serializer wrote " + buf.remaining() +
+                    " bytes, expected " + len);
+        return buf;
+    }
+
+    /**
+     * 对序列化后的 key 计算 hash：先按 Arrays.hashCode(byte[]) 的方式累积，
+     * 再用 murmur3 的 fmix32 混合。31 多项式中末尾字节只影响低几位、开头
+     * 字节的差异容易在乘法中抵消，fmix32 让每一位都扩散到所有输出位，
+     * 桶下标只取低位时也能分布均匀。
+     */
+    static int hash(ByteBuffer keyBytes) {
+        int h = 1;
+        for (int i = keyBytes.position(), n = keyBytes.limit(); i < n; ++i)
+            h = 31 * h + keyBytes.get(i);
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * 条目 e 的 key 是否和序列化后的 keyBytes 相同。
+     */
+    final boolean keyEquals(long e, int hash, ByteBuffer keyBytes) {
+        int len = keyBytes.remaining();
+        if (getInt(e + E_HASH) != hash || getInt(e + E_KEY_LEN) != len)
+            return false;
+        ByteBuffer b = seg(e);
+        int p = pos(e) + E_KEY;
+        for (int i = 0; i < len; ++i) {
+            if (b.get(p + i) != keyBytes.get(i))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * 查找序列化后为 keyBytes 的条目，返回其偏移量，找不到返回 0。
+     */
+    final long findEntry(int hash, ByteBuffer keyBytes) {
+        for (long e = getLong(binOffset(hash & (capacity - 1))); e != 0L;
+             e = getLong(e + E_NEXT)) {
+            if (keyEquals(e, hash, keyBytes))
+                return e;
+        }
+        return 0L;
+    }
+
+    final K readKey(long e) {
+        return keySerializer.read(slice(e + E_KEY, getInt(e + E_KEY_LEN)));
+    }
+
+    final V readValue(long e) {
+        int kl = getInt(e + E_KEY_LEN);
+        return valueSerializer.read(slice(e + E_KEY + kl, getInt(e + E_VAL_LEN)));
+    }
+
+    /**
+     * 条目 e 占用的空间所属的级别。
+     */
+    final int entryClass(long e) {
+        return sizeClass((long)E_KEY + getInt(e + E_KEY_LEN) + getInt(e + E_VAL_LEN));
+    }
+
+    /**
+     * 写一个新的条目，next 为 0。
+     */
+    final long writeEntry(int hash, ByteBuffer keyBytes, V value, int valLen) {
+        int keyLen = keyBytes.remaining();
+        long e = allocate(sizeClass((long)E_KEY + keyLen + valLen));
+        ByteBuffer b = seg(e);
+        int p = pos(e);
+        b.putLong(p + E_NEXT, 0L);
+        b.putInt(p + E_HASH, hash);
+        b.putInt(p + E_KEY_LEN, keyLen);
+        b.putInt(p + E_VAL_LEN, valLen);
+        ByteBuffer kb = slice(e + E_KEY, keyLen);
+        kb.put(keyBytes.duplicate());
+        writeValue(e + E_KEY + keyLen, value, valLen);
+        return e;
+    }
+
+    final void writeValue(long off, V value, int valLen) {
+        ByteBuffer vb = slice(off, valLen);
+        valueSerializer.write(value, vb);
+        if (vb.hasRemaining())
+            throw new IllegalStateException("Serializer wrote " + vb.position() +
+                    " bytes, expected " + valLen);
+    }
+
+    /* ---------------- Map operations -------------- */
+
+    public int size() {
+        return (size > Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int)size;
+    }
+
+    /**
+     * 返回映射的个数，可能大于 Integer.MAX_VALUE。
+     */
+    public long mappingCount() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0L;
+    }
+
+    public V get(Object key) {
+        ByteBuffer kb = serializeKey(key);
+        long e = findEntry(hash(kb), kb);
+        return (e == 0L) ? null : readValue(e);
+    }
+
+    public boolean containsKey(Object key) {
+        ByteBuffer kb = serializeKey(key);
+        return findEntry(hash(kb), kb) != 0L;
+    }
+
+    /**
+     * 把 key 映射到 value。如果 key 已经存在，新值放得下时原地覆盖，
+     * 否则写一个新条目替换链表中的旧条目，旧条目放回空闲链表。
+     */
+    public V put(K key, V value) {
+        if (value == null)
+            throw new NullPointerException();
+        ByteBuffer kb = serializeKey(key);
+        int hash = hash(kb);
+        int valLen = valueSerializer.sizeOf(value);
+        long bin = binOffset(hash & (capacity - 1));
+        long prev = 0L;
+        for (long e = getLong(bin); e != 0L; prev = e, e = getLong(e + E_NEXT)) {
+            if (keyEquals(e, hash, kb)) {
+                V oldValue = readValue(e);
+                int keyLen = kb.remaining();
+                if (sizeClass((long)E_KEY + keyLen + valLen) == entryClass(e)) {
+                    putInt(e + E_VAL_LEN, valLen);
+                    writeValue(e + E_KEY + keyLen, value, valLen);
+                }
+                else {
+                    long ne = writeEntry(hash, kb, value, valLen);
+                    putLong(ne + E_NEXT, getLong(e + E_NEXT));
+                    putLong(prev == 0L ? bin : prev + E_NEXT, ne);
+                    free(e, entryClass(e));
+                }
+                return oldValue;
+            }
+        }
+        // 不存在，新条目插入到链表头部
+        long ne = writeEntry(hash, kb, value, valLen);
+        putLong(ne + E_NEXT, getLong(bin));
+        putLong(bin, ne);
+        ++modCount;
+        setSize(size + 1);
+        if (size > threshold)
+            resize();
+        return null;
+    }
+
+    public V remove(Object key) {
+        ByteBuffer kb = serializeKey(key);
+        return removeEntry(hash(kb), kb, true);
+    }
+
+    /**
+     * 删除序列化后为 keyBytes 的条目。readOld 为 false 时不反序列化旧值，
+     * 只要删除成功就返回一个非 null 的哨兵（迭代器删除时使用）。
+     */
+    @SuppressWarnings("unchecked")
+    final V removeEntry(int hash, ByteBuffer keyBytes, boolean readOld) {
+        long bin = binOffset(hash & (capacity - 1));
+        long prev = 0L;
+        for (long e = getLong(bin); e != 0L; prev = e, e = getLong(e + E_NEXT)) {
+            if (keyEquals(e, hash, keyBytes)) {
+                V oldValue = readOld ? readValue(e) : (V)Boolean.TRUE;
+                putLong(prev == 0L ? bin : prev + E_NEXT, getLong(e + E_NEXT));
+                free(e, entryClass(e));
+                ++modCount;
+                setSize(size - 1);
+                return oldValue;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 删除所有映射。释放所有空间（文件不会变小），重新分配一个原容量的桶数组。
+     */
+    public void clear() {
+        ByteBuffer h = segment(0);
+        for (int c = 0; c < NUM_CLASSES; ++c)
+            h.putLong(H_FREE_LISTS + (c << 3), 0L);
+        h.putLong(H_DATA_END, DATA_START);
+        setTable(newTable(capacity), capacity);
+        ++modCount;
+        setSize(0L);
+    }
+
+    /* ---------------- Views -------------- */
+
+    public Set<Map.Entry<K,V>> entrySet() {
+        Set<Map.Entry<K,V>> es;
+        return (es = entrySet) == null ? (entrySet = new EntrySet()) : es;
+    }
+
+    final class EntrySet extends AbstractSet<Map.Entry<K,V>> {
+        public int size()                 { return MappedHashMap.this.size(); }
+        public void clear()               { MappedHashMap.this.clear(); }
+        public Iterator<Map.Entry<K,V>> iterator() { return new EntryIterator(); }
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?,?> e = (Map.Entry<?,?>)o;
+            Object v = (e.getKey() == null) ? null : get(e.getKey());
+            return v != null && v.equals(e.getValue());
+        }
+        public boolean remove(Object o) {
+            if (contains(o)) {
+                MappedHashMap.this.remove(((Map.Entry<?,?>)o).getKey());
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 按桶的顺序遍历条目的迭代器，fail-fast。每次 next 都会反序列化 key 和 value。
+     */
+    final class EntryIterator implements Iterator<Map.Entry<K,V>> {
+        long next;              // 下一个要返回的条目
+        int index;              // 下一个要扫描的桶
+        K lastKey;              // 上一次返回的 key，用于 remove
+        int expectedModCount;
+
+        EntryIterator() {
+            expectedModCount = modCount;
+            advance();
+        }
+
+        /** 找到下一个非空的桶。 */
+        void advance() {
+            while (next == 0L && index < capacity)
+                next = getLong(binOffset(index++));
+        }
+
+        public boolean hasNext() {
+            return next != 0L;
+        }
+
+        public Map.Entry<K,V> next() {
+            long e = next;
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (e == 0L)
+                throw new NoSuchElementException();
+            next = getLong(e + E_NEXT);
+            advance();
+            K k = lastKey = readKey(e);
+            return new MappedEntry(k, readValue(e));
+        }
+
+        public void remove() {
+            K k = lastKey;
+            if (k == null)
+                throw new IllegalStateException();
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            lastKey = null;
+            ByteBuffer kb = serializeKey(k);
+            removeEntry(hash(kb), kb, false);
+            expectedModCount = modCount;
+        }
+    }
+
+    /**
+     * 迭代器返回的条目，setValue 会写回映射文件。
+     */
+    final class MappedEntry extends AbstractMap.SimpleEntry<K,V> {
+        private static final long serialVersionUID = 1L;
+        MappedEntry(K key, V value) { super(key, value); }
+        public V setValue(V value) {
+            put(getKey(), value);
+            return super.setValue(value);
+        }
+    }
+}
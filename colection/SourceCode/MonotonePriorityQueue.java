@@ -0,0 +1,322 @@
+package java.util;
+
+import java.util.function.ToLongFunction;
+
+/**
+ * 单调优先级队列，用基数堆（radix heap）实现，适合定时器这类优先级只增不减
+ * 的场景：任何时候插入的元素，它的 key 都不小于最近一次 poll 出的 key。
+ *
+ * 元素的 key 由构造时传入的 keyExtractor 计算，只在 offer 时调用一次，之后
+ * 缓存在 long[] 中。队首是 key 最小的元素，key 相同的元素出队顺序不确定。
+ *
+ * <p>实现：设 last 为最近一次 poll 出的 key，key 为 k 的元素放在第
+ * 64 - numberOfLeadingZeros(k ^ last) 个桶中，即按 k 和 last 最高的不同位
+ * 分桶，第 0 个桶中的 key 都等于 last。
+ * <ul>
+ * <li>offer 只计算桶号然后追加到桶尾，O(1)；
+ * <li>poll 时如果第 0 个桶为空，找到第一个非空桶，取其中最小的 key 作为新的
+ *     last，并把这个桶的元素重新分配到更低的桶中。每个元素最多下移 64 次，
+ *     所以均摊下来 poll 也是 O(1)（与 key 的位数有关，与元素个数无关）。
+ * </ul>
+ * 相比 PriorityQueue 每次 siftUp/siftDown 的 O(log n) 次比较和随机访存，
+ * 桶都是顺序追加和顺序扫描的数组。
+ *
+ * <p>key 按有符号 long 比较，内部转换成无符号数（翻转符号位）后分桶。
+ * offer 的 key 小于 lastKey() 时抛出 IllegalArgumentException。
+ *
+ * <p>此类不是线程安全的，不允许 null 元素。迭代器是 fail-fast 的，遍历顺序
+ * 不确定。peek 不会修改内部结构，不影响正在进行的迭代。
+ *
+ * @param <E> the type of elements held in this collection
+ * @see PriorityQueue
+ */
+public class MonotonePriorityQueue<E> extends AbstractQueue<E> {
+
+    /** 桶的个数：第 0 个桶存放 key 等于 last 的元素，第 i 个桶存放最高不同位为 i-1 的元素。 */
+    private static final int BUCKETS = Long.SIZE + 1;
+
+    private static final int INITIAL_BUCKET_CAPACITY = 8;
+
+    /** 计算元素的 key。 */
+    private final ToLongFunction<? super E> keyExtractor;
+
+    /** 每个桶的元素，第一次使用时才分配。 */
+    private final Object[][] elements = new Object[BUCKETS][];
+
+    /** 和 elements 平行，保存已经转换成无符号形式的 key。 */
+    private final long[][] keys = new long[BUCKETS][];
+
+    /** 每个桶的元素个数。 */
+    private final int[] counts = new int[BUCKETS];
+
+    /** 最近一次 poll 出的 key（无符号形式），初始为最小值。 */
+    private long last;
+
+    private int size;
+
+    /** 结构修改次数，用于迭代器的 fail-fast。 */
+    transient int modCount;
+
+    /**
+     * peek 的缓存：第 0 个桶为空时，队首元素所在的桶和位置。minBucket 为 -1
+     * 表示没有缓存，任何修改都会让缓存失效。
+     */
+    private int minBucket = -1, minPos;
+
+    /**
+     * 创建一个空队列。
+     *
+     * @param keyExtractor 计算元素的 key
+     * @throws NullPointerException 如果 keyExtractor 为 null
+     */
+    public MonotonePriorityQueue(ToLongFunction<? super E> keyExtractor) {
+        this.keyExtractor = Objects.requireNonNull(keyExtractor);
+    }
+
+    /**
+     * 有符号 long 转成无符号形式，保持大小顺序不变。
+     */
+    private static long toUnsigned(long key) {
+        return key ^ Long.MIN_VALUE;
+    }
+
+    /**
+     * 无符号形式的 key 所在的桶。
+     */
+    private int bucketOf(long u) {
+        return Long.SIZE - Long.numberOfLeadingZeros(u ^ last);
+    }
+
+    /**
+     * 返回最近一次 poll 出的 key，之后 offer 的元素的 key 都不能比它小。
+     * 还没有 poll 过时返回 Long.MIN_VALUE。
+     */
+    public long lastKey() {
+        return toUnsigned(last);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 插入指定元素。
+     *
+     * @return {@code true} (as specified by {@link Queue#offer})
+     * @throws NullPointerException 如果元素为 null
+     * @throws IllegalArgumentException 如果元素的 key 小于 lastKey()
+     */
+    public boolean offer(E e) {
+        if (e == null)
+            throw new NullPointerException();
+        long key = keyExtractor.applyAsLong(e);
+        long u = toUnsigned(key);
+        if (Long.compareUnsigned(u, last) < 0)
+            throw new IllegalArgumentException("Key " + key +
+                    " is less than the last polled key " + lastKey());
+        push(bucketOf(u), e, u);
+        size++;
+        modCount++;
+        minBucket = -1;
+        return true;
+    }
+
+    /**
+     * 把元素追加到第 b 个桶的末尾，桶满时容量加倍。
+     */
+    private void push(int b, Object e, long u) {
+        Object[] es = elements[b];
+        int n = counts[b];
+        if (es == null) {
+            elements[b] = es = new Object[INITIAL_BUCKET_CAPACITY];
+            keys[b] = new long[INITIAL_BUCKET_CAPACITY];
+        } else if (n == es.length) {
+            int newCapacity = n << 1;
+            if (newCapacity < 0)
+                throw new OutOfMemoryError();
+            elements[b] = es = Arrays.copyOf(es, newCapacity);
+            keys[b] = Arrays.copyOf(keys[b], newCapacity);
+        }
+        es[n] = e;
+        keys[b][n] = u;
+        counts[b] = n + 1;
+    }
+
+    /**
+     * 返回第一个非空桶中最小 key 的位置，key 相同时取最后一个。redistribute
+     * 按下标顺序把元素放进第 0 个桶，poll 从桶尾取，所以 peek 和 poll 返回
+     * 的是同一个元素。调用前第 0 个桶必须为空，队列不能为空。
+     */
+    private int minPosition(int b) {
+        final long[] ks = keys[b];
+        int pos = 0;
+        long m = ks[0];
+        for (int j = 1, n = counts[b]; j < n; j++) {
+            if (Long.compareUnsigned(ks[j], m) <= 0)
+                m = ks[pos = j];
+        }
+        return pos;
+    }
+
+    /**
+     * 返回第一个非空桶的下标。队列不能为空。
+     */
+    private int firstNonEmptyBucket() {
+        int b = 0;
+        while (counts[b] == 0)
+            b++;
+        return b;
+    }
+
+    /**
+     * 第 0 个桶为空时调用：找到第一个非空桶，以其中最小的 key 作为新的 last，
+     * 再把这个桶的所有元素重新分桶。这些元素和新 last 的最高不同位一定比原来
+     * 低，所以都会移到更低的桶中，至少有一个（最小的那个）进入第 0 个桶。
+     */
+    private void redistribute() {
+        int b = firstNonEmptyBucket();
+        Object[] es = elements[b];
+        long[] ks = keys[b];
+        int n = counts[b];
+        last = ks[minPosition(b)];
+        counts[b] = 0;
+        for (int j = 0; j < n; j++) {
+            push(bucketOf(ks[j]), es[j], ks[j]);
+            es[j] = null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        if (size == 0)
+            return null;
+        if (counts[0] == 0)
+            redistribute();
+        int n = --counts[0];
+        Object[] es = elements[0];
+        E result = (E) es[n];
+        es[n] = null;
+        size--;
+        modCount++;
+        minBucket = -1;
+        return result;
+    }
+
+    /**
+     * 返回队首元素但不删除，队列为空返回 null。第 0 个桶非空时是 O(1)；否则
+     * 需要扫描第一个非空桶，结果会被缓存，直到下一次修改。
+     */
+    @SuppressWarnings("unchecked")
+    public E peek() {
+        if (size == 0)
+            return null;
+        int n = counts[0];
+        if (n > 0)
+            return (E) elements[0][n - 1];
+        if (minBucket < 0) {
+            int b = firstNonEmptyBucket();
+            minPos = minPosition(b);
+            minBucket = b;
+        }
+        return (E) elements[minBucket][minPos];
+    }
+
+    /**
+     * 删除一个和 o 相等的元素，需要扫描所有桶，O(n)。
+     */
+    public boolean remove(Object o) {
+        if (o != null) {
+            for (int b = 0; b < BUCKETS; b++) {
+                Object[] es = elements[b];
+                for (int j = 0, n = counts[b]; j < n; j++) {
+                    if (o.equals(es[j])) {
+                        removeAt(b, j);
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 删除第 b 个桶中第 j 个元素：用桶中最后一个元素填补。
+     */
+    private void removeAt(int b, int j) {
+        Object[] es = elements[b];
+        long[] ks = keys[b];
+        int n = --counts[b];
+        es[j] = es[n];
+        ks[j] = ks[n];
+        es[n] = null;
+        size--;
+        modCount++;
+        minBucket = -1;
+    }
+
+    /**
+     * 删除所有元素。lastKey() 保持不变，之后 offer 的 key 仍然不能比它小。
+     */
+    public void clear() {
+        for (int b = 0; b < BUCKETS; b++) {
+            if (counts[b] > 0) {
+                Arrays.fill(elements[b], 0, counts[b], null);
+                counts[b] = 0;
+            }
+        }
+        size = 0;
+        modCount++;
+        minBucket = -1;
+    }
+
+    public Iterator<E> iterator() {
+        return new Itr();
+    }
+
+    /**
+     * 按桶的顺序遍历，每个桶内从后往前：removeAt 把桶尾的元素移到被删除的
+     * 位置，而桶尾的元素已经遍历过了，所以不会重复也不会遗漏。
+     */
+    private final class Itr implements Iterator<E> {
+        /** 当前桶。 */
+        private int bucket;
+        /** 下一个返回的元素是 elements[bucket][pos - 1]。 */
+        private int pos = counts[0];
+        /** 最近一次 next 返回的元素所在的桶，-1 表示不能 remove。 */
+        private int lastBucket = -1;
+        private int lastPos;
+        private int expectedModCount = modCount;
+
+        private void advance() {
+            while (pos == 0 && bucket < BUCKETS - 1)
+                pos = counts[++bucket];
+        }
+
+        public boolean hasNext() {
+            advance();
+            return pos > 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (expectedModCount != modCount)
+                throw new ConcurrentModificationException();
+            advance();
+            if (pos == 0)
+                throw new NoSuchElementException();
+            lastBucket = bucket;
+            lastPos = --pos;
+            return (E) elements[bucket][pos];
+        }
+
+        public void remove() {
+            if (lastBucket < 0)
+                throw new IllegalStateException();
+            if (expectedModCount != modCount)
+                throw new ConcurrentModificationException();
+            removeAt(lastBucket, lastPos);
+            lastBucket = -1;
+            expectedModCount = modCount;
+        }
+    }
+}
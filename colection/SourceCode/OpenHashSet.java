@@ -0,0 +1,455 @@
+package java.util;
+
+import java.util.function.Consumer;
+
+/**
+ * 使用开放定址法（线性探测）实现的 Set，作为 HashSet 的替代。
+ *
+ * HashSet 内部是一个 HashMap&lt;E,Object&gt;，每个元素都要分配一个
+ * HashMap.Node（对象头、hash、key、value、next），value 还固定指向同一个
+ * PRESENT 对象。此类把元素直接放在一个 Object[] table 中，每个元素只占
+ * 一个引用的空间，没有任何节点对象：
+ *  - 表的长度总是 2 的幂，由 HashMap.tableSizeFor 计算；
+ *  - 下标由 hashCode 乘以黄金分割常数再折叠高位得到（见 mix），这样
+ *    hashCode 连续的元素（例如小的 Integer）也不会在表中聚成一团；
+ *  - 删除时不使用墓碑，而是把后续探测链上的元素往前挪，原理见
+ *    LongObjectHashMap.shiftKeys；
+ *  - null 元素用 NULL_KEY 代替存放在表中，和 IdentityHashMap 的做法相同。
+ *
+ * 默认负载因子为 0.5，和 LongObjectHashMap 相同。即便如此，每个元素平均
+ * 占用 2 个引用，仍然远小于 HashSet 中每个元素一个 Node 的开销。
+ *
+ * 此类不是线程安全的；iterator 返回的迭代器是 fail-fast 的。
+ *
+ * @param <E> the type of elements maintained by this set
+ * @see HashSet
+ * @see IntHashSet
+ * @see LongHashSet
+ */
+public class OpenHashSet<E> extends AbstractSet<E>
+        implements Set<E>, Cloneable, java.io.Serializable {
+
+    private static final long serialVersionUID = 5937260426745227474L;
+
+    /** 代替 null 元素存放在表中的对象。 */
+    static final Object NULL_KEY = new Object();
+
+    /** 存放元素的数组，null 表示空槽。第一次使用时才会分配。 */
+    transient Object[] table;
+
+    /** 元素的个数。 */
+    transient int size;
+
+    /** 结构修改次数，用于迭代器的 fail-fast。 */
+    transient int modCount;
+
+    /** 扩容阈值，table 还没有分配时保存初始容量。 */
+    transient int threshold;
+
+    /** 负载因子。 */
+    final float loadFactor;
+
+    /**
+     * 使用指定的初始容量和负载因子构造一个空集合。
+     *
+     * @param initialCapacity 预计的元素个数
+     * @param loadFactor 负载因子，必须在 (0, 1) 之间
+     * @throws IllegalArgumentException 如果初始容量为负数或者负载因子不合法
+     */
+    public OpenHashSet(int initialCapacity, float loadFactor) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal initial capacity: " +
+                    initialCapacity);
+        if (!(loadFactor > 0 && loadFactor < 1))
+            throw new IllegalArgumentException("Illegal load factor: " +
+                    loadFactor);
+        this.loadFactor = loadFactor;
+        this.threshold = LongObjectHashMap.capacityFor(initialCapacity, loadFactor);
+    }
+
+    /**
+     * 使用指定的初始容量和默认负载因子（0.5）构造一个空集合。
+     */
+    public OpenHashSet(int initialCapacity) {
+        this(initialCapacity, LongObjectHashMap.DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * 使用默认初始容量（16）和默认负载因子（0.5）构造一个空集合。
+     */
+    public OpenHashSet() {
+        this.loadFactor = LongObjectHashMap.DEFAULT_LOAD_FACTOR;
+    }
+
+    /**
+     * 构造一个包含 c 中所有元素的集合。
+     *
+     * @throws NullPointerException 如果 c 为 null
+     */
+    public OpenHashSet(Collection<? extends E> c) {
+        this(c.size());
+        addAll(c);
+    }
+
+    /**
+     * 由 hashCode 计算探测的起点。乘以 2^32 / 黄金分割比 之后高位充分混合，
+     * 再把高 16 位异或到低 16 位（和 HashMap.hash 相同），使下标也受到高位
+     * 的影响。
+     */
+    static int mix(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    static Object maskNull(Object o) {
+        return (o == null) ? NULL_KEY : o;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <E> E unmaskNull(Object o) {
+        return (o == NULL_KEY) ? null : (E)o;
+    }
+
+    // 查询操作
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 如果集合中包含 o，返回 true。
+     */
+    public boolean contains(Object o) {
+        return indexOf(maskNull(o)) >= 0;
+    }
+
+    /**
+     * 查找已经 mask 过的元素所在的槽位，找不到返回 -1。
+     */
+    final int indexOf(Object k) {
+        Object[] tab; Object e;
+        if ((tab = table) == null)
+            return -1;
+        int mask = tab.length - 1;
+        for (int i = mix(k.hashCode()) & mask; (e = tab[i]) != null; i = (i + 1) & mask) {
+            if (e == k || e.equals(k))
+                return i;
+        }
+        return -1;
+    }
+
+    // 修改操作
+
+    /**
+     * 如果集合中还没有 e，把它加入集合并返回 true。
+     */
+    public boolean add(E e) {
+        Object k = maskNull(e);
+        Object[] tab; Object x;
+        if ((tab = table) == null)
+            tab = resize();
+        int mask = tab.length - 1;
+        int i = mix(k.hashCode()) & mask;
+        for (; (x = tab[i]) != null; i = (i + 1) & mask) {
+            if (x == k || x.equals(k))
+                return false;
+        }
+        tab[i] = k;
+        ++modCount;
+        if (++size > threshold)
+            resize();
+        return true;
+    }
+
+    /**
+     * 如果集合中有 o，把它删除并返回 true。
+     */
+    public boolean remove(Object o) {
+        int i = indexOf(maskNull(o));
+        if (i < 0)
+            return false;
+        shiftKeys(i);
+        ++modCount;
+        --size;
+        return true;
+    }
+
+    /**
+     * 删除 pos 位置的元素，并把后续探测链上的元素往前挪，原理见
+     * LongObjectHashMap.shiftKeys。迭代器使用的版本见
+     * SetIterator.shiftKeysForIterator。
+     */
+    final void shiftKeys(int pos) {
+        Object[] tab = table;
+        int mask = tab.length - 1;
+        for (;;) {
+            int last = pos, slot;
+            Object k;
+            pos = (pos + 1) & mask;
+            for (;;) {
+                if ((k = tab[pos]) == null) {
+                    tab[last] = null;
+                    return;
+                }
+                slot = mix(k.hashCode()) & mask;
+                if (last <= pos ? (last >= slot || slot > pos)
+                                : (last >= slot && slot > pos))
+                    break;
+                pos = (pos + 1) & mask;
+            }
+            tab[last] = k;
+        }
+    }
+
+    /**
+     * 删除所有元素。保留已经分配的数组。
+     */
+    public void clear() {
+        ++modCount;
+        if (table != null && size > 0)
+            Arrays.fill(table, null);
+        size = 0;
+    }
+
+    /**
+     * 初始化或者加倍 table，见 LongObjectHashMap.resize。
+     */
+    final Object[] resize() {
+        Object[] oldTab = table;
+        int oldCap = (oldTab == null) ? 0 : oldTab.length;
+        int newCap;
+        if (oldCap > 0) {
+            if (oldCap >= HashMap.MAXIMUM_CAPACITY) {
+                if (size >= oldCap - 1)
+                    throw new IllegalStateException("Set too big");
+                threshold = oldCap - 1;
+                return oldTab;
+            }
+            newCap = oldCap << 1;
+        }
+        else if (threshold > 0)
+            newCap = threshold;
+        else
+            newCap = LongObjectHashMap.DEFAULT_INITIAL_CAPACITY;
+        threshold = LongObjectHashMap.thresholdFor(newCap, loadFactor);
+        Object[] newTab = new Object[newCap];
+        table = newTab;
+        if (oldTab != null) {
+            int mask = newCap - 1;
+            for (int j = 0; j < oldCap; ++j) {
+                Object k;
+                if ((k = oldTab[j]) != null) {
+                    int i = mix(k.hashCode()) & mask;
+                    while (newTab[i] != null)
+                        i = (i + 1) & mask;
+                    newTab[i] = k;
+                }
+            }
+        }
+        return newTab;
+    }
+
+    // 遍历
+
+    /**
+     * 返回集合的迭代器，元素的顺序不确定。
+     */
+    public Iterator<E> iterator() {
+        return new SetIterator();
+    }
+
+    /**
+     * 从表尾向表头遍历的迭代器。
+     *
+     * 迭代器的 remove 会触发 shiftKeys，把后面（下标更大、已经遍历过）
+     * 的元素挪到被删除的位置上，这些元素不需要再访问。但是探测链可能从表尾
+     * 绕回表头：表头还没有遍历到的元素可能被挪到表尾已经遍历过的位置上，
+     * 这些元素会被漏掉。所以 remove 自己执行挪动，把这种元素记录在
+     * wrapped 中，在表遍历结束之后再返回。
+     */
+    final class SetIterator implements Iterator<E> {
+        int pos;                    // 下一个要检查的位置 + 1
+        int lastReturned = -1;      // 上一次 next 返回的元素的位置，-1 表示没有
+        int remaining;              // 还没有返回的元素个数
+        int expectedModCount;
+        ArrayList<Object> wrapped;  // 从表头被挪到已遍历区域的元素
+        Object lastWrapped;         // 上一次 next 从 wrapped 中返回的元素
+
+        SetIterator() {
+            Object[] tab = table;
+            pos = (tab == null) ? 0 : tab.length;
+            remaining = size;
+            expectedModCount = modCount;
+        }
+
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        public E next() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (remaining <= 0)
+                throw new NoSuchElementException();
+            --remaining;
+            lastWrapped = null;
+            Object[] tab = table;
+            for (;;) {
+                if (--pos < 0) {
+                    // 表已经遍历完，剩下的元素在 wrapped 中
+                    lastReturned = -1;
+                    lastWrapped = wrapped.get(-pos - 1);
+                    return unmaskNull(lastWrapped);
+                }
+                Object k;
+                if ((k = tab[pos]) != null) {
+                    lastReturned = pos;
+                    return unmaskNull(k);
+                }
+            }
+        }
+
+        public void remove() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (lastWrapped != null) {
+                // 元素已经被挪过，位置不确定，按值删除
+                OpenHashSet.this.remove(unmaskNull(lastWrapped));
+                lastWrapped = null;
+            }
+            else if (lastReturned >= 0) {
+                shiftKeysForIterator(lastReturned);
+                lastReturned = -1;
+                ++modCount;
+                --size;
+            }
+            else
+                throw new IllegalStateException();
+            expectedModCount = modCount;
+        }
+
+        /**
+         * 和 shiftKeys 相同，只是把从表头（还没有遍历）挪到表尾（已经遍历）
+         * 的元素记录下来。
+         */
+        private void shiftKeysForIterator(int pos) {
+            Object[] tab = table;
+            int mask = tab.length - 1;
+            for (;;) {
+                int last = pos, slot;
+                Object k;
+                pos = (pos + 1) & mask;
+                for (;;) {
+                    if ((k = tab[pos]) == null) {
+                        tab[last] = null;
+                        return;
+                    }
+                    slot = mix(k.hashCode()) & mask;
+                    if (last <= pos ? (last >= slot || slot > pos)
+                                    : (last >= slot && slot > pos))
+                        break;
+                    pos = (pos + 1) & mask;
+                }
+                if (pos < last) {
+                    if (wrapped == null)
+                        wrapped = new ArrayList<>(2);
+                    wrapped.add(k);
+                }
+                tab[last] = k;
+            }
+        }
+    }
+
+    /**
+     * 对每个元素执行 action，遍历期间如果集合被结构性修改，抛出
+     * ConcurrentModificationException。
+     */
+    @Override
+    public void forEach(Consumer<? super E> action) {
+        if (action == null)
+            throw new NullPointerException();
+        int mc = modCount;
+        Object[] tab; Object k;
+        if ((tab = table) != null) {
+            for (int i = 0; i < tab.length && modCount == mc; ++i) {
+                if ((k = tab[i]) != null)
+                    action.accept(unmaskNull(k));
+            }
+        }
+        if (modCount != mc)
+            throw new ConcurrentModificationException();
+    }
+
+    @Override
+    public Object[] toArray() {
+        Object[] r = new Object[size];
+        int n = 0;
+        Object[] tab; Object k;
+        if ((tab = table) != null) {
+            for (int i = 0; i < tab.length; ++i) {
+                if ((k = tab[i]) != null)
+                    r[n++] = unmaskNull(k);
+            }
+        }
+        return r;
+    }
+
+    // Object 方法
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public OpenHashSet<E> clone() {
+        OpenHashSet<E> result;
+        try {
+            result = (OpenHashSet<E>)super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new InternalError(e);
+        }
+        if (table != null)
+            result.table = table.clone();
+        result.modCount = 0;
+        return result;
+    }
+
+    /**
+     * 把集合保存到流中（序列化）。
+     *
+     * @serialData 先写入元素个数（int），然后按任意顺序写入所有元素。
+     */
+    private void writeObject(java.io.ObjectOutputStream s)
+            throws java.io.IOException {
+        s.defaultWriteObject();
+        s.writeInt(size);
+        Object[] tab; Object k;
+        if ((tab = table) != null) {
+            for (int i = 0; i < tab.length; ++i) {
+                if ((k = tab[i]) != null)
+                    s.writeObject(unmaskNull(k));
+            }
+        }
+    }
+
+    /**
+     * 从流中恢复集合（反序列化）。
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(java.io.ObjectInputStream s)
+            throws java.io.IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        int n = s.readInt();
+        if (n < 0)
+            throw new java.io.InvalidObjectException("Illegal size: " + n);
+        if (!(loadFactor > 0 && loadFactor < 1))
+            throw new java.io.InvalidObjectException("Illegal load factor: " +
+                    loadFactor);
+        table = null;
+        size = 0;
+        threshold = LongObjectHashMap.capacityFor(n, loadFactor);
+        for (int i = 0; i < n; i++)
+            add((E)s.readObject());
+    }
+}
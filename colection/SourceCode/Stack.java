@@ -61,6 +61,15 @@ class Stack<E> extends Vector<E> {
     public Stack() {
     }
 
+    /**
+     * 创建一个属于当前线程的空栈，见 Vector.owner。
+     */
+    public static <E> Stack<E> newOwnedStack() {
+        Stack<E> s = new Stack<>();
+        s.bindOwner();
+        return s;
+    }
+
     /**
      * Pushes an item onto the top of this stack. This has exactly
      * the same effect as:
@@ -87,12 +96,30 @@ class Stack<E> extends Vector<E> {
      *          of the <tt>Vector</tt> object).
      * @throws  EmptyStackException  if this stack is empty.
      */
-    public synchronized E pop() {
+    public E pop() {
+        if (enterOwned()) {    // owner 模式，不加锁，见 Vector.owner
+            try {
+                return popHelper();
+            } finally {
+                exitOwned();
+            }
+        }
+        synchronized (this) {
+            revokeOwner();
+            return popHelper();
+        }
+    }
+
+    /**
+     * pop 的非同步实现。只调用 xxxHelper，不能调用带有 owner 快速路径的
+     * 公有方法，见 Vector.enterOwned。
+     */
+    private E popHelper() {
         E       obj;
-        int     len = size();  //获得栈底层的数组中元素个数，
+        int     len = elementCount;  //获得栈底层的数组中元素个数，
 
-        obj = peek();  //如果为空，这一步会抛出异常
-        removeElementAt(len - 1);  //先进先出，因为push在末尾添加，所以pop也在末尾弹出。
+        obj = peekHelper();  //如果为空，这一步会抛出异常
+        removeElementAtHelper(len - 1);  //先进先出，因为push在末尾添加，所以pop也在末尾弹出。
 
         return obj;      //返回弹出的值。
     }
@@ -105,12 +132,26 @@ class Stack<E> extends Vector<E> {
      *          of the <tt>Vector</tt> object).
      * @throws  EmptyStackException  if this stack is empty.
      */
-    public synchronized E peek() {
-        int     len = size();
+    public E peek() {
+        if (enterOwned()) {
+            try {
+                return peekHelper();
+            } finally {
+                exitOwned();
+            }
+        }
+        synchronized (this) {
+            revokeOwner();
+            return peekHelper();
+        }
+    }
+
+    private E peekHelper() {
+        int     len = elementCount;
 
         if (len == 0)  //注意如果栈为空，会抛出空栈异常。
             throw new EmptyStackException();
-        return elementAt(len - 1);
+        return elementData(len - 1);
     }
 
     /**
@@ -140,6 +181,7 @@ class Stack<E> extends Vector<E> {
      *          indicates that the object is not on the stack.
      */
     public synchronized int search(Object o) {
+        revokeOwner();
         int i = lastIndexOf(o);    //从后面开始遍历，找到第一个指定元素相等的值的索引
 
         if (i >= 0) {      //如果找到了，
@@ -0,0 +1,842 @@
+package java.util;
+
+import java.util.function.Consumer;
+
+/**
+ * 展开链表（unrolled linked list）：实现了 List 和 Deque 接口的双向链表，
+ * 但每个节点保存的是一小段元素，而不是一个元素。
+ *
+ * LinkedList 的每个元素都要分配一个 Node（item、next、prev 三个引用加对象
+ * 头），按下标访问时 node(index) 最多要走 n/2 个节点，遍历时每一步都是一次
+ * 可能不命中缓存的指针跳转。此类的每个节点中有一个长度为 nodeCapacity 的
+ * 数组，元素连续存放在数组的 [lo, hi) 之间：
+ *  - 每个元素的额外开销从一个 Node 降到大约一个数组槽位；
+ *  - 遍历时大部分步骤只是数组下标加 1，按下标定位时按节点跳跃，
+ *    最多走 n / (2 * 平均节点元素数) 个节点；
+ *  - 头部节点的元素靠数组尾部存放（addFirst 时 lo 向前移动），尾部节点的
+ *    元素靠数组头部存放（addLast 时 hi 向后移动），所以 addFirst、addLast、
+ *    removeFirst、removeLast 都是 O(1) 的，只在节点满了或者空了的时候才
+ *    分配或者摘除节点；
+ *  - 通过 ListIterator 在中间插入、删除元素时只移动所在节点内的元素，也是
+ *    O(nodeCapacity)，即常数时间。节点满了就分裂成两个各占一半的节点；
+ *    删除以后节点中的元素不到一半、并且能和相邻节点放进同一个节点时，
+ *    两个节点合并，所以不会留下大量只有一两个元素的节点；
+ *  - 最近摘除的一个空节点作为备用节点保留，在节点边界上反复 push、pop
+ *    不会每次都分配新的数组。
+ *
+ * 和 LinkedList 一样，此类允许 null 元素，不是线程安全的（没有写线程时
+ * 可以被多个线程并发读取），iterator 和 listIterator 返回的迭代器都是
+ * fail-fast 的。
+ *
+ * @param <E> the type of elements held in this collection
+ * @see LinkedList
+ * @see ArrayDeque
+ */
+public class UnrolledLinkedList<E>
+        extends AbstractSequentialList<E>
+        implements List<E>, Deque<E>, Cloneable, java.io.Serializable {
+
+    private static final long serialVersionUID = -1237906734531698451L;
+
+    /** 默认每个节点最多保存的元素个数。 */
+    static final int DEFAULT_NODE_CAPACITY = 32;
+
+    /** 节点容量的最小值，太小的节点会退化成 LinkedList。 */
+    static final int MIN_NODE_CAPACITY = 4;
+
+    /** 元素的个数。 */
+    transient int size = 0;
+
+    /** 每个节点中数组的长度。 */
+    final int nodeCapacity;
+
+    /** 第一个节点，为 null 时链表为空。节点中至少有一个元素。 */
+    transient Node<E> first;
+
+    /** 最后一个节点。 */
+    transient Node<E> last;
+
+    /** 备用的空节点，见 linkNodeAfter 和 unlinkNode。 */
+    transient Node<E> spare;
+
+    /**
+     * 链表的节点。元素存放在 items[lo, hi) 中，其他位置都是 null。
+     */
+    static final class Node<E> {
+        final Object[] items;
+        int lo, hi;
+        Node<E> prev, next;
+
+        Node(int capacity, int start) {
+            items = new Object[capacity];
+            lo = hi = start;
+        }
+
+        int count() {
+            return hi - lo;
+        }
+    }
+
+    /**
+     * 构造一个空链表，节点容量为 32。
+     */
+    public UnrolledLinkedList() {
+        this.nodeCapacity = DEFAULT_NODE_CAPACITY;
+    }
+
+    /**
+     * 构造一个空链表，每个节点最多保存 nodeCapacity 个元素。
+     *
+     * @throws IllegalArgumentException 如果 nodeCapacity 小于 4
+     */
+    public UnrolledLinkedList(int nodeCapacity) {
+        if (nodeCapacity < MIN_NODE_CAPACITY)
+            throw new IllegalArgumentException("Illegal node capacity: " +
+                    nodeCapacity);
+        this.nodeCapacity = nodeCapacity;
+    }
+
+    /**
+     * 构造一个包含 c 中所有元素的链表，顺序和 c 的迭代器返回的顺序相同。
+     *
+     * @throws NullPointerException 如果 c 为 null
+     */
+    public UnrolledLinkedList(Collection<? extends E> c) {
+        this();
+        addAll(c);
+    }
+
+    // 节点的链接和摘除
+
+    /**
+     * 在 pred 之后链接一个新节点，pred 为 null 时作为第一个节点。
+     */
+    private Node<E> linkNodeAfter(Node<E> pred, int start) {
+        Node<E> x = spare;
+        if (x != null) {
+            spare = null;
+            x.lo = x.hi = start;
+        } else
+            x = new Node<>(nodeCapacity, start);
+        Node<E> succ = (pred == null) ? first : pred.next;
+        x.prev = pred;
+        x.next = succ;
+        if (pred == null)
+            first = x;
+        else
+            pred.next = x;
+        if (succ == null)
+            last = x;
+        else
+            succ.prev = x;
+        return x;
+    }
+
+    /**
+     * 摘除一个已经没有元素的节点，没有备用节点时把它留作备用。
+     */
+    private void unlinkNode(Node<E> x) {
+        Node<E> prev = x.prev, next = x.next;
+        if (prev == null)
+            first = next;
+        else
+            prev.next = next;
+        if (next == null)
+            last = prev;
+        else
+            next.prev = prev;
+        x.prev = x.next = null;
+        if (spare == null)
+            spare = x;
+    }
+
+    /**
+     * 把元素添加到链表头部。第一个节点的数组前面没有空位时，新建一个节点，
+     * 它的元素从数组末尾开始向前存放。
+     */
+    private void linkFirst(E e) {
+        Node<E> f = first;
+        if (f == null || f.lo == 0)
+            f = linkNodeAfter(null, nodeCapacity);
+        f.items[--f.lo] = e;
+        size++;
+        modCount++;
+    }
+
+    /**
+     * 把元素添加到链表尾部。最后一个节点的数组后面没有空位时，新建一个节点，
+     * 它的元素从数组开头开始向后存放。
+     */
+    void linkLast(E e) {
+        Node<E> l = last;
+        if (l == null || l.hi == nodeCapacity)
+            l = linkNodeAfter(l, 0);
+        l.items[l.hi++] = e;
+        size++;
+        modCount++;
+    }
+
+    /** removeAt 的返回值：pos 之后的元素向前移动了一位。 */
+    private static final int SHIFTED_BACK = 0;
+
+    /** removeAt 的返回值：pos 之前的元素向后移动了一位（即 lo 加 1）。 */
+    private static final int SHIFTED_FRONT = 1;
+
+    /** removeAt 的返回值：节点和相邻节点合并了，元素的位置都可能改变。 */
+    private static final int MERGED = 2;
+
+    /**
+     * 删除 x 中 pos 位置的元素，移动 pos 两侧较少的那一边。节点变空时将它
+     * 摘除；剩下的元素不到节点容量的一半时，尝试和相邻节点合并。
+     *
+     * @return SHIFTED_BACK、SHIFTED_FRONT 或 MERGED
+     */
+    private int removeAt(Node<E> x, int pos) {
+        Object[] items = x.items;
+        int result;
+        if (pos - x.lo < x.hi - 1 - pos) {
+            System.arraycopy(items, x.lo, items, x.lo + 1, pos - x.lo);
+            items[x.lo++] = null;
+            result = SHIFTED_FRONT;
+        } else {
+            System.arraycopy(items, pos + 1, items, pos, x.hi - 1 - pos);
+            items[--x.hi] = null;
+            result = SHIFTED_BACK;
+        }
+        size--;
+        modCount++;
+        if (x.lo == x.hi)
+            unlinkNode(x);
+        else if (x.count() < (nodeCapacity >>> 1)) {
+            Node<E> y;
+            if ((y = x.next) != null && x.count() + y.count() <= nodeCapacity) {
+                mergeNext(x);
+                result = MERGED;
+            } else if ((y = x.prev) != null && x.count() + y.count() <= nodeCapacity) {
+                mergeNext(y);
+                result = MERGED;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 把 a 的后继节点中的元素移到 a 的末尾，然后摘除后继节点。调用前两个
+     * 节点的元素总数不能超过节点容量。a 的数组末尾放不下时，先把 a 的元素
+     * 移到数组开头。
+     */
+    private void mergeNext(Node<E> a) {
+        Node<E> b = a.next;
+        Object[] items = a.items;
+        int na = a.count(), nb = b.count();
+        if (a.hi + nb > nodeCapacity) {
+            System.arraycopy(items, a.lo, items, 0, na);
+            Arrays.fill(items, na, a.hi, null);
+            a.lo = 0;
+            a.hi = na;
+        }
+        System.arraycopy(b.items, b.lo, items, a.hi, nb);
+        a.hi += nb;
+        Arrays.fill(b.items, b.lo, b.hi, null);
+        b.lo = b.hi;
+        unlinkNode(b);
+    }
+
+    /**
+     * 返回下标为 index 的元素，replace 为 true 时把它替换为 element。从离
+     * index 较近的一端按节点跳跃查找。
+     *
+     * 元素在节点中的位置只保存在局部变量里：get 这样的只读操作不修改对象的
+     * 状态，没有写线程时多个线程可以同时读取。
+     */
+    private Object accessAt(int index, boolean replace, Object element) {
+        // assert isElementIndex(index);
+        Node<E> x;
+        int pos;
+        if (index < (size >> 1)) {
+            x = first;
+            int n;
+            while (index >= (n = x.count())) {
+                index -= n;
+                x = x.next;
+            }
+            pos = x.lo + index;
+        } else {
+            x = last;
+            int i = size - 1 - index, n;
+            while (i >= (n = x.count())) {
+                i -= n;
+                x = x.prev;
+            }
+            pos = x.hi - 1 - i;
+        }
+        Object[] items = x.items;
+        Object oldVal = items[pos];
+        if (replace)
+            items[pos] = element;
+        return oldVal;
+    }
+
+    // Deque 操作
+
+    public void addFirst(E e) {
+        linkFirst(e);
+    }
+
+    public void addLast(E e) {
+        linkLast(e);
+    }
+
+    public boolean offerFirst(E e) {
+        addFirst(e);
+        return true;
+    }
+
+    public boolean offerLast(E e) {
+        addLast(e);
+        return true;
+    }
+
+    public E removeFirst() {
+        E x = pollFirst();
+        if (x == null && size == 0)
+            throw new NoSuchElementException();
+        return x;
+    }
+
+    public E removeLast() {
+        E x = pollLast();
+        if (x == null && size == 0)
+            throw new NoSuchElementException();
+        return x;
+    }
+
+    @SuppressWarnings("unchecked")
+    public E pollFirst() {
+        Node<E> f = first;
+        if (f == null)
+            return null;
+        E x = (E) f.items[f.lo];
+        f.items[f.lo++] = null;
+        if (f.lo == f.hi)
+            unlinkNode(f);
+        size--;
+        modCount++;
+        return x;
+    }
+
+    @SuppressWarnings("unchecked")
+    public E pollLast() {
+        Node<E> l = last;
+        if (l == null)
+            return null;
+        E x = (E) l.items[--l.hi];
+        l.items[l.hi] = null;
+        if (l.lo == l.hi)
+            unlinkNode(l);
+        size--;
+        modCount++;
+        return x;
+    }
+
+    public E getFirst() {
+        if (first == null)
+            throw new NoSuchElementException();
+        return peekFirst();
+    }
+
+    public E getLast() {
+        if (last == null)
+            throw new NoSuchElementException();
+        return peekLast();
+    }
+
+    @SuppressWarnings("unchecked")
+    public E peekFirst() {
+        Node<E> f = first;
+        return (f == null) ? null : (E) f.items[f.lo];
+    }
+
+    @SuppressWarnings("unchecked")
+    public E peekLast() {
+        Node<E> l = last;
+        return (l == null) ? null : (E) l.items[l.hi - 1];
+    }
+
+    public boolean removeFirstOccurrence(Object o) {
+        return remove(o);
+    }
+
+    public boolean removeLastOccurrence(Object o) {
+        for (Iterator<E> it = descendingIterator(); it.hasNext(); ) {
+            if (Objects.equals(o, it.next())) {
+                it.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Queue 和 Stack 操作
+
+    public boolean offer(E e) {
+        return add(e);
+    }
+
+    public E poll() {
+        return pollFirst();
+    }
+
+    public E peek() {
+        return peekFirst();
+    }
+
+    public E element() {
+        return getFirst();
+    }
+
+    public E remove() {
+        return removeFirst();
+    }
+
+    public void push(E e) {
+        addFirst(e);
+    }
+
+    public E pop() {
+        return removeFirst();
+    }
+
+    // List 操作
+
+    public int size() {
+        return size;
+    }
+
+    public boolean add(E e) {
+        linkLast(e);
+        return true;
+    }
+
+    public boolean remove(Object o) {
+        for (Node<E> x = first; x != null; x = x.next) {
+            Object[] items = x.items;
+            for (int i = x.lo; i < x.hi; i++) {
+                if (Objects.equals(o, items[i])) {
+                    removeAt(x, i);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public int indexOf(Object o) {
+        int index = 0;
+        for (Node<E> x = first; x != null; x = x.next) {
+            Object[] items = x.items;
+            for (int i = x.lo; i < x.hi; i++, index++) {
+                if (Objects.equals(o, items[i]))
+                    return index;
+            }
+        }
+        return -1;
+    }
+
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        checkElementIndex(index);
+        return (E) accessAt(index, false, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    public E set(int index, E element) {
+        checkElementIndex(index);
+        return (E) accessAt(index, true, element);
+    }
+
+    /**
+     * 删除所有元素，节点全部丢弃，交给 GC 回收。
+     */
+    public void clear() {
+        first = last = null;
+        size = 0;
+        modCount++;
+    }
+
+    public Object[] toArray() {
+        Object[] result = new Object[size];
+        int i = 0;
+        for (Node<E> x = first; x != null; x = x.next) {
+            int n = x.count();
+            System.arraycopy(x.items, x.lo, result, i, n);
+            i += n;
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T[] toArray(T[] a) {
+        if (a.length < size)
+            a = (T[])java.lang.reflect.Array.newInstance(
+                    a.getClass().getComponentType(), size);
+        int i = 0;
+        for (Node<E> x = first; x != null; x = x.next) {
+            int n = x.count();
+            System.arraycopy(x.items, x.lo, a, i, n);
+            i += n;
+        }
+        if (a.length > size)
+            a[size] = null;
+        return a;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(Consumer<? super E> action) {
+        Objects.requireNonNull(action);
+        final int expectedModCount = modCount;
+        for (Node<E> x = first; x != null && modCount == expectedModCount; x = x.next) {
+            Object[] items = x.items;
+            for (int i = x.lo, hi = x.hi; i < hi; i++)
+                action.accept((E) items[i]);
+        }
+        if (modCount != expectedModCount)
+            throw new ConcurrentModificationException();
+    }
+
+    private boolean isElementIndex(int index) {
+        return index >= 0 && index < size;
+    }
+
+    private boolean isPositionIndex(int index) {
+        return index >= 0 && index <= size;
+    }
+
+    private String outOfBoundsMsg(int index) {
+        return "Index: "+index+", Size: "+size;
+    }
+
+    private void checkElementIndex(int index) {
+        if (!isElementIndex(index))
+            throw new IndexOutOfBoundsException(outOfBoundsMsg(index));
+    }
+
+    private void checkPositionIndex(int index) {
+        if (!isPositionIndex(index))
+            throw new IndexOutOfBoundsException(outOfBoundsMsg(index));
+    }
+
+    // 迭代器
+
+    /**
+     * 返回从 index 开始的 ListIterator。
+     *
+     * @throws IndexOutOfBoundsException 如果 index 越界
+     */
+    public ListIterator<E> listIterator(int index) {
+        checkPositionIndex(index);
+        return new ListItr(index);
+    }
+
+    /**
+     * 游标用 (next, nextPos) 表示：下一次 next() 返回 next.items[nextPos]。
+     * nextPos 可以等于 next.hi，表示下一个元素在后继节点的开头；next 为
+     * null 表示游标在链表末尾。
+     */
+    private class ListItr implements ListIterator<E> {
+        private Node<E> next;
+        private int nextPos;
+        private int nextIndex;
+        private Node<E> lastNode;           // 上一次返回的元素所在的节点
+        private int lastPos = -1;           // 它在节点中的位置，-1 表示没有
+        private boolean lastWasNext;        // 上一次调用的是 next() 还是 previous()
+        private int expectedModCount = modCount;
+
+        ListItr(int index) {
+            seek(index);
+        }
+
+        /**
+         * 把游标移到 index 之前，从离 index 较近的一端按节点跳跃查找。
+         */
+        private void seek(int index) {
+            // assert isPositionIndex(index);
+            nextIndex = index;
+            if (index == size) {
+                next = null;
+                return;
+            }
+            Node<E> x;
+            if (index < (size >> 1)) {
+                x = first;
+                int n;
+                while (index >= (n = x.count())) {
+                    index -= n;
+                    x = x.next;
+                }
+                nextPos = x.lo + index;
+            } else {
+                x = last;
+                int i = size - 1 - index, n;
+                while (i >= (n = x.count())) {
+                    i -= n;
+                    x = x.prev;
+                }
+                nextPos = x.hi - 1 - i;
+            }
+            next = x;
+        }
+
+        public boolean hasNext() {
+            return nextIndex < size;
+        }
+
+        @SuppressWarnings("unchecked")
+        public E next() {
+            checkForComodification();
+            if (!hasNext())
+                throw new NoSuchElementException();
+            if (nextPos == next.hi) {
+                next = next.next;
+                nextPos = next.lo;
+            }
+            lastNode = next;
+            lastPos = nextPos++;
+            lastWasNext = true;
+            nextIndex++;
+            return (E) lastNode.items[lastPos];
+        }
+
+        public boolean hasPrevious() {
+            return nextIndex > 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        public E previous() {
+            checkForComodification();
+            if (!hasPrevious())
+                throw new NoSuchElementException();
+            if (next == null) {
+                next = last;
+                nextPos = last.hi - 1;
+            } else if (nextPos == next.lo) {
+                next = next.prev;
+                nextPos = next.hi - 1;
+            } else
+                nextPos--;
+            lastNode = next;
+            lastPos = nextPos;
+            lastWasNext = false;
+            nextIndex--;
+            return (E) lastNode.items[lastPos];
+        }
+
+        public int nextIndex() {
+            return nextIndex;
+        }
+
+        public int previousIndex() {
+            return nextIndex - 1;
+        }
+
+        public void remove() {
+            checkForComodification();
+            if (lastPos < 0)
+                throw new IllegalStateException();
+            Node<E> x = lastNode;
+            Node<E> succ = x.next;
+            // 无论上一次调用的是 next() 还是 previous()，游标都在 x 中
+            // assert next == x;
+            int r = removeAt(x, lastPos);
+            if (lastWasNext)
+                nextIndex--;
+            if (r == MERGED) {
+                // 和相邻节点合并以后元素的位置都变了，重新定位
+                seek(nextIndex);
+            } else if (x.lo == x.hi) {
+                // 节点已经被摘除，游标移到原来的后继节点
+                next = succ;
+                nextPos = (succ == null) ? 0 : succ.lo;
+            } else if (r == SHIFTED_FRONT) {
+                // pos 之前的元素后移了一位，游标之后的元素位置不变；
+                // previous() 之后游标原来指向被删除的元素，现在指向它的后继
+                if (!lastWasNext)
+                    nextPos++;
+            } else {
+                // pos 之后的元素前移了一位，previous() 之后游标原来指向的
+                // 位置上现在就是后继
+                if (lastWasNext)
+                    nextPos--;
+            }
+            lastPos = -1;
+            expectedModCount++;
+        }
+
+        public void set(E e) {
+            if (lastPos < 0)
+                throw new IllegalStateException();
+            checkForComodification();
+            lastNode.items[lastPos] = e;
+        }
+
+        public void add(E e) {
+            checkForComodification();
+            lastPos = -1;
+            if (next != null && nextPos == next.hi && next.next != null) {
+                next = next.next;
+                nextPos = next.lo;
+            }
+            if (next == null || nextIndex == size) {
+                linkLast(e);
+                next = null;
+            } else
+                insertAtCursor(e);
+            nextIndex++;
+            expectedModCount++;
+        }
+
+        /**
+         * 把 e 插入到游标指向的元素之前（nextPos 可以等于 next.hi，表示插到
+         * 节点末尾），插入以后游标指向 e 的后继。节点有空位时只移动节点内的
+         * 元素；节点满了就把后一半元素移到一个新节点中再插入。
+         */
+        private void insertAtCursor(E e) {
+            Node<E> x = next;
+            int pos = nextPos;
+            Object[] items = x.items;
+            if (x.hi < nodeCapacity) {
+                System.arraycopy(items, pos, items, pos + 1, x.hi - pos);
+                items[pos] = e;
+                x.hi++;
+                nextPos = pos + 1;
+            } else if (x.lo > 0) {
+                System.arraycopy(items, x.lo, items, x.lo - 1, pos - x.lo);
+                items[pos - 1] = e;
+                x.lo--;
+            } else {
+                // 节点已满，后一半移到新节点的开头
+                int mid = x.lo + (x.count() >>> 1);
+                Node<E> y = linkNodeAfter(x, 0);
+                int n = x.hi - mid;
+                System.arraycopy(items, mid, y.items, 0, n);
+                Arrays.fill(items, mid, x.hi, null);
+                x.hi = mid;
+                y.hi = n;
+                if (pos > mid) {
+                    next = y;
+                    nextPos = pos - mid;
+                }
+                insertAtCursor(e);
+                return;
+            }
+            size++;
+            modCount++;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void forEachRemaining(Consumer<? super E> action) {
+            Objects.requireNonNull(action);
+            while (modCount == expectedModCount && nextIndex < size) {
+                if (nextPos == next.hi) {
+                    next = next.next;
+                    nextPos = next.lo;
+                }
+                lastNode = next;
+                lastPos = nextPos++;
+                lastWasNext = true;
+                nextIndex++;
+                action.accept((E) lastNode.items[lastPos]);
+            }
+            checkForComodification();
+        }
+
+        final void checkForComodification() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+    }
+
+    /**
+     * 返回从尾部向头部遍历的迭代器。
+     */
+    public Iterator<E> descendingIterator() {
+        return new DescendingIterator();
+    }
+
+    /**
+     * Adapter to provide descending iterators via ListItr.previous
+     */
+    private class DescendingIterator implements Iterator<E> {
+        private final ListItr itr = new ListItr(size());
+        public boolean hasNext() {
+            return itr.hasPrevious();
+        }
+        public E next() {
+            return itr.previous();
+        }
+        public void remove() {
+            itr.remove();
+        }
+    }
+
+    // Object 方法
+
+    /**
+     * 返回浅拷贝，元素本身不会被复制。新链表中的节点是重新排列过的，每个
+     * 节点都是满的（最后一个除外）。
+     */
+    @SuppressWarnings("unchecked")
+    public Object clone() {
+        UnrolledLinkedList<E> clone;
+        try {
+            clone = (UnrolledLinkedList<E>) super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new InternalError(e);
+        }
+        clone.first = clone.last = clone.spare = null;
+        clone.size = 0;
+        clone.modCount = 0;
+        for (Node<E> x = first; x != null; x = x.next) {
+            for (int i = x.lo; i < x.hi; i++)
+                clone.linkLast((E) x.items[i]);
+        }
+        return clone;
+    }
+
+    /**
+     * 把链表保存到流中（序列化）。
+     *
+     * @serialData 先写入 nodeCapacity（默认序列化的字段）和元素个数（int），
+     *             然后按顺序写入所有元素。
+     */
+    private void writeObject(java.io.ObjectOutputStream s)
+            throws java.io.IOException {
+        s.defaultWriteObject();
+        s.writeInt(size);
+        for (Node<E> x = first; x != null; x = x.next) {
+            for (int i = x.lo; i < x.hi; i++)
+                s.writeObject(x.items[i]);
+        }
+    }
+
+    /**
+     * 从流中恢复链表（反序列化）。
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(java.io.ObjectInputStream s)
+            throws java.io.IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        if (nodeCapacity < MIN_NODE_CAPACITY)
+            throw new java.io.InvalidObjectException("Illegal node capacity: " +
+                    nodeCapacity);
+        int size = s.readInt();
+        for (int i = 0; i < size; i++)
+            linkLast((E)s.readObject());
+    }
+}
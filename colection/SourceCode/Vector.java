@@ -148,6 +148,91 @@ public class Vector<E>
     private static final long serialVersionUID = -2767605614048989439L;
     //序列化，跟版本相关。
 
+    /**
+     * owner 模式下拥有此向量的线程，为 null 表示普通的同步模式。
+     *
+     * 只有通过 newOwnedVector（或 Stack.newOwnedStack）创建的向量才会进入
+     * owner 模式，属于创建它的线程。只有 owner 线程访问时，size、isEmpty、
+     * elementAt、firstElement、lastElement、get、set、setElementAt、
+     * addElement、add、removeElementAt、remove(int) 以及 Stack 的 push、pop、
+     * peek 都不进入 monitor。其他线程第一次在持有锁的情况下访问时会撤销
+     * owner 模式（见 revokeOwner），之后所有线程（包括原来的 owner）都走
+     * 同步路径，不会再回到 owner 模式。
+     *
+     * owner 的无锁操作用 ownerBusy 和撤销者握手：owner 先写 ownerBusy，再
+     * 确认 owner 没有被撤销；撤销者先清除 owner，再等待 ownerBusy 变为
+     * false。两边都是 volatile 读写，所以要么 owner 看到撤销转而加锁，要么
+     * 撤销者看到 ownerBusy 并等待这次操作结束，同步语义不变。代价是每次无锁
+     * 操作一次 volatile 写（StoreLoad 屏障），省掉的是 monitorenter 和
+     * monitorexit，在没有偏向锁的 JVM 上才有收益。
+     *
+     * 普通构造的向量不进入 owner 模式：调用方可能在别的线程里用
+     * synchronized (vector) 做客户端加锁或者 wait/notify，而不调用向量的
+     * 方法，这时 owner 的无锁操作不会被阻塞；在有偏向锁的 JVM 上 owner
+     * 模式反而更慢。
+     */
+    private transient volatile Thread owner;
+
+    /** owner 线程正在执行无锁操作 */
+    private transient volatile boolean ownerBusy;
+
+    /**
+     * 创建一个属于当前线程的向量，初始容量为 initialCapacity。
+     *
+     * @param initialCapacity the initial capacity of the vector
+     * @throws IllegalArgumentException if the specified initial capacity
+     *         is negative
+     */
+    public static <E> Vector<E> newOwnedVector(int initialCapacity) {
+        Vector<E> v = new Vector<>(initialCapacity);
+        v.bindOwner();
+        return v;
+    }
+
+    /**
+     * 让新建、还没有发布的向量属于当前线程。
+     */
+    final void bindOwner() {
+        owner = Thread.currentThread();
+    }
+
+    /**
+     * owner 线程开始一次无锁操作。返回 false 时调用方必须走同步路径；返回
+     * true 时调用方必须在 finally 中调用 exitOwned。无锁操作内部不能再调用
+     * 带有 owner 快速路径的公有方法，否则内层的 exitOwned 会提前清除
+     * ownerBusy，所以快速路径都只调用 xxxHelper。
+     */
+    final boolean enterOwned() {
+        Thread current = Thread.currentThread();
+        if (owner != current)
+            return false;
+        ownerBusy = true;
+        if (owner == current)
+            return true;
+        ownerBusy = false;       // 刚刚被撤销
+        return false;
+    }
+
+    /**
+     * owner 线程结束一次无锁操作。
+     */
+    final void exitOwned() {
+        ownerBusy = false;
+    }
+
+    /**
+     * 持有锁时调用：如果当前线程不是 owner，关闭 owner 模式，并等待 owner
+     * 正在进行的无锁操作结束。owner 线程自己调用同步方法不会关闭。
+     */
+    final void revokeOwner() {
+        Thread o = owner;
+        if (o != null && o != Thread.currentThread()) {
+            owner = null;
+            while (ownerBusy)
+                Thread.yield();
+        }
+    }
+
     /**
      * Constructs an empty vector with the specified initial capacity and
      * capacity increment.
@@ -225,6 +310,7 @@ public class Vector<E>
      * @see #toArray(Object[])
      */
     public synchronized void copyInto(Object[] anArray) {
+        revokeOwner();
         System.arraycopy(elementData, 0, anArray, 0, elementCount);
     }
 
@@ -240,6 +326,7 @@ public class Vector<E>
      *  当前大小。可以应用此操作最小化向量的存储空间。
      */
     public synchronized void trimToSize() {
+        revokeOwner();
         modCount++;
         int oldCapacity = elementData.length;
         if (elementCount < oldCapacity) { // 有效部件的数量少于数组的大小，需要缩减数组。
@@ -270,6 +357,7 @@ public class Vector<E>
      * @param minCapacity the desired minimum capacity
      */
     public synchronized void ensureCapacity(int minCapacity) {
+        revokeOwner();
         if (minCapacity > 0) {
             modCount++;
             ensureCapacityHelper(minCapacity);
@@ -340,6 +428,7 @@ public class Vector<E>
      * @throws ArrayIndexOutOfBoundsException if the new size is negative
      */
     public synchronized void setSize(int newSize) {
+        revokeOwner();
         modCount++;
         if (newSize > elementCount) {     //不够要扩容，
             ensureCapacityHelper(newSize);
@@ -359,6 +448,7 @@ public class Vector<E>
      *          of this vector)
      */
     public synchronized int capacity() {
+        revokeOwner();
         return elementData.length;
     }
 
@@ -367,8 +457,18 @@ public class Vector<E>
      *返回向量中部件的数量（size）
      * @return  the number of components in this vector
      */
-    public synchronized int size() {
-        return elementCount;
+    public int size() {
+        if (enterOwned()) {
+            try {
+                return elementCount;
+            } finally {
+                exitOwned();
+            }
+        }
+        synchronized (this) {
+            revokeOwner();
+            return elementCount;
+        }
     }
 
     /**
@@ -378,8 +478,18 @@ public class Vector<E>
      *          no components, that is, its size is zero;
      *          {@code false} otherwise.
      */
-    public synchronized boolean isEmpty() {
-        return elementCount == 0;
+    public boolean isEmpty() {
+        if (enterOwned()) {
+            try {
+                return elementCount == 0;
+            } finally {
+                exitOwned();
+            }
+        }
+        synchronized (this) {
+            revokeOwner();
+            return elementCount == 0;
+        }
     }
 
     /**
@@ -403,6 +513,7 @@ public class Vector<E>
 
             public E nextElement() {
                 synchronized (Vector.this) {
+                    revokeOwner();
                     if (count < elementCount) {
                         return elementData(count++);
                     }
@@ -459,6 +570,7 @@ public class Vector<E>
      * @see     Object#equals(Object)
      */
     public synchronized int indexOf(Object o, int index) {
+        revokeOwner();
         if (o == null) {
             for (int i = index ; i < elementCount ; i++)
                 if (elementData[i]==null)
@@ -483,6 +595,7 @@ public class Vector<E>
      *         this vector, or -1 if this vector does not contain the element
      */
     public synchronized int lastIndexOf(Object o) {
+        revokeOwner();
         return lastIndexOf(o, elementCount-1);
     }
 
@@ -504,6 +617,7 @@ public class Vector<E>
      *         than or equal to the current size of this vector
      */
     public synchronized int lastIndexOf(Object o, int index) {
+        revokeOwner();
         if (index >= elementCount)
             throw new IndexOutOfBoundsException(index + " >= "+ elementCount);
 
@@ -530,7 +644,25 @@ public class Vector<E>
      * @throws ArrayIndexOutOfBoundsException if the index is out of range
      *         ({@code index < 0 || index >= size()})
      */
-    public synchronized E elementAt(int index) {
+    public E elementAt(int index) {
+        if (enterOwned()) {
+            try {
+                return elementAtHelper(index);
+            } finally {
+                exitOwned();
+            }
+        }
+        synchronized (this) {
+            revokeOwner();
+            return elementAtHelper(index);
+        }
+    }
+
+    /**
+     * elementAt 的非同步实现，调用方负责加锁或者确认处于 owner 模式。
+     * 下面其他 xxxHelper 方法同理。
+     */
+    private E elementAtHelper(int index) {
         if (index >= elementCount) {
             throw new ArrayIndexOutOfBoundsException(index + " >= " + elementCount);
         }
@@ -545,7 +677,21 @@ public class Vector<E>
      * @return     the first component of this vector
      * @throws NoSuchElementException if this vector has no components
      */
-    public synchronized E firstElement() {
+    public E firstElement() {
+        if (enterOwned()) {
+            try {
+                return firstElementHelper();
+            } finally {
+                exitOwned();
+            }
+        }
+        synchronized (this) {
+            revokeOwner();
+            return firstElementHelper();
+        }
+    }
+
+    private E firstElementHelper() {
         if (elementCount == 0) {
             throw new NoSuchElementException();
         }
@@ -559,7 +705,21 @@ public class Vector<E>
      *          <code>size()&nbsp;-&nbsp;1</code>.
      * @throws NoSuchElementException if this vector is empty
      */
-    public synchronized E lastElement() {
+    public E lastElement() {
+        if (enterOwned()) {
+            try {
+                return lastElementHelper();
+            } finally {
+                exitOwned();
+            }
+        }
+        synchronized (this) {
+            revokeOwner();
+            return lastElementHelper();
+        }
+    }
+
+    private E lastElementHelper() {
         if (elementCount == 0) {
             throw new NoSuchElementException();
         }
@@ -587,7 +747,22 @@ public class Vector<E>
      * @throws ArrayIndexOutOfBoundsException if the index is out of range
      *         ({@code index < 0 || index >= size()})
      */
-    public synchronized void setElementAt(E obj, int index) {
+    public void setElementAt(E obj, int index) {
+        if (enterOwned()) {
+            try {
+                setElementAtHelper(obj, index);
+            } finally {
+                exitOwned();
+            }
+            return;
+        }
+        synchronized (this) {
+            revokeOwner();
+            setElementAtHelper(obj, index);
+        }
+    }
+
+    private void setElementAtHelper(E obj, int index) {
         if (index >= elementCount) {
             throw new ArrayIndexOutOfBoundsException(index + " >= " +
                     elementCount);
@@ -617,7 +792,22 @@ public class Vector<E>
      * @throws ArrayIndexOutOfBoundsException if the index is out of range
      *         ({@code index < 0 || index >= size()})
      */
-    public synchronized void removeElementAt(int index) {
+    public void removeElementAt(int index) {
+        if (enterOwned()) {
+            try {
+                removeElementAtHelper(index);
+            } finally {
+                exitOwned();
+            }
+            return;
+        }
+        synchronized (this) {
+            revokeOwner();
+            removeElementAtHelper(index);
+        }
+    }
+
+    final void removeElementAtHelper(int index) {
         modCount++;
         if (index >= elementCount) {
             throw new ArrayIndexOutOfBoundsException(index + " >= " +
@@ -662,6 +852,7 @@ public class Vector<E>
      *         ({@code index < 0 || index > size()})
      */
     public synchronized void insertElementAt(E obj, int index) {
+        revokeOwner();
         modCount++;
         if (index > elementCount) {
             throw new ArrayIndexOutOfBoundsException(index
@@ -689,7 +880,22 @@ public class Vector<E>
      *
      * @param   obj   the component to be added
      */
-    public synchronized void addElement(E obj) {
+    public void addElement(E obj) {
+        if (enterOwned()) {
+            try {
+                addElementHelper(obj);
+            } finally {
+                exitOwned();
+            }
+            return;
+        }
+        synchronized (this) {
+            revokeOwner();
+            addElementHelper(obj);
+        }
+    }
+
+    final void addElementHelper(E obj) {
         modCount++;
         ensureCapacityHelper(elementCount + 1);
         elementData[elementCount++] = obj;
@@ -713,6 +919,7 @@ public class Vector<E>
      *          vector; {@code false} otherwise.
      */
     public synchronized boolean removeElement(Object obj) {
+        revokeOwner();
         modCount++;
         int i = indexOf(obj);   //得到要删除值的index
         if (i >= 0) {
@@ -730,6 +937,7 @@ public class Vector<E>
      * 等同于clear操作。
      */
     public synchronized void removeAllElements() {
+        revokeOwner();
         modCount++;
         // Let gc do its work
         for (int i = 0; i < elementCount; i++)
@@ -747,11 +955,15 @@ public class Vector<E>
      * @return  a clone of this vector
      */
     public synchronized Object clone() {
+        revokeOwner();
         try {
             @SuppressWarnings("unchecked")
             Vector<E> v = (Vector<E>) super.clone();
             v.elementData = Arrays.copyOf(elementData, elementCount);
             v.modCount = 0;
+            // 克隆出的向量不属于任何线程
+            v.owner = null;
+            v.ownerBusy = false;
             return v;
         } catch (CloneNotSupportedException e) {
             // this shouldn't happen, since we are Cloneable
@@ -766,6 +978,7 @@ public class Vector<E>
      * @since 1.2
      */
     public synchronized Object[] toArray() {
+        revokeOwner();
         return Arrays.copyOf(elementData, elementCount);
     }
 
@@ -799,6 +1012,7 @@ public class Vector<E>
      */
     @SuppressWarnings("unchecked")
     public synchronized <T> T[] toArray(T[] a) {
+        revokeOwner();
         if (a.length < elementCount)
             return (T[]) Arrays.copyOf(elementData, elementCount, a.getClass());
 
@@ -827,7 +1041,21 @@ public class Vector<E>
      *            ({@code index < 0 || index >= size()})
      * @since 1.2
      */
-    public synchronized E get(int index) {
+    public E get(int index) {
+        if (enterOwned()) {
+            try {
+                return getHelper(index);
+            } finally {
+                exitOwned();
+            }
+        }
+        synchronized (this) {
+            revokeOwner();
+            return getHelper(index);
+        }
+    }
+
+    private E getHelper(int index) {
         if (index >= elementCount)
             throw new ArrayIndexOutOfBoundsException(index);
 
@@ -845,7 +1073,21 @@ public class Vector<E>
      *         ({@code index < 0 || index >= size()})
      * @since 1.2
      */
-    public synchronized E set(int index, E element) {
+    public E set(int index, E element) {
+        if (enterOwned()) {
+            try {
+                return setHelper(index, element);
+            } finally {
+                exitOwned();
+            }
+        }
+        synchronized (this) {
+            revokeOwner();
+            return setHelper(index, element);
+        }
+    }
+
+    private E setHelper(int index, E element) {
         if (index >= elementCount)
             throw new ArrayIndexOutOfBoundsException(index);
 
@@ -861,10 +1103,20 @@ public class Vector<E>
      * @return {@code true} (as specified by {@link Collection#add})
      * @since 1.2
      */
-    public synchronized boolean add(E e) {
-        modCount++;
-        ensureCapacityHelper(elementCount + 1);
-        elementData[elementCount++] = e;
+    public boolean add(E e) {
+        // 不委托给 addElement：子类覆盖 addElement 时可能调用 super.add
+        if (enterOwned()) {
+            try {
+                addElementHelper(e);
+            } finally {
+                exitOwned();
+            }
+            return true;
+        }
+        synchronized (this) {
+            revokeOwner();
+            addElementHelper(e);
+        }
         return true;
     }
 
@@ -912,7 +1164,21 @@ public class Vector<E>
      * @return element that was removed
      * @since 1.2
      */
-    public synchronized E remove(int index) {
+    public E remove(int index) {
+        if (enterOwned()) {
+            try {
+                return removeHelper(index);
+            } finally {
+                exitOwned();
+            }
+        }
+        synchronized (this) {
+            revokeOwner();
+            return removeHelper(index);
+        }
+    }
+
+    private E removeHelper(int index) {
         modCount++;
         if (index >= elementCount)
             throw new ArrayIndexOutOfBoundsException(index);
@@ -952,6 +1218,7 @@ public class Vector<E>
      * @throws NullPointerException if the specified collection is null
      */
     public synchronized boolean containsAll(Collection<?> c) {
+        revokeOwner();
         return super.containsAll(c);
     }
 
@@ -971,6 +1238,7 @@ public class Vector<E>
      * @since 1.2
      */
     public synchronized boolean addAll(Collection<? extends E> c) {
+        revokeOwner();
         modCount++;
         Object[] a = c.toArray();
         int numNew = a.length;
@@ -999,6 +1267,7 @@ public class Vector<E>
      * @since 1.2
      */
     public synchronized boolean removeAll(Collection<?> c) {
+        revokeOwner();
         return super.removeAll(c);
     }
 
@@ -1023,6 +1292,7 @@ public class Vector<E>
      * @since 1.2
      */
     public synchronized boolean retainAll(Collection<?> c) {
+        revokeOwner();
         return super.retainAll(c);
     }
 
@@ -1046,6 +1316,7 @@ public class Vector<E>
      * @since 1.2
      */
     public synchronized boolean addAll(int index, Collection<? extends E> c) {
+        revokeOwner();
         modCount++;
         // 判断索引是否在范围内
         if (index < 0 || index > elementCount)
@@ -1081,6 +1352,7 @@ public class Vector<E>
      * @return true if the specified Object is equal to this Vector
      */
     public synchronized boolean equals(Object o) {
+        revokeOwner();
         return super.equals(o);
     }
 
@@ -1089,6 +1361,7 @@ public class Vector<E>
      *  返回集合的 hash 值
      */
     public synchronized int hashCode() {
+        revokeOwner();
         return super.hashCode();
     }
 
@@ -1098,6 +1371,7 @@ public class Vector<E>
      * 返回集合的字符串表示，包括集合所有元素的字符串表示。
      */
     public synchronized String toString() {
+        revokeOwner();
         return super.toString();
     }
 
@@ -1141,6 +1415,7 @@ public class Vector<E>
      *         {@code (fromIndex > toIndex)}
      */
     public synchronized List<E> subList(int fromIndex, int toIndex) {
+        revokeOwner();
         return Collections.synchronizedList(super.subList(fromIndex, toIndex),
                 this);
     }
@@ -1156,6 +1431,7 @@ public class Vector<E>
      *   此操作没有任何影响。
      */
     protected synchronized void removeRange(int fromIndex, int toIndex) {
+        revokeOwner();
         modCount++;
         int numMoved = elementCount - toIndex;
         System.arraycopy(elementData, toIndex, elementData, fromIndex,
@@ -1180,6 +1456,7 @@ public class Vector<E>
         final java.io.ObjectOutputStream.PutField fields = s.putFields();
         final Object[] data;
         synchronized (this) {
+            revokeOwner();
             fields.put("capacityIncrement", capacityIncrement);
             fields.put("elementCount", elementCount);
             data = elementData.clone();
@@ -1202,6 +1479,7 @@ public class Vector<E>
      * @throws IndexOutOfBoundsException {@inheritDoc}
      */
     public synchronized ListIterator<E> listIterator(int index) {
+        revokeOwner();
         if (index < 0 || index > elementCount)
             throw new IndexOutOfBoundsException("Index: "+index);
         return new ListItr(index);
@@ -1217,6 +1495,7 @@ public class Vector<E>
      * @see #listIterator(int)
      */
     public synchronized ListIterator<E> listIterator() {
+        revokeOwner();
         return new ListItr(0);
     }
 
@@ -1229,6 +1508,7 @@ public class Vector<E>
      * @return an iterator over the elements in this list in proper sequence
      */
     public synchronized Iterator<E> iterator() {
+        revokeOwner();
         return new Itr();
     }
 
@@ -1249,6 +1529,7 @@ public class Vector<E>
         // 返回 cursor指向的元素，并将游标向前移动一位。
         public E next() {
             synchronized (Vector.this) {
+                revokeOwner();
                 checkForComodification();
                 int i = cursor;
                 if (i >= elementCount)
@@ -1262,6 +1543,7 @@ public class Vector<E>
             if (lastRet == -1)
                 throw new IllegalStateException();
             synchronized (Vector.this) {
+                revokeOwner();
                 checkForComodification();
                 Vector.this.remove(lastRet);
                 expectedModCount = modCount;
@@ -1274,6 +1556,7 @@ public class Vector<E>
         public void forEachRemaining(Consumer<? super E> action) {
             Objects.requireNonNull(action);
             synchronized (Vector.this) {
+                revokeOwner();
                 final int size = elementCount;
                 int i = cursor;
                 if (i >= size) {
@@ -1324,6 +1607,7 @@ public class Vector<E>
         // 返回 cursor - 1 指向的元素并向往回移动一位
         public E previous() {
             synchronized (Vector.this) {
+                revokeOwner();
                 checkForComodification();
                 int i = cursor - 1;
                 if (i < 0)
@@ -1337,6 +1621,7 @@ public class Vector<E>
             if (lastRet == -1)
                 throw new IllegalStateException();
             synchronized (Vector.this) {
+                revokeOwner();
                 checkForComodification();
                 Vector.this.set(lastRet, e);
             }
@@ -1345,6 +1630,7 @@ public class Vector<E>
         public void add(E e) {
             int i = cursor;
             synchronized (Vector.this) {
+                revokeOwner();
                 checkForComodification();
                 Vector.this.add(i, e);
                 expectedModCount = modCount;
@@ -1356,6 +1642,7 @@ public class Vector<E>
 
     @Override
     public synchronized void forEach(Consumer<? super E> action) {
+        revokeOwner();
         Objects.requireNonNull(action);
         final int expectedModCount = modCount;
         @SuppressWarnings("unchecked")
@@ -1373,6 +1660,7 @@ public class Vector<E>
     @Override
     @SuppressWarnings("unchecked")
     public synchronized boolean removeIf(Predicate<? super E> filter) {
+        revokeOwner();
         Objects.requireNonNull(filter);
         // figure out which elements are to be removed
         // any exception thrown from the filter predicate at this stage
@@ -1417,6 +1705,7 @@ public class Vector<E>
     @Override
     @SuppressWarnings("unchecked")
     public synchronized void replaceAll(UnaryOperator<E> operator) {
+        revokeOwner();
         Objects.requireNonNull(operator);
         final int expectedModCount = modCount;
         final int size = elementCount;
@@ -1434,6 +1723,7 @@ public class Vector<E>
     @SuppressWarnings("unchecked")
     @Override
     public synchronized void sort(Comparator<? super E> c) {
+        revokeOwner();
         final int expectedModCount = modCount;
         Arrays.sort((E[]) elementData, 0, elementCount, c);
         if (modCount != expectedModCount) {
@@ -1482,6 +1772,7 @@ public class Vector<E>
             int hi;
             if ((hi = fence) < 0) {
                 synchronized(list) {
+                    list.revokeOwner();
                     array = list.elementData;
                     expectedModCount = list.modCount;
                     hi = fence = list.elementCount;
@@ -1521,6 +1812,7 @@ public class Vector<E>
             if ((lst = list) != null) {
                 if ((hi = fence) < 0) {
                     synchronized(lst) {
+                        lst.revokeOwner();
                         expectedModCount = lst.modCount;
                         a = array = lst.elementData;
                         hi = fence = lst.elementCount;